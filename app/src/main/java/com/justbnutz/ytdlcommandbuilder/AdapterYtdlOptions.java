@@ -10,8 +10,15 @@ package com.justbnutz.ytdlcommandbuilder;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.support.annotation.NonNull;
+import android.support.v4.content.ContextCompat;
 import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.TextUtils;
+import android.text.style.BackgroundColorSpan;
+import android.util.SparseArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -19,6 +26,9 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.ViewHolderYtdlBase> {
@@ -26,30 +36,83 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
 
     private final LayoutInflater mInflater;
 
-    // The main source list containing only the Headers at the parent level, and the nested YTDL Option items under each header - this will not change
-    private List<ModelYtdlOptionSection> mYtdlOptionBaseList;
+    // Immutable snapshot of the main source list (Headers at the parent level with their nested YTDL Option items),
+    // the list used as the item display (a semi-flattened version of the source list, or the filtered items) and the
+    // Section Ids of the expanded Headers (kept here since the Section models are shared and read-only).
+    // Only ever swapped out whole on the main thread, so background list ops always get a matching set.
+    private volatile ShowListSnapshot mShowListSnapshot = ShowListSnapshot.EMPTY;
 
-    // The list that will be used as the item display - Effectively a semi-flattened version of mYtdlOptionBaseList (Option items copied to parent level to show in RecyclerView)
-    private List<ModelYtdlBaseItem> mYtdlOptionShowList;
+    // Show List position of each Section's Header (by Section Id), so an expand / collapse knows where its rows go.
+    // Only kept up while the Show List is the Header list, a filtered list has no Headers to toggle.
+    private int[] mSectionPositions = new int[0];
+    private boolean mIsSectionedShowList;
+
+    // Search index over the Base List, handed over once the list has loaded (filtering reads it off the main thread)
+    private volatile ModelYtdlOptionSearchIndex mSearchIndex;
+
+    // Filtered Option item text with the matches already marked out, keyed by Item Id (null when not filtering)
+    private SparseArray<ItemMatchHighlight> mMatchHighlights;
+    private final int mMatchHighlightColour;
+
+    // Rebind payload for when only the match highlights have changed (only the row text gets set again)
+    private static final Object PAYLOAD_MATCH_HIGHLIGHTS = new Object();
+
+    // Option items picked out in multi-select mode, in the order they were picked (they stay picked through filtering)
+    private final List<ModelYtdlOptionItem> mSelectedItems = new ArrayList<>();
+
+    // Rebind payload for when only the selected state has changed (only the row tint gets set again)
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // Rows to lay out the text for ahead of binding, about what fits on screen (the layout cache only holds a few screens)
+    private static final int PRECOMPUTE_MAX_ITEMS = 24;
 
 
 
     AdapterYtdlOptions(Context context) {
         mInflater = LayoutInflater.from(context);
+        mMatchHighlightColour = ContextCompat.getColor(context, R.color.colour_search_match_highlight);
     }
 
 
     /**
-     * Populate the adapter with the base list of full YTDL options
+     * Clear the list out ahead of a streamed load (see appendBaseOptionSection())
      */
-    void setBaseOptionList(@NonNull List<ModelYtdlOptionSection> ytdlBaseOptionList) {
+    void resetBaseOptionList() {
+        notifyItemRangeRemoved(0, getItemCount());
+        mShowListSnapshot = mShowListSnapshot.next(
+                Collections.<ModelYtdlOptionSection>emptyList(),
+                Collections.<ModelYtdlBaseItem>emptyList(),
+                new BitSet()
+        );
+        mMatchHighlights = null;
+        mSelectedItems.clear();
+        mSectionPositions = new int[0];
+        mIsSectionedShowList = true;
+    }
 
-        mYtdlOptionBaseList = ytdlBaseOptionList;
 
-        // Everything is collapsed when first populated, so can just update in main thread.
-        notifyItemRangeRemoved( 0, getItemCount());
-        mYtdlOptionShowList = generateNewShowList();
-        notifyItemRangeInserted(0, getItemCount());
+    /**
+     * Add a single streamed Section to the end of the list. Sections come in collapsed, so only the Header row is added.
+     *
+     * Both lists go into a new snapshot rather than being added to, since background list ops could be iterating them.
+     */
+    void appendBaseOptionSection(@NonNull ModelYtdlOptionSection optionSection) {
+
+        ShowListSnapshot currentSnapshot = mShowListSnapshot;
+
+        List<ModelYtdlOptionSection> newBaseList = new ArrayList<>(currentSnapshot.baseList.size() + 1);
+        newBaseList.addAll(currentSnapshot.baseList);
+        newBaseList.add(optionSection);
+
+        List<ModelYtdlBaseItem> newShowList = new ArrayList<>(currentSnapshot.showList.size() + 1);
+        newShowList.addAll(currentSnapshot.showList);
+        newShowList.add(optionSection);
+
+        mShowListSnapshot = currentSnapshot.next(newBaseList, newShowList);
+        notifyItemInserted(newShowList.size() - 1);
+
+        mSectionPositions = Arrays.copyOf(mSectionPositions, newBaseList.size());
+        mSectionPositions[newBaseList.size() - 1] = newShowList.size() - 1;
     }
 
 
@@ -59,7 +122,7 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
 
     @Override
     public int getItemViewType(int position) {
-        return mYtdlOptionShowList.get(position).getViewType();
+        return mShowListSnapshot.showList.get(position).getViewType();
     }
 
 
@@ -90,25 +153,82 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolderYtdlBase viewHolder, int position) {
-        // Load the item and run the corresponding bind action for that Item Type
-        viewHolder.bindAction(
-                mYtdlOptionShowList.get(position)
-        );
+
+        ModelYtdlBaseItem listItem = mShowListSnapshot.showList.get(position);
+
+        // Load the item and run the corresponding bind action for that Item Type (filtered Option items show where they matched)
+        if (viewHolder instanceof ViewHolderYtdlOptionItem) {
+            ((ViewHolderYtdlOptionItem) viewHolder).bindAction(
+                    listItem,
+                    (mMatchHighlights != null) ? mMatchHighlights.get(listItem.getSuperId()) : null
+            );
+
+            // Option rows also need to show whether they're picked out
+            ((ViewHolderYtdlOptionItem) viewHolder).bindSelectedState(
+                    mSelectedItems.contains(listItem)
+            );
+        } else {
+            viewHolder.bindAction(listItem);
+        }
+
+        // Header rows also need to show whether they're expanded
+        if (viewHolder instanceof ViewHolderYtdlYtdlOptionHeader) {
+            ((ViewHolderYtdlYtdlOptionHeader) viewHolder).bindExpandedState(
+                    isSectionExpanded(listItem.getSectionId())
+            );
+        }
+    }
+
+
+    /**
+     * Partial rebind for the payloads sent out by the filter, so only the part of the row that actually changed gets
+     * set again (anything else, or no payload at all, goes through the full bind above)
+     */
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolderYtdlBase viewHolder, int position, @NonNull List<Object> payloads) {
+
+        if (payloads.isEmpty() || !(viewHolder instanceof ViewHolderYtdlOptionItem)) {
+            super.onBindViewHolder(viewHolder, position, payloads);
+            return;
+        }
+
+        ModelYtdlBaseItem listItem = mShowListSnapshot.showList.get(position);
+
+        for (Object payload : payloads) {
+            if (payload != PAYLOAD_MATCH_HIGHLIGHTS && payload != PAYLOAD_SELECTION) {
+                super.onBindViewHolder(viewHolder, position, payloads);
+                return;
+            }
+        }
+
+        // Only the highlights and / or the selected state changed, the tags are still good
+        if (payloads.contains(PAYLOAD_MATCH_HIGHLIGHTS)) {
+            ((ViewHolderYtdlOptionItem) viewHolder).bindOptionText(
+                    listItem,
+                    (mMatchHighlights != null) ? mMatchHighlights.get(listItem.getSuperId()) : null
+            );
+        }
+
+        if (payloads.contains(PAYLOAD_SELECTION)) {
+            ((ViewHolderYtdlOptionItem) viewHolder).bindSelectedState(
+                    mSelectedItems.contains(listItem)
+            );
+        }
     }
 
 
     @Override
     public int getItemCount() {
-        return (mYtdlOptionShowList != null)
-                ? mYtdlOptionShowList.size()
-                : 0;
+        return mShowListSnapshot.showList.size();
     }
 
 
     @Override
     public long getItemId(int position) {
-        return (mYtdlOptionShowList != null)
-                ? mYtdlOptionShowList.get(position).getSuperId()
+        List<ModelYtdlBaseItem> showList = mShowListSnapshot.showList;
+
+        return (position >= 0 && position < showList.size())
+                ? showList.get(position).getSuperId()
                 : -1;
     }
 
@@ -120,75 +240,475 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
     // ====== ================== =============== ==================
 
 
+    boolean isSectionExpanded(int sectionId) {
+        return mShowListSnapshot.isSectionExpanded(sectionId);
+    }
+
+
     /**
-     * Run through the Base Header List and:
-     * 1. Add all Header items to Show List
-     * 2. If a Header is expanded, add its sub-items to the Show List as well
+     * Flip the expanded state of the given Section, and put its Option items in / take them out of the Show List.
+     * They always sit in one run straight after the Header, so it's a single range insert / remove (no diffing),
+     * and only the Header positions of the Sections further down need shifting. The new Show List goes in a new
+     * snapshot, the one background ops might be holding stays as it was.
+     *
+     * @return Whether the Section is now expanded
      */
-    List<ModelYtdlBaseItem> generateNewShowList() {
+    boolean toggleSectionExpanded(int sectionId) {
+        ShowListSnapshot currentSnapshot = mShowListSnapshot;
+
+        BitSet newExpandedSections = currentSnapshot.copyExpandedSections();
+        newExpandedSections.flip(sectionId);
+        boolean isExpanded = newExpandedSections.get(sectionId);
 
-        // Initialise the new Show List
-        List<ModelYtdlBaseItem> newShowList = new ArrayList<>();
+        if (mIsSectionedShowList && sectionId >= 0 && sectionId < mSectionPositions.length) {
 
-        // Loop the Base List of Headers
-        for (ModelYtdlOptionSection headerCheckItem : mYtdlOptionBaseList) {
+            List<ModelYtdlBaseItem> currentShowList = currentSnapshot.showList;
 
-            // Add the Headers first
-            newShowList.add(headerCheckItem);
+            List<ModelYtdlOptionItem> sectionItems = currentSnapshot.baseList.get(sectionId).getYtdlOptionItems();
+            int itemsStart = mSectionPositions[sectionId] + 1;
 
-            // If the Header is expanded, add its sub-items too
-            if (headerCheckItem.isExpanded()) {
-                newShowList.addAll(headerCheckItem.getYtdlOptionItems());
+            List<ModelYtdlBaseItem> newShowList = new ArrayList<>(currentShowList.size() + sectionItems.size());
+            newShowList.addAll(currentShowList.subList(0, itemsStart));
+
+            if (isExpanded) {
+                newShowList.addAll(sectionItems);
+                newShowList.addAll(currentShowList.subList(itemsStart, currentShowList.size()));
+            } else {
+                newShowList.addAll(currentShowList.subList(itemsStart + sectionItems.size(), currentShowList.size()));
             }
+
+            mShowListSnapshot = currentSnapshot.next(currentSnapshot.baseList, newShowList, newExpandedSections);
+
+            if (isExpanded) {
+                notifyItemRangeInserted(itemsStart, sectionItems.size());
+            } else {
+                notifyItemRangeRemoved(itemsStart, sectionItems.size());
+            }
+
+            int positionShift = isExpanded ? sectionItems.size() : -sectionItems.size();
+            for (int sectionIndex = sectionId + 1; sectionIndex < mSectionPositions.length; sectionIndex++) {
+                mSectionPositions[sectionIndex] += positionShift;
+            }
+
+        } else {
+            // Nothing to show or hide in a filtered list, the Section just opens up like this once it's back
+            mShowListSnapshot = currentSnapshot.next(currentSnapshot.baseList, currentSnapshot.showList, newExpandedSections);
         }
 
-        return newShowList;
+        return isExpanded;
+    }
+
+
+    boolean areAllSectionsExpanded() {
+        return mShowListSnapshot.areAllSectionsExpanded();
+    }
+
+
+    void expandAllSections() {
+        BitSet allSections = new BitSet();
+        allSections.set(0, mShowListSnapshot.baseList.size());
+
+        setExpandedSections(allSections);
+    }
+
+
+    void collapseAllSections() {
+        setExpandedSections(new BitSet());
+    }
+
+
+    /**
+     * Expand the given Sections (on top of whatever's already expanded)
+     */
+    void expandSections(BitSet sectionIds) {
+        BitSet newExpandedSections = mShowListSnapshot.copyExpandedSections();
+        newExpandedSections.or(sectionIds);
+
+        setExpandedSections(newExpandedSections);
     }
 
 
     /**
-     * Run through the Base Header List and:
-     * 1. Check all Option items to see if the Option text matches the given Filter String
-     * 2. If an item matches, add it to the Filtered Show List
+     * Section Ids of the Sections with an Option item containing the Filter String. Only reads the given snapshot,
+     * so can run off the main thread (the result then goes to expandSections()).
+     */
+    BitSet findSectionsWithMatches(ShowListSnapshot baseSnapshot, String filterString) {
+
+        BitSet matchingSections = new BitSet();
+
+        if (!baseSnapshot.baseList.isEmpty() && !TextUtils.isEmpty(filterString)) {
+            for (ModelYtdlOptionItem optionItem : getSearchIndex(baseSnapshot.baseList).findMatches(filterString)) {
+                matchingSections.set(optionItem.getSectionId());
+            }
+        }
+
+        return matchingSections;
+    }
+
+
+    /**
+     * Change which Sections are expanded all in one go. The new Show List is put together in a single pass, and the
+     * row inserts / removes for every changed Section are sent out together after it (in list order, so each one's
+     * position already takes the ones before it into account), letting the list animate just the once.
+     */
+    private void setExpandedSections(BitSet newExpandedSections) {
+
+        ShowListSnapshot currentSnapshot = mShowListSnapshot;
+
+        if (mIsSectionedShowList) {
+
+            List<ModelYtdlOptionSection> baseList = currentSnapshot.baseList;
+
+            List<ModelYtdlBaseItem> newShowList = new ArrayList<>(currentSnapshot.showList.size());
+            List<int[]> sectionChanges = new ArrayList<>();
+
+            for (int sectionIndex = 0; sectionIndex < baseList.size(); sectionIndex++) {
+
+                ModelYtdlOptionSection optionSection = baseList.get(sectionIndex);
+                int sectionId = optionSection.getSectionId();
+                boolean isExpanded = newExpandedSections.get(sectionId);
+
+                mSectionPositions[sectionIndex] = newShowList.size();
+                newShowList.add(optionSection);
+
+                if (isExpanded) {
+                    newShowList.addAll(optionSection.getYtdlOptionItems());
+                }
+
+                if (isExpanded != currentSnapshot.isSectionExpanded(sectionId)) {
+                    sectionChanges.add(
+                            new int[] {mSectionPositions[sectionIndex], optionSection.getYtdlOptionItems().size(), isExpanded ? 1 : 0}
+                    );
+                }
+            }
+
+            mShowListSnapshot = currentSnapshot.next(baseList, newShowList, newExpandedSections);
+
+            for (int[] sectionChange : sectionChanges) {
+                // Header needs a rebind to show its new expanded state
+                notifyItemChanged(sectionChange[0]);
+
+                if (sectionChange[2] == 1) {
+                    notifyItemRangeInserted(sectionChange[0] + 1, sectionChange[1]);
+                } else {
+                    notifyItemRangeRemoved(sectionChange[0] + 1, sectionChange[1]);
+                }
+            }
+
+        } else {
+            mShowListSnapshot = currentSnapshot.next(currentSnapshot.baseList, currentSnapshot.showList, newExpandedSections);
+        }
+    }
+
+
+    /**
+     * Pick out the Option item at the given position for a multi-select insert, or unpick it if it already is
+     *
+     * @return Number of Option items picked out now
+     */
+    int toggleItemSelected(int position) {
+
+        List<ModelYtdlBaseItem> showList = mShowListSnapshot.showList;
+
+        if (position >= 0 && position < showList.size() && showList.get(position) instanceof ModelYtdlOptionItem) {
+
+            ModelYtdlOptionItem optionItem = (ModelYtdlOptionItem) showList.get(position);
+
+            if (!mSelectedItems.remove(optionItem)) {
+                mSelectedItems.add(optionItem);
+            }
+
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
+
+        return mSelectedItems.size();
+    }
+
+
+    /**
+     * Command switches of the picked out Option items, in the order they were picked
+     */
+    List<String> getSelectedCmdSwitches() {
+
+        List<String> cmdSwitches = new ArrayList<>(mSelectedItems.size());
+
+        for (ModelYtdlOptionItem optionItem : mSelectedItems) {
+            cmdSwitches.add(optionItem.getCmdSwitch().toString());
+        }
+
+        return cmdSwitches;
+    }
+
+
+    void clearSelection() {
+
+        if (!mSelectedItems.isEmpty()) {
+            mSelectedItems.clear();
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_SELECTION);
+        }
+    }
+
+
+    void setSearchIndex(ModelYtdlOptionSearchIndex searchIndex) {
+        mSearchIndex = searchIndex;
+    }
+
+
+    /**
+     * Look up the Option items whose text contains the given Filter String (ignoring case) in the search index,
+     * and put them in the Filtered Show List in list order. The filter session carries over the previous results,
+     * so typing more only re-checks the items that already matched.
+     * (Headers not used in this view)
+     */
+    List<ModelYtdlBaseItem> generateFilterShowList(ShowListSnapshot baseSnapshot, String filterString, ModelYtdlOptionSearchIndex.FilterSession filterSession, ModelYtdlOptionSearchIndex.CancelSignal cancelSignal) {
+
+        List<ModelYtdlOptionSection> baseList = baseSnapshot.baseList;
+
+        if (baseList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<ModelYtdlBaseItem>(
+                filterSession.findMatches(getSearchIndex(baseList), filterString, cancelSignal)
+        );
+    }
+
+
+    /**
+     * Alternative to generateFilterShowList() that puts the best matching Option items first, letting typos in the
+     * switch names through. Only the top results are returned.
      * (Headers not used in this view)
      */
-    List<ModelYtdlBaseItem> generateFilterShowList(String filterString) {
+    List<ModelYtdlBaseItem> generateRankedShowList(ShowListSnapshot baseSnapshot, String filterString, int maxResults, ModelYtdlOptionSearchIndex.CancelSignal cancelSignal) {
+
+        List<ModelYtdlOptionSection> baseList = baseSnapshot.baseList;
+
+        if (baseList.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<ModelYtdlBaseItem>(
+                getSearchIndex(baseList).findRankedMatches(filterString, maxResults, cancelSignal)
+        );
+    }
+
+
+    /**
+     * Work out where the Filter String matched in each of the filtered Option items, and put the highlighted text
+     * together ready for binding. Runs alongside the filtering off the main thread, so binding a row only has to
+     * set the text.
+     */
+    SparseArray<ItemMatchHighlight> generateMatchHighlights(ShowListSnapshot baseSnapshot, List<ModelYtdlBaseItem> filterShowList, String filterString, ModelYtdlOptionSearchIndex.CancelSignal cancelSignal) {
+
+        List<ModelYtdlOptionSection> baseList = baseSnapshot.baseList;
+        SparseArray<ItemMatchHighlight> matchHighlights = new SparseArray<>(filterShowList.size());
 
-        // Normalise the case
-        filterString = filterString.toLowerCase();
+        if (baseList.isEmpty()) {
+            return matchHighlights;
+        }
 
-        // Initialise the new Show List
-        List<ModelYtdlBaseItem> newFilterList = new ArrayList<>();
+        ModelYtdlOptionSearchIndex searchIndex = getSearchIndex(baseList);
+        char[] lowerFilter = ModelYtdlOptionSearchIndex.toLowerChars(filterString);
 
-        // Loop the Base List of Headers
-        for (ModelYtdlOptionSection headerCheckItem : mYtdlOptionBaseList) {
+        for (ModelYtdlBaseItem filterItem : filterShowList) {
+
+            if (cancelSignal != null) {
+                cancelSignal.throwIfCancelled();
+            }
 
-            // Loop through the actual Option Item under each header
-            for (ModelYtdlOptionItem optionItem : headerCheckItem.getYtdlOptionItems()) {
+            if (filterItem instanceof ModelYtdlOptionItem) {
+                int[] matchRanges = searchIndex.findMatchRanges((ModelYtdlOptionItem) filterItem, lowerFilter);
 
-                // If the Option text contains the filterString, add it to the thing
-                if (optionItem.getFullDescription().toLowerCase().contains(filterString)) {
-                    newFilterList.add(optionItem);
+                if (matchRanges.length > 0) {
+                    matchHighlights.put(
+                            filterItem.getSuperId(),
+                            buildMatchHighlight((ModelYtdlOptionItem) filterItem, matchRanges)
+                    );
                 }
             }
         }
 
-        return newFilterList;
+        return matchHighlights;
     }
 
 
-    List<ModelYtdlBaseItem> getShowList() {
-        return mYtdlOptionShowList;
+    /**
+     * Mark the match ranges (positions in the item's full description) on the flag label and description
+     */
+    private ItemMatchHighlight buildMatchHighlight(ModelYtdlOptionItem optionItem, int[] matchRanges) {
+
+        // Same swap as the plain bind, one char for one so the positions still line up
+        SpannableString flagLabel = new SpannableString(getFlagLabelText(optionItem));
+        SpannableString description = new SpannableString(optionItem.getDescription());
+
+        // Description starts after the flag label and the space between them
+        int descStart = flagLabel.length() + 1;
+
+        for (int rangeIndex = 0; rangeIndex < matchRanges.length; rangeIndex += 2) {
+            int matchStart = matchRanges[rangeIndex];
+            int matchEnd = matchRanges[rangeIndex + 1];
+
+            if (matchStart < flagLabel.length()) {
+                flagLabel.setSpan(
+                        new BackgroundColorSpan(mMatchHighlightColour),
+                        matchStart,
+                        Math.min(matchEnd, flagLabel.length()),
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+                );
+            }
+
+            if (matchEnd > descStart) {
+                description.setSpan(
+                        new BackgroundColorSpan(mMatchHighlightColour),
+                        Math.max(matchStart - descStart, 0),
+                        matchEnd - descStart,
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+                );
+            }
+        }
+
+        // Immutable copies, so the cached layouts built from them can't go stale
+        return new ItemMatchHighlight(
+                new SpannedString(flagLabel),
+                new SpannedString(description)
+        );
+    }
+
+
+    /**
+     * Flag label as it's shown in the row, with each switch on its own line
+     */
+    private static String getFlagLabelText(ModelYtdlOptionItem optionItem) {
+        return optionItem.getFlagLabel().toString().replace(" ", "\n");
     }
 
 
     /**
-     * Refresh the Show List
+     * Lay out the text of the first few Option items in the given list ahead of binding them, so the rows coming
+     * in only have to pick up the cached layouts. Meant to run off the main thread, alongside whatever produced
+     * the list (a filter result, or the items of a Section about to be expanded).
+     *
+     * @param matchHighlights Highlighted text to lay out in place of the plain text, if filtering (can be null)
      */
-    void updateOptionList(List<ModelYtdlBaseItem> newShowList, DiffUtil.DiffResult listMovements) {
-        mYtdlOptionShowList.clear();
-        mYtdlOptionShowList.addAll(newShowList);
+    void precomputeTextLayouts(List<? extends ModelYtdlBaseItem> listItems, SparseArray<ItemMatchHighlight> matchHighlights, ModelYtdlOptionSearchIndex.CancelSignal cancelSignal) {
+
+        // Nothing to go off until the first rows have been measured
+        UtilYtdlOptionTextLayouts.LayoutSpec flagLayoutSpec = UtilYtdlOptionTextLayouts.getLayoutSpec(UtilYtdlOptionTextLayouts.PART_FLAG_LABEL);
+        UtilYtdlOptionTextLayouts.LayoutSpec descLayoutSpec = UtilYtdlOptionTextLayouts.getLayoutSpec(UtilYtdlOptionTextLayouts.PART_DESCRIPTION);
+
+        if (flagLayoutSpec == null || descLayoutSpec == null) {
+            return;
+        }
+
+        int precomputeCount = 0;
+
+        for (ModelYtdlBaseItem listItem : listItems) {
+
+            if (precomputeCount >= PRECOMPUTE_MAX_ITEMS) {
+                break;
+            }
+
+            if (cancelSignal != null) {
+                cancelSignal.throwIfCancelled();
+            }
+
+            if (!(listItem instanceof ModelYtdlOptionItem)) {
+                continue;
+            }
+
+            ItemMatchHighlight matchHighlight = (matchHighlights != null) ? matchHighlights.get(listItem.getSuperId()) : null;
+
+            if (matchHighlight != null) {
+                UtilYtdlOptionTextLayouts.precomputeLayout(flagLayoutSpec, matchHighlight, UtilYtdlOptionTextLayouts.PART_FLAG_LABEL, matchHighlight.flagLabel);
+                UtilYtdlOptionTextLayouts.precomputeLayout(descLayoutSpec, matchHighlight, UtilYtdlOptionTextLayouts.PART_DESCRIPTION, matchHighlight.description);
+
+            } else {
+                ModelYtdlOptionItem optionItem = (ModelYtdlOptionItem) listItem;
+                UtilYtdlOptionTextLayouts.precomputeLayout(flagLayoutSpec, optionItem, UtilYtdlOptionTextLayouts.PART_FLAG_LABEL, getFlagLabelText(optionItem));
+                UtilYtdlOptionTextLayouts.precomputeLayout(descLayoutSpec, optionItem, UtilYtdlOptionTextLayouts.PART_DESCRIPTION, optionItem.getDescription());
+            }
+
+            precomputeCount++;
+        }
+    }
+
+
+    /**
+     * Same as precomputeTextLayouts(), for the items of the given Sections (in list order)
+     *
+     * @param sectionIds Sections to lay out, or null for all of them
+     */
+    void precomputeSectionTextLayouts(List<ModelYtdlOptionSection> baseList, BitSet sectionIds) {
+
+        List<ModelYtdlOptionItem> sectionItems = new ArrayList<>(PRECOMPUTE_MAX_ITEMS);
+
+        for (ModelYtdlOptionSection optionSection : baseList) {
+
+            if (sectionItems.size() >= PRECOMPUTE_MAX_ITEMS) {
+                break;
+            }
+
+            if (sectionIds == null || sectionIds.get(optionSection.getSectionId())) {
+                List<ModelYtdlOptionItem> optionItems = optionSection.getYtdlOptionItems();
+                sectionItems.addAll(optionItems.subList(0, Math.min(optionItems.size(), PRECOMPUTE_MAX_ITEMS - sectionItems.size())));
+            }
+        }
+
+        precomputeTextLayouts(sectionItems, null, null);
+    }
+
+
+    private ModelYtdlOptionSearchIndex getSearchIndex(List<ModelYtdlOptionSection> baseList) {
+
+        ModelYtdlOptionSearchIndex searchIndex = mSearchIndex;
+
+        // Searching before the load has finished (or with a list that didn't come from a load), index what's there now
+        if (searchIndex == null || !searchIndex.isIndexOf(baseList)) {
+            searchIndex = ModelYtdlOptionSearchIndex.build(baseList);
+            mSearchIndex = searchIndex;
+        }
+
+        return searchIndex;
+    }
+
+
+    /**
+     * Current Base List / Show List pair, for background list ops to work from (and hand back to updateOptionList())
+     */
+    ShowListSnapshot getShowListSnapshot() {
+        return mShowListSnapshot;
+    }
+
+
+    /**
+     * Refresh the Show List along with the match highlights of its items (null to clear them). The List Movements
+     * only make sense against the snapshot they were worked out from, so nothing happens if that's been replaced
+     * since (e.g. a Header toggled or a Section streamed in while the diff was running).
+     *
+     * @param baseSnapshot Snapshot the new Show List and its List Movements were worked out from
+     * @return Whether the update was applied
+     */
+    boolean updateOptionList(ShowListSnapshot baseSnapshot, List<ModelYtdlBaseItem> newShowList, DiffUtil.DiffResult listMovements, SparseArray<ItemMatchHighlight> matchHighlights) {
+
+        if (baseSnapshot.generation != mShowListSnapshot.generation) {
+            return false;
+        }
+
+        boolean isHighlightChange = (mMatchHighlights != null || matchHighlights != null);
+        mMatchHighlights = matchHighlights;
+
+        // Could be any list now, the Header positions get worked out again on the next load
+        mIsSectionedShowList = false;
+
+        mShowListSnapshot = baseSnapshot.next(baseSnapshot.baseList, newShowList);
         listMovements.dispatchUpdatesTo(this);
+
+        // Items that stayed put still need their highlights redone (DiffUtil only goes by the Item Ids)
+        if (isHighlightChange) {
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_MATCH_HIGHLIGHTS);
+        }
+
+        return true;
     }
 
 
@@ -203,9 +723,17 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
         List<ModelYtdlBaseItem> mOldList;
         List<ModelYtdlBaseItem> mNewList;
 
+        // Lets a diff that's no longer needed bail out part way through (can be null)
+        final ModelYtdlOptionSearchIndex.CancelSignal mCancelSignal;
+
         OptionListDiffUtilCallback(@NonNull List<ModelYtdlBaseItem> oldList, @NonNull List<ModelYtdlBaseItem> newList) {
+            this(oldList, newList, null);
+        }
+
+        OptionListDiffUtilCallback(@NonNull List<ModelYtdlBaseItem> oldList, @NonNull List<ModelYtdlBaseItem> newList, ModelYtdlOptionSearchIndex.CancelSignal cancelSignal) {
             mOldList = oldList;
             mNewList = newList;
+            mCancelSignal = cancelSignal;
         }
 
         @Override
@@ -220,6 +748,10 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
 
         @Override
         public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            // Called the most out of all of these while diffing, so the best spot to check for cancellation
+            if (mCancelSignal != null) {
+                mCancelSignal.throwIfCancelled();
+            }
             return (mOldList.get(oldItemPosition).getSuperId() == mNewList.get(newItemPosition).getSuperId());
         }
 
@@ -231,7 +763,78 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
 
 
     List<ModelYtdlOptionSection> getBaseList() {
-        return mYtdlOptionBaseList;
+        return mShowListSnapshot.baseList;
+    }
+
+
+    /**
+     * Immutable Base List / Show List pair, along with the expanded Sections. Every change on the main thread swaps
+     * in a new snapshot with the next generation number, so background list ops can hold onto one without copying
+     * it, then check later whether it's still the current one.
+     */
+    static final class ShowListSnapshot {
+
+        static final ShowListSnapshot EMPTY = new ShowListSnapshot(
+                Collections.<ModelYtdlOptionSection>emptyList(),
+                Collections.<ModelYtdlBaseItem>emptyList(),
+                new BitSet(),
+                0
+        );
+
+        final List<ModelYtdlOptionSection> baseList;
+        final List<ModelYtdlBaseItem> showList;
+        final int generation;
+
+        // Never changed once the snapshot is made, copyExpandedSections() for a set to work on
+        private final BitSet expandedSections;
+
+        private ShowListSnapshot(List<ModelYtdlOptionSection> baseList, List<ModelYtdlBaseItem> showList, BitSet expandedSections, int generation) {
+            this.baseList = baseList;
+            this.showList = showList;
+            this.expandedSections = expandedSections;
+            this.generation = generation;
+        }
+
+
+        /**
+         * Next snapshot along, taking over the given lists (they mustn't be changed after this)
+         */
+        ShowListSnapshot next(List<ModelYtdlOptionSection> newBaseList, List<ModelYtdlBaseItem> newShowList) {
+            return new ShowListSnapshot(
+                    (newBaseList == baseList) ? baseList : Collections.unmodifiableList(newBaseList),
+                    (newShowList == showList) ? showList : Collections.unmodifiableList(newShowList),
+                    expandedSections,
+                    generation + 1
+            );
+        }
+
+
+        /**
+         * As above, with a new set of expanded Sections (also taken over, so mustn't be changed after this)
+         */
+        ShowListSnapshot next(List<ModelYtdlOptionSection> newBaseList, List<ModelYtdlBaseItem> newShowList, BitSet newExpandedSections) {
+            return new ShowListSnapshot(
+                    (newBaseList == baseList) ? baseList : Collections.unmodifiableList(newBaseList),
+                    (newShowList == showList) ? showList : Collections.unmodifiableList(newShowList),
+                    newExpandedSections,
+                    generation + 1
+            );
+        }
+
+
+        boolean isSectionExpanded(int sectionId) {
+            return sectionId >= 0 && expandedSections.get(sectionId);
+        }
+
+
+        boolean areAllSectionsExpanded() {
+            return expandedSections.cardinality() >= baseList.size();
+        }
+
+
+        BitSet copyExpandedSections() {
+            return (BitSet) expandedSections.clone();
+        }
     }
 
     // endregion
@@ -258,7 +861,7 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
     /**
      * ViewHolder for the Options Header Row (will be clicked to expand child items)
      */
-    static class ViewHolderYtdlYtdlOptionHeader extends ViewHolderYtdlBase implements View.OnClickListener {
+    static class ViewHolderYtdlYtdlOptionHeader extends ViewHolderYtdlBase implements View.OnClickListener, View.OnLongClickListener {
 
         final TextView lblYtdlOptionHeader;
         final ImageView imgYtdlExpansionIndicator;
@@ -271,6 +874,7 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
             imgYtdlExpansionIndicator = itemView.findViewById(R.id.img_expansion_indicator);
 
             itemView.setOnClickListener(this);
+            itemView.setOnLongClickListener(this);
         }
 
 
@@ -279,13 +883,6 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
             // Set the Header ID
             headerId = listItem.getSectionId();
 
-            // Set the toggle icon direction
-            if (((ModelYtdlOptionSection) listItem).isExpanded()) {
-                imgYtdlExpansionIndicator.setImageResource(R.drawable.avd_anim_expand);
-            } {
-                imgYtdlExpansionIndicator.setImageResource(R.drawable.avd_anim_collapse);
-            }
-
             // Map the Header Model to the item and set the Header Title text
             lblYtdlOptionHeader.setText(
                     ((ModelYtdlOptionSection) listItem).getOptionHeader()
@@ -293,24 +890,43 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
         }
 
 
+        void bindExpandedState(boolean isExpanded) {
+            // Set the toggle icon direction
+            if (isExpanded) {
+                imgYtdlExpansionIndicator.setImageResource(R.drawable.avd_anim_expand);
+            } else {
+                imgYtdlExpansionIndicator.setImageResource(R.drawable.avd_anim_collapse);
+            }
+        }
+
+
         @Override
         public void onClick(View view) {
             // Notify the Adapter to update its expanded lists
             FragmentCommandBuilder.requestToggleHeaderItem(headerId, imgYtdlExpansionIndicator);
         }
+
+
+        @Override
+        public boolean onLongClick(View view) {
+            // Expand (or collapse) every Header at once
+            FragmentCommandBuilder.requestToggleAllHeaderItems();
+            return true;
+        }
     }
 
 
     /**
      * ViewHolder for the actual Option Items
      */
-    static class ViewHolderYtdlOptionItem extends ViewHolderYtdlBase {
+    static class ViewHolderYtdlOptionItem extends ViewHolderYtdlBase implements View.OnClickListener, View.OnLongClickListener {
 
-        final TextView lblYtdlOptionFlag;
-        final TextView lblYtdlOptionDescription;
+        final ViewYtdlOptionText lblYtdlOptionFlag;
+        final ViewYtdlOptionText lblYtdlOptionDescription;
         final ImageView imgYtdlOptionDragHandle;
 
         final View bckYtdlOptionFlag;
+        final View bckYtdlOptionDescription;
 
         final ListenerYtdlOptionTouch mTouchListener;
 
@@ -322,34 +938,109 @@ public class AdapterYtdlOptions extends RecyclerView.Adapter<AdapterYtdlOptions.
             lblYtdlOptionDescription = itemView.findViewById(R.id.txt_ytdl_option_description);
             imgYtdlOptionDragHandle = itemView.findViewById(R.id.img_option_drag_handle);
             bckYtdlOptionFlag = itemView.findViewById(R.id.back_ytdl_option_flag);
+            bckYtdlOptionDescription = itemView.findViewById(R.id.back_ytdl_option_description);
+
+            lblYtdlOptionFlag.setTextPart(UtilYtdlOptionTextLayouts.PART_FLAG_LABEL);
+            lblYtdlOptionDescription.setTextPart(UtilYtdlOptionTextLayouts.PART_DESCRIPTION);
 
             mTouchListener = new ListenerYtdlOptionTouch();
 
             lblYtdlOptionFlag.setOnTouchListener(mTouchListener);
             imgYtdlOptionDragHandle.setOnTouchListener(mTouchListener);
             bckYtdlOptionFlag.setOnTouchListener(mTouchListener);
+
+            // The rest of the row is for picking out Options to insert together
+            itemView.setOnClickListener(this);
+            itemView.setOnLongClickListener(this);
         }
 
 
         @Override
         public void bindAction(ModelYtdlBaseItem listItem) {
+            bindAction(listItem, null);
+        }
 
-            // Map the Item Model to the item and set the TextView properties
-            lblYtdlOptionFlag.setText(
-                    ((ModelYtdlOptionItem) listItem).getFlagLabel().replace(" ", "\n")
-            );
 
-            lblYtdlOptionDescription.setText(
-                    ((ModelYtdlOptionItem) listItem).getDescription()
-            );
+        /**
+         * Same as bindAction(), using the pre-built highlighted text if there is any
+         */
+        void bindAction(ModelYtdlBaseItem listItem, ItemMatchHighlight matchHighlight) {
+
+            bindOptionText(listItem, matchHighlight);
 
             // Place the command syntax in the draggable Views
-            String cmdSwitch = ((ModelYtdlOptionItem) listItem).getCmdSwitch();
+            String cmdSwitch = ((ModelYtdlOptionItem) listItem).getCmdSwitch().toString();
             lblYtdlOptionFlag.setTag(R.id.tag_id_cmd_switch, cmdSwitch);
             imgYtdlOptionDragHandle.setTag(R.id.tag_id_cmd_switch, cmdSwitch);
             bckYtdlOptionFlag.setTag(R.id.tag_id_cmd_switch, cmdSwitch);
 
         }
+
+
+        /**
+         * Just the text of the row, for when only the match highlights have changed
+         */
+        void bindOptionText(ModelYtdlBaseItem listItem, ItemMatchHighlight matchHighlight) {
+
+            // Map the Item Model to the item and set the text (the source is what any pre-built layouts are cached by)
+            if (matchHighlight != null) {
+                lblYtdlOptionFlag.setOptionText(matchHighlight, matchHighlight.flagLabel);
+                lblYtdlOptionDescription.setOptionText(matchHighlight, matchHighlight.description);
+
+            } else {
+                lblYtdlOptionFlag.setOptionText(
+                        listItem,
+                        getFlagLabelText((ModelYtdlOptionItem) listItem)
+                );
+
+                lblYtdlOptionDescription.setOptionText(
+                        listItem,
+                        ((ModelYtdlOptionItem) listItem).getDescription()
+                );
+            }
+        }
+
+
+        void bindSelectedState(boolean isSelected) {
+            // Tint the row while it's picked out
+            if (isSelected) {
+                bckYtdlOptionFlag.setBackgroundResource(R.color.colour_option_selected_background);
+                bckYtdlOptionDescription.setBackgroundResource(R.color.colour_option_selected_background);
+            } else {
+                bckYtdlOptionFlag.setBackgroundResource(R.color.colour_option_background);
+                bckYtdlOptionDescription.setBackgroundResource(R.color.colour_decription_background);
+            }
+        }
+
+
+        @Override
+        public void onClick(View view) {
+            // Only does anything while in multi-select mode
+            FragmentCommandBuilder.requestToggleOptionSelected(getAdapterPosition(), false);
+        }
+
+
+        @Override
+        public boolean onLongClick(View view) {
+            // Start (or carry on) picking out Options to insert in one go
+            FragmentCommandBuilder.requestToggleOptionSelected(getAdapterPosition(), true);
+            return true;
+        }
+    }
+
+
+    /**
+     * Flag label and description of a filtered Option item with the filter matches marked out
+     */
+    static class ItemMatchHighlight {
+
+        final CharSequence flagLabel;
+        final CharSequence description;
+
+        ItemMatchHighlight(CharSequence flagLabel, CharSequence description) {
+            this.flagLabel = flagLabel;
+            this.description = description;
+        }
     }
 
 
@@ -0,0 +1,328 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import android.annotation.SuppressLint;
+import android.app.Dialog;
+import android.content.Context;
+import android.os.Bundle;
+import android.support.annotation.NonNull;
+import android.support.v4.app.DialogFragment;
+import android.support.v7.app.AlertDialog;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+
+/**
+ * Dialog to pick two of the loaded YTDL help text versions and list the options added or removed between them
+ */
+public class DialogVersionDiff extends DialogFragment {
+
+    public static final String TAG = ActivityMain.PACKAGE_NAME + ".DialogVersionDiff";
+
+    // Rx tools
+    private List<Disposable> mRxDisposables;
+    private static final PublishProcessor<RxVersionDiffPackage> mRxCompareVersions = PublishProcessor.create();
+
+    // Version Ids in the same order as the Spinner entries
+    private List<String> mVersionIds;
+
+    // Views
+    private Spinner mSpinnerFromVersion;
+    private Spinner mSpinnerToVersion;
+    private TextView mLblDiffResult;
+
+
+    @NonNull
+    @Override
+    @SuppressLint("InflateParams")
+    public Dialog onCreateDialog(Bundle savedInstanceState) {
+
+        if (getActivity() != null && getContext() != null) {
+
+            // Use the Builder class for convenient dialog construction
+            AlertDialog.Builder dialogBuilder = new AlertDialog.Builder(getActivity());
+
+            // Get the layout inflater and pump up the view (Pass null as the parent view because its going in the dialog layout)
+            View viewDialog = getActivity()
+                    .getLayoutInflater()
+                    .inflate(R.layout.dialog_version_diff, null);
+
+            // Only lists the file names, so fine to do here
+            mVersionIds = UtilYtdlOptionRepository.getAvailableVersionIds(getContext());
+
+            List<String> versionLabels = new ArrayList<>();
+            for (String versionId : mVersionIds) {
+                versionLabels.add(
+                        getVersionLabel(getContext(), versionId)
+                );
+            }
+
+            // Link the version lists to both dropdown Spinners
+            mSpinnerFromVersion = viewDialog.findViewById(R.id.spinner_version_diff_from);
+            mSpinnerToVersion = viewDialog.findViewById(R.id.spinner_version_diff_to);
+            mLblDiffResult = viewDialog.findViewById(R.id.lbl_version_diff_result);
+
+            setupVersionSpinner(mSpinnerFromVersion, versionLabels);
+            setupVersionSpinner(mSpinnerToVersion, versionLabels);
+
+            // Start off comparing the default version against the currently selected one
+            mSpinnerToVersion.setSelection(
+                    Math.max(mVersionIds.indexOf(UtilYtdlOptionRepository.getSelectedVersionId(getContext())), 0)
+            );
+
+            // Set up the core Dialog properties
+            dialogBuilder.setView(viewDialog)
+                    .setPositiveButton(R.string.dialog_confirm_ok, null);
+
+            // Create the AlertDialog object and return it
+            return dialogBuilder.create();
+
+        } else {
+            return super.onCreateDialog(savedInstanceState);
+        }
+    }
+
+
+    @Override
+    public void onStart() {
+        super.onStart();
+
+        clearRxDisposables();
+        initRxDisposables();
+
+        requestCompareVersions();
+    }
+
+
+    @Override
+    public void onStop() {
+
+        clearRxDisposables();
+
+        super.onStop();
+    }
+
+
+    private void setupVersionSpinner(Spinner versionSpinner, List<String> versionLabels) {
+
+        ArrayAdapter<String> versionAdapter = new ArrayAdapter<>(
+                versionSpinner.getContext(),
+                R.layout.spinneritem_basic_dropdown_picker,
+                R.id.lbl_alertdialog_dropdown_item,
+                versionLabels
+        );
+
+        versionSpinner.setAdapter(versionAdapter);
+        versionSpinner.setOnItemSelectedListener(mAdapterItemSelectedListener);
+    }
+
+
+    /**
+     * Display label of the given version, the default one doesn't have a name of its own
+     */
+    static String getVersionLabel(Context context, String versionId) {
+        return ModelYtdlOptionCorpus.DEFAULT_VERSION_ID.equals(versionId)
+                ? context.getString(R.string.pref_ytdl_version_default)
+                : versionId;
+    }
+
+
+    /**
+     * Send the currently selected pair of versions off to be compared
+     */
+    private void requestCompareVersions() {
+
+        int fromPosition = mSpinnerFromVersion.getSelectedItemPosition();
+        int toPosition = mSpinnerToVersion.getSelectedItemPosition();
+
+        if (fromPosition >= 0 && toPosition >= 0) {
+            mLblDiffResult.setText(R.string.version_diff_loading);
+
+            mRxCompareVersions.onNext(
+                    new RxVersionDiffPackage(
+                            mVersionIds.get(fromPosition),
+                            mVersionIds.get(toPosition)
+                    )
+            );
+        }
+    }
+
+
+    // region ================== RXBUS OPERATIONS ==================
+    // ====== ================== ================ ==================
+
+
+    /**
+     * Clears out any existing RxDisposables
+     */
+    private void clearRxDisposables() {
+
+        if (mRxDisposables != null) {
+            for (Disposable rxDisp : mRxDisposables) {
+                if (!rxDisp.isDisposed()) {
+                    rxDisp.dispose();
+                }
+            }
+
+            mRxDisposables.clear();
+        }
+    }
+
+
+    /**
+     * Subscribe to the relevant Rx Observables for this fragment and place them in the RxSub list
+     */
+    private void initRxDisposables() {
+        mRxDisposables = new ArrayList<>();
+
+        // Compare the two versions (might need to load the help texts first, so off the main thread)
+        mRxDisposables.add(
+                mRxCompareVersions
+                        .onBackpressureLatest()
+                        .observeOn(Schedulers.computation())
+                        .map(
+                                new Function<RxVersionDiffPackage, String>() {
+                                    @Override
+                                    public String apply(RxVersionDiffPackage diffPackage) {
+
+                                        Context context = getContext();
+
+                                        if (context == null) {
+                                            return "";
+                                        }
+
+                                        ModelYtdlOptionCorpus optionCorpus = UtilYtdlOptionRepository.getOptionCorpus(context);
+
+                                        List<ModelYtdlOptionItem> addedOptions = optionCorpus.getAddedOptions(
+                                                diffPackage.fromVersionId,
+                                                diffPackage.toVersionId
+                                        );
+                                        List<ModelYtdlOptionItem> removedOptions = optionCorpus.getRemovedOptions(
+                                                diffPackage.fromVersionId,
+                                                diffPackage.toVersionId
+                                        );
+
+                                        // Only versions that are in the corpus can be compared (e.g. one imported since it was loaded isn't yet)
+                                        if (addedOptions == null || removedOptions == null) {
+                                            return context.getString(
+                                                    R.string.version_diff_missing,
+                                                    getVersionLabel(
+                                                            context,
+                                                            optionCorpus.hasVersion(diffPackage.fromVersionId)
+                                                                    ? diffPackage.toVersionId
+                                                                    : diffPackage.fromVersionId
+                                                    )
+                                            );
+                                        }
+
+                                        if (addedOptions.isEmpty() && removedOptions.isEmpty()) {
+                                            return context.getString(R.string.version_diff_none);
+                                        }
+
+                                        StringBuilder diffText = new StringBuilder();
+
+                                        appendDiffSection(
+                                                diffText,
+                                                context.getString(
+                                                        R.string.version_diff_added,
+                                                        getVersionLabel(context, diffPackage.toVersionId),
+                                                        addedOptions.size()
+                                                ),
+                                                "+ ",
+                                                addedOptions
+                                        );
+
+                                        appendDiffSection(
+                                                diffText,
+                                                context.getString(
+                                                        R.string.version_diff_removed,
+                                                        getVersionLabel(context, diffPackage.fromVersionId),
+                                                        removedOptions.size()
+                                                ),
+                                                "- ",
+                                                removedOptions
+                                        );
+
+                                        return diffText.toString().trim();
+                                    }
+                                }
+                        )
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<String>() {
+                                    @Override
+                                    public void accept(String diffText) {
+                                        mLblDiffResult.setText(diffText);
+                                    }
+                                }
+                        )
+        );
+    }
+
+
+    private static void appendDiffSection(StringBuilder diffText, String sectionTitle, String linePrefix, List<ModelYtdlOptionItem> optionItems) {
+
+        if (optionItems.isEmpty()) {
+            return;
+        }
+
+        diffText.append(sectionTitle)
+                .append("\n");
+
+        for (ModelYtdlOptionItem optionItem : optionItems) {
+            diffText.append(linePrefix)
+                    .append(optionItem.getFlagLabel())
+                    .append("\n");
+        }
+
+        diffText.append("\n");
+    }
+
+
+    /**
+     * Package holding the pair of versions to compare
+     */
+    static class RxVersionDiffPackage {
+
+        final String fromVersionId;
+        final String toVersionId;
+
+        RxVersionDiffPackage(String fromId, String toId) {
+            fromVersionId = fromId;
+            toVersionId = toId;
+        }
+    }
+
+    // endregion
+
+
+    // region ================== EVENT LISTENERS ==================
+    // ====== ================== =============== ==================
+
+
+    private AdapterView.OnItemSelectedListener mAdapterItemSelectedListener = new AdapterView.OnItemSelectedListener() {
+
+        @Override
+        public void onItemSelected(AdapterView<?> adapterView, View view, int position, long itemId) {
+            requestCompareVersions();
+        }
+
+
+        @Override
+        public void onNothingSelected(AdapterView<?> adapterView) {}
+
+    };
+
+    // endregion
+}
@@ -10,48 +10,86 @@ package com.justbnutz.ytdlcommandbuilder;
 import android.annotation.SuppressLint;
 import android.content.Context;
 import android.graphics.drawable.Animatable;
+import android.os.Build;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.design.widget.AppBarLayout;
 import android.support.design.widget.FloatingActionButton;
+import android.support.design.widget.Snackbar;
 import android.support.v4.app.DialogFragment;
 import android.support.v4.app.Fragment;
+import android.support.v4.content.ContextCompat;
 import android.support.v4.view.PagerAdapter;
 import android.support.v4.view.ViewPager;
+import android.support.v7.app.AppCompatActivity;
 import android.support.v7.preference.PreferenceManager;
 import android.support.v7.util.DiffUtil;
+import android.support.v7.view.ActionMode;
 import android.support.v7.widget.RecyclerView;
+import android.text.Editable;
+import android.text.Selection;
+import android.text.Spanned;
+import android.text.TextPaint;
 import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.text.style.CharacterStyle;
+import android.text.style.UpdateAppearance;
+import android.util.Log;
+import android.util.SparseArray;
 import android.util.TypedValue;
+import android.view.KeyEvent;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.animation.AnticipateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
 import android.widget.FrameLayout;
 import android.widget.ImageView;
+import android.widget.ListPopupWindow;
 import android.widget.SearchView;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
 import io.reactivex.functions.Consumer;
 import io.reactivex.functions.Function;
 import io.reactivex.processors.PublishProcessor;
 import io.reactivex.schedulers.Schedulers;
 
+import org.reactivestreams.Publisher;
+
 
 public class FragmentCommandBuilder extends Fragment {
 
     public static final String TAG = ActivityMain.PACKAGE_NAME + ".FragmentCommandBuilder";
 
+    private static final String BUNDLEKEY_COMMAND_BUFFER_TEXT = TAG + ".BUNDLEKEY_COMMAND_BUFFER_TEXT";
+    private static final String BUNDLEKEY_COMMAND_BUFFER_STATE = TAG + ".BUNDLEKEY_COMMAND_BUFFER_STATE";
+
 
     // List of RxDisposables for listening to Rx events (multiple pipeline style)
     private List<Disposable> mRxDisposables;
@@ -63,18 +101,71 @@ public class FragmentCommandBuilder extends Fragment {
     private static final PublishProcessor<Boolean> mRxUpdateTextSizeRequest = PublishProcessor.create();
 
     private static final PublishProcessor<RxYtdlHeaderPackage> mRxToggleHeaderItem = PublishProcessor.create();
+    private static final PublishProcessor<Boolean> mRxToggleAllHeaderItems = PublishProcessor.create();
+    private static final PublishProcessor<String> mRxExpandMatchingSections = PublishProcessor.create();
     private static final PublishProcessor<String> mRxFilterOptionList = PublishProcessor.create();
     private static final PublishProcessor<String> mRxUpdateDragShadow = PublishProcessor.create();
-    private static final PublishProcessor<String> mRxInsertNewOptionRequest = PublishProcessor.create();
+    private static final PublishProcessor<List<String>> mRxInsertNewOptionRequest = PublishProcessor.create();
+    private static final PublishProcessor<RxOptionSelectionPackage> mRxToggleOptionSelected = PublishProcessor.create();
+    private static final PublishProcessor<ModelYtdlCommandTree> mRxCheckCommandTarget = PublishProcessor.create();
+    private static final PublishProcessor<ModelYtdlCommandTree> mRxLintCommand = PublishProcessor.create();
 
     private static final PublishProcessor<String> mRxProcessSharedLinkRequest = PublishProcessor.create();
 
+    // Filter text settling time before running the filter, and the count of filter text changes so far
+    // (a filter result only gets applied if the text hasn't changed again since it started)
+    private static final long FILTER_DEBOUNCE_MILLIS = 150;
+    private final AtomicInteger mFilterGeneration = new AtomicInteger();
+
+    // Last filter used, and the one to open up the matching Sections for once the full list has reloaded
+    private String mLastFilterText;
+    private String mExpandAfterLoadFilterText;
+
+    // Every filter runs on the one worker thread, in turn: the filter session keeps the cached results between them
+    // and isn't thread safe, so a newer filter has to wait for the cancelled one to let go of it first
+    private ExecutorService mFilterExecutor;
+
+    // How the filters have gone since the pipeline was set up, logged when it's torn down (on debug builds)
+    private final AtomicInteger mFilterAppliedCount = new AtomicInteger();
+    private final AtomicInteger mFilterCancelledCount = new AtomicInteger();
+
+    // Number of results to show when ranking the search results
+    private static final int RANKED_SEARCH_MAX_RESULTS = 20;
+
     // Drag Listener
     private ListenerYtdlOptionDrag mListenerYtdlOptionDrag;
 
     // List Adapters
     private AdapterYtdlOptions mAdapterYtdlOptions;
     private AdapterYtdlPresets mAdapterYtdlPresets;
+    private ArrayAdapter<String> mAdapterSwitchCompletions;
+
+    // Inline switch completion: the trie comes in with the Option List, the range is the switch being completed
+    private static final int SWITCH_COMPLETION_MIN_LENGTH = 2;
+    private static final int SWITCH_COMPLETION_MAX_RESULTS = 8;
+    private volatile ModelYtdlSwitchTrie mSwitchTrie;
+    private int mCompletionSwitchStart;
+    private int mCompletionSwitchEnd;
+
+    // Token list of the command box, updated on each edit (insertion, completion and target checks all go off it)
+    private ModelYtdlCommandTree mCommandTree = ModelYtdlCommandTree.EMPTY;
+
+    // Piece table copy of the command box holding its undo / redo history, kept in step by the same TextWatcher.
+    // The flags say where the current text change came from: an update from the Command Editor (recorded as its
+    // own step), or an undo / redo (already in the buffer, so not recorded at all).
+    private ModelYtdlCommandBuffer mCommandBuffer = new ModelYtdlCommandBuffer();
+    private boolean mIsApplyingCommandUpdate;
+    private boolean mIsApplyingCommandHistory;
+
+    // Command checks wait for the typing to settle first. The last check is only touched on the lint pipeline, and
+    // passed into the next one so it only has to check the parts of the command that changed.
+    private static final long LINT_DEBOUNCE_MILLIS = 300;
+    private ModelYtdlCommandLint mLastCommandLint = ModelYtdlCommandLint.EMPTY;
+    private int mLintErrorColour;
+    private int mLintWarningColour;
+
+    // Contextual bar shown while picking out Options to insert together (null when not in multi-select mode)
+    private ActionMode mActionModeOptionSelection;
 
     // Views
     private AppBarLayout mAppBarLayout;
@@ -82,6 +173,7 @@ public class FragmentCommandBuilder extends Fragment {
     private ViewPager mViewPagerCommandBox;
     private FloatingActionButton mFabAction;
     private SearchView mSearchViewOptions;
+    private ListPopupWindow mPopupSwitchCompletions;
 
     private RecyclerView mRecyclerPresetList;
 
@@ -127,6 +219,28 @@ public class FragmentCommandBuilder extends Fragment {
     }
 
 
+    /**
+     * Expand every Header, or collapse them all if they're already expanded
+     */
+    public static void requestToggleAllHeaderItems() {
+        mRxToggleAllHeaderItems.onNext(true);
+    }
+
+
+    /**
+     * Pick out (or unpick) the Option item at the given list position for a multi-select insert. A long press starts
+     * multi-select mode, a plain tap only counts once it's started.
+     */
+    public static void requestToggleOptionSelected(int position, boolean isLongClick) {
+        mRxToggleOptionSelected.onNext(
+                new RxOptionSelectionPackage(
+                        position,
+                        isLongClick
+                )
+        );
+    }
+
+
     /**
      * Update the text label in the DragShadow
      */
@@ -155,7 +269,15 @@ public class FragmentCommandBuilder extends Fragment {
      * Incoming request to update the command in the EditText with the given Option
      */
     public static void requestInsertNewOption(String newOption) {
-        mRxInsertNewOptionRequest.onNext(newOption);
+        mRxInsertNewOptionRequest.onNext(Collections.singletonList(newOption));
+    }
+
+
+    /**
+     * Incoming request to insert several Options at once (all in the one update of the EditText)
+     */
+    public static void requestInsertNewOptions(List<String> newOptions) {
+        mRxInsertNewOptionRequest.onNext(newOptions);
     }
 
 
@@ -185,11 +307,25 @@ public class FragmentCommandBuilder extends Fragment {
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
+        // Pick the command history back up (the command box puts its own text back, which then matches it)
+        if (savedInstanceState != null) {
+            ModelYtdlCommandBuffer savedCommandBuffer = ModelYtdlCommandBuffer.fromSavedState(
+                    savedInstanceState.getString(BUNDLEKEY_COMMAND_BUFFER_TEXT),
+                    savedInstanceState.getIntArray(BUNDLEKEY_COMMAND_BUFFER_STATE)
+            );
+
+            if (savedCommandBuffer != null) {
+                mCommandBuffer = savedCommandBuffer;
+            }
+        }
+
         if (getContext() != null) {
             mAdapterYtdlOptions = new AdapterYtdlOptions(getContext());
             mAdapterYtdlPresets = new AdapterYtdlPresets(getContext());
 
             mAnimateFabDuration = getResources().getInteger(android.R.integer.config_shortAnimTime);
+            mLintErrorColour = ContextCompat.getColor(getContext(), R.color.colour_command_lint_error);
+            mLintWarningColour = ContextCompat.getColor(getContext(), R.color.colour_command_lint_warning);
             mAnimateFabInterpolator = new AnticipateInterpolator();
         }
     }
@@ -224,6 +360,28 @@ public class FragmentCommandBuilder extends Fragment {
         mTxtYtdlCommand = view.findViewById(R.id.txt_ytdl_command);
         mTxtYtdlCommand.setOnDragListener(mListenerYtdlOptionDrag);
         mTxtYtdlCommand.setOnTouchListener(mEditTextTouchListener);
+        mTxtYtdlCommand.addTextChangedListener(mCommandTextWatcher);
+        mTxtYtdlCommand.setOnKeyListener(mCommandHistoryKeyListener);
+
+        // Undo / Redo go on the command box's own text menus (the cursor one is only there from Marshmallow on)
+        mTxtYtdlCommand.setCustomSelectionActionModeCallback(mCommandHistoryActionModeCallback);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            mTxtYtdlCommand.setCustomInsertionActionModeCallback(mCommandHistoryActionModeCallback);
+        }
+
+        // Dropdown under the command box for completing half typed switches
+        mAdapterSwitchCompletions = new ArrayAdapter<>(
+                view.getContext(),
+                R.layout.spinneritem_monospaced_dropdown_picker,
+                R.id.lbl_monospace_dropdown_item,
+                new ArrayList<String>()
+        );
+
+        mPopupSwitchCompletions = new ListPopupWindow(view.getContext());
+        mPopupSwitchCompletions.setAnchorView(mTxtYtdlCommand);
+        mPopupSwitchCompletions.setAdapter(mAdapterSwitchCompletions);
+        mPopupSwitchCompletions.setInputMethodMode(ListPopupWindow.INPUT_METHOD_NEEDED);
+        mPopupSwitchCompletions.setOnItemClickListener(mSwitchCompletionClickListener);
 
         // Set EditText text size based off of SharedPrefs
         setCommandBoxTextSize();
@@ -281,11 +439,28 @@ public class FragmentCommandBuilder extends Fragment {
     }
 
 
+    @Override
+    public void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+
+        outState.putString(BUNDLEKEY_COMMAND_BUFFER_TEXT, mCommandBuffer.getSavedText());
+        outState.putIntArray(BUNDLEKEY_COMMAND_BUFFER_STATE, mCommandBuffer.getSavedState());
+    }
+
+
     @Override
     public void onStop() {
 
         clearRxDisposables();
 
+        if (mPopupSwitchCompletions != null) {
+            mPopupSwitchCompletions.dismiss();
+        }
+
+        if (mActionModeOptionSelection != null) {
+            mActionModeOptionSelection.finish();
+        }
+
         super.onStop();
     }
 
@@ -315,6 +490,169 @@ public class FragmentCommandBuilder extends Fragment {
     };
 
 
+    /**
+     * Quick TextWatcher to keep the command's token list up to date (only the edited part gets lexed again), record
+     * the edit in the command history, check the download target against the Extractor list and the command over
+     * for problems whenever it changes, and offer completions for a switch being typed in
+     */
+    private TextWatcher mCommandTextWatcher = new TextWatcher() {
+
+        @Override
+        public void beforeTextChanged(CharSequence charSequence, int start, int count, int after) {}
+
+
+        @Override
+        public void onTextChanged(CharSequence charSequence, int start, int before, int count) {
+            // The tree gets handed to background checks, so it needs its own copy of the text (the Editable keeps
+            // changing). That copy makes each edit O(length of the command), only the lexing stays local to the edit.
+            mCommandTree = mCommandTree.applyEdit(charSequence.toString(), start, before, count);
+
+            if (!mIsApplyingCommandHistory) {
+                recordCommandEdit(charSequence, start, before, count);
+            }
+        }
+
+
+        @Override
+        public void afterTextChanged(Editable editable) {
+            mRxCheckCommandTarget.onNext(mCommandTree);
+            mRxLintCommand.onNext(mCommandTree);
+            updateSwitchCompletions(editable);
+        }
+    };
+
+
+    /**
+     * Look up the token under the cursor in the switch trie if it's an option, and show what it could be.
+     * Only walks the typed prefix, so it's fine to run on the main thread every keystroke.
+     */
+    private void updateSwitchCompletions(Editable commandText) {
+
+        int cursorPosition = Selection.getSelectionEnd(commandText);
+
+        // Nothing to complete while there's a selection (or while setText() hasn't placed the cursor yet)
+        if (mSwitchTrie == null || cursorPosition < 0 || cursorPosition != Selection.getSelectionStart(commandText)) {
+            mPopupSwitchCompletions.dismiss();
+            return;
+        }
+
+        // Only plain (unquoted) options get completed
+        int tokenIndex = mCommandTree.findTokenAt(cursorPosition);
+        boolean isSwitchToken = tokenIndex >= 0
+                && mCommandTree.getTokenKind(tokenIndex) == ModelYtdlCommandTree.TOKEN_OPTION
+                && mCommandTree.getTokenFlags(tokenIndex) == 0;
+
+        int switchStart = isSwitchToken ? mCommandTree.getTokenStart(tokenIndex) : cursorPosition;
+        int switchEnd = isSwitchToken ? mCommandTree.getTokenEnd(tokenIndex) : cursorPosition;
+
+        List<String> switchCompletions = (isSwitchToken && switchEnd - switchStart >= SWITCH_COMPLETION_MIN_LENGTH)
+                ? mSwitchTrie.findCompletions(commandText.subSequence(switchStart, switchEnd), SWITCH_COMPLETION_MAX_RESULTS)
+                : Collections.<String>emptyList();
+
+        // Don't bother offering the switch that's already been typed out in full
+        if (switchCompletions.isEmpty()
+                || (switchCompletions.size() == 1 && switchCompletions.get(0).contentEquals(commandText.subSequence(switchStart, switchEnd)))) {
+            mPopupSwitchCompletions.dismiss();
+            return;
+        }
+
+        mCompletionSwitchStart = switchStart;
+        mCompletionSwitchEnd = switchEnd;
+
+        mAdapterSwitchCompletions.clear();
+        mAdapterSwitchCompletions.addAll(switchCompletions);
+
+        if (!mPopupSwitchCompletions.isShowing()) {
+            mPopupSwitchCompletions.show();
+        }
+    }
+
+
+    /**
+     * Quick ItemClickListener to send the picked completion off to the Command Editor (same as an inserted option)
+     */
+    private AdapterView.OnItemClickListener mSwitchCompletionClickListener = new AdapterView.OnItemClickListener() {
+
+        @Override
+        public void onItemClick(AdapterView<?> adapterView, View view, int position, long itemId) {
+
+            HeadlessFragCommandEditor.requestCompleteYtdlCommandOption(
+                    mTxtYtdlCommand.getText().toString(),
+                    mCompletionSwitchStart,
+                    mCompletionSwitchEnd,
+                    mAdapterSwitchCompletions.getItem(position)
+            );
+
+            mPopupSwitchCompletions.dismiss();
+        }
+    };
+
+
+    /**
+     * Show how many Options are picked out in the multi-select bar, starting it up if needed (or closing it once
+     * there's nothing left picked out)
+     */
+    private void updateOptionSelectionMode(int selectedCount) {
+
+        if (selectedCount <= 0) {
+            if (mActionModeOptionSelection != null) {
+                mActionModeOptionSelection.finish();
+            }
+            return;
+        }
+
+        if (mActionModeOptionSelection == null && getActivity() instanceof AppCompatActivity) {
+            mActionModeOptionSelection = ((AppCompatActivity) getActivity()).startSupportActionMode(mOptionSelectionCallback);
+        }
+
+        if (mActionModeOptionSelection != null) {
+            mActionModeOptionSelection.setTitle(
+                    getString(R.string.actionmode_options_selected, selectedCount)
+            );
+        }
+    }
+
+
+    /**
+     * Quick ActionMode Callback for multi-select mode: the picked out Options all go into the command in one go,
+     * and closing the bar (however it's closed) clears the selection
+     */
+    private ActionMode.Callback mOptionSelectionCallback = new ActionMode.Callback() {
+
+        @Override
+        public boolean onCreateActionMode(ActionMode actionMode, Menu menu) {
+            actionMode.getMenuInflater().inflate(R.menu.menu_option_selection, menu);
+            return true;
+        }
+
+
+        @Override
+        public boolean onPrepareActionMode(ActionMode actionMode, Menu menu) {
+            return false;
+        }
+
+
+        @Override
+        public boolean onActionItemClicked(ActionMode actionMode, MenuItem menuItem) {
+
+            if (menuItem.getItemId() == R.id.menu_insert_selected_options) {
+                requestInsertNewOptions(mAdapterYtdlOptions.getSelectedCmdSwitches());
+                actionMode.finish();
+                return true;
+            }
+
+            return false;
+        }
+
+
+        @Override
+        public void onDestroyActionMode(ActionMode actionMode) {
+            mActionModeOptionSelection = null;
+            mAdapterYtdlOptions.clearSelection();
+        }
+    };
+
+
     /**
      * Quick OffSetChangedListener to detect when the CollapsingToolbarLayout is expanded / collapsed
      *
@@ -352,6 +690,24 @@ public class FragmentCommandBuilder extends Fragment {
 
             mRxDisposables.clear();
         }
+
+        if (mFilterExecutor != null) {
+            mFilterExecutor.shutdown();
+            mFilterExecutor = null;
+        }
+
+        // Filters that made it through to the list, against the ones called off (or thrown away) for a newer one
+        if (BuildConfig.DEBUG) {
+            Log.d(
+                    TAG,
+                    String.format(
+                            Locale.US,
+                            "Option filters: %d applied, %d cancelled",
+                            mFilterAppliedCount.getAndSet(0),
+                            mFilterCancelledCount.getAndSet(0)
+                    )
+            );
+        }
     }
 
 
@@ -436,10 +792,10 @@ public class FragmentCommandBuilder extends Fragment {
                                 new Consumer<HeadlessFragCommandEditor.RxCommandUpdatePackage>() {
                                     @Override
                                     public void accept(HeadlessFragCommandEditor.RxCommandUpdatePackage rxCommandUpdatePackage) {
-                                        // Update the command in the Edit box
-                                        mTxtYtdlCommand.setText(
-                                                rxCommandUpdatePackage.newCommand
-                                        );
+                                        // Update the command in the Edit box (only the part that changed)
+                                        mIsApplyingCommandUpdate = true;
+                                        replaceCommandText(rxCommandUpdatePackage.newCommand);
+                                        mIsApplyingCommandUpdate = false;
 
                                         // Highlight the argument parameter (if needed)
                                         if (rxCommandUpdatePackage.selectionLength > 0) {
@@ -456,49 +812,100 @@ public class FragmentCommandBuilder extends Fragment {
                                             if (inputMethodManager != null) {
                                                 inputMethodManager.showSoftInput(mTxtYtdlCommand, InputMethodManager.SHOW_IMPLICIT);
                                             }
+
+                                        } else if (rxCommandUpdatePackage.cursorPosition >= 0) {
+                                            // Carry on typing from where the update left off
+                                            mTxtYtdlCommand.setSelection(
+                                                    Math.min(rxCommandUpdatePackage.cursorPosition, mTxtYtdlCommand.length())
+                                            );
                                         }
                                     }
                                 }
                         )
         );
 
-        // Trigger a Option List load
+        // Incoming Option List load, streamed in one Section at a time so the first Headers show straight away
         mRxDisposables.add(
-                HeadlessFragRawHelpLoader.rxYtdlOptionList()
+                HeadlessFragRawHelpLoader.rxYtdlOptionSections()
+                        // Sections can come in faster than the main thread takes them, so hold onto all of them
+                        .onBackpressureBuffer()
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
-                                new Consumer<List<ModelYtdlOptionSection>>() {
+                                new Consumer<HeadlessFragRawHelpLoader.RxOptionSectionPackage>() {
                                     @Override
-                                    public void accept(List<ModelYtdlOptionSection> listYtdlOptions) {
+                                    public void accept(HeadlessFragRawHelpLoader.RxOptionSectionPackage rxOptionSectionPackage) {
                                         if (mAdapterYtdlOptions != null) {
-                                            // Initialise the Adapter
-                                            mAdapterYtdlOptions.setBaseOptionList(listYtdlOptions);
+
+                                            // First Section (or an empty load) starts a fresh list
+                                            if (rxOptionSectionPackage.sectionIndex == 0) {
+                                                mAdapterYtdlOptions.resetBaseOptionList();
+
+                                                // Anything picked out was from the old list
+                                                updateOptionSelectionMode(0);
+                                            }
+
+                                            if (!rxOptionSectionPackage.isLoadComplete()) {
+                                                mAdapterYtdlOptions.appendBaseOptionSection(rxOptionSectionPackage.optionSection);
+                                            } else {
+                                                mAdapterYtdlOptions.setSearchIndex(rxOptionSectionPackage.searchIndex);
+                                                mSwitchTrie = rxOptionSectionPackage.switchTrie;
+
+                                                // Command can be checked properly now there's an Option List to check it against
+                                                mRxLintCommand.onNext(mCommandTree);
+
+                                                // Coming back from a filter, so open up the Sections it matched in
+                                                if (!TextUtils.isEmpty(mExpandAfterLoadFilterText)) {
+                                                    mRxExpandMatchingSections.onNext(mExpandAfterLoadFilterText);
+                                                    mExpandAfterLoadFilterText = null;
+                                                }
+                                            }
                                         }
                                     }
                                 }
                         )
         );
 
-        // Toggle Option Item expansion
+        // Toggle Option Item expansion (the Adapter inserts / removes the Section's rows directly, no diffing needed)
         mRxDisposables.add(
                 mRxToggleHeaderItem
                         .onBackpressureBuffer()
-                        // Updating ImageView first, so do initial work  on main thread
-                        .observeOn(AndroidSchedulers.mainThread())
+                        // Lay out the text of a Section about to be expanded first, so its rows come in without measuring
+                        // (worked out from the one snapshot, at worst it's been toggled since and a Section gets laid out for nothing)
+                        .observeOn(Schedulers.computation())
                         .map(
-                                new Function<RxYtdlHeaderPackage, List<ModelYtdlOptionSection>>() {
+                                new Function<RxYtdlHeaderPackage, RxYtdlHeaderPackage>() {
+                                    @Override
+                                    public RxYtdlHeaderPackage apply(RxYtdlHeaderPackage rxYtdlHeaderPackage) {
+                                        AdapterYtdlOptions.ShowListSnapshot baseSnapshot = mAdapterYtdlOptions.getShowListSnapshot();
+                                        List<ModelYtdlOptionSection> baseList = baseSnapshot.baseList;
+
+                                        if (rxYtdlHeaderPackage.headerId < baseList.size()
+                                                && !baseSnapshot.isSectionExpanded(rxYtdlHeaderPackage.headerId)) {
+                                            mAdapterYtdlOptions.precomputeTextLayouts(
+                                                    baseList.get(rxYtdlHeaderPackage.headerId).getYtdlOptionItems(),
+                                                    null,
+                                                    null
+                                            );
+                                        }
+
+                                        return rxYtdlHeaderPackage;
+                                    }
+                                }
+                        )
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<RxYtdlHeaderPackage>() {
                                     @Override
-                                    public List<ModelYtdlOptionSection> apply(RxYtdlHeaderPackage rxYtdlHeaderPackage) {
+                                    public void accept(RxYtdlHeaderPackage rxYtdlHeaderPackage) {
                                         List<ModelYtdlOptionSection> baseList = mAdapterYtdlOptions.getBaseList();
 
                                         // Fetch the Base List out of the adapter and toggle the target Header item
-                                        if (rxYtdlHeaderPackage.headerId < baseList.size()) {
+                                        if (baseList != null && rxYtdlHeaderPackage.headerId < baseList.size()) {
 
-                                            ModelYtdlOptionSection targetHeader = baseList.get(rxYtdlHeaderPackage.headerId);
-                                            targetHeader.setExpanded(!targetHeader.isExpanded());
+                                            boolean isExpanded = mAdapterYtdlOptions.toggleSectionExpanded(rxYtdlHeaderPackage.headerId);
 
                                             // Set the ImageView icon accordingly
-                                            if (targetHeader.isExpanded()) {
+                                            if (isExpanded) {
                                                 rxYtdlHeaderPackage.headerIcon.setImageResource(R.drawable.avd_anim_collapse);
                                             } else {
                                                 rxYtdlHeaderPackage.headerIcon.setImageResource(R.drawable.avd_anim_expand);
@@ -507,87 +914,111 @@ public class FragmentCommandBuilder extends Fragment {
                                             Animatable iconHeader = (Animatable) rxYtdlHeaderPackage.headerIcon.getDrawable();
                                             iconHeader.start();
                                         }
+                                    }
+                                }
+                        )
+        );
 
-                                        return baseList;
+        // Pick out Option items for a multi-select insert (selection lives in the Adapter, so main thread only)
+        mRxDisposables.add(
+                mRxToggleOptionSelected
+                        .onBackpressureBuffer()
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<RxOptionSelectionPackage>() {
+                                    @Override
+                                    public void accept(RxOptionSelectionPackage rxOptionSelectionPackage) {
+                                        if (rxOptionSelectionPackage.isLongClick || mActionModeOptionSelection != null) {
+                                            updateOptionSelectionMode(
+                                                    mAdapterYtdlOptions.toggleItemSelected(rxOptionSelectionPackage.position)
+                                            );
+                                        }
                                     }
                                 }
                         )
-                        // List sorting can be done on background thread
+        );
+
+        // Expand / collapse every Section at once (one combined list update rather than one per Header)
+        mRxDisposables.add(
+                mRxToggleAllHeaderItems
+                        .onBackpressureDrop()
+                        // Same as above, the top rows get laid out ahead of an expand (again off the one snapshot)
                         .observeOn(Schedulers.computation())
                         .map(
-                                new Function<List<ModelYtdlOptionSection>, RxYtdlOptionsUpdatePackage>() {
+                                new Function<Boolean, Boolean>() {
                                     @Override
-                                    public RxYtdlOptionsUpdatePackage apply(List<ModelYtdlOptionSection> newBaseList) {
+                                    public Boolean apply(Boolean aBoolean) {
+                                        AdapterYtdlOptions.ShowListSnapshot baseSnapshot = mAdapterYtdlOptions.getShowListSnapshot();
 
-                                        // Base list in the Adapter is now updated, so should be able to generate the new flattened Show List
-                                        List<ModelYtdlBaseItem> newShowList = mAdapterYtdlOptions.generateNewShowList();
+                                        if (!baseSnapshot.areAllSectionsExpanded()) {
+                                            mAdapterYtdlOptions.precomputeSectionTextLayouts(
+                                                    baseSnapshot.baseList,
+                                                    null
+                                            );
+                                        }
 
-                                        // Calculate the List Movements to send back to main thread
-                                        return new RxYtdlOptionsUpdatePackage(
-                                                newShowList,
-                                                DiffUtil.calculateDiff(
-                                                        new AdapterYtdlOptions.OptionListDiffUtilCallback(
-                                                                mAdapterYtdlOptions.getShowList(),
-                                                                newShowList
-                                                        ),
-                                                        true
-                                                )
-                                        );
+                                        return aBoolean;
                                     }
                                 }
                         )
-                        // Switch to main thread to update UI
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
-                                new Consumer<RxYtdlOptionsUpdatePackage>() {
+                                new Consumer<Boolean>() {
                                     @Override
-                                    public void accept(RxYtdlOptionsUpdatePackage rxYtdlOptionsUpdatePackage) {
-                                        mAdapterYtdlOptions.updateOptionList(
-                                                rxYtdlOptionsUpdatePackage.newShowList,
-                                                rxYtdlOptionsUpdatePackage.listMovements
-                                        );
+                                    public void accept(Boolean aBoolean) {
+                                        if (mAdapterYtdlOptions.areAllSectionsExpanded()) {
+                                            mAdapterYtdlOptions.collapseAllSections();
+                                        } else {
+                                            mAdapterYtdlOptions.expandAllSections();
+                                        }
                                     }
                                 }
                         )
         );
 
-        // Run Option Item filtering
+        // Expand the Sections containing matches for the given filter (search on background thread)
         mRxDisposables.add(
-                mRxFilterOptionList
-                        // Flood control - only need to take latest filter
-                        .onBackpressureDrop()
-                        // Run filtering on background thread
+                mRxExpandMatchingSections
+                        .onBackpressureLatest()
                         .observeOn(Schedulers.computation())
                         .map(
-                                new Function<String, RxYtdlOptionsUpdatePackage>() {
+                                new Function<String, BitSet>() {
                                     @Override
-                                    public RxYtdlOptionsUpdatePackage apply(String filterString) {
-
-                                        // Make sure the String is not empty, as it doesn't play nice with DiffUtil
-                                        if (!TextUtils.isEmpty(filterString)) {
-
-                                            // Generate the new List based on the filter string
-                                            List<ModelYtdlBaseItem> newFilterList = mAdapterYtdlOptions.generateFilterShowList(filterString);
-
-                                            // Calculate the List Movements to send back to main thread
-                                            return new RxYtdlOptionsUpdatePackage(
-                                                    newFilterList,
-                                                    DiffUtil.calculateDiff(
-                                                            new AdapterYtdlOptions.OptionListDiffUtilCallback(
-                                                                    mAdapterYtdlOptions.getShowList(),
-                                                                    newFilterList
-                                                            ),
-                                                            true
-                                                    )
-                                            );
+                                    public BitSet apply(String filterText) {
+                                        AdapterYtdlOptions.ShowListSnapshot baseSnapshot = mAdapterYtdlOptions.getShowListSnapshot();
+                                        BitSet matchingSections = mAdapterYtdlOptions.findSectionsWithMatches(baseSnapshot, filterText);
 
-                                        } else {
-                                            // Should never reach here, but construct a null package just in case (since Rx map can no longer return a plain null)
-                                            return new RxYtdlOptionsUpdatePackage(
-                                                    null,
-                                                    null
-                                            );
-                                        }
+                                        mAdapterYtdlOptions.precomputeSectionTextLayouts(baseSnapshot.baseList, matchingSections);
+
+                                        return matchingSections;
+                                    }
+                                }
+                        )
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<BitSet>() {
+                                    @Override
+                                    public void accept(BitSet matchingSections) {
+                                        mAdapterYtdlOptions.expandSections(matchingSections);
+                                    }
+                                }
+                        )
+        );
+
+        // Run Option Item filtering (the session starts fresh with the pipeline, and is only used on its worker thread)
+        mFilterExecutor = Executors.newSingleThreadExecutor();
+        final Scheduler filterScheduler = Schedulers.from(mFilterExecutor);
+        final ModelYtdlOptionSearchIndex.FilterSession filterSession = new ModelYtdlOptionSearchIndex.FilterSession();
+        mRxDisposables.add(
+                mRxFilterOptionList
+                        // Flood control - wait for the typing to settle for a moment, then only take the latest filter
+                        .debounce(FILTER_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+                        // Each new filter calls off the one still running (see createFilterFlowable())
+                        .switchMap(
+                                new Function<String, Publisher<RxYtdlOptionsUpdatePackage>>() {
+                                    @Override
+                                    public Publisher<RxYtdlOptionsUpdatePackage> apply(String filterString) {
+                                        return createFilterFlowable(filterString, filterSession, filterScheduler, mFilterGeneration.get());
                                     }
                                 }
                         )
@@ -598,10 +1029,28 @@ public class FragmentCommandBuilder extends Fragment {
                                     @Override
                                     public void accept(RxYtdlOptionsUpdatePackage rxYtdlOptionsUpdatePackage) {
                                         if (rxYtdlOptionsUpdatePackage.listMovements != null) {
-                                            mAdapterYtdlOptions.updateOptionList(
+
+                                            // The filter text has changed again since this one started, so it's already out of date
+                                            if (rxYtdlOptionsUpdatePackage.filterGeneration != mFilterGeneration.get()) {
+                                                mFilterCancelledCount.incrementAndGet();
+                                                return;
+                                            }
+
+                                            boolean isApplied = mAdapterYtdlOptions.updateOptionList(
+                                                    rxYtdlOptionsUpdatePackage.baseSnapshot,
                                                     rxYtdlOptionsUpdatePackage.newShowList,
-                                                    rxYtdlOptionsUpdatePackage.listMovements
+                                                    rxYtdlOptionsUpdatePackage.listMovements,
+                                                    rxYtdlOptionsUpdatePackage.matchHighlights
                                             );
+
+                                            if (isApplied) {
+                                                mFilterAppliedCount.incrementAndGet();
+
+                                            } else {
+                                                // List changed underneath the diff while it was running, so run the same filter again
+                                                mFilterCancelledCount.incrementAndGet();
+                                                mRxFilterOptionList.onNext(rxYtdlOptionsUpdatePackage.filterString);
+                                            }
                                         }
                                     }
                                 }
@@ -652,18 +1101,102 @@ public class FragmentCommandBuilder extends Fragment {
                         )
         );
 
-        // Send the new Option and current YTDL command to be processed
+        // Send the new Option and current YTDL command to be processed (the token list is swapped out on the main thread
+        // so it's read there too, being immutable it can then be handed over as is)
         mRxDisposables.add(
                 mRxInsertNewOptionRequest
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<List<String>>() {
+                                    @Override
+                                    public void accept(List<String> newOptions) {
+                                        HeadlessFragCommandEditor.requestInsertYtdlCommandOptions(
+                                                mCommandTree,
+                                                mSwitchTrie,
+                                                newOptions
+                                        );
+                                    }
+                                }
+                        )
+        );
+
+        // Check the command over for problems, and mark them up in the command box
+        mRxDisposables.add(
+                mRxLintCommand
+                        // Flood control - wait for the typing to settle for a moment, then only check the latest command
+                        .debounce(LINT_DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)
+                        .onBackpressureLatest()
                         .observeOn(Schedulers.computation())
+                        .map(
+                                new Function<ModelYtdlCommandTree, ModelYtdlCommandLint>() {
+                                    @Override
+                                    public ModelYtdlCommandLint apply(ModelYtdlCommandTree commandTree) {
+                                        mLastCommandLint = ModelYtdlCommandLint.lint(commandTree, mSwitchTrie, mLastCommandLint);
+                                        return mLastCommandLint;
+                                    }
+                                }
+                        )
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<ModelYtdlCommandLint>() {
+                                    @Override
+                                    public void accept(ModelYtdlCommandLint commandLint) {
+                                        showCommandLint(commandLint);
+                                    }
+                                }
+                        )
+        );
+
+        // Check whether the download target needs an extra Option to go with it
+        mRxDisposables.add(
+                mRxCheckCommandTarget
+                        // Flood control - only the latest command matters
+                        .onBackpressureLatest()
+                        .observeOn(Schedulers.computation())
+                        .map(
+                                new Function<ModelYtdlCommandTree, String>() {
+                                    @Override
+                                    public String apply(ModelYtdlCommandTree commandTree) {
+
+                                        Context context = getContext();
+
+                                        if (context == null) {
+                                            return "";
+                                        }
+
+                                        // Catalogue is loaded once and the lookups are cheap, so fine to run on every edit
+                                        String suggestedOption = UtilYtdlOptionRepository
+                                                .getExtractorCatalogue(context)
+                                                .suggestTargetOption(commandTree);
+
+                                        // Rx map can't return a plain null
+                                        return (suggestedOption != null)
+                                                ? suggestedOption
+                                                : "";
+                                    }
+                                }
+                        )
+                        // Only pop the suggestion once, not on every keystroke after it
+                        .distinctUntilChanged()
+                        .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
                                 new Consumer<String>() {
                                     @Override
-                                    public void accept(String newOption) {
-                                        HeadlessFragCommandEditor.requestInsertYtdlCommandOption(
-                                                mTxtYtdlCommand.getText().toString(),
-                                                newOption
-                                        );
+                                    public void accept(final String suggestedOption) {
+                                        if (!TextUtils.isEmpty(suggestedOption)) {
+                                            HeadlessFragSnackbar.requestPopSnackBar(
+                                                    mTxtYtdlCommand,
+                                                    getString(R.string.snackbar_suggest_option, suggestedOption),
+                                                    Snackbar.LENGTH_LONG,
+                                                    getString(R.string.snackbar_add_option),
+                                                    new View.OnClickListener() {
+                                                        @Override
+                                                        public void onClick(View view) {
+                                                            requestInsertNewOption(suggestedOption);
+                                                        }
+                                                    }
+                                            );
+                                        }
                                     }
                                 }
                         )
@@ -743,6 +1276,107 @@ public class FragmentCommandBuilder extends Fragment {
     }
 
 
+    /**
+     * Run a single filter (and its list diff) on the filter worker thread. Cancelling the Flowable (e.g. switchMap()
+     * moving on to a newer filter) flags the work to stop at its next check, rather than letting a stale filter
+     * run to the end. The newer filter is queued up behind it on the same thread, so the two never share the
+     * filter session at the same time.
+     */
+    private Flowable<RxYtdlOptionsUpdatePackage> createFilterFlowable(final String filterString, final ModelYtdlOptionSearchIndex.FilterSession filterSession, Scheduler filterScheduler, final int filterGeneration) {
+
+        final ModelYtdlOptionSearchIndex.CancelSignal cancelSignal = new ModelYtdlOptionSearchIndex.CancelSignal();
+        final AtomicBoolean isFilterDone = new AtomicBoolean(false);
+
+        return Flowable
+                .fromCallable(
+                        new Callable<RxYtdlOptionsUpdatePackage>() {
+                            @Override
+                            public RxYtdlOptionsUpdatePackage call() {
+
+                                // Make sure the String is not empty, as it doesn't play nice with DiffUtil (an empty filter just
+                                // calls off the last one, the full list gets reloaded separately)
+                                if (TextUtils.isEmpty(filterString)) {
+                                    return new RxYtdlOptionsUpdatePackage(null, null);
+                                }
+
+                                // Everything is worked out against the one snapshot, the main thread checks it's still current
+                                AdapterYtdlOptions.ShowListSnapshot baseSnapshot = mAdapterYtdlOptions.getShowListSnapshot();
+
+                                try {
+                                    // Generate the new List based on the filter string (best matches first if set in the Preferences)
+                                    List<ModelYtdlBaseItem> newFilterList = isRankedSearch()
+                                            ? mAdapterYtdlOptions.generateRankedShowList(baseSnapshot, filterString, RANKED_SEARCH_MAX_RESULTS, cancelSignal)
+                                            : mAdapterYtdlOptions.generateFilterShowList(baseSnapshot, filterString, filterSession, cancelSignal);
+
+                                    // Mark out where each item matched, so the main thread only needs to set the text
+                                    SparseArray<AdapterYtdlOptions.ItemMatchHighlight> matchHighlights = mAdapterYtdlOptions.generateMatchHighlights(
+                                            baseSnapshot,
+                                            newFilterList,
+                                            filterString,
+                                            cancelSignal
+                                    );
+
+                                    // Lay out the text of the top results too, so binding them only picks up the layouts
+                                    mAdapterYtdlOptions.precomputeTextLayouts(newFilterList, matchHighlights, cancelSignal);
+
+                                    // Calculate the List Movements to send back to main thread
+                                    RxYtdlOptionsUpdatePackage filterPackage = new RxYtdlOptionsUpdatePackage(
+                                            newFilterList,
+                                            DiffUtil.calculateDiff(
+                                                    new AdapterYtdlOptions.OptionListDiffUtilCallback(
+                                                            baseSnapshot.showList,
+                                                            newFilterList,
+                                                            cancelSignal
+                                                    ),
+                                                    true
+                                            ),
+                                            baseSnapshot,
+                                            matchHighlights,
+                                            filterString,
+                                            filterGeneration
+                                    );
+
+                                    isFilterDone.set(true);
+                                    return filterPackage;
+
+                                } catch (CancellationException e) {
+                                    // Called off part way through, nothing to send back (Rx can no longer take a plain null)
+                                    return new RxYtdlOptionsUpdatePackage(null, null);
+                                }
+                            }
+                        }
+                )
+                .subscribeOn(filterScheduler)
+                .doOnCancel(
+                        new Action() {
+                            @Override
+                            public void run() {
+                                cancelSignal.cancel();
+
+                                if (!isFilterDone.get()) {
+                                    mFilterCancelledCount.incrementAndGet();
+                                }
+                            }
+                        }
+                );
+    }
+
+
+    /**
+     * Holder object for handling the YTDL Option Item (long) taps
+     */
+    private static class RxOptionSelectionPackage {
+
+        final int position;
+        final boolean isLongClick;
+
+        RxOptionSelectionPackage(int position, boolean isLongClick) {
+            this.position = position;
+            this.isLongClick = isLongClick;
+        }
+    }
+
+
     /**
      * Holder object for handling the YTDL Option Header taps
      */
@@ -766,9 +1400,25 @@ public class FragmentCommandBuilder extends Fragment {
         final List<ModelYtdlBaseItem> newShowList;
         final DiffUtil.DiffResult listMovements;
 
+        // Snapshot the List Movements were worked out against
+        final AdapterYtdlOptions.ShowListSnapshot baseSnapshot;
+
+        // Match highlights, plus the filter text (and its generation) the list was filtered for
+        final SparseArray<AdapterYtdlOptions.ItemMatchHighlight> matchHighlights;
+        final String filterString;
+        final int filterGeneration;
+
         RxYtdlOptionsUpdatePackage(List<ModelYtdlBaseItem> newShowList, DiffUtil.DiffResult listMovements) {
+            this(newShowList, listMovements, null, null, null, 0);
+        }
+
+        RxYtdlOptionsUpdatePackage(List<ModelYtdlBaseItem> newShowList, DiffUtil.DiffResult listMovements, AdapterYtdlOptions.ShowListSnapshot baseSnapshot, SparseArray<AdapterYtdlOptions.ItemMatchHighlight> matchHighlights, String filterString, int filterGeneration) {
             this.newShowList = newShowList;
             this.listMovements = listMovements;
+            this.baseSnapshot = baseSnapshot;
+            this.matchHighlights = matchHighlights;
+            this.filterString = filterString;
+            this.filterGeneration = filterGeneration;
         }
     }
 
@@ -790,6 +1440,238 @@ public class FragmentCommandBuilder extends Fragment {
     // endregion
 
 
+    // region ================== COMMAND HISTORY OPS ==================
+    // ====== ================== =================== ==================
+
+
+    /**
+     * Add an edit of the command box to the command history. If the command box and the buffer have gotten out of
+     * step (e.g. the command box putting its own text back), start the history again from what's in the box.
+     */
+    private void recordCommandEdit(CharSequence commandText, int start, int before, int count) {
+
+        if (mCommandBuffer.length() - before + count == commandText.length()) {
+            mCommandBuffer.replace(
+                    start,
+                    before,
+                    commandText.subSequence(start, start + count),
+                    !mIsApplyingCommandUpdate
+            );
+
+        } else if (!mCommandBuffer.contentEquals(commandText)) {
+            mCommandBuffer.reset(commandText);
+        }
+    }
+
+
+    /**
+     * Swap the text in the command box for the given command, only replacing the part between where they start and
+     * stop being the same. Keeps the edit (and the history entry for it) down to what actually changed, rather than
+     * the whole command each time.
+     */
+    private void replaceCommandText(String newCommand) {
+
+        Editable commandText = mTxtYtdlCommand.getText();
+        int currentLength = commandText.length();
+
+        int prefixLength = 0;
+        int maxPrefixLength = Math.min(currentLength, newCommand.length());
+        while (prefixLength < maxPrefixLength && commandText.charAt(prefixLength) == newCommand.charAt(prefixLength)) {
+            prefixLength++;
+        }
+
+        int suffixLength = 0;
+        int maxSuffixLength = maxPrefixLength - prefixLength;
+        while (suffixLength < maxSuffixLength
+                && commandText.charAt(currentLength - 1 - suffixLength) == newCommand.charAt(newCommand.length() - 1 - suffixLength)) {
+            suffixLength++;
+        }
+
+        if (prefixLength + suffixLength < Math.max(currentLength, newCommand.length())) {
+            commandText.replace(
+                    prefixLength,
+                    currentLength - suffixLength,
+                    newCommand,
+                    prefixLength,
+                    newCommand.length() - suffixLength
+            );
+        }
+    }
+
+
+    /**
+     * Take back the last change to the command
+     */
+    private boolean undoCommandEdit() {
+        return applyCommandHistory(mCommandBuffer.undo());
+    }
+
+
+    /**
+     * Put back the last change to the command that was undone
+     */
+    private boolean redoCommandEdit() {
+        return applyCommandHistory(mCommandBuffer.redo());
+    }
+
+
+    /**
+     * Bring the command box back in line with the buffer after an undo / redo, and put the cursor where the change was
+     */
+    private boolean applyCommandHistory(int cursorPosition) {
+
+        if (cursorPosition < 0) {
+            return false;
+        }
+
+        mIsApplyingCommandHistory = true;
+        replaceCommandText(mCommandBuffer.getText());
+        mIsApplyingCommandHistory = false;
+
+        mTxtYtdlCommand.setSelection(Math.min(cursorPosition, mTxtYtdlCommand.length()));
+
+        return true;
+    }
+
+
+    /**
+     * Quick KeyListener for the usual undo / redo shortcuts on a hardware keyboard (Ctrl+Z, Ctrl+Shift+Z and Ctrl+Y),
+     * taken before the command box can use them for its own (much shorter) undo
+     */
+    private View.OnKeyListener mCommandHistoryKeyListener = new View.OnKeyListener() {
+
+        @Override
+        public boolean onKey(View view, int keyCode, KeyEvent keyEvent) {
+
+            if (!keyEvent.isCtrlPressed()) {
+                return false;
+            }
+
+            boolean isUndo = (keyCode == KeyEvent.KEYCODE_Z && !keyEvent.isShiftPressed());
+            boolean isRedo = (keyCode == KeyEvent.KEYCODE_Y || (keyCode == KeyEvent.KEYCODE_Z && keyEvent.isShiftPressed()));
+
+            if (isUndo || isRedo) {
+                if (keyEvent.getAction() == KeyEvent.ACTION_DOWN) {
+                    if (isUndo) {
+                        undoCommandEdit();
+                    } else {
+                        redoCommandEdit();
+                    }
+                }
+                return true;
+            }
+
+            return false;
+        }
+    };
+
+
+    /**
+     * Quick ActionMode Callback adding Undo / Redo to the command box's text menus, only showing whichever of them
+     * there's something to do for
+     */
+    private android.view.ActionMode.Callback mCommandHistoryActionModeCallback = new android.view.ActionMode.Callback() {
+
+        @Override
+        public boolean onCreateActionMode(android.view.ActionMode actionMode, Menu menu) {
+            actionMode.getMenuInflater().inflate(R.menu.menu_command_history, menu);
+            return true;
+        }
+
+
+        @Override
+        public boolean onPrepareActionMode(android.view.ActionMode actionMode, Menu menu) {
+            menu.findItem(R.id.menu_undo_command_edit).setVisible(mCommandBuffer.canUndo());
+            menu.findItem(R.id.menu_redo_command_edit).setVisible(mCommandBuffer.canRedo());
+            return true;
+        }
+
+
+        @Override
+        public boolean onActionItemClicked(android.view.ActionMode actionMode, MenuItem menuItem) {
+
+            switch (menuItem.getItemId()) {
+                case R.id.menu_undo_command_edit:
+                    undoCommandEdit();
+                    break;
+
+                case R.id.menu_redo_command_edit:
+                    redoCommandEdit();
+                    break;
+
+                default:
+                    return false;
+            }
+
+            // Leave the menu open (with its items updated) so several steps can be taken back in a row
+            actionMode.invalidate();
+            return true;
+        }
+
+
+        @Override
+        public void onDestroyActionMode(android.view.ActionMode actionMode) {}
+    };
+
+    // endregion
+
+
+    // region ================== COMMAND LINT OPS ==================
+    // ====== ================== ================ ==================
+
+
+    /**
+     * Swap the problem highlights in the command box for the ones from the given check, as long as the command
+     * hasn't changed again since (in which case there's another check on the way)
+     */
+    private void showCommandLint(ModelYtdlCommandLint commandLint) {
+
+        if (mTxtYtdlCommand == null || commandLint.getCommandTree() != mCommandTree) {
+            return;
+        }
+
+        Editable commandText = mTxtYtdlCommand.getText();
+
+        for (CommandLintSpan lintSpan : commandText.getSpans(0, commandText.length(), CommandLintSpan.class)) {
+            commandText.removeSpan(lintSpan);
+        }
+
+        for (int lintIndex = 0; lintIndex < commandLint.getLintCount(); lintIndex++) {
+            commandText.setSpan(
+                    new CommandLintSpan(
+                            ModelYtdlCommandLint.isError(commandLint.getLintKind(lintIndex))
+                                    ? mLintErrorColour
+                                    : mLintWarningColour
+                    ),
+                    commandLint.getLintStart(lintIndex),
+                    commandLint.getLintEnd(lintIndex),
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE
+            );
+        }
+    }
+
+
+    /**
+     * Background highlight for a problem in the command. Not a ParcelableSpan (unlike BackgroundColorSpan), so the
+     * command box doesn't keep hold of it when it saves its text - the next check puts it back.
+     */
+    private static class CommandLintSpan extends CharacterStyle implements UpdateAppearance {
+
+        private final int mHighlightColour;
+
+        CommandLintSpan(int highlightColour) {
+            mHighlightColour = highlightColour;
+        }
+
+        @Override
+        public void updateDrawState(TextPaint textPaint) {
+            textPaint.bgColor = mHighlightColour;
+        }
+    }
+
+    // endregion
+
+
     // region ================== TEXTSIZE OPS ==================
     // ====== ================== ============ ==================
 
@@ -1050,6 +1932,21 @@ public class FragmentCommandBuilder extends Fragment {
     }
 
 
+    /**
+     * Check the SharedPrefs for whether search results should be ranked (rather than listed in help text order)
+     */
+    private boolean isRankedSearch() {
+
+        Context context = getContext();
+
+        return context != null
+                && PreferenceManager.getDefaultSharedPreferences(context).getBoolean(
+                        context.getString(R.string.prefkey_search_ranked),
+                        false
+                );
+    }
+
+
     /**
      * Quick QueryTextListener to handle YTDL Option filtering from the SearchView
      */
@@ -1069,10 +1966,22 @@ public class FragmentCommandBuilder extends Fragment {
 
 
         private void filterOptions(String filterText) {
-            if (!TextUtils.isEmpty(filterText)) {
-                mRxFilterOptionList.onNext(filterText);
-            } else {
+
+            // Anything still being filtered is now out of date
+            mFilterGeneration.incrementAndGet();
+
+            // Always sent through, so an empty filter still calls off the last one
+            mRxFilterOptionList.onNext(filterText);
+
+            if (TextUtils.isEmpty(filterText)) {
+                // Full list comes back with the last filter's Sections opened up
+                mExpandAfterLoadFilterText = mLastFilterText;
+                mLastFilterText = null;
+
                 HeadlessFragRawHelpLoader.requestYtdlOptionList();
+
+            } else {
+                mLastFilterText = filterText;
             }
         }
     };
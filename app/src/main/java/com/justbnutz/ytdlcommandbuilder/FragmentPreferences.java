@@ -8,12 +8,19 @@
 package com.justbnutz.ytdlcommandbuilder;
 
 
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.database.Cursor;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Bundle;
+import android.provider.OpenableColumns;
+import android.support.design.widget.Snackbar;
 import android.support.v4.app.DialogFragment;
 import android.support.v7.preference.ListPreference;
 import android.support.v7.preference.Preference;
@@ -22,14 +29,33 @@ import android.support.v7.preference.PreferenceManager;
 
 import com.google.android.gms.oss.licenses.OssLicensesMenuActivity;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.schedulers.Schedulers;
+
 
 public class FragmentPreferences extends PreferenceFragmentCompat implements Preference.OnPreferenceClickListener, SharedPreferences.OnSharedPreferenceChangeListener {
 
     public static final String TAG = ActivityMain.PACKAGE_NAME + ".FragmentPreferences";
 
+    // Request codes for the files picked out to import
+    private static final int REQUEST_IMPORT_YTDL_VERSION = 1;
+    private static final int REQUEST_IMPORT_EXTRACTOR_LIST = 2;
+
+    // List of RxDisposables for listening to Rx events (multiple pipeline style)
+    private List<Disposable> mRxDisposables;
+
+    // Rx Channels for Async operations
+    private static final PublishProcessor<RxImportFilePackage> mRxImportFile = PublishProcessor.create();
+
 
     public FragmentPreferences() {
         // Required empty public constructor
@@ -49,6 +75,17 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
     // ====== ================== ============ ==================
 
 
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        // Picked files come back in onActivityResult(), which before Android P can land ahead of onStart(),
+        // so the import pipeline has to be listening from here on rather than only while started
+        clearRxDisposables();
+        initRxDisposables();
+    }
+
+
     @Override
     public void onCreatePreferences(Bundle savedInstanceState, String rootKey) {
 
@@ -58,6 +95,12 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
         // Populate the initial values of the Start Tab ListPreference
         setupStartTabList();
 
+        // Populate the YTDL help text versions that can be picked from
+        setupYtdlVersionList();
+        findPreference(getString(R.string.prefkey_ytdl_version_diff)).setOnPreferenceClickListener(this);
+        findPreference(getString(R.string.prefkey_ytdl_version_import)).setOnPreferenceClickListener(this);
+        findPreference(getString(R.string.prefkey_ytdl_extractors_import)).setOnPreferenceClickListener(this);
+
         // Link and update the App Picker preference label
         updateCurrentCmdApp();
 
@@ -84,10 +127,32 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
         getPreferenceScreen()
                 .getSharedPreferences()
                 .unregisterOnSharedPreferenceChangeListener(this);
+
         super.onStop();
     }
 
 
+    @Override
+    public void onDestroy() {
+        clearRxDisposables();
+
+        super.onDestroy();
+    }
+
+
+    @Override
+    public void onActivityResult(int requestCode, int resultCode, Intent data) {
+        super.onActivityResult(requestCode, resultCode, data);
+
+        // Picked file gets copied in on a background thread
+        if (resultCode == Activity.RESULT_OK && data != null && data.getData() != null && getContext() != null) {
+            mRxImportFile.onNext(
+                    new RxImportFilePackage(getContext().getApplicationContext(), requestCode, data.getData())
+            );
+        }
+    }
+
+
     @Override
     public boolean onPreferenceClick(Preference preference) {
 
@@ -96,6 +161,15 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
         if (clickedKey.equals(getString(R.string.prefkey_cmd_app))) {
             popAppPickerDialog();
 
+        } else if (clickedKey.equals(getString(R.string.prefkey_ytdl_version_diff))) {
+            popVersionDiffDialog();
+
+        } else if (clickedKey.equals(getString(R.string.prefkey_ytdl_version_import))) {
+            launchImportFilePicker(REQUEST_IMPORT_YTDL_VERSION);
+
+        } else if (clickedKey.equals(getString(R.string.prefkey_ytdl_extractors_import))) {
+            launchImportFilePicker(REQUEST_IMPORT_EXTRACTOR_LIST);
+
         } else if (clickedKey.equals(getString(R.string.prefkey_about_version))) {
             launchAboutLink(
                     getString(R.string.about_link_version)
@@ -133,6 +207,10 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
         } else if (prefKey.equals(getString(R.string.prefkey_text_size))) {
             FragmentCommandBuilder.requestUpdateTextSize();
 
+        } else if (prefKey.equals(getString(R.string.prefkey_ytdl_version))) {
+            // All versions are already loaded, so this just swaps the option list over
+            HeadlessFragRawHelpLoader.requestYtdlOptionList();
+
         }
     }
 
@@ -174,6 +252,33 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
     }
 
 
+    /**
+     * Set up the list of YTDL help text versions available to build the option list from
+     */
+    private void setupYtdlVersionList() {
+
+        if (getContext() != null) {
+            ListPreference versionPreference = (ListPreference) findPreference(getString(R.string.prefkey_ytdl_version));
+
+            List<String> versionIds = UtilYtdlOptionRepository.getAvailableVersionIds(getContext());
+            List<String> versionLabels = new ArrayList<>();
+
+            for (String versionId : versionIds) {
+                versionLabels.add(
+                        DialogVersionDiff.getVersionLabel(getContext(), versionId)
+                );
+            }
+
+            versionPreference.setEntries(
+                    versionLabels.toArray(new String[0])
+            );
+            versionPreference.setEntryValues(
+                    versionIds.toArray(new String[0])
+            );
+        }
+    }
+
+
     /**
      * Set up the Preference that will provide the user with a list of apps to pick from to place in the
      * Command Line shortcut
@@ -266,6 +371,57 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
     }
 
 
+    /**
+     * Pop the dialog for comparing the options between two YTDL versions
+     */
+    private void popVersionDiffDialog() {
+
+        // Check if the DialogFragment already exists, make sure to remove it first
+        DialogFragment diffDialogue = (DialogFragment) getChildFragmentManager().findFragmentByTag(DialogVersionDiff.TAG);
+        if (diffDialogue != null) {
+            getChildFragmentManager()
+                    .beginTransaction()
+                    .remove(diffDialogue)
+                    .commitNow();
+        }
+
+        diffDialogue = new DialogVersionDiff();
+        diffDialogue.show(
+                getChildFragmentManager(),
+                DialogVersionDiff.TAG
+        );
+    }
+
+
+    /**
+     * Open up the system file picker for a text file to import, the result comes back in onActivityResult()
+     */
+    private void launchImportFilePicker(int requestCode) {
+
+        // Document picker keeps the file accessible for longer, but only from KitKat on
+        Intent pickerIntent = new Intent(
+                (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+                        ? Intent.ACTION_OPEN_DOCUMENT
+                        : Intent.ACTION_GET_CONTENT
+        );
+        pickerIntent.addCategory(Intent.CATEGORY_OPENABLE);
+        pickerIntent.setType("text/*");
+
+        try {
+            startActivityForResult(pickerIntent, requestCode);
+
+        } catch (ActivityNotFoundException e) {
+            e.printStackTrace();
+
+            HeadlessFragSnackbar.requestPopSnackBar(
+                    getView(),
+                    getString(R.string.pref_import_no_picker),
+                    Snackbar.LENGTH_SHORT
+            );
+        }
+    }
+
+
     /**
      * Launch an internet weblink
      */
@@ -300,4 +456,174 @@ public class FragmentPreferences extends PreferenceFragmentCompat implements Pre
     }
 
     // endregion
+
+
+    // region ================== RXBUS OPERATIONS ==================
+    // ====== ================== ================ ==================
+
+
+    /**
+     * Clears out any existing RxDisposables
+     */
+    private void clearRxDisposables() {
+
+        if (mRxDisposables != null) {
+            for (Disposable rxDisp : mRxDisposables) {
+                if (!rxDisp.isDisposed()) {
+                    rxDisp.dispose();
+                }
+            }
+
+            mRxDisposables.clear();
+        }
+    }
+
+
+    /**
+     * Subscribe to the relevant Rx Observables for this fragment and place them in the RxSub list
+     */
+    private void initRxDisposables() {
+        mRxDisposables = new ArrayList<>();
+
+        // Copy in the picked file (reading from a content provider can take a while, so off the main thread)
+        mRxDisposables.add(
+                mRxImportFile
+                        .onBackpressureBuffer()
+                        .observeOn(Schedulers.computation())
+                        .map(
+                                new Function<RxImportFilePackage, RxImportResultPackage>() {
+                                    @Override
+                                    public RxImportResultPackage apply(RxImportFilePackage importPackage) {
+                                        // App Context is taken along with the file, so the import still goes
+                                        // through if the fragment is gone by the time it gets read in
+                                        return importFile(importPackage.appContext, importPackage);
+                                    }
+                                }
+                        )
+                        .observeOn(AndroidSchedulers.mainThread())
+                        .subscribe(
+                                new Consumer<RxImportResultPackage>() {
+                                    @Override
+                                    public void accept(RxImportResultPackage resultPackage) {
+
+                                        if (resultPackage.isImported && resultPackage.requestCode == REQUEST_IMPORT_YTDL_VERSION) {
+                                            // New version to pick from, and the option lists need loading again to take it in
+                                            setupYtdlVersionList();
+                                            HeadlessFragRawHelpLoader.requestYtdlOptionList();
+                                        }
+
+                                        if (!resultPackage.resultMessage.isEmpty()) {
+                                            HeadlessFragSnackbar.requestPopSnackBar(
+                                                    getView(),
+                                                    resultPackage.resultMessage,
+                                                    Snackbar.LENGTH_LONG
+                                            );
+                                        }
+                                    }
+                                }
+                        )
+        );
+    }
+
+
+    /**
+     * Read the picked file into the files dir according to what it was picked for (runs on a background thread)
+     */
+    private static RxImportResultPackage importFile(Context context, RxImportFilePackage importPackage) {
+
+        try {
+            InputStream inputStream = context.getContentResolver().openInputStream(importPackage.fileUri);
+
+            if (inputStream != null) {
+
+                if (importPackage.requestCode == REQUEST_IMPORT_EXTRACTOR_LIST) {
+                    // Catalogue gets swapped over as part of the import, nothing else to reload
+                    int extractorCount = UtilYtdlOptionRepository.importExtractorList(context, inputStream);
+
+                    return (extractorCount > 0)
+                            ? new RxImportResultPackage(importPackage.requestCode, true, context.getString(R.string.pref_ytdl_extractors_import_success, extractorCount))
+                            : new RxImportResultPackage(importPackage.requestCode, false, context.getString(R.string.pref_ytdl_extractors_import_invalid));
+                }
+
+                String versionId = UtilYtdlOptionRepository.importVersionHelpText(
+                        context,
+                        getDisplayName(context, importPackage.fileUri),
+                        inputStream
+                );
+
+                return (versionId != null)
+                        ? new RxImportResultPackage(importPackage.requestCode, true, context.getString(R.string.pref_ytdl_version_import_success, versionId))
+                        : new RxImportResultPackage(importPackage.requestCode, false, context.getString(R.string.pref_ytdl_version_import_invalid));
+            }
+
+        } catch (IOException | SecurityException e) {
+            e.printStackTrace();
+        }
+
+        return new RxImportResultPackage(importPackage.requestCode, false, context.getString(R.string.pref_import_failed));
+    }
+
+
+    /**
+     * Name of the picked file as shown in the picker (the Uri itself doesn't have to have it)
+     */
+    private static String getDisplayName(Context context, Uri fileUri) {
+
+        Cursor fileCursor = context.getContentResolver().query(
+                fileUri,
+                new String[] {OpenableColumns.DISPLAY_NAME},
+                null,
+                null,
+                null
+        );
+
+        if (fileCursor != null) {
+            try {
+                if (fileCursor.moveToFirst() && !fileCursor.isNull(0)) {
+                    return fileCursor.getString(0);
+                }
+
+            } finally {
+                fileCursor.close();
+            }
+        }
+
+        return fileUri.getLastPathSegment();
+    }
+
+
+    /**
+     * Package holding the file picked out to import, and what it was picked for
+     */
+    private static class RxImportFilePackage {
+
+        final Context appContext;
+        final int requestCode;
+        final Uri fileUri;
+
+        RxImportFilePackage(Context context, int code, Uri uri) {
+            appContext = context;
+            requestCode = code;
+            fileUri = uri;
+        }
+    }
+
+
+    /**
+     * Package holding how the import went, and the message to show for it
+     */
+    private static class RxImportResultPackage {
+
+        final int requestCode;
+        final boolean isImported;
+        final String resultMessage;
+
+        RxImportResultPackage(int code, boolean imported, String message) {
+            requestCode = code;
+            isImported = imported;
+            resultMessage = message;
+        }
+    }
+
+    // endregion
 }
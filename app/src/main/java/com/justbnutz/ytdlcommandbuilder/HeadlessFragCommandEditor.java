@@ -11,7 +11,13 @@ import android.support.v4.app.Fragment;
 import android.text.TextUtils;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import io.reactivex.Flowable;
 import io.reactivex.disposables.Disposable;
@@ -32,7 +38,8 @@ public class HeadlessFragCommandEditor extends Fragment{
     private List<Disposable> mRxDisposables;
 
     // Rx Channels for Async operations & cross-Fragment communications
-    private static final PublishProcessor<String[]> mRxInsertYtdlCommandOption = PublishProcessor.create();
+    private static final PublishProcessor<RxOptionInsertPackage> mRxInsertYtdlCommandOption = PublishProcessor.create();
+    private static final PublishProcessor<RxOptionCompletionPackage> mRxCompleteYtdlCommandOption = PublishProcessor.create();
     private static final PublishProcessor<RxCommandUpdatePackage> mRxYtdlCommandUpdateResponse = PublishProcessor.create();
 
 
@@ -67,14 +74,33 @@ public class HeadlessFragCommandEditor extends Fragment{
 
 
     /**
-     * Receive and process an incoming addition to the YTDL command
+     * Receive and process an incoming addition to the YTDL command (one or more options, all inserted together)
+     *
+     * @param commandTree Token list of the current command
+     * @param switchTrie Switches of the Option List, for telling option arguments apart from download targets (can be null)
      */
-    public static void requestInsertYtdlCommandOption(String currentCommand, String newOption) {
+    public static void requestInsertYtdlCommandOptions(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, List<String> newOptions) {
         mRxInsertYtdlCommandOption.onNext(
-                new String[] {
+                new RxOptionInsertPackage(
+                        commandTree,
+                        switchTrie,
+                        newOptions
+                )
+        );
+    }
+
+
+    /**
+     * Swap a half typed switch in the command (between the given positions) for the chosen completion
+     */
+    public static void requestCompleteYtdlCommandOption(String currentCommand, int switchStart, int switchEnd, String completion) {
+        mRxCompleteYtdlCommandOption.onNext(
+                new RxOptionCompletionPackage(
                         currentCommand,
-                        newOption
-                }
+                        switchStart,
+                        switchEnd,
+                        completion
+                )
         );
     }
 
@@ -146,12 +172,33 @@ public class HeadlessFragCommandEditor extends Fragment{
                         .onBackpressureBuffer()
                         .observeOn(Schedulers.computation())
                         .subscribe(
-                                new Consumer<String[]>() {
+                                new Consumer<RxOptionInsertPackage>() {
                                     @Override
-                                    public void accept(String[] ytdlCommandBits) {
-                                        insertYtdlCommandOption(
-                                                ytdlCommandBits[0],
-                                                ytdlCommandBits[1]
+                                    public void accept(RxOptionInsertPackage rxOptionInsertPackage) {
+                                        insertYtdlCommandOptions(
+                                                rxOptionInsertPackage.commandTree,
+                                                rxOptionInsertPackage.switchTrie,
+                                                rxOptionInsertPackage.newOptions
+                                        );
+                                    }
+                                }
+                        )
+        );
+
+        // Process incoming YTDL option completion
+        mRxDisposables.add(
+                mRxCompleteYtdlCommandOption
+                        .onBackpressureBuffer()
+                        .observeOn(Schedulers.computation())
+                        .subscribe(
+                                new Consumer<RxOptionCompletionPackage>() {
+                                    @Override
+                                    public void accept(RxOptionCompletionPackage rxOptionCompletionPackage) {
+                                        completeYtdlCommandOption(
+                                                rxOptionCompletionPackage.currentCommand,
+                                                rxOptionCompletionPackage.switchStart,
+                                                rxOptionCompletionPackage.switchEnd,
+                                                rxOptionCompletionPackage.completion
                                         );
                                     }
                                 }
@@ -160,6 +207,42 @@ public class HeadlessFragCommandEditor extends Fragment{
     }
 
 
+    /**
+     * Holder object for an option insert request
+     */
+    static class RxOptionInsertPackage {
+
+        final ModelYtdlCommandTree commandTree;
+        final ModelYtdlSwitchTrie switchTrie;
+        final List<String> newOptions;
+
+        RxOptionInsertPackage(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, List<String> newOptions) {
+            this.commandTree = commandTree;
+            this.switchTrie = switchTrie;
+            this.newOptions = newOptions;
+        }
+    }
+
+
+    /**
+     * Holder object for a switch completion request
+     */
+    static class RxOptionCompletionPackage {
+
+        final String currentCommand;
+        final int switchStart;
+        final int switchEnd;
+        final String completion;
+
+        RxOptionCompletionPackage(String currentCommand, int switchStart, int switchEnd, String completion) {
+            this.currentCommand = currentCommand;
+            this.switchStart = switchStart;
+            this.switchEnd = switchEnd;
+            this.completion = completion;
+        }
+    }
+
+
     /**
      * Holder object for Edit Command Updates
      */
@@ -169,17 +252,47 @@ public class HeadlessFragCommandEditor extends Fragment{
         final int selectionStart;
         final int selectionLength;
 
-        RxCommandUpdatePackage(String newCommand, int selectionStart, int selectionLength) {
+        // Where to leave the cursor if there's nothing to highlight (-1 to leave it wherever setText() puts it)
+        final int cursorPosition;
+
+        RxCommandUpdatePackage(String newCommand, int selectionStart, int selectionLength, int cursorPosition) {
             this.newCommand = newCommand;
             this.selectionStart = selectionStart;
             this.selectionLength = selectionLength;
+            this.cursorPosition = cursorPosition;
+        }
+
+
+        RxCommandUpdatePackage(String newCommand, int selectionStart, int selectionLength) {
+            this(newCommand, selectionStart, selectionLength, -1);
         }
 
 
         RxCommandUpdatePackage(String newCommand) {
-            this.newCommand = newCommand;
-            selectionStart = 0;
-            selectionLength = 0;
+            this(newCommand, 0, 0, -1);
+        }
+    }
+
+
+    /**
+     * One change to the command: replace [start, end) with the given text. Sorts with the edit furthest along the
+     * command first.
+     */
+    private static class CommandEdit implements Comparable<CommandEdit> {
+
+        final int start;
+        final int end;
+        final String text;
+
+        CommandEdit(int start, int end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+
+        @Override
+        public int compareTo(CommandEdit otherEdit) {
+            return (otherEdit.start < start) ? -1 : ((otherEdit.start == start) ? 0 : 1);
         }
     }
 
@@ -191,55 +304,338 @@ public class HeadlessFragCommandEditor extends Fragment{
 
 
     /**
-     * Take an incoming YTDL option and try and insert it into the command gracefully
+     * Take incoming YTDL option(s) and try and insert them into the command gracefully, i.e. in front of the download
+     * target (wherever it is in the command), or in front of anything the command is piped / redirected into.
+     *
+     * An option that's already in the command, or one it can't be used with, is swapped for the new option where it
+     * is instead of adding another one. Any further options it conflicts with are taken out.
      */
-    private void insertYtdlCommandOption(String currentCommand, String newOption) {
+    private void insertYtdlCommandOptions(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, List<String> newOptions) {
 
-        if (!TextUtils.isEmpty(newOption)) {
+        RxCommandUpdatePackage commandUpdate = buildOptionInsertion(
+                commandTree,
+                switchTrie,
+                newOptions,
+                getString(R.string.ytdl_command_init)
+        );
 
-            String baseCommand = getString(R.string.ytdl_command_init);
-            StringBuilder commandBuilder = new StringBuilder(currentCommand);
+        // Update the EditText in the main Fragment
+        if (commandUpdate != null) {
+            mRxYtdlCommandUpdateResponse.onNext(commandUpdate);
+        }
+    }
 
-            int selectionStart = 0;
-            int selectionLength = 0;
 
-            // Check if the option has argument parameters to be highlighted
-            int[] highlightBits = UtilStringValidationOps.checkParameterArgs(newOption);
-            if (highlightBits.length > 0) {
-                selectionStart = highlightBits[0];
-                selectionLength = highlightBits[1];
+    /**
+     * Work out the command with the new options in it (see insertYtdlCommandOptions()). A short switch clustered in
+     * with others ("-ciw") only has its own letter taken out of the cluster, the others stay where they are.
+     *
+     * @return The new command and what to highlight in it, or null if there's nothing to insert
+     */
+    static RxCommandUpdatePackage buildOptionInsertion(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, List<String> newOptions, String baseCommand) {
+
+        // Sort the new options out between themselves first: each option only goes in once, and out of any two
+        // that conflict the later pick wins
+        Map<String, String> batchOptions = new LinkedHashMap<>();
+
+        for (String newOption : newOptions) {
+
+            if (newOption == null || newOption.isEmpty()) {
+                continue;
+            }
+
+            String canonicalSwitch = getCanonicalSwitch(newOption, switchTrie);
+
+            for (String conflictingSwitch : getConflictingSwitches(canonicalSwitch, switchTrie)) {
+                batchOptions.remove(conflictingSwitch);
+            }
+
+            batchOptions.remove(canonicalSwitch);
+            batchOptions.put(canonicalSwitch, newOption);
+        }
+
+        if (batchOptions.isEmpty()) {
+            return null;
+        }
+
+        String currentCommand = commandTree.getCommand();
+        StringBuilder commandBuilder = new StringBuilder(currentCommand);
+
+        // Make sure the command starts properly
+        if (!currentCommand.startsWith(baseCommand)) {
+
+            // If the given command does not already start with the base command, and is not empty, and first character is not a space, then add a space
+            if (!currentCommand.isEmpty() && !currentCommand.startsWith(" ")) {
+                commandBuilder.insert(0, " ");
+            }
+
+            // Prefix the base command to the given current string
+            commandBuilder.insert(0, baseCommand);
+
+            // Only the new prefix needs lexing
+            commandTree = commandTree.applyEdit(
+                    commandBuilder.toString(),
+                    0,
+                    0,
+                    commandBuilder.length() - currentCommand.length()
+            );
+        }
+
+        // Every change goes into the one rewrite of the command (and one text change), so collect them up first
+        List<CommandEdit> commandEdits = new ArrayList<>();
+        BitSet editedTokens = new BitSet();
+
+        // Switches to take out of clustered tokens, by token index (the cluster gets rewritten once at the end)
+        Map<Integer, Set<String>> clusterRemovals = new LinkedHashMap<>();
+
+        // Options that aren't replacing anything go in as the one block
+        StringBuilder optionsBuilder = new StringBuilder();
+
+        // Only the first option with argument parameters gets them highlighted, wherever it ends up
+        CommandEdit selectionEdit = null;
+        boolean isBlockSelection = false;
+        int selectionOffset = 0;
+        int selectionLength = 0;
+
+        for (Map.Entry<String, String> batchOption : batchOptions.entrySet()) {
+
+            String newOption = batchOption.getValue();
+
+            // Check the command for the same option, or any it conflicts with (one hash lookup each)
+            int replaceToken = findUneditedOptionToken(commandTree, batchOption.getKey(), switchTrie, editedTokens);
+
+            // Can't swap the new option in for one letter of a cluster, so that letter comes out and it goes in the block
+            if (replaceToken >= 0 && isSharedCluster(commandTree, replaceToken, switchTrie)) {
+                addClusterRemoval(clusterRemovals, replaceToken, batchOption.getKey());
+                replaceToken = -1;
             }
 
-            // Make sure the command starts properly
-            if (!currentCommand.startsWith(baseCommand)) {
+            for (String conflictingSwitch : getConflictingSwitches(batchOption.getKey(), switchTrie)) {
+
+                int conflictingToken = findUneditedOptionToken(commandTree, conflictingSwitch, switchTrie, editedTokens);
+
+                if (conflictingToken < 0) {
+                    continue;
+                }
 
-                // If the given command does not already start with the base command, and is not empty, and first character is not a space, then add a space
-                if (!TextUtils.isEmpty(currentCommand) && !currentCommand.startsWith(" ")) {
-                    commandBuilder.insert(0, " ");
+                if (isSharedCluster(commandTree, conflictingToken, switchTrie)) {
+                    addClusterRemoval(clusterRemovals, conflictingToken, conflictingSwitch);
+                    continue;
                 }
 
-                // Prefix the base command to the given current string
-                commandBuilder.insert(0, baseCommand);
+                if (replaceToken < 0) {
+                    replaceToken = conflictingToken;
+
+                } else {
+                    editedTokens.set(conflictingToken);
+                    commandEdits.add(getOptionRemoval(commandTree, conflictingToken, switchTrie));
+                }
             }
 
-            // Check if there is a URL at the end of the command
-            int urlPosition = UtilStringValidationOps.checkUrlStringExists(commandBuilder.toString());
+            ModelYtdlOptionArgs optionArgs = UtilYtdlOptionRepository.getOptionArgs(newOption);
+            boolean isSelectionOption = (selectionLength == 0 && optionArgs.hasArgs());
 
-            // If no URL found, can just append the new option to the end of the String
-            if (urlPosition < 0) {
-                commandBuilder
-                        .append(" ")
-                        .append(newOption);
+            if (replaceToken >= 0) {
+                editedTokens.set(replaceToken);
 
-                selectionStart = commandBuilder.length() - selectionLength;
+                CommandEdit replaceEdit = new CommandEdit(
+                        commandTree.getTokenStart(replaceToken),
+                        commandTree.getOptionSpanEnd(replaceToken, switchTrie),
+                        newOption
+                );
+                commandEdits.add(replaceEdit);
+
+                if (isSelectionOption) {
+                    selectionEdit = replaceEdit;
+                    selectionOffset = optionArgs.getArgStart();
+                    selectionLength = optionArgs.getArgLength();
+                }
 
             } else {
-                // If URL found, need to insert before the position
-                commandBuilder
-                        .insert(urlPosition, " ")
-                        .insert(urlPosition, newOption);
+                if (optionsBuilder.length() > 0) {
+                    optionsBuilder.append(" ");
+                }
+
+                if (isSelectionOption) {
+                    isBlockSelection = true;
+                    selectionOffset = optionsBuilder.length() + optionArgs.getArgStart();
+                    selectionLength = optionArgs.getArgLength();
+                }
+
+                optionsBuilder.append(newOption);
+            }
+        }
+
+        // Whatever's left of each cluster, or the whole token if nothing is
+        for (Map.Entry<Integer, Set<String>> clusterRemoval : clusterRemovals.entrySet()) {
+
+            int clusterToken = clusterRemoval.getKey();
+            String clusterText = switchTrie.removeClusteredSwitches(
+                    commandTree.getTokenValue(clusterToken),
+                    clusterRemoval.getValue()
+            );
+
+            commandEdits.add(
+                    clusterText.isEmpty()
+                            ? getOptionRemoval(commandTree, clusterToken, switchTrie)
+                            : new CommandEdit(commandTree.getTokenStart(clusterToken), commandTree.getTokenEnd(clusterToken), clusterText)
+            );
+        }
+
+        if (optionsBuilder.length() > 0) {
+
+            // Check where the download target starts
+            int targetPosition = commandTree.findInsertPosition(switchTrie);
+
+            CommandEdit blockEdit = (targetPosition < 0)
+                    // If no target found, can just append the new options to the end of the String
+                    ? new CommandEdit(commandBuilder.length(), commandBuilder.length(), " " + optionsBuilder)
+                    // If target found, need to insert before the position
+                    : new CommandEdit(targetPosition, targetPosition, optionsBuilder + " ");
+            commandEdits.add(blockEdit);
+
+            if (isBlockSelection) {
+                selectionEdit = blockEdit;
+                selectionOffset += (targetPosition < 0) ? 1 : 0;
+            }
+        }
+
+        // Apply from the back of the command forwards so the earlier positions stay put, keeping track of how far
+        // the highlighted option gets shifted along by the edits in front of it
+        Collections.sort(commandEdits);
+
+        int selectionStart = 0;
+
+        for (CommandEdit commandEdit : commandEdits) {
+
+            commandBuilder.replace(commandEdit.start, commandEdit.end, commandEdit.text);
+
+            if (selectionEdit != null && commandEdit.start < selectionEdit.start) {
+                selectionStart += commandEdit.text.length() - (commandEdit.end - commandEdit.start);
+            }
+        }
+
+        if (selectionEdit != null) {
+            selectionStart += selectionEdit.start + selectionOffset;
+        }
+
+        return new RxCommandUpdatePackage(
+                commandBuilder.toString(),
+                selectionStart,
+                selectionLength
+        );
+    }
+
+
+    /**
+     * Option the given command switch belongs to, or just its switch if the trie doesn't know it
+     */
+    private static String getCanonicalSwitch(String cmdSwitch, ModelYtdlSwitchTrie switchTrie) {
+
+        String switchWord = ModelYtdlSwitchTrie.getSwitchWord(cmdSwitch);
+        String canonicalSwitch = (switchTrie != null)
+                ? switchTrie.getCanonicalSwitch(switchWord)
+                : null;
+
+        return (canonicalSwitch != null)
+                ? canonicalSwitch
+                : switchWord;
+    }
+
+
+    private static String[] getConflictingSwitches(String canonicalSwitch, ModelYtdlSwitchTrie switchTrie) {
 
-                selectionStart += urlPosition;
+        return (switchTrie != null)
+                ? switchTrie.getConflictingSwitches(canonicalSwitch)
+                : new String[0];
+    }
+
+
+    /**
+     * Whether the option at the given index is a cluster of more than the one short switch ("-ciw", "-cfbest")
+     */
+    private static boolean isSharedCluster(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        String switchWord = ModelYtdlSwitchTrie.getSwitchWord(commandTree.getTokenValue(tokenIndex));
+
+        return switchTrie != null
+                && switchTrie.getCanonicalSwitch(switchWord) == null
+                && switchTrie.getClusteredSwitches(switchWord).size() > 1;
+    }
+
+
+    private static void addClusterRemoval(Map<Integer, Set<String>> clusterRemovals, int tokenIndex, String canonicalSwitch) {
+
+        if (!clusterRemovals.containsKey(tokenIndex)) {
+            clusterRemovals.put(tokenIndex, new HashSet<String>());
+        }
+
+        clusterRemovals.get(tokenIndex).add(canonicalSwitch);
+    }
+
+
+    /**
+     * Token index of the given option in the command, as long as no other new option has already taken its place
+     */
+    private static int findUneditedOptionToken(ModelYtdlCommandTree commandTree, String canonicalSwitch, ModelYtdlSwitchTrie switchTrie, BitSet editedTokens) {
+
+        int tokenIndex = commandTree.findOptionToken(canonicalSwitch, switchTrie);
+
+        return (tokenIndex >= 0 && !editedTokens.get(tokenIndex))
+                ? tokenIndex
+                : -1;
+    }
+
+
+    /**
+     * Edit to take the given option (and its arguments) out of the command, along with the space after it
+     */
+    private static CommandEdit getOptionRemoval(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        String command = commandTree.getCommand();
+        int removalStart = commandTree.getTokenStart(tokenIndex);
+        int removalEnd = commandTree.getOptionSpanEnd(tokenIndex, switchTrie);
+
+        while (removalEnd < command.length() && command.charAt(removalEnd) == ' ') {
+            removalEnd++;
+        }
+
+        // Nothing after it, so take the space in front instead
+        if (removalEnd == command.length()) {
+            while (removalStart > 0 && command.charAt(removalStart - 1) == ' ') {
+                removalStart--;
+            }
+        }
+
+        return new CommandEdit(removalStart, removalEnd, "");
+    }
+
+
+    /**
+     * Replace a half typed switch with its completion, highlighting the argument parameters the same way as an
+     * inserted option. Without any arguments the cursor is left after the switch, ready for the next one.
+     */
+    private void completeYtdlCommandOption(String currentCommand, int switchStart, int switchEnd, String completion) {
+
+        // Command could have changed since the completion was offered, so make sure the range still fits
+        if (!TextUtils.isEmpty(completion) && switchStart >= 0 && switchStart <= switchEnd && switchEnd <= currentCommand.length()) {
+
+            StringBuilder commandBuilder = new StringBuilder(currentCommand)
+                    .replace(switchStart, switchEnd, completion);
+
+            int completionEnd = switchStart + completion.length();
+            int selectionStart = 0;
+            int selectionLength = 0;
+
+            // Check if the option has argument parameters to be highlighted
+            ModelYtdlOptionArgs optionArgs = UtilYtdlOptionRepository.getOptionArgs(completion);
+            if (optionArgs.hasArgs()) {
+                selectionStart = switchStart + optionArgs.getArgStart();
+                selectionLength = optionArgs.getArgLength();
+
+            } else if (completionEnd == commandBuilder.length() || commandBuilder.charAt(completionEnd) != ' ') {
+                // Space it off from whatever comes next
+                commandBuilder.insert(completionEnd, " ");
             }
 
             // Update the EditText in the main Fragment
@@ -247,7 +643,8 @@ public class HeadlessFragCommandEditor extends Fragment{
                     new RxCommandUpdatePackage(
                             commandBuilder.toString(),
                             selectionStart,
-                            selectionLength
+                            selectionLength,
+                            completionEnd + 1
                     )
             );
         }
@@ -8,21 +8,16 @@
 package com.justbnutz.ytdlcommandbuilder;
 
 import android.support.v4.app.Fragment;
+import android.util.Log;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
 
 import io.reactivex.Flowable;
-import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.functions.Consumer;
-import io.reactivex.functions.Function;
 import io.reactivex.processors.PublishProcessor;
 import io.reactivex.schedulers.Schedulers;
 
@@ -40,7 +35,7 @@ public class HeadlessFragRawHelpLoader extends Fragment {
 
     // Rx Channels for Async operations & cross-Fragment communications
     private static final PublishProcessor<Boolean> mRxYtdlOptionListRequest = PublishProcessor.create();
-    private static final PublishProcessor<List<ModelYtdlOptionSection>> mRxYtdlOptionListResponse = PublishProcessor.create();
+    private static final PublishProcessor<RxOptionSectionPackage> mRxYtdlOptionSectionResponse = PublishProcessor.create();
 
 
     public HeadlessFragRawHelpLoader() {
@@ -63,7 +58,7 @@ public class HeadlessFragRawHelpLoader extends Fragment {
 
     /**
      * Trigger an option list load flow.
-     * Results can be retrieved by subscribing to rxYtdlOptionList()
+     * Results can be retrieved by subscribing to rxYtdlOptionSections()
      */
     public static void requestYtdlOptionList() {
         mRxYtdlOptionListRequest.onNext(true);
@@ -71,10 +66,11 @@ public class HeadlessFragRawHelpLoader extends Fragment {
 
 
     /**
-     * Rx Observable (Flowable) to emit the latest parsed YTDL Options
+     * Rx Observable (Flowable) to stream out each YTDL Option Section as soon as it has been loaded,
+     * followed by a completion package once the whole list is done. (Emits on a background thread)
      */
-    public static Flowable<List<ModelYtdlOptionSection>> rxYtdlOptionList() {
-        return mRxYtdlOptionListResponse;
+    public static Flowable<RxOptionSectionPackage> rxYtdlOptionSections() {
+        return mRxYtdlOptionSectionResponse;
     }
 
     // endregion
@@ -137,171 +133,96 @@ public class HeadlessFragRawHelpLoader extends Fragment {
                         .onBackpressureDrop()
                         // Run ops on computation thread
                         .observeOn(Schedulers.computation())
-                        .map(
-                                new Function<Boolean, List<ModelYtdlOptionSection>>() {
-                                    @Override
-                                    public List<ModelYtdlOptionSection> apply(Boolean aVoid) {
-                                        return loadYtdlOptionFile();
-                                    }
-                                }
-                        )
-                        // Switch to main thread to update UI
-                        .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(
-                                new Consumer<List<ModelYtdlOptionSection>>() {
+                                new Consumer<Boolean>() {
                                     @Override
-                                    public void accept(List<ModelYtdlOptionSection> ytdlBaseItems) {
-                                        mRxYtdlOptionListResponse.onNext(ytdlBaseItems);
+                                    public void accept(Boolean aVoid) {
+                                        // Only parses on the first request, after that the cached list gets replayed
+                                        List<ModelYtdlOptionSection> ytdlOptionsList = (getContext() != null)
+                                                ? UtilYtdlOptionRepository.getOptionList(getContext(), mSectionStreamListener)
+                                                : Collections.<ModelYtdlOptionSection>emptyList();
+
+                                        // Keep an eye on what the load costs, and that it only ever happens the once
+                                        if (BuildConfig.DEBUG) {
+                                            Log.d(
+                                                    TAG,
+                                                    String.format(
+                                                            Locale.US,
+                                                            "Option List request: loaded %d time(s) in %dms, %d cache hit(s)",
+                                                            UtilYtdlOptionRepository.getLoadCount(),
+                                                            UtilYtdlOptionRepository.getLoadTimeMillis(),
+                                                            UtilYtdlOptionRepository.getCacheHitCount()
+                                                    )
+                                            );
+                                        }
+
+                                        // Let the section stream know everything has been sent (along with the list's lookup structures)
+                                        mRxYtdlOptionSectionResponse.onNext(
+                                                new RxOptionSectionPackage(
+                                                        null,
+                                                        ytdlOptionsList.size(),
+                                                        (getContext() != null)
+                                                                ? UtilYtdlOptionRepository.getSearchIndex(getContext())
+                                                                : null,
+                                                        (getContext() != null)
+                                                                ? UtilYtdlOptionRepository.getSwitchTrie(getContext())
+                                                                : null
+                                                )
+                                        );
                                     }
                                 }
                         )
         );
     }
 
-    // endregion
-
-
-    // region ================== OPTION FILE READER ==================
-    // ====== ================== ================== ==================
-
 
     /**
-     * Parses out the YTDL options from the raw output generated by the "youtube-dl --help" command.
-     * (The output is stored as a plain text file in the res/raw/ytdl_options.txt file)
+     * Holder object for streamed Option Sections
      */
-    private List<ModelYtdlOptionSection>  loadYtdlOptionFile() {
+    static class RxOptionSectionPackage {
 
-        // Init the Option List object
-        List<ModelYtdlOptionSection> ytdlOptionsList = new ArrayList<>();
+        // Null on the completion package
+        final ModelYtdlOptionSection optionSection;
 
-        if (getContext() != null) {
+        // Position of the Section in the list (or the total Section count on the completion package)
+        final int sectionIndex;
 
-            // Open the InputStream to the raw text file
-            InputStream inputStream = getContext().getResources().openRawResource(R.raw.ytdl_options);
+        // Only set on the completion package
+        final ModelYtdlOptionSearchIndex searchIndex;
+        final ModelYtdlSwitchTrie switchTrie;
 
-            // Set up the Reader object to read the stream
-            BufferedReader bufferedReader = new BufferedReader(
-                    new InputStreamReader(inputStream)
-            );
+        RxOptionSectionPackage(ModelYtdlOptionSection optionSection, int sectionIndex) {
+            this(optionSection, sectionIndex, null, null);
+        }
 
-            // If all whitespace only up to third character; then it's a header
-            Pattern patternSectionHeader = Pattern.compile(
-                    "^\\s{2}(\\w.+)$"
-            );
-            // If all whitespace only up to fifth character; then it's the next option
-            Pattern patternOptionFlag = Pattern.compile(
-                    "^\\s{4}(-.{32})(\\w.+)$"
-            );
-            // Extract the actual command switch out of the potential list of possible options
-            Pattern patternCmdSwitch = Pattern.compile(
-                    "^.*?,? ?(-[-\\w :]+)$"
-            );
-            // If all whitespace only up to thirty-eighth character; then it's a continuation of the description
-            Pattern patternOptionDescCont = Pattern.compile(
-                    "^\\s{37}(\\w.+)$"
-            );
+        RxOptionSectionPackage(ModelYtdlOptionSection optionSection, int sectionIndex, ModelYtdlOptionSearchIndex searchIndex, ModelYtdlSwitchTrie switchTrie) {
+            this.optionSection = optionSection;
+            this.sectionIndex = sectionIndex;
+            this.searchIndex = searchIndex;
+            this.switchTrie = switchTrie;
+        }
 
-            // Header Id is used so we know which heading each option should appear under
-            int itemId = 0;
-            int headerId = -1;
-
-            // Keep a reference to the current Option Item object, as the Description field might need to be added to
-            ModelYtdlOptionItem currentOptionItem = null;
-
-            String currentLine;
-            String currentFlagLabel;
-            String currentCmdSwitch = "";
-
-            // Initialise the Regex tools
-            Matcher matchOptionFlag;
-            Matcher matchCmdSwitch;
-            Matcher matchOptionDescCont;
-            Matcher matchSectionHeader;
-
-            try {
-
-                // Read the next line into the buffer, and if its not EOF; parse out its line-type and process accordingly.
-                while ((currentLine = bufferedReader.readLine()) != null) {
-
-                    // Running the most-likely Regex first, to try and reduce time taken to process
-                    matchOptionFlag = patternOptionFlag.matcher(currentLine);
-
-                    // Check if next Option Item
-                    if (matchOptionFlag.find() && matchOptionFlag.groupCount() > 1) {
-
-                        // If there was a previous Option Item in holding, add it to the list first
-                        if (currentOptionItem != null && ytdlOptionsList.size() > currentOptionItem.getSectionId()) {
-                            ytdlOptionsList
-                                    .get(currentOptionItem.getSectionId())
-                                    .getYtdlOptionItems()
-                                    .add(currentOptionItem);
-                        }
-
-                        currentFlagLabel = matchOptionFlag.group(1).trim();
-
-                        // Extract the actual command switch out
-                        matchCmdSwitch = patternCmdSwitch.matcher(currentFlagLabel);
-                        if (matchCmdSwitch.find() && matchCmdSwitch.groupCount() > 0) {
-                            currentCmdSwitch = matchCmdSwitch.group(1);
-                        }
-
-                        // Create a new Option Item based on the latest line
-                        currentOptionItem = new ModelYtdlOptionItem(
-                                itemId++,
-                                headerId,
-                                currentCmdSwitch,
-                                currentFlagLabel,
-                                matchOptionFlag.group(2).trim()
-                        );
-
-                    } else {
-                        // If not a Flag line, check if it's a Continued Description line
-                        matchOptionDescCont = patternOptionDescCont.matcher(currentLine);
-
-                        if (matchOptionDescCont.find() && matchOptionDescCont.groupCount() > 0 && currentOptionItem != null) {
-                            // If it's a continued description, append to the existing item object
-                            currentOptionItem.appendDescription(
-                                    matchOptionDescCont.group(1).trim()
-                            );
-
-                        } else {
-                            // If not Flag or Description, check if it's a header
-                            matchSectionHeader = patternSectionHeader.matcher(currentLine);
-
-                            if (matchSectionHeader.find() && matchSectionHeader.groupCount() > 0) {
-                                // Increment the HeaderID
-                                headerId += 1;
-
-                                // Add it to the list
-                                ytdlOptionsList.add(
-                                        new ModelYtdlOptionSection(
-                                                itemId++,
-                                                headerId,
-                                                matchSectionHeader.group(1).trim()
-                                        )
-                                );
-                            }
-                        }
-                    }
-                }
 
-                // The while loop will have exited before the last created Option Item was added to the list, so need to add it in
-                if (currentOptionItem != null && ytdlOptionsList.size() > currentOptionItem.getSectionId()) {
-                    ytdlOptionsList
-                            .get(currentOptionItem.getSectionId())
-                            .getYtdlOptionItems()
-                            .add(currentOptionItem);
-                }
+        boolean isLoadComplete() {
+            return optionSection == null;
+        }
+    }
 
-                bufferedReader.close();
 
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+    /**
+     * Sends each completed Section straight out to the section stream
+     */
+    private final UtilYtdlHelpParser.SectionListener mSectionStreamListener = new UtilYtdlHelpParser.SectionListener() {
+        @Override
+        public void onSectionComplete(ModelYtdlOptionSection optionSection) {
+            mRxYtdlOptionSectionResponse.onNext(
+                    new RxOptionSectionPackage(
+                            optionSection,
+                            optionSection.getSectionId()
+                    )
+            );
         }
-
-        return ytdlOptionsList;
-    }
+    };
 
     // endregion
 
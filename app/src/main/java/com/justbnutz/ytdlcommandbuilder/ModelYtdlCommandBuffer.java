@@ -0,0 +1,536 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Piece table holding the command alongside the command box, with an undo / redo history of every edit made to it.
+ *
+ * All the text that's ever been in the command goes into the one append-only store, and the command is a list of
+ * pieces (start, length) of that store. An edit only appends the new text and swaps out the pieces it touched, and
+ * the history keeps those pieces (not copies of the text), so it costs about the same per edit however long the
+ * command is. Undo / redo just swap the pieces back.
+ *
+ * Typed edits that run on from each other are joined into the one undo step, up to the next space.
+ * Not thread safe, only ever used from the main thread.
+ */
+final class ModelYtdlCommandBuffer {
+
+    // Edit flags
+    private static final int EDIT_TYPED = 1;
+    private static final int EDIT_JOINED = 2;
+
+    // Layout of the saved state: header, then the pieces, then each edit
+    private static final int SAVED_STATE_VERSION = 1;
+    private static final int SAVED_EDIT_HEADER = 6;
+
+    private final StringBuilder mTextStore;
+
+    // Pieces as (start, length) pairs in the store, in command order
+    private int[] mPieces;
+    private int mPieceCount;
+    private int mTextLength;
+
+    // Edits up to mUndoCount can be undone, the rest after it can be redone
+    private final List<CommandEdit> mEditHistory = new ArrayList<>();
+    private int mUndoCount;
+
+
+    ModelYtdlCommandBuffer() {
+        mTextStore = new StringBuilder();
+        mPieces = new int[16];
+    }
+
+
+    // region ================== EDITING ==================
+    // ====== ================== ======= ==================
+
+
+    int length() {
+        return mTextLength;
+    }
+
+
+    String getText() {
+
+        StringBuilder textBuilder = new StringBuilder(mTextLength);
+
+        for (int pieceIndex = 0; pieceIndex < mPieceCount; pieceIndex++) {
+            textBuilder.append(mTextStore, mPieces[2 * pieceIndex], mPieces[2 * pieceIndex] + mPieces[2 * pieceIndex + 1]);
+        }
+
+        return textBuilder.toString();
+    }
+
+
+    boolean contentEquals(CharSequence text) {
+
+        if (text.length() != mTextLength) {
+            return false;
+        }
+
+        int textPosition = 0;
+
+        for (int pieceIndex = 0; pieceIndex < mPieceCount; pieceIndex++) {
+
+            int pieceStart = mPieces[2 * pieceIndex];
+            int pieceEnd = pieceStart + mPieces[2 * pieceIndex + 1];
+
+            for (int storePosition = pieceStart; storePosition < pieceEnd; storePosition++) {
+                if (mTextStore.charAt(storePosition) != text.charAt(textPosition++)) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Start again from the given text, without any history
+     */
+    void reset(CharSequence text) {
+
+        mTextStore.setLength(0);
+        mTextStore.append(text);
+
+        mPieceCount = 0;
+        if (text.length() > 0) {
+            mPieces[0] = 0;
+            mPieces[1] = text.length();
+            mPieceCount = 1;
+        }
+
+        mTextLength = text.length();
+        mEditHistory.clear();
+        mUndoCount = 0;
+    }
+
+
+    /**
+     * Replace [position, position + removedLength) with the given text, and add it to the history (anything that
+     * could be redone is dropped)
+     *
+     * @param isTyped Typed in directly, so it can be joined up with the typing before it into one undo step
+     */
+    void replace(int position, int removedLength, CharSequence insertedText, boolean isTyped) {
+
+        if (removedLength == 0 && insertedText.length() == 0) {
+            return;
+        }
+
+        int removedEnd = position + removedLength;
+
+        // Find the run of pieces the edit lands in
+        int firstPiece = 0;
+        int firstOffset = 0;
+        while (firstPiece < mPieceCount && firstOffset + mPieces[2 * firstPiece + 1] <= position) {
+            firstOffset += mPieces[2 * firstPiece + 1];
+            firstPiece++;
+        }
+
+        int endPiece = firstPiece;
+        int endOffset = firstOffset;
+        if (removedLength > 0 || firstOffset < position) {
+            while (endPiece < mPieceCount && endOffset < removedEnd) {
+                endOffset += mPieces[2 * endPiece + 1];
+                endPiece++;
+            }
+        }
+
+        int[] newPieces = new int[6];
+        int newPieceCount = 0;
+
+        // What's left of the first piece in front of the edit
+        if (firstOffset < position) {
+            newPieces[0] = mPieces[2 * firstPiece];
+            newPieces[1] = position - firstOffset;
+            newPieceCount++;
+        }
+
+        if (insertedText.length() > 0) {
+            int insertedStart = mTextStore.length();
+            mTextStore.append(insertedText);
+
+            // Typing onto the end of the last thing added just makes that piece longer
+            if (newPieceCount == 0 && firstPiece > 0 && pieceEndsAt(firstPiece - 1, insertedStart)) {
+                firstPiece--;
+                newPieces[0] = mPieces[2 * firstPiece];
+                newPieces[1] = mPieces[2 * firstPiece + 1] + insertedText.length();
+                newPieceCount++;
+
+            } else if (newPieceCount == 1 && newPieces[0] + newPieces[1] == insertedStart) {
+                newPieces[1] += insertedText.length();
+
+            } else {
+                newPieces[2 * newPieceCount] = insertedStart;
+                newPieces[2 * newPieceCount + 1] = insertedText.length();
+                newPieceCount++;
+            }
+        }
+
+        // What's left of the last piece after the edit
+        if (endOffset > removedEnd) {
+            int lastPieceLength = mPieces[2 * (endPiece - 1) + 1];
+            newPieces[2 * newPieceCount] = mPieces[2 * (endPiece - 1)] + lastPieceLength - (endOffset - removedEnd);
+            newPieces[2 * newPieceCount + 1] = endOffset - removedEnd;
+            newPieceCount++;
+        }
+
+        CommandEdit commandEdit = new CommandEdit(
+                position,
+                removedLength,
+                insertedText.length(),
+                firstPiece,
+                Arrays.copyOfRange(mPieces, 2 * firstPiece, 2 * endPiece),
+                Arrays.copyOf(newPieces, 2 * newPieceCount),
+                getEditFlags(position, removedLength, insertedText, isTyped)
+        );
+
+        // Anything that could have been redone is gone now
+        while (mEditHistory.size() > mUndoCount) {
+            mEditHistory.remove(mEditHistory.size() - 1);
+        }
+
+        mEditHistory.add(commandEdit);
+        mUndoCount++;
+
+        swapPieces(commandEdit.pieceIndex, commandEdit.removedPieces, commandEdit.insertedPieces);
+        mTextLength += commandEdit.insertedLength - commandEdit.removedLength;
+    }
+
+
+    private boolean pieceEndsAt(int pieceIndex, int storePosition) {
+        return mPieces[2 * pieceIndex] + mPieces[2 * pieceIndex + 1] == storePosition;
+    }
+
+
+    /**
+     * Typing joins onto the edit before it if it carries on from where that one left off (more typing, backspacing
+     * over it, or the keyboard redoing the word being composed), until a space is typed
+     */
+    private int getEditFlags(int position, int removedLength, CharSequence insertedText, boolean isTyped) {
+
+        if (!isTyped) {
+            return 0;
+        }
+
+        if (mUndoCount > 0) {
+            CommandEdit lastEdit = mEditHistory.get(mUndoCount - 1);
+
+            if ((lastEdit.flags & EDIT_TYPED) != 0
+                    && position + removedLength == lastEdit.position + lastEdit.insertedLength
+                    && !hasWhitespace(insertedText)) {
+                return EDIT_TYPED | EDIT_JOINED;
+            }
+        }
+
+        return EDIT_TYPED;
+    }
+
+
+    private static boolean hasWhitespace(CharSequence text) {
+
+        for (int charIndex = 0; charIndex < text.length(); charIndex++) {
+            if (Character.isWhitespace(text.charAt(charIndex))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Swap the given number of pieces at the index for the new ones
+     */
+    private void swapPieces(int pieceIndex, int[] oldPieces, int[] newPieces) {
+
+        int pieceShift = (newPieces.length - oldPieces.length) / 2;
+
+        if (mPieceCount + pieceShift > mPieces.length / 2) {
+            mPieces = Arrays.copyOf(mPieces, Math.max(mPieces.length * 2, 2 * (mPieceCount + pieceShift)));
+        }
+
+        System.arraycopy(
+                mPieces,
+                pieceIndex * 2 + oldPieces.length,
+                mPieces,
+                pieceIndex * 2 + newPieces.length,
+                mPieceCount * 2 - (pieceIndex * 2 + oldPieces.length)
+        );
+        System.arraycopy(newPieces, 0, mPieces, pieceIndex * 2, newPieces.length);
+
+        mPieceCount += pieceShift;
+    }
+
+    // endregion
+
+
+    // region ================== HISTORY ==================
+    // ====== ================== ======= ==================
+
+
+    boolean canUndo() {
+        return mUndoCount > 0;
+    }
+
+
+    boolean canRedo() {
+        return mUndoCount < mEditHistory.size();
+    }
+
+
+    /**
+     * Take back the last edit (or run of typing)
+     *
+     * @return Where the cursor should go afterwards, or -1 if there was nothing to undo
+     */
+    int undo() {
+
+        int cursorPosition = -1;
+
+        while (mUndoCount > 0) {
+            CommandEdit commandEdit = mEditHistory.get(--mUndoCount);
+
+            swapPieces(commandEdit.pieceIndex, commandEdit.insertedPieces, commandEdit.removedPieces);
+            mTextLength += commandEdit.removedLength - commandEdit.insertedLength;
+
+            cursorPosition = commandEdit.position + commandEdit.removedLength;
+
+            if ((commandEdit.flags & EDIT_JOINED) == 0) {
+                break;
+            }
+        }
+
+        return cursorPosition;
+    }
+
+
+    /**
+     * Put back the last undone edit (or run of typing)
+     *
+     * @return Where the cursor should go afterwards, or -1 if there was nothing to redo
+     */
+    int redo() {
+
+        int cursorPosition = -1;
+
+        while (mUndoCount < mEditHistory.size()) {
+            CommandEdit commandEdit = mEditHistory.get(mUndoCount++);
+
+            swapPieces(commandEdit.pieceIndex, commandEdit.removedPieces, commandEdit.insertedPieces);
+            mTextLength += commandEdit.insertedLength - commandEdit.removedLength;
+
+            cursorPosition = commandEdit.position + commandEdit.insertedLength;
+
+            if (mUndoCount == mEditHistory.size()
+                    || (mEditHistory.get(mUndoCount).flags & EDIT_JOINED) == 0) {
+                break;
+            }
+        }
+
+        return cursorPosition;
+    }
+
+    // endregion
+
+
+    // region ================== SAVED STATE ==================
+    // ====== ================== =========== ==================
+
+
+    /**
+     * Text side of the saved state: the whole store, as the pieces (current and in the history) all point into it
+     */
+    String getSavedText() {
+        return mTextStore.toString();
+    }
+
+
+    /**
+     * Everything else, packed into ints: version, piece count, undo count, edit count, the current pieces, then
+     * each edit's header (position, removed length, inserted length, piece index, flags, removed piece count)
+     * followed by its removed and inserted pieces
+     */
+    int[] getSavedState() {
+
+        int stateLength = 4 + 2 * mPieceCount;
+        for (CommandEdit commandEdit : mEditHistory) {
+            stateLength += SAVED_EDIT_HEADER + commandEdit.removedPieces.length + 1 + commandEdit.insertedPieces.length;
+        }
+
+        int[] savedState = new int[stateLength];
+        savedState[0] = SAVED_STATE_VERSION;
+        savedState[1] = mPieceCount;
+        savedState[2] = mUndoCount;
+        savedState[3] = mEditHistory.size();
+        System.arraycopy(mPieces, 0, savedState, 4, 2 * mPieceCount);
+
+        int statePosition = 4 + 2 * mPieceCount;
+        for (CommandEdit commandEdit : mEditHistory) {
+            savedState[statePosition++] = commandEdit.position;
+            savedState[statePosition++] = commandEdit.removedLength;
+            savedState[statePosition++] = commandEdit.insertedLength;
+            savedState[statePosition++] = commandEdit.pieceIndex;
+            savedState[statePosition++] = commandEdit.flags;
+            savedState[statePosition++] = commandEdit.removedPieces.length / 2;
+            System.arraycopy(commandEdit.removedPieces, 0, savedState, statePosition, commandEdit.removedPieces.length);
+            statePosition += commandEdit.removedPieces.length;
+
+            savedState[statePosition++] = commandEdit.insertedPieces.length / 2;
+            System.arraycopy(commandEdit.insertedPieces, 0, savedState, statePosition, commandEdit.insertedPieces.length);
+            statePosition += commandEdit.insertedPieces.length;
+        }
+
+        return savedState;
+    }
+
+
+    /**
+     * Rebuild a buffer from its saved state
+     *
+     * @return Null if the state is missing or doesn't add up
+     */
+    static ModelYtdlCommandBuffer fromSavedState(String savedText, int[] savedState) {
+
+        if (savedText == null || savedState == null || savedState.length < 4 || savedState[0] != SAVED_STATE_VERSION) {
+            return null;
+        }
+
+        try {
+            ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+            commandBuffer.mTextStore.append(savedText);
+
+            int pieceCount = savedState[1];
+            if (!hasSavedPieces(savedState, 4, pieceCount)) {
+                return null;
+            }
+
+            commandBuffer.mPieces = Arrays.copyOfRange(savedState, 4, 4 + 2 * Math.max(pieceCount, 8));
+            commandBuffer.mPieceCount = pieceCount;
+
+            int statePosition = 4 + 2 * pieceCount;
+            for (int editIndex = 0; editIndex < savedState[3]; editIndex++) {
+
+                int editHeader = statePosition;
+                statePosition += SAVED_EDIT_HEADER;
+
+                if (statePosition > savedState.length || !hasSavedPieces(savedState, statePosition, savedState[editHeader + 5])) {
+                    return null;
+                }
+
+                int[] removedPieces = Arrays.copyOfRange(savedState, statePosition, statePosition + 2 * savedState[editHeader + 5]);
+                statePosition += removedPieces.length;
+
+                int insertedPieceCount = savedState[statePosition++];
+                if (!hasSavedPieces(savedState, statePosition, insertedPieceCount)) {
+                    return null;
+                }
+
+                int[] insertedPieces = Arrays.copyOfRange(savedState, statePosition, statePosition + 2 * insertedPieceCount);
+                statePosition += insertedPieces.length;
+
+                commandBuffer.mEditHistory.add(
+                        new CommandEdit(
+                                savedState[editHeader],
+                                savedState[editHeader + 1],
+                                savedState[editHeader + 2],
+                                savedState[editHeader + 3],
+                                removedPieces,
+                                insertedPieces,
+                                savedState[editHeader + 4]
+                        )
+                );
+            }
+
+            commandBuffer.mUndoCount = savedState[2];
+
+            // Make sure the pieces (the history's included, for when they get swapped back in) all fit in the store
+            // before trusting any of it
+            if (!hasValidPieces(commandBuffer.mPieces, pieceCount, savedText.length())) {
+                return null;
+            }
+
+            for (CommandEdit commandEdit : commandBuffer.mEditHistory) {
+                if (commandEdit.pieceIndex < 0
+                        || commandEdit.removedLength < 0
+                        || commandEdit.insertedLength < 0
+                        || !hasValidPieces(commandEdit.removedPieces, commandEdit.removedPieces.length / 2, savedText.length())
+                        || !hasValidPieces(commandEdit.insertedPieces, commandEdit.insertedPieces.length / 2, savedText.length())) {
+                    return null;
+                }
+            }
+
+            for (int pieceIndex = 0; pieceIndex < pieceCount; pieceIndex++) {
+                commandBuffer.mTextLength += commandBuffer.mPieces[2 * pieceIndex + 1];
+            }
+
+            boolean isValidState = statePosition == savedState.length
+                    && commandBuffer.mUndoCount >= 0
+                    && commandBuffer.mUndoCount <= commandBuffer.mEditHistory.size();
+
+            return isValidState
+                    ? commandBuffer
+                    : null;
+
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+
+    /**
+     * Whether there's room in the saved state for the given number of pieces from the position, checked before
+     * copying them out so a corrupt count can't ask for a huge array
+     */
+    private static boolean hasSavedPieces(int[] savedState, int statePosition, int pieceCount) {
+        return pieceCount >= 0 && pieceCount <= (savedState.length - statePosition) / 2;
+    }
+
+
+    private static boolean hasValidPieces(int[] pieces, int pieceCount, int storeLength) {
+
+        for (int pieceIndex = 0; pieceIndex < pieceCount; pieceIndex++) {
+            int pieceStart = pieces[2 * pieceIndex];
+            int pieceLength = pieces[2 * pieceIndex + 1];
+
+            // (Length checked against what's left, so a corrupt one can't overflow)
+            if (pieceStart < 0 || pieceLength <= 0 || pieceLength > storeLength - pieceStart) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    // endregion
+
+
+    /**
+     * One edit: where it was, and the pieces it swapped out (and in) starting at the given piece index
+     */
+    private static final class CommandEdit {
+
+        final int position;
+        final int removedLength;
+        final int insertedLength;
+        final int pieceIndex;
+        final int[] removedPieces;
+        final int[] insertedPieces;
+        final int flags;
+
+        CommandEdit(int position, int removedLength, int insertedLength, int pieceIndex, int[] removedPieces, int[] insertedPieces, int flags) {
+            this.position = position;
+            this.removedLength = removedLength;
+            this.insertedLength = insertedLength;
+            this.pieceIndex = pieceIndex;
+            this.removedPieces = removedPieces;
+            this.insertedPieces = insertedPieces;
+            this.flags = flags;
+        }
+    }
+
+}
@@ -0,0 +1,419 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Problems found in the (first) command of a token list, checked against the switch trie of the loaded Option List:
+ * switches it doesn't know, options missing their arguments (or given one they don't take), argument values that
+ * don't fit the option's metavar, and a command with options but nothing to download.
+ *
+ * Each option is checked together with its arguments as one group. The results for every group are kept by the
+ * group's text, so the next pass over an edited command only checks the groups that have actually changed and
+ * moves the rest along to their new positions. Immutable, so it can be handed between threads as is.
+ */
+final class ModelYtdlCommandLint {
+
+    // Kinds of problem
+    static final int LINT_UNKNOWN_SWITCH = 0;
+    static final int LINT_MISSING_ARG = 1;
+    static final int LINT_INVALID_ARG = 2;
+    static final int LINT_EXTRA_ARG = 3;
+    static final int LINT_MISSING_URL = 4;
+
+    // Switches that do something without a download target
+    private static final String[] NO_TARGET_SWITCHES = {
+            "--help",
+            "--version",
+            "--update",
+            "--list-extractors",
+            "--extractor-descriptions",
+            "--ap-list-mso",
+            "--dump-user-agent",
+            "--rm-cache-dir",
+            "--batch-file"
+    };
+
+    private static final String END_OF_OPTIONS = "--";
+
+    static final ModelYtdlCommandLint EMPTY = new ModelYtdlCommandLint(
+            ModelYtdlCommandTree.EMPTY,
+            null,
+            new LintBuilder(),
+            new HashMap<String, int[]>(),
+            0
+    );
+
+    private final ModelYtdlCommandTree mCommandTree;
+    private final ModelYtdlSwitchTrie mSwitchTrie;
+
+    // Problem ranges are [start, end) in the command
+    private final int mLintCount;
+    private final int[] mLintStarts;
+    private final int[] mLintEnds;
+    private final int[] mLintKinds;
+
+    // Problems in each option group by the group's text, as (start, end, kind) offsets from the start of the group
+    private final Map<String, int[]> mGroupLints;
+    private final int mCheckedGroupCount;
+
+
+    /**
+     * Check the given command, reusing whatever the last check found for any option groups that haven't changed
+     *
+     * @param lastLint Last check of the same command box (EMPTY if there wasn't one)
+     */
+    static ModelYtdlCommandLint lint(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, ModelYtdlCommandLint lastLint) {
+
+        LintBuilder lintBuilder = new LintBuilder();
+        Map<String, int[]> groupLints = new HashMap<>();
+        int checkedGroupCount = 0;
+
+        // Nothing to go on until the Option List is in
+        if (switchTrie == null
+                || commandTree.getTokenCount() == 0
+                || commandTree.getTokenKind(0) != ModelYtdlCommandTree.TOKEN_PROGRAM) {
+            return new ModelYtdlCommandLint(commandTree, switchTrie, lintBuilder, groupLints, checkedGroupCount);
+        }
+
+        // Old results only hold up for the same Option List
+        Map<String, int[]> lastGroupLints = (lastLint.mSwitchTrie == switchTrie)
+                ? lastLint.mGroupLints
+                : null;
+
+        String command = commandTree.getCommand();
+        int tokenCount = commandTree.getTokenCount();
+
+        int optionCount = 0;
+        int targetCount = 0;
+        int urlCount = 0;
+
+        // Plain words straight after an option that doesn't take any arguments, which might be meant for it
+        int strayArgCount = 0;
+        int[] strayArgTokens = new int[4];
+
+        boolean isEndOfOptions = false;
+        boolean isAfterFlag = false;
+
+        int tokenIndex = 1;
+        while (tokenIndex < tokenCount && commandTree.getTokenKind(tokenIndex) != ModelYtdlCommandTree.TOKEN_OPERATOR) {
+
+            int tokenKind = commandTree.getTokenKind(tokenIndex);
+
+            if (tokenKind == ModelYtdlCommandTree.TOKEN_OPTION && !isEndOfOptions) {
+
+                if (END_OF_OPTIONS.equals(commandTree.getTokenValue(tokenIndex))) {
+                    isEndOfOptions = true;
+                    isAfterFlag = false;
+                    tokenIndex++;
+                    continue;
+                }
+
+                optionCount++;
+
+                int groupEnd = findGroupEnd(commandTree, tokenIndex, switchTrie);
+                int groupStart = commandTree.getTokenStart(tokenIndex);
+                String groupText = command.substring(groupStart, commandTree.getTokenEnd(groupEnd - 1));
+
+                int[] groupLint = (lastGroupLints != null)
+                        ? lastGroupLints.get(groupText)
+                        : null;
+
+                if (groupLint == null) {
+                    groupLint = checkOptionGroup(commandTree, tokenIndex, groupEnd, switchTrie);
+                    checkedGroupCount++;
+                }
+
+                groupLints.put(groupText, groupLint);
+                for (int lintIndex = 0; lintIndex < groupLint.length; lintIndex += 3) {
+                    lintBuilder.addLint(groupStart + groupLint[lintIndex], groupStart + groupLint[lintIndex + 1], groupLint[lintIndex + 2]);
+                }
+
+                isAfterFlag = (groupEnd == tokenIndex + 1 && !hasAttachedArg(commandTree, tokenIndex, switchTrie));
+                tokenIndex = groupEnd;
+
+            } else {
+                targetCount++;
+
+                if (tokenKind == ModelYtdlCommandTree.TOKEN_URL) {
+                    urlCount++;
+
+                } else if (isAfterFlag) {
+                    if (strayArgCount == strayArgTokens.length) {
+                        strayArgTokens = Arrays.copyOf(strayArgTokens, strayArgCount * 2);
+                    }
+                    strayArgTokens[strayArgCount++] = tokenIndex;
+                }
+
+                isAfterFlag = false;
+                tokenIndex++;
+            }
+        }
+
+        // Plain words only look out of place next to a proper URL, otherwise they're likely the video IDs
+        if (urlCount > 0) {
+            for (int strayIndex = 0; strayIndex < strayArgCount; strayIndex++) {
+                lintBuilder.addLint(
+                        commandTree.getTokenStart(strayArgTokens[strayIndex]),
+                        commandTree.getTokenEnd(strayArgTokens[strayIndex]),
+                        LINT_EXTRA_ARG
+                );
+            }
+        }
+
+        if (optionCount > 0 && targetCount == 0 && !hasNoTargetSwitch(commandTree, switchTrie)) {
+            lintBuilder.addLint(commandTree.getTokenStart(0), commandTree.getTokenEnd(0), LINT_MISSING_URL);
+        }
+
+        return new ModelYtdlCommandLint(commandTree, switchTrie, lintBuilder, groupLints, checkedGroupCount);
+    }
+
+
+    private ModelYtdlCommandLint(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie, LintBuilder lintBuilder, Map<String, int[]> groupLints, int checkedGroupCount) {
+
+        mCommandTree = commandTree;
+        mSwitchTrie = switchTrie;
+        mLintCount = lintBuilder.lintCount;
+        mLintStarts = Arrays.copyOf(lintBuilder.lintStarts, lintBuilder.lintCount);
+        mLintEnds = Arrays.copyOf(lintBuilder.lintEnds, lintBuilder.lintCount);
+        mLintKinds = Arrays.copyOf(lintBuilder.lintKinds, lintBuilder.lintCount);
+        mGroupLints = groupLints;
+        mCheckedGroupCount = checkedGroupCount;
+    }
+
+
+    // region ================== ACCESSORS ==================
+    // ====== ================== ========= ==================
+
+
+    ModelYtdlCommandTree getCommandTree() {
+        return mCommandTree;
+    }
+
+
+    int getLintCount() {
+        return mLintCount;
+    }
+
+
+    int getLintStart(int lintIndex) {
+        return mLintStarts[lintIndex];
+    }
+
+
+    int getLintEnd(int lintIndex) {
+        return mLintEnds[lintIndex];
+    }
+
+
+    int getLintKind(int lintIndex) {
+        return mLintKinds[lintIndex];
+    }
+
+
+    /**
+     * Whether the given kind of problem would stop the command from running (rather than just looking suspicious)
+     */
+    static boolean isError(int lintKind) {
+        return lintKind != LINT_EXTRA_ARG && lintKind != LINT_MISSING_URL;
+    }
+
+
+    /**
+     * Number of option groups that had to be checked this pass (the rest came from the last one)
+     */
+    int getCheckedGroupCount() {
+        return mCheckedGroupCount;
+    }
+
+    // endregion
+
+
+    // region ================== CHECKS ==================
+    // ====== ================== ====== ==================
+
+
+    /**
+     * End (exclusive) of the tokens making up the option at the given index and its arguments. Unlike the token
+     * list's own count, a known switch in an argument's place is taken as the argument having been left out.
+     */
+    private static int findGroupEnd(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        ModelYtdlOptionArgs optionArgs = getOptionArgs(commandTree, tokenIndex, switchTrie);
+
+        int argCount = (optionArgs != null && !hasAttachedArg(commandTree, tokenIndex, switchTrie))
+                ? optionArgs.getArgCount()
+                : 0;
+
+        int groupEnd = tokenIndex + 1;
+        while (argCount-- > 0
+                && groupEnd < commandTree.getTokenCount()
+                && commandTree.getTokenKind(groupEnd) != ModelYtdlCommandTree.TOKEN_OPERATOR
+                && !isKnownSwitch(commandTree, groupEnd, switchTrie)) {
+            groupEnd++;
+        }
+
+        return groupEnd;
+    }
+
+
+    /**
+     * Check an option and its arguments (tokens [tokenIndex, groupEnd))
+     *
+     * @return Problems found, as (start, end, kind) offsets from the start of the option
+     */
+    private static int[] checkOptionGroup(ModelYtdlCommandTree commandTree, int tokenIndex, int groupEnd, ModelYtdlSwitchTrie switchTrie) {
+
+        LintBuilder lintBuilder = new LintBuilder();
+        int groupStart = commandTree.getTokenStart(tokenIndex);
+        int optionEnd = commandTree.getTokenEnd(tokenIndex) - groupStart;
+
+        String optionValue = commandTree.getTokenValue(tokenIndex);
+        ModelYtdlOptionArgs optionArgs = getOptionArgs(commandTree, tokenIndex, switchTrie);
+
+        if (optionArgs == null) {
+            lintBuilder.addLint(0, optionEnd, LINT_UNKNOWN_SWITCH);
+
+        } else if (optionValue.startsWith("--") && optionValue.indexOf('=') >= 0) {
+            // Argument given as "--option=value"
+            String argValue = optionValue.substring(optionValue.indexOf('=') + 1);
+
+            if (!optionArgs.hasArgs()) {
+                lintBuilder.addLint(0, optionEnd, LINT_EXTRA_ARG);
+
+            } else if (!optionArgs.isValidArg(argValue)) {
+                lintBuilder.addLint(0, optionEnd, LINT_INVALID_ARG);
+            }
+
+        } else if (switchTrie.isClusteredSwitch(optionValue)) {
+            // Short switches run together ("-ci"), with maybe an argument stuck on the end of the last one ("-fbest")
+            checkClusteredSwitch(optionValue, optionEnd, switchTrie, lintBuilder);
+
+        } else {
+            for (int argToken = tokenIndex + 1; argToken < groupEnd; argToken++) {
+                if (!optionArgs.isValidArg(commandTree.getTokenValue(argToken))) {
+                    lintBuilder.addLint(
+                            commandTree.getTokenStart(argToken) - groupStart,
+                            commandTree.getTokenEnd(argToken) - groupStart,
+                            LINT_INVALID_ARG
+                    );
+                }
+            }
+
+            if (groupEnd - tokenIndex - 1 < optionArgs.getArgCount()) {
+                lintBuilder.addLint(0, optionEnd, LINT_MISSING_ARG);
+            }
+        }
+
+        int[] groupLint = new int[3 * lintBuilder.lintCount];
+        for (int lintIndex = 0; lintIndex < lintBuilder.lintCount; lintIndex++) {
+            groupLint[3 * lintIndex] = lintBuilder.lintStarts[lintIndex];
+            groupLint[3 * lintIndex + 1] = lintBuilder.lintEnds[lintIndex];
+            groupLint[3 * lintIndex + 2] = lintBuilder.lintKinds[lintIndex];
+        }
+
+        return groupLint;
+    }
+
+
+    private static void checkClusteredSwitch(String optionValue, int optionEnd, ModelYtdlSwitchTrie switchTrie, LintBuilder lintBuilder) {
+
+        for (int charIndex = 1; charIndex < optionValue.length(); charIndex++) {
+
+            ModelYtdlOptionArgs switchArgs = switchTrie.getOptionArgs("-" + optionValue.charAt(charIndex));
+
+            if (switchArgs == null) {
+                lintBuilder.addLint(0, optionEnd, LINT_UNKNOWN_SWITCH);
+                return;
+            }
+
+            if (switchArgs.hasArgs()) {
+                // Whatever's left of the token is its argument
+                if (switchArgs.getArgCount() > 1 || charIndex == optionValue.length() - 1) {
+                    lintBuilder.addLint(0, optionEnd, LINT_MISSING_ARG);
+
+                } else if (!switchArgs.isValidArg(optionValue.substring(charIndex + 1))) {
+                    lintBuilder.addLint(0, optionEnd, LINT_INVALID_ARG);
+                }
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Argument schema of the option at the given index, going off the switch without any "=value". Clustered
+     * short switches count as not taking any (further) arguments if all of them are known.
+     *
+     * @return Null if it isn't a known switch
+     */
+    private static ModelYtdlOptionArgs getOptionArgs(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        String optionValue = commandTree.getTokenValue(tokenIndex);
+        ModelYtdlOptionArgs optionArgs = switchTrie.getOptionArgs(ModelYtdlSwitchTrie.getSwitchWord(optionValue));
+
+        if (optionArgs == null && switchTrie.isClusteredSwitch(optionValue)) {
+            return ModelYtdlOptionArgs.NO_ARGS;
+        }
+
+        return optionArgs;
+    }
+
+
+    private static boolean hasAttachedArg(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        String optionValue = commandTree.getTokenValue(tokenIndex);
+
+        return (optionValue.startsWith("--") && optionValue.indexOf('=') >= 0)
+                || (switchTrie.getOptionArgs(optionValue) == null && switchTrie.isClusteredSwitch(optionValue));
+    }
+
+
+    private static boolean isKnownSwitch(ModelYtdlCommandTree commandTree, int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+        return commandTree.getTokenKind(tokenIndex) == ModelYtdlCommandTree.TOKEN_OPTION
+                && switchTrie.getOptionArgs(ModelYtdlSwitchTrie.getSwitchWord(commandTree.getTokenValue(tokenIndex))) != null;
+    }
+
+
+    private static boolean hasNoTargetSwitch(ModelYtdlCommandTree commandTree, ModelYtdlSwitchTrie switchTrie) {
+
+        for (String noTargetSwitch : NO_TARGET_SWITCHES) {
+            if (commandTree.findOptionToken(noTargetSwitch, switchTrie) >= 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // endregion
+
+
+    /**
+     * Growable arrays for putting the problem list together
+     */
+    private static final class LintBuilder {
+
+        int lintCount;
+        int[] lintStarts = new int[8];
+        int[] lintEnds = new int[8];
+        int[] lintKinds = new int[8];
+
+
+        void addLint(int lintStart, int lintEnd, int lintKind) {
+
+            if (lintCount == lintStarts.length) {
+                lintStarts = Arrays.copyOf(lintStarts, lintCount * 2);
+                lintEnds = Arrays.copyOf(lintEnds, lintCount * 2);
+                lintKinds = Arrays.copyOf(lintKinds, lintCount * 2);
+            }
+
+            lintStarts[lintCount] = lintStart;
+            lintEnds[lintCount] = lintEnd;
+            lintKinds[lintCount] = lintKind;
+            lintCount++;
+        }
+    }
+
+}
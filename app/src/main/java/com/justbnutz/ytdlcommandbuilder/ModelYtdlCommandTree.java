@@ -0,0 +1,695 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token list of the YTDL command, lexed the way a POSIX shell would split it up: words are split on (unquoted)
+ * whitespace and the shell operators (| & ; < > and brackets), single quotes keep everything literal, double
+ * quotes and backslashes escape what they would in the shell.
+ *
+ * Each token is a program, option, argument or URL (or an operator between commands), kept as flattened arrays of
+ * positions in the command. Immutable, so it can be handed to a background thread as is. An edit gives a new tree
+ * with only the touched span lexed again, the tokens either side of it are copied over (shifted along).
+ */
+final class ModelYtdlCommandTree {
+
+    // Kinds of token
+    static final int TOKEN_PROGRAM = 0;
+    static final int TOKEN_OPTION = 1;
+    static final int TOKEN_ARGUMENT = 2;
+    static final int TOKEN_URL = 3;
+    static final int TOKEN_OPERATOR = 4;
+
+    // Token has quotes or escapes in it, so its value isn't the same as its text
+    static final int FLAG_QUOTED = 1;
+    // Token still has a quote open at the end of the command
+    static final int FLAG_UNTERMINATED = 2;
+
+    // Characters a backslash escapes inside double quotes (anywhere else it escapes everything)
+    private static final String DOUBLE_QUOTE_ESCAPES = "$`\"\\\n";
+
+    static final ModelYtdlCommandTree EMPTY = parse("");
+
+    private final String mCommand;
+
+    // Token positions are [start, end) in the command, in order
+    private final int mTokenCount;
+    private final int[] mTokenStarts;
+    private final int[] mTokenEnds;
+    private final int[] mTokenKinds;
+    private final int[] mTokenFlags;
+
+    // Options in the first command by canonical switch, built the first time it's asked for (and again if asked with
+    // a different switch trie). Only ever replaced as a whole, so sharing the tree between threads is still fine.
+    private volatile OptionIndex mOptionIndex;
+
+
+    /**
+     * Lex the whole command
+     */
+    static ModelYtdlCommandTree parse(String command) {
+
+        TokenBuilder tokenBuilder = new TokenBuilder(16);
+
+        int position = skipWhitespace(command, 0);
+        while (position < command.length()) {
+            position = skipWhitespace(command, lexToken(command, position, tokenBuilder));
+        }
+
+        return new ModelYtdlCommandTree(command, tokenBuilder);
+    }
+
+
+    private ModelYtdlCommandTree(String command, TokenBuilder tokenBuilder) {
+
+        mCommand = command;
+        mTokenCount = tokenBuilder.tokenCount;
+        mTokenStarts = Arrays.copyOf(tokenBuilder.tokenStarts, tokenBuilder.tokenCount);
+        mTokenEnds = Arrays.copyOf(tokenBuilder.tokenEnds, tokenBuilder.tokenCount);
+        mTokenKinds = Arrays.copyOf(tokenBuilder.tokenKinds, tokenBuilder.tokenCount);
+        mTokenFlags = Arrays.copyOf(tokenBuilder.tokenFlags, tokenBuilder.tokenCount);
+    }
+
+
+    /**
+     * Tree for the command after an edit, same arguments as TextWatcher.onTextChanged(): the removed text started at
+     * editStart, and insertedLength chars took its place.
+     *
+     * Lexing picks up from the start of the first token the edit touches (tokens always start outside any quotes),
+     * and stops as soon as it's past the edit and lined up with a token start from before, since everything from
+     * there on lexes the same as it did.
+     *
+     * Only the lexing is limited to the edit. The new command String and the token arrays (shifted along) are
+     * still copied whole, so an edit costs O(length of the command) overall.
+     */
+    ModelYtdlCommandTree applyEdit(String newCommand, int editStart, int removedLength, int insertedLength) {
+
+        int lengthChange = insertedLength - removedLength;
+
+        // Not the edit of this command (the text was changed without going through here), start again
+        if (editStart < 0 || editStart + removedLength > mCommand.length() || mCommand.length() + lengthChange != newCommand.length()) {
+            return parse(newCommand);
+        }
+
+        int oldEditEnd = editStart + removedLength;
+        int newEditEnd = editStart + insertedLength;
+
+        // First token ending at or after the edit, an edit right at the end of a word can carry it on
+        int firstToken = findFirstTokenEndingAt(editStart);
+
+        TokenBuilder tokenBuilder = new TokenBuilder(mTokenCount + 4);
+        tokenBuilder.addTokens(this, 0, firstToken, 0);
+
+        int position = (firstToken < mTokenCount)
+                ? Math.min(mTokenStarts[firstToken], editStart)
+                : editStart;
+
+        int syncToken = mTokenCount;
+
+        while (true) {
+            position = skipWhitespace(newCommand, position);
+
+            if (position >= newCommand.length()) {
+                break;
+            }
+
+            // Past the edit and at the start of a token that was there before, the rest is unchanged
+            if (position >= newEditEnd) {
+                int oldToken = findTokenStartingAt(position - lengthChange, firstToken);
+
+                if (oldToken >= 0 && mTokenStarts[oldToken] >= oldEditEnd) {
+                    syncToken = oldToken;
+                    break;
+                }
+            }
+
+            position = lexToken(newCommand, position, tokenBuilder);
+        }
+
+        if (syncToken < mTokenCount) {
+            int firstCopied = tokenBuilder.tokenCount;
+            tokenBuilder.addTokens(this, syncToken, mTokenCount, lengthChange);
+
+            // Whether it starts a command depends on what came before it, which could have changed
+            tokenBuilder.tokenKinds[firstCopied] = classifyToken(
+                    newCommand,
+                    tokenBuilder.tokenStarts[firstCopied],
+                    tokenBuilder.tokenEnds[firstCopied],
+                    tokenBuilder.tokenFlags[firstCopied],
+                    (firstCopied > 0) ? tokenBuilder.tokenKinds[firstCopied - 1] : TOKEN_OPERATOR
+            );
+        }
+
+        return new ModelYtdlCommandTree(newCommand, tokenBuilder);
+    }
+
+
+    // region ================== TOKEN ACCESS ==================
+    // ====== ================== ============ ==================
+
+
+    String getCommand() {
+        return mCommand;
+    }
+
+
+    int getTokenCount() {
+        return mTokenCount;
+    }
+
+
+    int getTokenStart(int tokenIndex) {
+        return mTokenStarts[tokenIndex];
+    }
+
+
+    int getTokenEnd(int tokenIndex) {
+        return mTokenEnds[tokenIndex];
+    }
+
+
+    int getTokenKind(int tokenIndex) {
+        return mTokenKinds[tokenIndex];
+    }
+
+
+    int getTokenFlags(int tokenIndex) {
+        return mTokenFlags[tokenIndex];
+    }
+
+
+    /**
+     * What the program would actually get for the token, with the quotes and escapes taken out
+     */
+    String getTokenValue(int tokenIndex) {
+        return getValue(mCommand, mTokenStarts[tokenIndex], mTokenEnds[tokenIndex], mTokenFlags[tokenIndex]);
+    }
+
+
+    /**
+     * Token at the given position (the end of a token counts, so a cursor just after a word finds it)
+     *
+     * @return Token index, or -1 if the position is between tokens
+     */
+    int findTokenAt(int position) {
+
+        int tokenIndex = findFirstTokenEndingAt(position);
+
+        return (tokenIndex < mTokenCount && mTokenStarts[tokenIndex] <= position)
+                ? tokenIndex
+                : -1;
+    }
+
+
+    /**
+     * Whether the first command has the given option in it (either on its own or with an "=value")
+     */
+    boolean hasOption(String optionName) {
+
+        for (int tokenIndex = 0; tokenIndex < mTokenCount && mTokenKinds[tokenIndex] != TOKEN_OPERATOR; tokenIndex++) {
+
+            if (mTokenKinds[tokenIndex] == TOKEN_OPTION) {
+                String optionValue = getTokenValue(tokenIndex);
+
+                if (optionValue.equals(optionName) || optionValue.startsWith(optionName + "=")) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    // endregion
+
+
+    // region ================== COMMAND STRUCTURE ==================
+    // ====== ================== ================= ==================
+
+
+    /**
+     * Number of tokens after the given option that are its arguments, going off the switch trie
+     * (an "--option=value" or clustered "-fbest" has its argument built in, so none). Switches the trie doesn't know
+     * about are taken to have an argument if there's a plain word straight after them.
+     */
+    int getOptionArgCount(int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+
+        if (mTokenKinds[tokenIndex] != TOKEN_OPTION) {
+            return 0;
+        }
+
+        String optionValue = getTokenValue(tokenIndex);
+
+        if (optionValue.indexOf('=') >= 0) {
+            return 0;
+        }
+
+        int argCount = (switchTrie != null)
+                ? switchTrie.getArgCount(optionValue)
+                : -1;
+
+        if (argCount < 0 && switchTrie != null && switchTrie.isClusteredSwitch(optionValue)) {
+            argCount = 0;
+        }
+
+        if (argCount < 0) {
+            argCount = (tokenIndex + 1 < mTokenCount && mTokenKinds[tokenIndex + 1] == TOKEN_ARGUMENT) ? 1 : 0;
+        }
+
+        // Can't take more than what's left of the command
+        int argLimit = 0;
+        while (argLimit < argCount
+                && tokenIndex + 1 + argLimit < mTokenCount
+                && mTokenKinds[tokenIndex + 1 + argLimit] != TOKEN_OPERATOR) {
+            argLimit++;
+        }
+
+        return argLimit;
+    }
+
+
+    /**
+     * Find the given option in the first command (by canonical switch, so any of its aliases or an "=value" form
+     * count too), looked up in a hash index of the command's options
+     *
+     * @return Token index of the first time it's used, or -1 if it isn't in the command
+     */
+    int findOptionToken(String canonicalSwitch, ModelYtdlSwitchTrie switchTrie) {
+
+        OptionIndex optionIndex = mOptionIndex;
+
+        if (optionIndex == null || optionIndex.switchTrie != switchTrie) {
+            optionIndex = buildOptionIndex(switchTrie);
+            mOptionIndex = optionIndex;
+        }
+
+        Integer tokenIndex = optionIndex.optionTokens.get(canonicalSwitch);
+
+        return (tokenIndex != null)
+                ? tokenIndex
+                : -1;
+    }
+
+
+    /**
+     * End of the given option including any of its arguments, i.e. everything that has to go if the option does
+     */
+    int getOptionSpanEnd(int tokenIndex, ModelYtdlSwitchTrie switchTrie) {
+        return mTokenEnds[tokenIndex + getOptionArgCount(tokenIndex, switchTrie)];
+    }
+
+
+    private OptionIndex buildOptionIndex(ModelYtdlSwitchTrie switchTrie) {
+
+        Map<String, Integer> optionTokens = new HashMap<>();
+
+        int tokenIndex = 1;
+        while (tokenIndex < mTokenCount && mTokenKinds[tokenIndex] != TOKEN_OPERATOR) {
+
+            if (mTokenKinds[tokenIndex] == TOKEN_OPTION) {
+                String switchWord = ModelYtdlSwitchTrie.getSwitchWord(getTokenValue(tokenIndex));
+
+                // Switches the trie doesn't know about can still be matched up with themselves
+                String canonicalSwitch = (switchTrie != null)
+                        ? switchTrie.getCanonicalSwitch(switchWord)
+                        : null;
+
+                if (canonicalSwitch == null && switchTrie != null && switchTrie.isClusteredSwitch(switchWord)) {
+                    // Short switches run together ("-ci"), or with their argument stuck on ("-fbest")
+                    for (String clusteredSwitch : switchTrie.getClusteredSwitches(switchWord)) {
+                        if (!optionTokens.containsKey(clusteredSwitch)) {
+                            optionTokens.put(clusteredSwitch, tokenIndex);
+                        }
+                    }
+
+                } else {
+                    if (canonicalSwitch == null) {
+                        canonicalSwitch = switchWord;
+                    }
+
+                    if (!optionTokens.containsKey(canonicalSwitch)) {
+                        optionTokens.put(canonicalSwitch, tokenIndex);
+                    }
+                }
+
+                tokenIndex += 1 + getOptionArgCount(tokenIndex, switchTrie);
+
+            } else {
+                tokenIndex++;
+            }
+        }
+
+        return new OptionIndex(switchTrie, optionTokens);
+    }
+
+
+    /**
+     * First download target in the (first) command, i.e. the first URL or plain word that isn't an option's argument
+     *
+     * @return Token index, or -1 if there's no target yet
+     */
+    int findTargetToken(ModelYtdlSwitchTrie switchTrie) {
+
+        // Skip past the program
+        int tokenIndex = 1;
+
+        while (tokenIndex < mTokenCount) {
+
+            switch (mTokenKinds[tokenIndex]) {
+                case TOKEN_OPERATOR:
+                    return -1;
+
+                case TOKEN_OPTION:
+                    tokenIndex += 1 + getOptionArgCount(tokenIndex, switchTrie);
+                    break;
+
+                default:
+                    return tokenIndex;
+            }
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Where a new option should go: in front of the first download target, or failing that in front of anything the
+     * command is piped / redirected into.
+     *
+     * @return Position in the command, or -1 to just add it on the end
+     */
+    int findInsertPosition(ModelYtdlSwitchTrie switchTrie) {
+
+        int targetToken = findTargetToken(switchTrie);
+
+        if (targetToken >= 0) {
+            return mTokenStarts[targetToken];
+        }
+
+        for (int tokenIndex = 0; tokenIndex < mTokenCount; tokenIndex++) {
+            if (mTokenKinds[tokenIndex] == TOKEN_OPERATOR) {
+                return mTokenStarts[tokenIndex];
+            }
+        }
+
+        return -1;
+    }
+
+    // endregion
+
+
+    // region ================== LEXING ==================
+    // ====== ================== ====== ==================
+
+
+    private static int skipWhitespace(String command, int position) {
+        while (position < command.length() && Character.isWhitespace(command.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+
+
+    private static boolean isOperatorChar(char checkChar) {
+        return "|&;<>()".indexOf(checkChar) >= 0;
+    }
+
+
+    /**
+     * Lex the token starting at the given position into the builder
+     *
+     * @return Position just past the token
+     */
+    private static int lexToken(String command, int tokenStart, TokenBuilder tokenBuilder) {
+
+        int position = tokenStart;
+        int tokenFlags = 0;
+
+        if (isOperatorChar(command.charAt(position))) {
+            while (position < command.length() && isOperatorChar(command.charAt(position))) {
+                position++;
+            }
+
+            tokenBuilder.addToken(tokenStart, position, TOKEN_OPERATOR, 0);
+            return position;
+        }
+
+        char quoteChar = 0;
+
+        while (position < command.length()) {
+            char currentChar = command.charAt(position);
+
+            if (quoteChar == '\'') {
+                if (currentChar == '\'') {
+                    quoteChar = 0;
+                }
+
+            } else if (currentChar == '\\') {
+                // Whatever comes after it is part of the token (inside double quotes too, at worst it's kept as is)
+                tokenFlags |= FLAG_QUOTED;
+                position++;
+
+            } else if (quoteChar == '"') {
+                if (currentChar == '"') {
+                    quoteChar = 0;
+                }
+
+            } else if (currentChar == '\'' || currentChar == '"') {
+                quoteChar = currentChar;
+                tokenFlags |= FLAG_QUOTED;
+
+            } else if (Character.isWhitespace(currentChar) || isOperatorChar(currentChar)) {
+                break;
+            }
+
+            position++;
+        }
+
+        // A backslash at the very end has nothing after it to take along
+        position = Math.min(position, command.length());
+
+        if (quoteChar != 0) {
+            tokenFlags |= FLAG_UNTERMINATED;
+        }
+
+        int previousKind = (tokenBuilder.tokenCount > 0)
+                ? tokenBuilder.tokenKinds[tokenBuilder.tokenCount - 1]
+                : TOKEN_OPERATOR;
+
+        tokenBuilder.addToken(
+                tokenStart,
+                position,
+                classifyToken(command, tokenStart, position, tokenFlags, previousKind),
+                tokenFlags
+        );
+
+        return position;
+    }
+
+
+    /**
+     * Work out a token's kind from its value, and whether it's the first word of a command
+     */
+    private static int classifyToken(String command, int tokenStart, int tokenEnd, int tokenFlags, int previousKind) {
+
+        if (isOperatorChar(command.charAt(tokenStart))) {
+            return TOKEN_OPERATOR;
+        }
+
+        if (previousKind == TOKEN_OPERATOR) {
+            return TOKEN_PROGRAM;
+        }
+
+        String tokenValue = getValue(command, tokenStart, tokenEnd, tokenFlags);
+
+        // A lone "-" is stdin / stdout, not an option
+        if (tokenValue.length() > 1 && tokenValue.charAt(0) == '-') {
+            return TOKEN_OPTION;
+        }
+
+        return UtilStringValidationOps.isValidUrl(tokenValue)
+                ? TOKEN_URL
+                : TOKEN_ARGUMENT;
+    }
+
+
+    /**
+     * Take the quotes and escapes out of the given token text
+     */
+    private static String getValue(String command, int tokenStart, int tokenEnd, int tokenFlags) {
+
+        if ((tokenFlags & FLAG_QUOTED) == 0) {
+            return command.substring(tokenStart, tokenEnd);
+        }
+
+        StringBuilder valueBuilder = new StringBuilder(tokenEnd - tokenStart);
+        char quoteChar = 0;
+
+        for (int position = tokenStart; position < tokenEnd; position++) {
+            char currentChar = command.charAt(position);
+
+            if (quoteChar == '\'') {
+                if (currentChar == '\'') {
+                    quoteChar = 0;
+                } else {
+                    valueBuilder.append(currentChar);
+                }
+
+            } else if (currentChar == '\\' && position + 1 < tokenEnd) {
+                char escapedChar = command.charAt(position + 1);
+
+                if (quoteChar == '"' && DOUBLE_QUOTE_ESCAPES.indexOf(escapedChar) < 0) {
+                    // Not one of the escapes inside double quotes, so the backslash stays
+                    valueBuilder.append(currentChar);
+
+                } else {
+                    position++;
+
+                    // Escaped newline just joins the lines up
+                    if (escapedChar != '\n') {
+                        valueBuilder.append(escapedChar);
+                    }
+                }
+
+            } else if (quoteChar == '"') {
+                if (currentChar == '"') {
+                    quoteChar = 0;
+                } else {
+                    valueBuilder.append(currentChar);
+                }
+
+            } else if (currentChar == '\'' || currentChar == '"') {
+                quoteChar = currentChar;
+
+            } else {
+                valueBuilder.append(currentChar);
+            }
+        }
+
+        return valueBuilder.toString();
+    }
+
+
+    /**
+     * Binary search for the first token that ends at or after the given position
+     *
+     * @return Token index, or the token count if every token ends before it
+     */
+    private int findFirstTokenEndingAt(int position) {
+
+        int lowIndex = 0;
+        int highIndex = mTokenCount;
+
+        while (lowIndex < highIndex) {
+            int midIndex = (lowIndex + highIndex) >>> 1;
+
+            if (mTokenEnds[midIndex] < position) {
+                lowIndex = midIndex + 1;
+            } else {
+                highIndex = midIndex;
+            }
+        }
+
+        return lowIndex;
+    }
+
+
+    /**
+     * Binary search (from the given token on) for the token starting exactly at the given position
+     *
+     * @return Token index, or -1 if no token starts there
+     */
+    private int findTokenStartingAt(int position, int fromToken) {
+
+        int tokenIndex = Arrays.binarySearch(mTokenStarts, fromToken, mTokenCount, position);
+
+        return (tokenIndex >= 0)
+                ? tokenIndex
+                : -1;
+    }
+
+
+    /**
+     * Canonical switch to token index, along with the switch trie it was worked out with
+     */
+    private static final class OptionIndex {
+
+        final ModelYtdlSwitchTrie switchTrie;
+        final Map<String, Integer> optionTokens;
+
+        OptionIndex(ModelYtdlSwitchTrie switchTrie, Map<String, Integer> optionTokens) {
+            this.switchTrie = switchTrie;
+            this.optionTokens = optionTokens;
+        }
+    }
+
+
+    /**
+     * Growable arrays for putting the token list together
+     */
+    private static final class TokenBuilder {
+
+        int[] tokenStarts;
+        int[] tokenEnds;
+        int[] tokenKinds;
+        int[] tokenFlags;
+        int tokenCount = 0;
+
+
+        TokenBuilder(int initialCapacity) {
+            tokenStarts = new int[initialCapacity];
+            tokenEnds = new int[initialCapacity];
+            tokenKinds = new int[initialCapacity];
+            tokenFlags = new int[initialCapacity];
+        }
+
+
+        void addToken(int tokenStart, int tokenEnd, int tokenKind, int flags) {
+
+            ensureCapacity(tokenCount + 1);
+
+            tokenStarts[tokenCount] = tokenStart;
+            tokenEnds[tokenCount] = tokenEnd;
+            tokenKinds[tokenCount] = tokenKind;
+            tokenFlags[tokenCount] = flags;
+            tokenCount++;
+        }
+
+
+        /**
+         * Copy over a run of tokens from an existing tree, shifting their positions along by the given amount
+         */
+        void addTokens(ModelYtdlCommandTree commandTree, int fromToken, int toToken, int positionShift) {
+
+            int copyCount = toToken - fromToken;
+            ensureCapacity(tokenCount + copyCount);
+
+            System.arraycopy(commandTree.mTokenKinds, fromToken, tokenKinds, tokenCount, copyCount);
+            System.arraycopy(commandTree.mTokenFlags, fromToken, tokenFlags, tokenCount, copyCount);
+
+            for (int copyIndex = 0; copyIndex < copyCount; copyIndex++) {
+                tokenStarts[tokenCount + copyIndex] = commandTree.mTokenStarts[fromToken + copyIndex] + positionShift;
+                tokenEnds[tokenCount + copyIndex] = commandTree.mTokenEnds[fromToken + copyIndex] + positionShift;
+            }
+
+            tokenCount += copyCount;
+        }
+
+
+        private void ensureCapacity(int minCapacity) {
+
+            if (minCapacity > tokenStarts.length) {
+                int newLength = Math.max(minCapacity, tokenStarts.length * 2);
+                tokenStarts = Arrays.copyOf(tokenStarts, newLength);
+                tokenEnds = Arrays.copyOf(tokenEnds, newLength);
+                tokenKinds = Arrays.copyOf(tokenKinds, newLength);
+                tokenFlags = Arrays.copyOf(tokenFlags, newLength);
+            }
+        }
+    }
+
+    // endregion
+
+}
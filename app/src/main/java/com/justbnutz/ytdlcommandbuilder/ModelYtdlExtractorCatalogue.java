@@ -0,0 +1,394 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Read-only index of the extractors listed by "youtube-dl --list-extractors", for working out which extractor
+ * (if any) would pick up a given download target.
+ *
+ * Names are looked up through a flattened prefix trie (see ModelYtdlPrefixTrie), where each node knows the run of
+ * (sorted) names that start with its prefix. Names are also split into lowercase tokens (e.g. "abc.net.au" into
+ * "abc", "net", "au") so a URL host can be matched against them. Both lookups only walk the query itself,
+ * so they're cheap enough to run on every keystroke.
+ */
+final class ModelYtdlExtractorCatalogue {
+
+    // Marker youtube-dl tacks onto the end of extractors that are known not to work
+    private static final String BROKEN_SUFFIX = " (CURRENTLY BROKEN)";
+
+    // Options suggested for download targets the extractors don't cover
+    private static final String OPTION_FORCE_GENERIC = "--force-generic-extractor";
+    private static final String OPTION_DEFAULT_SEARCH = "--default-search";
+    private static final String DEFAULT_SEARCH_AUTO = "auto";
+
+    // Tokens that turn up in pretty much every URL, so they don't say anything about the extractor
+    private static final List<String> IGNORED_TOKENS = Arrays.asList("http", "https", "www");
+
+    // Extractor names sorted case-insensitively, along with their lowercase forms used for lookups
+    private final String[] mExtractorNames;
+    private final String[] mLowerNames;
+    private final BitSet mBrokenExtractors;
+
+    // Prefix trie over the lowercase names (queries get lowercased as they're walked)
+    private final ModelYtdlPrefixTrie mPrefixTrie;
+
+    // Lowercase name token -> indexes of the extractors that have it
+    private final Map<String, int[]> mTokenIndex;
+
+
+    private ModelYtdlExtractorCatalogue(String[] extractorNames, BitSet brokenExtractors) {
+
+        mExtractorNames = extractorNames;
+        mBrokenExtractors = brokenExtractors;
+
+        mLowerNames = new String[extractorNames.length];
+        for (int nameIndex = 0; nameIndex < extractorNames.length; nameIndex++) {
+            mLowerNames[nameIndex] = extractorNames[nameIndex].toLowerCase(Locale.US);
+        }
+
+        mPrefixTrie = new ModelYtdlPrefixTrie(mLowerNames, true);
+
+        mTokenIndex = buildTokenIndex(mLowerNames);
+    }
+
+
+    /**
+     * Read in the output of "youtube-dl --list-extractors" (one name per line)
+     */
+    static ModelYtdlExtractorCatalogue parseExtractorList(String listText) {
+
+        List<String> extractorNames = new ArrayList<>();
+        Set<String> brokenNames = new HashSet<>();
+
+        for (String listLine : listText.split("\\r?\\n")) {
+
+            String extractorName = listLine.trim();
+
+            if (extractorName.endsWith(BROKEN_SUFFIX)) {
+                extractorName = extractorName.substring(0, extractorName.length() - BROKEN_SUFFIX.length()).trim();
+                brokenNames.add(extractorName);
+            }
+
+            if (!extractorName.isEmpty()) {
+                extractorNames.add(extractorName);
+            }
+        }
+
+        // Sort on the lowercase forms, since that's the order the trie gets built in
+        Collections.sort(extractorNames, new Comparator<String>() {
+            @Override
+            public int compare(String firstName, String secondName) {
+                return firstName.toLowerCase(Locale.US).compareTo(secondName.toLowerCase(Locale.US));
+            }
+        });
+
+        BitSet brokenExtractors = new BitSet(extractorNames.size());
+
+        for (int nameIndex = 0; nameIndex < extractorNames.size(); nameIndex++) {
+            if (brokenNames.contains(extractorNames.get(nameIndex))) {
+                brokenExtractors.set(nameIndex);
+            }
+        }
+
+        return new ModelYtdlExtractorCatalogue(extractorNames.toArray(new String[0]), brokenExtractors);
+    }
+
+
+    /**
+     * Quick check that the text could be an extractor list at all. Names are never indented and never start with
+     * a dash, unlike the lines of the help text (the likeliest wrong file to be picked).
+     */
+    static boolean isExtractorList(String listText) {
+
+        boolean hasName = false;
+
+        for (String listLine : listText.split("\\r?\\n")) {
+
+            if (listLine.trim().isEmpty()) {
+                continue;
+            }
+
+            if (Character.isWhitespace(listLine.charAt(0)) || listLine.charAt(0) == '-') {
+                return false;
+            }
+
+            hasName = true;
+        }
+
+        return hasName;
+    }
+
+
+    /**
+     * Catalogue with nothing in it, for when no extractor list has been supplied
+     */
+    static ModelYtdlExtractorCatalogue emptyCatalogue() {
+        return new ModelYtdlExtractorCatalogue(new String[0], new BitSet());
+    }
+
+
+    // region ================== LOOKUPS ==================
+    // ====== ================== ======= ==================
+
+
+    int getExtractorCount() {
+        return mExtractorNames.length;
+    }
+
+
+    boolean isEmpty() {
+        return mExtractorNames.length == 0;
+    }
+
+
+    boolean isBroken(String extractorName) {
+        int nameIndex = findNameIndex(extractorName);
+        return nameIndex >= 0 && mBrokenExtractors.get(nameIndex);
+    }
+
+
+    /**
+     * Case-insensitive exact match on an extractor name
+     *
+     * @return The extractor name as listed, or null if there's no such extractor
+     */
+    String findExtractorByName(CharSequence extractorName) {
+        int nameIndex = findNameIndex(extractorName);
+
+        return (nameIndex >= 0)
+                ? mExtractorNames[nameIndex]
+                : null;
+    }
+
+
+    /**
+     * Extractors whose name starts with the given prefix (case-insensitive), in name order
+     */
+    List<String> findExtractorsByPrefix(CharSequence namePrefix, int maxResults) {
+
+        int prefixNode = mPrefixTrie.findPrefixNode(namePrefix);
+        if (prefixNode < 0) {
+            return Collections.emptyList();
+        }
+
+        int rangeStart = mPrefixTrie.getRangeStart(prefixNode);
+        int rangeEnd = Math.min(mPrefixTrie.getRangeEnd(prefixNode), rangeStart + maxResults);
+
+        return Arrays.asList(mExtractorNames).subList(rangeStart, rangeEnd);
+    }
+
+
+    /**
+     * Which extractors look like they'd handle the given name or URL. An exact name wins outright, otherwise
+     * the target is split into tokens and extractors are ranked by how many of those tokens are in their name.
+     */
+    List<String> findExtractorsForTarget(CharSequence downloadTarget, int maxResults) {
+
+        String exactName = findExtractorByName(downloadTarget);
+        if (exactName != null) {
+            return Collections.singletonList(exactName);
+        }
+
+        // Count up the matching tokens for each extractor
+        final Map<Integer, Integer> tokenHits = new HashMap<>();
+
+        for (String targetToken : splitTokens(downloadTarget.toString().toLowerCase(Locale.US))) {
+
+            int[] tokenExtractors = mTokenIndex.get(targetToken);
+
+            if (tokenExtractors != null && !IGNORED_TOKENS.contains(targetToken)) {
+                for (int nameIndex : tokenExtractors) {
+                    Integer hitCount = tokenHits.get(nameIndex);
+                    tokenHits.put(nameIndex, (hitCount == null) ? 1 : hitCount + 1);
+                }
+            }
+        }
+
+        if (tokenHits.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Most hits first, then the shortest (most general) name, then alphabetical
+        List<Integer> matchedIndexes = new ArrayList<>(tokenHits.keySet());
+        Collections.sort(matchedIndexes, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer firstIndex, Integer secondIndex) {
+
+                int hitCompare = tokenHits.get(secondIndex) - tokenHits.get(firstIndex);
+                if (hitCompare != 0) {
+                    return hitCompare;
+                }
+
+                int lengthCompare = mLowerNames[firstIndex].length() - mLowerNames[secondIndex].length();
+                if (lengthCompare != 0) {
+                    return lengthCompare;
+                }
+
+                return firstIndex - secondIndex;
+            }
+        });
+
+        List<String> matchedNames = new ArrayList<>(Math.min(matchedIndexes.size(), maxResults));
+        for (int matchIndex = 0; matchIndex < matchedIndexes.size() && matchIndex < maxResults; matchIndex++) {
+            matchedNames.add(mExtractorNames[matchedIndexes.get(matchIndex)]);
+        }
+
+        return matchedNames;
+    }
+
+
+    /**
+     * Look at the download target at the end of the command and suggest the option that would help youtube-dl
+     * deal with it: --force-generic-extractor for a URL that none of the extractors recognise, or --default-search
+     * for plain search words that don't have an extractor prefix.
+     *
+     * @return The option to suggest (with its value), or null if there's nothing worth suggesting
+     */
+    String suggestTargetOption(ModelYtdlCommandTree commandTree) {
+
+        if (isEmpty()) {
+            return null;
+        }
+
+        // Only the first command counts, anything it's piped / redirected into is left alone
+        int commandEnd = 0;
+        while (commandEnd < commandTree.getTokenCount() && commandTree.getTokenKind(commandEnd) != ModelYtdlCommandTree.TOKEN_OPERATOR) {
+            commandEnd++;
+        }
+
+        // Need at least the base command and a target
+        if (commandEnd < 2) {
+            return null;
+        }
+
+        int targetToken = commandEnd - 1;
+        int targetKind = commandTree.getTokenKind(targetToken);
+
+        String downloadTarget = commandTree.getTokenValue(targetToken);
+        if (downloadTarget.isEmpty() || (targetKind != ModelYtdlCommandTree.TOKEN_URL && targetKind != ModelYtdlCommandTree.TOKEN_ARGUMENT)) {
+            return null;
+        }
+
+        int schemeEnd = downloadTarget.indexOf("://");
+
+        if (schemeEnd > 0) {
+            if (commandTree.hasOption(OPTION_FORCE_GENERIC)) {
+                return null;
+            }
+
+            // Only the host says anything about which site it is
+            int hostEnd = downloadTarget.indexOf('/', schemeEnd + 3);
+            String targetHost = downloadTarget.substring(
+                    schemeEnd + 3,
+                    (hostEnd > 0) ? hostEnd : downloadTarget.length()
+            );
+
+            return findExtractorsForTarget(targetHost, 1).isEmpty()
+                    ? OPTION_FORCE_GENERIC
+                    : null;
+        }
+
+        // Anything qualified ("ytsearch5:", "youtube:playlist") or a URL missing its scheme is left alone
+        if (downloadTarget.indexOf(':') >= 0 || downloadTarget.indexOf('.') >= 0 || commandTree.hasOption(OPTION_DEFAULT_SEARCH)) {
+            return null;
+        }
+
+        // Straight after an option, it's more likely to be that option's value than a target
+        if (commandTree.getTokenKind(targetToken - 1) == ModelYtdlCommandTree.TOKEN_OPTION) {
+            return null;
+        }
+
+        // Plain words that aren't a flag of their own: let youtube-dl work out where to search
+        return (findExtractorByName(downloadTarget) == null)
+                ? OPTION_DEFAULT_SEARCH + " " + DEFAULT_SEARCH_AUTO
+                : null;
+    }
+
+
+    private int findNameIndex(CharSequence extractorName) {
+        return mPrefixTrie.findNameIndex(extractorName);
+    }
+
+    // endregion
+
+
+    // region ================== INDEX BUILDING ==================
+    // ====== ================== ============== ==================
+
+
+    private static Map<String, int[]> buildTokenIndex(String[] lowerNames) {
+
+        Map<String, List<Integer>> tokenLists = new HashMap<>();
+
+        for (int nameIndex = 0; nameIndex < lowerNames.length; nameIndex++) {
+            for (String nameToken : splitTokens(lowerNames[nameIndex])) {
+
+                List<Integer> tokenList = tokenLists.get(nameToken);
+                if (tokenList == null) {
+                    tokenList = new ArrayList<>();
+                    tokenLists.put(nameToken, tokenList);
+                }
+
+                // Names like "foo:foo" only need to be listed once per token
+                if (tokenList.isEmpty() || tokenList.get(tokenList.size() - 1) != nameIndex) {
+                    tokenList.add(nameIndex);
+                }
+            }
+        }
+
+        // Flatten down to int arrays, no need to keep all the boxed Integers around
+        Map<String, int[]> tokenIndex = new HashMap<>(tokenLists.size() * 2);
+
+        for (Map.Entry<String, List<Integer>> tokenEntry : tokenLists.entrySet()) {
+
+            int[] nameIndexes = new int[tokenEntry.getValue().size()];
+            for (int listIndex = 0; listIndex < nameIndexes.length; listIndex++) {
+                nameIndexes[listIndex] = tokenEntry.getValue().get(listIndex);
+            }
+
+            tokenIndex.put(tokenEntry.getKey(), nameIndexes);
+        }
+
+        return tokenIndex;
+    }
+
+
+    /**
+     * Split on anything that isn't a letter or digit, skipping single characters (too vague to match on)
+     */
+    private static List<String> splitTokens(String lowerText) {
+
+        List<String> textTokens = new ArrayList<>();
+        int tokenStart = -1;
+
+        for (int charIndex = 0; charIndex <= lowerText.length(); charIndex++) {
+
+            boolean isTokenChar = charIndex < lowerText.length() && Character.isLetterOrDigit(lowerText.charAt(charIndex));
+
+            if (isTokenChar && tokenStart < 0) {
+                tokenStart = charIndex;
+
+            } else if (!isTokenChar && tokenStart >= 0) {
+                if (charIndex - tokenStart > 1) {
+                    textTokens.add(lowerText.substring(tokenStart, charIndex));
+                }
+                tokenStart = -1;
+            }
+        }
+
+        return textTokens;
+    }
+
+    // endregion
+
+}
@@ -0,0 +1,272 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+/**
+ * Argument schema of an Option, worked out once from the metavar at the end of its command switch
+ * (e.g. the "SIZE" in "--min-filesize SIZE").
+ *
+ * Holds how many arguments the Option takes, what kind of value they are and where the metavar sits in
+ * the command switch (so it can be highlighted after inserting), plus a validator for that kind of value.
+ */
+final class ModelYtdlOptionArgs {
+
+    // Kinds of argument value
+    static final int ARG_NONE = 0;
+    static final int ARG_TEXT = 1;
+    static final int ARG_PATH = 2;
+    static final int ARG_URL = 3;
+    static final int ARG_SIZE = 4;
+    static final int ARG_RATE = 5;
+    static final int ARG_INTEGER = 6;
+    static final int ARG_RETRIES = 7;
+    static final int ARG_SECONDS = 8;
+    static final int ARG_DATE = 9;
+    static final int ARG_QUALITY = 10;
+    static final int ARG_FORMAT = 11;
+    static final int ARG_TEMPLATE = 12;
+
+    // Retries can be given as a number or just left to go on forever
+    private static final String RETRIES_INFINITE = "infinite";
+
+    // Audio quality is either a VBR level between these, or a specific bitrate (e.g. 128K)
+    private static final int QUALITY_VBR_BEST = 0;
+    private static final int QUALITY_VBR_WORST = 9;
+
+    // Shared schema for all the Options without arguments
+    static final ModelYtdlOptionArgs NO_ARGS = new ModelYtdlOptionArgs(ARG_NONE, 0, 0, 0);
+
+    private final int argKind;
+    private final int argCount;
+
+    // Position of the metavar(s) within the command switch
+    private final int argStart;
+    private final int argLength;
+
+
+    private ModelYtdlOptionArgs(int kind, int count, int start, int length) {
+        argKind = kind;
+        argCount = count;
+        argStart = start;
+        argLength = length;
+    }
+
+
+    /**
+     * Work out the argument schema from the metavars on the end of the given command switch. The metavars are the
+     * trailing words made up of capital letters, numbers, underscores and colons (e.g. "FIELD:VALUE", "ITEM_SPEC").
+     */
+    static ModelYtdlOptionArgs parseCmdSwitch(CharSequence cmdSwitch) {
+
+        int switchEnd = cmdSwitch.length();
+        while (switchEnd > 0 && cmdSwitch.charAt(switchEnd - 1) == ' ') {
+            switchEnd--;
+        }
+
+        int metavarStart = switchEnd;
+        int firstWordStart = -1;
+        int firstWordEnd = -1;
+        int wordCount = 0;
+
+        // Walk back a word at a time, stopping at the first word that isn't a metavar (the switch itself)
+        int wordEnd = switchEnd;
+        while (wordEnd > 0) {
+
+            int wordStart = wordEnd;
+            while (wordStart > 0 && cmdSwitch.charAt(wordStart - 1) != ' ') {
+                wordStart--;
+            }
+
+            // Always needs to be a switch in front of the metavars
+            if (wordStart == 0 || !isMetavarWord(cmdSwitch, wordStart, wordEnd)) {
+                break;
+            }
+
+            metavarStart = wordStart;
+            firstWordStart = wordStart;
+            firstWordEnd = wordEnd;
+            wordCount++;
+
+            wordEnd = wordStart;
+            while (wordEnd > 0 && cmdSwitch.charAt(wordEnd - 1) == ' ') {
+                wordEnd--;
+            }
+        }
+
+        if (wordCount == 0) {
+            return NO_ARGS;
+        }
+
+        return new ModelYtdlOptionArgs(
+                getMetavarKind(cmdSwitch.subSequence(firstWordStart, firstWordEnd).toString()),
+                wordCount,
+                metavarStart,
+                switchEnd - metavarStart
+        );
+    }
+
+
+    private static boolean isMetavarWord(CharSequence cmdSwitch, int wordStart, int wordEnd) {
+
+        boolean hasLetter = false;
+
+        for (int charIndex = wordStart; charIndex < wordEnd; charIndex++) {
+            char wordChar = cmdSwitch.charAt(charIndex);
+
+            if (wordChar >= 'A' && wordChar <= 'Z') {
+                hasLetter = true;
+
+            } else if (!(wordChar >= '0' && wordChar <= '9') && wordChar != '_' && wordChar != ':') {
+                return false;
+            }
+        }
+
+        return hasLetter;
+    }
+
+
+    /**
+     * Match up the metavar names used in the YTDL help text with the kind of value they take
+     */
+    private static int getMetavarKind(String metavar) {
+
+        switch (metavar) {
+            case "PATH":
+            case "FILE":
+            case "DIR":
+                return ARG_PATH;
+
+            case "URL":
+                return ARG_URL;
+
+            case "SIZE":
+                return ARG_SIZE;
+
+            case "RATE":
+                return ARG_RATE;
+
+            case "NUMBER":
+            case "COUNT":
+            case "YEARS":
+                return ARG_INTEGER;
+
+            case "RETRIES":
+                return ARG_RETRIES;
+
+            case "SECONDS":
+                return ARG_SECONDS;
+
+            case "DATE":
+                return ARG_DATE;
+
+            case "QUALITY":
+                return ARG_QUALITY;
+
+            case "FORMAT":
+                return ARG_FORMAT;
+
+            case "TEMPLATE":
+                return ARG_TEMPLATE;
+
+            default:
+                return ARG_TEXT;
+        }
+    }
+
+
+    boolean hasArgs() {
+        return argCount > 0;
+    }
+
+
+    int getArgKind() {
+        return argKind;
+    }
+
+
+    int getArgCount() {
+        return argCount;
+    }
+
+
+    /**
+     * Start index of the metavar(s) in the command switch
+     */
+    int getArgStart() {
+        return argStart;
+    }
+
+
+    /**
+     * Length of the metavar(s) in the command switch (including the spaces between them if there's more than one)
+     */
+    int getArgLength() {
+        return argLength;
+    }
+
+
+    /**
+     * Check whether the given value would be accepted for this kind of argument. Surrounding quotes are ignored.
+     */
+    boolean isValidArg(String argValue) {
+
+        if (argValue == null) {
+            return !hasArgs();
+        }
+
+        String checkValue = stripQuotes(argValue);
+
+        switch (argKind) {
+            case ARG_NONE:
+                return checkValue.isEmpty();
+
+            case ARG_PATH:
+                return UtilStringValidationOps.isValidPath(checkValue);
+
+            case ARG_URL:
+                return UtilStringValidationOps.isValidUrl(checkValue);
+
+            case ARG_SIZE:
+            case ARG_RATE:
+                return UtilStringValidationOps.isValidByteSize(checkValue);
+
+            case ARG_INTEGER:
+                return UtilStringValidationOps.isValidInteger(checkValue, 0, Integer.MAX_VALUE);
+
+            case ARG_RETRIES:
+                return RETRIES_INFINITE.equals(checkValue)
+                        || UtilStringValidationOps.isValidInteger(checkValue, 0, Integer.MAX_VALUE);
+
+            case ARG_SECONDS:
+                return UtilStringValidationOps.isValidDecimal(checkValue);
+
+            case ARG_DATE:
+                return UtilStringValidationOps.isValidDate(checkValue);
+
+            case ARG_QUALITY:
+                return UtilStringValidationOps.isValidInteger(checkValue, QUALITY_VBR_BEST, QUALITY_VBR_WORST)
+                        || UtilStringValidationOps.isValidByteSize(checkValue);
+
+            case ARG_TEMPLATE:
+                return UtilStringValidationOps.isValidOutputTemplate(checkValue);
+
+            case ARG_FORMAT:
+            case ARG_TEXT:
+            default:
+                return !checkValue.trim().isEmpty();
+        }
+    }
+
+
+    private static String stripQuotes(String argValue) {
+
+        if (argValue.length() >= 2) {
+            char firstChar = argValue.charAt(0);
+
+            if ((firstChar == '"' || firstChar == '\'') && argValue.charAt(argValue.length() - 1) == firstChar) {
+                return argValue.substring(1, argValue.length() - 1);
+            }
+        }
+
+        return argValue;
+    }
+
+}
@@ -0,0 +1,190 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Option lists for several versions of the YTDL help text, loaded side by side so switching between them is
+ * just a lookup.
+ *
+ * All the versions share one interning text arena, so an option that reads exactly the same in every version
+ * is only stored once. Each version keeps a bitset of which arena entries it uses, which makes comparing two
+ * versions a couple of bitset operations.
+ */
+final class ModelYtdlOptionCorpus {
+
+    // Version Id of the default help text (the bundled one, or its replacement in the files dir)
+    static final String DEFAULT_VERSION_ID = "";
+
+    private final ModelYtdlTextArena mTextArena;
+
+    private final List<String> mVersionIds = new ArrayList<>();
+    private final List<List<ModelYtdlOptionSection>> mVersionOptionLists = new ArrayList<>();
+    private final List<BitSet> mVersionEntries = new ArrayList<>();
+    private final List<ModelYtdlOptionSearchIndex> mVersionSearchIndexes = new ArrayList<>();
+    private final List<ModelYtdlSwitchTrie> mVersionSwitchTries = new ArrayList<>();
+
+    // Argument schema of every command switch in any version, for quick lookups when inserting into the command
+    private final Map<String, ModelYtdlOptionArgs> mSwitchArgs = new HashMap<>();
+
+
+    ModelYtdlOptionCorpus(ModelYtdlTextArena textArena) {
+        mTextArena = textArena;
+    }
+
+
+    /**
+     * Shared text arena that each version's option list should be loaded into
+     */
+    ModelYtdlTextArena getTextArena() {
+        return mTextArena;
+    }
+
+
+    /**
+     * Add a loaded version (only used while loading, the corpus is read-only after that)
+     */
+    void addVersion(String versionId, List<ModelYtdlOptionSection> optionList) {
+
+        BitSet versionEntries = new BitSet(mTextArena.getEntryCount());
+
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                versionEntries.set(optionItem.getTextEntry());
+                mSwitchArgs.put(optionItem.getCmdSwitch().toString(), optionItem.getOptionArgs());
+            }
+        }
+
+        mVersionIds.add(versionId);
+        mVersionOptionLists.add(Collections.unmodifiableList(optionList));
+        mVersionEntries.add(versionEntries);
+        mVersionSearchIndexes.add(ModelYtdlOptionSearchIndex.build(optionList));
+        mVersionSwitchTries.add(ModelYtdlSwitchTrie.build(optionList));
+    }
+
+
+    List<String> getVersionIds() {
+        return Collections.unmodifiableList(mVersionIds);
+    }
+
+
+    boolean hasVersion(String versionId) {
+        return mVersionIds.contains(versionId);
+    }
+
+
+    /**
+     * Option list of the given version, falling back to the default version if it isn't in the corpus
+     */
+    List<ModelYtdlOptionSection> getOptionList(String versionId) {
+        return mVersionOptionLists.get(getVersionIndexOrDefault(versionId));
+    }
+
+
+    /**
+     * Search index of the given version's option list (same fallback as getOptionList())
+     */
+    ModelYtdlOptionSearchIndex getSearchIndex(String versionId) {
+        return mVersionSearchIndexes.get(getVersionIndexOrDefault(versionId));
+    }
+
+
+    /**
+     * Switch completion trie of the given version's option list (same fallback as getOptionList())
+     */
+    ModelYtdlSwitchTrie getSwitchTrie(String versionId) {
+        return mVersionSwitchTries.get(getVersionIndexOrDefault(versionId));
+    }
+
+
+    /**
+     * Argument schema of the given command switch, or null if it isn't from any of the loaded versions
+     */
+    ModelYtdlOptionArgs getOptionArgs(String cmdSwitch) {
+        return mSwitchArgs.get(cmdSwitch);
+    }
+
+
+    /**
+     * Number of distinct options across all the versions
+     */
+    int getDistinctOptionCount() {
+        return mTextArena.getEntryCount();
+    }
+
+
+    /**
+     * Options in the second version that aren't in the first (in the order they're listed in the second version)
+     *
+     * @return Null if either version isn't in the corpus
+     */
+    List<ModelYtdlOptionItem> getAddedOptions(String fromVersionId, String toVersionId) {
+        return getMissingOptions(getVersionIndex(toVersionId), getVersionIndex(fromVersionId));
+    }
+
+
+    /**
+     * Options in the first version that aren't in the second (in the order they're listed in the first version)
+     *
+     * @return Null if either version isn't in the corpus
+     */
+    List<ModelYtdlOptionItem> getRemovedOptions(String fromVersionId, String toVersionId) {
+        return getMissingOptions(getVersionIndex(fromVersionId), getVersionIndex(toVersionId));
+    }
+
+
+    /**
+     * Pick out the Option Items of the source version whose text doesn't turn up anywhere in the other version.
+     * An option with a reworded description counts as removed from one and added to the other.
+     */
+    private List<ModelYtdlOptionItem> getMissingOptions(int sourceIndex, int otherIndex) {
+
+        // Comparing against some other version than the one asked for would give a wrong answer, not a fallback
+        if (sourceIndex < 0 || otherIndex < 0) {
+            return null;
+        }
+
+        BitSet missingEntries = (BitSet) mVersionEntries.get(sourceIndex).clone();
+        missingEntries.andNot(mVersionEntries.get(otherIndex));
+
+        List<ModelYtdlOptionItem> missingOptions = new ArrayList<>(missingEntries.cardinality());
+
+        if (!missingEntries.isEmpty()) {
+            for (ModelYtdlOptionSection optionSection : mVersionOptionLists.get(sourceIndex)) {
+                for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                    if (missingEntries.get(optionItem.getTextEntry())) {
+                        missingOptions.add(optionItem);
+                    }
+                }
+            }
+        }
+
+        return missingOptions;
+    }
+
+
+    /**
+     * @return Index of the given version, or -1 if it isn't in the corpus
+     */
+    private int getVersionIndex(String versionId) {
+        return mVersionIds.indexOf(versionId);
+    }
+
+
+    /**
+     * Index of the given version, or of the default version if it isn't in the corpus (e.g. a selected version
+     * whose file has since gone)
+     */
+    private int getVersionIndexOrDefault(String versionId) {
+        int versionIndex = getVersionIndex(versionId);
+
+        return (versionIndex >= 0)
+                ? versionIndex
+                : getVersionIndex(DEFAULT_VERSION_ID);
+    }
+
+}
@@ -17,49 +17,87 @@ public class ModelYtdlOptionItem implements ModelYtdlBaseItem {
     private final int superId;
     private final int parentId;
 
-    // The extracted switch option to be inserted into the command (without dupes)
-    private final String txtCmdSwitch;
+    // Index of the text entry in the arena (items with the same entry index share the same text)
+    private final int textEntry;
 
-    // The switch as listed in the help file
-    private final String lblOptionFlag;
+    // Text lives in the shared arena page, laid out as "[flag label] [description]"
+    private final char[] textChars;
+    private final int flagStart;
+    private final int flagLength;
+    private final int descLength;
 
-    // The switch description as listed in the help file
-    private final StringBuilder lblOptionDescription;
+    // The extracted switch option to be inserted into the command (normally the tail end of the flag label)
+    private final int switchStart;
+    private final int switchLength;
+
+    // Argument schema worked out from the command switch when the item was loaded
+    private final ModelYtdlOptionArgs optionArgs;
 
 
-    ModelYtdlOptionItem(int itemId, int headerId, String cmdSwitch, String optionFlag, String optionDescription) {
+    // Only created through ModelYtdlTextArena, which owns the text storage
+    ModelYtdlOptionItem(int itemId, int headerId, int entryIndex, char[] arenaChars, int labelStart, int labelLength, int descriptionLength, int cmdSwitchStart, int cmdSwitchLength, ModelYtdlOptionArgs cmdSwitchArgs) {
         superId = itemId;
         parentId = headerId;
-        txtCmdSwitch = cmdSwitch;
-        lblOptionFlag = optionFlag;
-        lblOptionDescription = new StringBuilder(optionDescription);
+        textEntry = entryIndex;
+        textChars = arenaChars;
+        flagStart = labelStart;
+        flagLength = labelLength;
+        descLength = descriptionLength;
+        switchStart = cmdSwitchStart;
+        switchLength = cmdSwitchLength;
+        optionArgs = cmdSwitchArgs;
+    }
+
+
+    /**
+     * Same option text at a different spot in the list (the text itself is shared, not copied)
+     */
+    ModelYtdlOptionItem copyWithIds(int itemId, int headerId) {
+        return new ModelYtdlOptionItem(
+                itemId,
+                headerId,
+                textEntry,
+                textChars,
+                flagStart,
+                flagLength,
+                descLength,
+                switchStart,
+                switchLength,
+                optionArgs
+        );
     }
 
 
-    public String getCmdSwitch() {
-        return txtCmdSwitch;
+    int getTextEntry() {
+        return textEntry;
     }
 
 
-    public String getFlagLabel() {
-        return lblOptionFlag;
+    ModelYtdlOptionArgs getOptionArgs() {
+        return optionArgs;
     }
 
 
-    public void appendDescription(String extraDescription) {
-        lblOptionDescription
-                .append(" ")
-                .append(extraDescription);
+    public CharSequence getCmdSwitch() {
+        return new ModelYtdlTextArena.TextSpan(textChars, switchStart, switchLength);
     }
 
 
-    public String getDescription() {
-        return lblOptionDescription.toString();
+    // The switch as listed in the help file
+    public CharSequence getFlagLabel() {
+        return new ModelYtdlTextArena.TextSpan(textChars, flagStart, flagLength);
+    }
+
+
+    // The switch description as listed in the help file
+    public CharSequence getDescription() {
+        return new ModelYtdlTextArena.TextSpan(textChars, flagStart + flagLength + 1, descLength);
     }
 
 
-    public String getFullDescription() {
-        return lblOptionFlag + " " + lblOptionDescription.toString();
+    // Flag label and description together, already sitting next to each other in the arena
+    public CharSequence getFullDescription() {
+        return new ModelYtdlTextArena.TextSpan(textChars, flagStart, flagLength + 1 + descLength);
     }
 
 
@@ -0,0 +1,1048 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Search index over an Option List, built once when the list loads so filtering doesn't need to create
+ * any new Strings per item.
+ *
+ * Every item's full description is lowercased up front into one shared char array, and each three character
+ * run (trigram) of that text maps to a sorted list of the items containing it. A filter query only needs to
+ * intersect the lists of its own trigrams, then check the few candidates left for the actual substring.
+ * Queries shorter than a trigram just scan the lowercased text.
+ *
+ * There's also a ranked search, which puts the best matches first and lets switch names through with a typo or two.
+ */
+final class ModelYtdlOptionSearchIndex {
+
+    private static final int GRAM_LENGTH = 3;
+
+    // How many items to get through between checks on whether the search has been called off
+    private static final int CANCEL_CHECK_MASK = 31;
+
+    // Marks a used slot in the trigram table (three chars only take up the low 48 bits)
+    private static final long GRAM_KEY_USED = 1L << 48;
+
+    // Sections the index was built from, so it can tell if it still matches the list being shown
+    private final List<ModelYtdlOptionSection> mIndexedSections;
+
+    // All Option Items in list order, the postings below are indexes into this
+    private final ModelYtdlOptionItem[] mOptionItems;
+    private final Map<ModelYtdlOptionItem, Integer> mItemIndexes;
+
+    // Lowercased full description of item N runs from mTextStarts[N] to mTextStarts[N + 1]
+    private final char[] mLowerText;
+    private final int[] mTextStarts;
+
+    // Open addressed trigram table, each used slot points at its run of item indexes in mPostings
+    private final long[] mGramKeys;
+    private final int[] mPostingStarts;
+    private final int[] mPostingLengths;
+    private final int[] mPostings;
+
+    // Flag label of item N is the first mFlagLengths[N] chars of its text (the description follows after a space)
+    private final int[] mFlagLengths;
+
+    // Switch names in the flag labels without their dashes, item N's names are entries mItemNameStarts[N]
+    // up to mItemNameStarts[N + 1] of the start / end arrays (positions in mLowerText)
+    private final int[] mItemNameStarts;
+    private final int[] mNameStarts;
+    private final int[] mNameEnds;
+
+
+    /**
+     * Build the index for the given Option List
+     */
+    static ModelYtdlOptionSearchIndex build(List<ModelYtdlOptionSection> optionList) {
+        return new ModelYtdlOptionSearchIndex(optionList);
+    }
+
+
+    private ModelYtdlOptionSearchIndex(List<ModelYtdlOptionSection> optionList) {
+
+        // Keep a copy of the Section list, the caller's list could be swapped out / added to later
+        mIndexedSections = Collections.unmodifiableList(
+                new ArrayList<>(optionList)
+        );
+
+        // Flatten the items out and lowercase all their text into the one array
+        List<ModelYtdlOptionItem> itemList = new ArrayList<>();
+        int textLength = 0;
+
+        for (ModelYtdlOptionSection optionSection : mIndexedSections) {
+            for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                itemList.add(optionItem);
+                textLength += optionItem.getFullDescription().length();
+            }
+        }
+
+        mOptionItems = itemList.toArray(new ModelYtdlOptionItem[itemList.size()]);
+
+        // Items don't know their own place in the list, so keep a lookup for the match highlighting
+        mItemIndexes = new IdentityHashMap<>(mOptionItems.length);
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+            mItemIndexes.put(mOptionItems[itemIndex], itemIndex);
+        }
+        mLowerText = new char[textLength];
+        mTextStarts = new int[mOptionItems.length + 1];
+        mFlagLengths = new int[mOptionItems.length];
+
+        int textPosition = 0;
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+            mTextStarts[itemIndex] = textPosition;
+            mFlagLengths[itemIndex] = mOptionItems[itemIndex].getFlagLabel().length();
+
+            CharSequence fullDescription = mOptionItems[itemIndex].getFullDescription();
+            for (int charIndex = 0; charIndex < fullDescription.length(); charIndex++) {
+                mLowerText[textPosition++] = Character.toLowerCase(fullDescription.charAt(charIndex));
+            }
+        }
+        mTextStarts[mOptionItems.length] = textPosition;
+
+        // First pass counts how many items each trigram turns up in, second pass fills in the postings
+        GramTableBuilder tableBuilder = new GramTableBuilder();
+
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+            for (int gramStart = mTextStarts[itemIndex]; gramStart <= mTextStarts[itemIndex + 1] - GRAM_LENGTH; gramStart++) {
+                tableBuilder.countGram(gramKey(mLowerText, gramStart), itemIndex);
+            }
+        }
+
+        mPostingStarts = tableBuilder.startPostings();
+        mPostings = new int[tableBuilder.getPostingCount()];
+
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+            for (int gramStart = mTextStarts[itemIndex]; gramStart <= mTextStarts[itemIndex + 1] - GRAM_LENGTH; gramStart++) {
+                tableBuilder.addPosting(gramKey(mLowerText, gramStart), itemIndex, mPostings);
+            }
+        }
+
+        mGramKeys = tableBuilder.mGramKeys;
+        mPostingLengths = tableBuilder.mGramCounts;
+
+        // Pick the switch names out of each flag label for the ranked search
+        List<int[]> nameRanges = new ArrayList<>();
+        mItemNameStarts = new int[mOptionItems.length + 1];
+
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+            mItemNameStarts[itemIndex] = nameRanges.size();
+            addSwitchNames(mLowerText, mTextStarts[itemIndex], mTextStarts[itemIndex] + mFlagLengths[itemIndex], nameRanges);
+        }
+        mItemNameStarts[mOptionItems.length] = nameRanges.size();
+
+        mNameStarts = new int[nameRanges.size()];
+        mNameEnds = new int[nameRanges.size()];
+
+        for (int nameIndex = 0; nameIndex < nameRanges.size(); nameIndex++) {
+            mNameStarts[nameIndex] = nameRanges.get(nameIndex)[0];
+            mNameEnds[nameIndex] = nameRanges.get(nameIndex)[1];
+        }
+    }
+
+
+    /**
+     * Every word in the flag label that starts with a dash is a switch, e.g. "-o, --output TEMPLATE" has "o" and "output"
+     */
+    private static void addSwitchNames(char[] lowerText, int labelStart, int labelEnd, List<int[]> nameRanges) {
+
+        int wordStart = labelStart;
+
+        while (wordStart < labelEnd) {
+            int wordEnd = wordStart;
+            while (wordEnd < labelEnd && lowerText[wordEnd] != ' ' && lowerText[wordEnd] != ',') {
+                wordEnd++;
+            }
+
+            if (wordEnd > wordStart && lowerText[wordStart] == '-') {
+                int nameStart = wordStart;
+                while (nameStart < wordEnd && lowerText[nameStart] == '-') {
+                    nameStart++;
+                }
+
+                if (nameStart < wordEnd) {
+                    nameRanges.add(new int[] {nameStart, wordEnd});
+                }
+            }
+
+            wordStart = wordEnd + 1;
+        }
+    }
+
+
+    /**
+     * Check whether this index was built from (the same Sections as) the given list
+     */
+    boolean isIndexOf(List<ModelYtdlOptionSection> optionList) {
+
+        if (optionList == null || optionList.size() != mIndexedSections.size()) {
+            return false;
+        }
+
+        for (int sectionIndex = 0; sectionIndex < optionList.size(); sectionIndex++) {
+            if (optionList.get(sectionIndex) != mIndexedSections.get(sectionIndex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    int getItemCount() {
+        return mOptionItems.length;
+    }
+
+
+    /**
+     * All the Option Items whose full description contains the filter text (ignoring case), in list order
+     */
+    List<ModelYtdlOptionItem> findMatches(CharSequence filterText) {
+
+        char[] lowerFilter = toLowerChars(filterText);
+
+        return getOptionItems(
+                checkCandidates(findCandidateItems(lowerFilter), lowerFilter, null)
+        );
+    }
+
+
+    /**
+     * Item indexes that might contain the (lowercased) filter text. Having all the trigrams doesn't mean they're
+     * in the right order, so these still need to go through checkCandidates().
+     */
+    int[] findCandidateItems(char[] lowerFilter) {
+
+        // Too short to have a trigram, so everything is a candidate
+        if (lowerFilter.length < GRAM_LENGTH) {
+            int[] allItems = new int[mOptionItems.length];
+            for (int itemIndex = 0; itemIndex < allItems.length; itemIndex++) {
+                allItems[itemIndex] = itemIndex;
+            }
+            return allItems;
+        }
+
+        return intersectGramPostings(lowerFilter);
+    }
+
+
+    /**
+     * Narrow the given (sorted) item indexes down to the ones that actually contain the (lowercased) filter text
+     *
+     * @param cancelSignal Checked along the way to bail out of a search that's no longer needed (can be null)
+     */
+    int[] checkCandidates(int[] candidateItems, char[] lowerFilter, CancelSignal cancelSignal) {
+
+        int[] matchedItems = new int[candidateItems.length];
+        int matchedCount = 0;
+
+        for (int candidateIndex = 0; candidateIndex < candidateItems.length; candidateIndex++) {
+            int itemIndex = candidateItems[candidateIndex];
+
+            if (cancelSignal != null && (candidateIndex & CANCEL_CHECK_MASK) == 0) {
+                cancelSignal.throwIfCancelled();
+            }
+
+            if (itemContains(itemIndex, lowerFilter)) {
+                matchedItems[matchedCount++] = itemIndex;
+            }
+        }
+
+        return Arrays.copyOf(matchedItems, matchedCount);
+    }
+
+
+    List<ModelYtdlOptionItem> getOptionItems(int[] itemIndexes) {
+
+        List<ModelYtdlOptionItem> optionItems = new ArrayList<>(itemIndexes.length);
+
+        for (int itemIndex : itemIndexes) {
+            optionItems.add(mOptionItems[itemIndex]);
+        }
+
+        return optionItems;
+    }
+
+
+    /**
+     * Lowercase the text the same way as the indexed text (one char at a time, so the positions line up)
+     */
+    static char[] toLowerChars(CharSequence filterText) {
+
+        char[] lowerChars = new char[filterText.length()];
+
+        for (int charIndex = 0; charIndex < lowerChars.length; charIndex++) {
+            lowerChars[charIndex] = Character.toLowerCase(filterText.charAt(charIndex));
+        }
+
+        return lowerChars;
+    }
+
+
+    /**
+     * Intersect the postings of every trigram in the filter, starting from the shortest
+     */
+    private int[] intersectGramPostings(char[] lowerFilter) {
+
+        int gramCount = lowerFilter.length - GRAM_LENGTH + 1;
+        int[] gramSlots = new int[gramCount];
+
+        for (int gramStart = 0; gramStart < gramCount; gramStart++) {
+            int gramSlot = findSlot(gramKey(lowerFilter, gramStart));
+
+            // A trigram that isn't in any item means nothing can match
+            if (gramSlot < 0) {
+                return new int[0];
+            }
+            gramSlots[gramStart] = gramSlot;
+        }
+
+        int shortestSlot = gramSlots[0];
+        for (int gramSlot : gramSlots) {
+            if (mPostingLengths[gramSlot] < mPostingLengths[shortestSlot]) {
+                shortestSlot = gramSlot;
+            }
+        }
+
+        int[] candidateItems = Arrays.copyOfRange(
+                mPostings,
+                mPostingStarts[shortestSlot],
+                mPostingStarts[shortestSlot] + mPostingLengths[shortestSlot]
+        );
+        int candidateCount = candidateItems.length;
+
+        for (int gramSlot : gramSlots) {
+            if (gramSlot != shortestSlot && candidateCount > 0) {
+                candidateCount = intersectPostings(candidateItems, candidateCount, gramSlot);
+            }
+        }
+
+        return Arrays.copyOf(candidateItems, candidateCount);
+    }
+
+
+    /**
+     * Keep only the candidates that are also in the given trigram's postings (both lists are sorted)
+     *
+     * @return Number of candidates left at the front of the array
+     */
+    private int intersectPostings(int[] candidateItems, int candidateCount, int gramSlot) {
+
+        int postingIndex = mPostingStarts[gramSlot];
+        int postingEnd = postingIndex + mPostingLengths[gramSlot];
+        int keptCount = 0;
+
+        for (int candidateIndex = 0; candidateIndex < candidateCount && postingIndex < postingEnd; candidateIndex++) {
+            int candidateItem = candidateItems[candidateIndex];
+
+            while (postingIndex < postingEnd && mPostings[postingIndex] < candidateItem) {
+                postingIndex++;
+            }
+
+            if (postingIndex < postingEnd && mPostings[postingIndex] == candidateItem) {
+                candidateItems[keptCount++] = candidateItem;
+            }
+        }
+
+        return keptCount;
+    }
+
+
+    private boolean itemContains(int itemIndex, char[] lowerFilter) {
+
+        int lastStart = mTextStarts[itemIndex + 1] - lowerFilter.length;
+
+        for (int textStart = mTextStarts[itemIndex]; textStart <= lastStart; textStart++) {
+            int charIndex = 0;
+
+            while (charIndex < lowerFilter.length && mLowerText[textStart + charIndex] == lowerFilter[charIndex]) {
+                charIndex++;
+            }
+
+            if (charIndex == lowerFilter.length) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    private int findSlot(long gramKey) {
+
+        int slotMask = mGramKeys.length - 1;
+        int gramSlot = hashGram(gramKey) & slotMask;
+
+        while (mGramKeys[gramSlot] != 0) {
+            if (mGramKeys[gramSlot] == gramKey) {
+                return gramSlot;
+            }
+            gramSlot = (gramSlot + 1) & slotMask;
+        }
+
+        return -1;
+    }
+
+
+    private static long gramKey(char[] textChars, int gramStart) {
+        return GRAM_KEY_USED
+                | ((long) textChars[gramStart] << 32)
+                | ((long) textChars[gramStart + 1] << 16)
+                | (long) textChars[gramStart + 2];
+    }
+
+
+    private static int hashGram(long gramKey) {
+        long gramHash = gramKey * 0x9E3779B97F4A7C15L;
+        return (int) (gramHash >>> 32);
+    }
+
+
+    // Match scores by where the query turned up (switch name over flag label over description)
+    private static final int SCORE_SWITCH_EXACT = 100;
+    private static final int SCORE_SWITCH_PREFIX = 80;
+    private static final int SCORE_SWITCH_CONTAINS = 60;
+    private static final int SCORE_SWITCH_TYPO = 50;
+    private static final int SCORE_TYPO_PENALTY = 10;
+    private static final int SCORE_LABEL = 40;
+    private static final int SCORE_DESCRIPTION_WORD = 25;
+    private static final int SCORE_DESCRIPTION = 20;
+
+    // Typos allowed in a switch name, going by how long the query is (short queries need to be spot on)
+    private static final int TYPO_MIN_LENGTH_ONE = 4;
+    private static final int TYPO_MIN_LENGTH_TWO = 8;
+
+
+    /**
+     * Best matching Option Items for the filter text, best first. Switch names are matched allowing for a couple
+     * of typos, the flag label and description just need to contain the text. Only the top results are kept
+     * (in a bounded heap) rather than sorting every match.
+     *
+     * @param cancelSignal Checked along the way to bail out of a search that's no longer needed (can be null)
+     */
+    List<ModelYtdlOptionItem> findRankedMatches(CharSequence filterText, int maxResults, CancelSignal cancelSignal) {
+
+        char[] lowerFilter = toLowerChars(filterText);
+        char[] nameQuery = toNameQuery(lowerFilter);
+        int maxTypos = getMaxTypos(nameQuery);
+
+        // Edit distance rows, shared by every name checked in this query
+        int[][] editRows = new int[3][nameQuery.length + 1];
+
+        // Only the trigram candidates can contain the whole filter text in their label / description
+        int[] textCandidates = findCandidateItems(lowerFilter);
+        int candidatePosition = 0;
+
+        RankedItemHeap rankedItems = new RankedItemHeap(Math.max(maxResults, 0));
+
+        for (int itemIndex = 0; itemIndex < mOptionItems.length; itemIndex++) {
+
+            if (cancelSignal != null && (itemIndex & CANCEL_CHECK_MASK) == 0) {
+                cancelSignal.throwIfCancelled();
+            }
+
+            int itemScore = 0;
+
+            if (nameQuery.length > 0) {
+                for (int nameIndex = mItemNameStarts[itemIndex]; nameIndex < mItemNameStarts[itemIndex + 1]; nameIndex++) {
+                    itemScore = Math.max(
+                            itemScore,
+                            scoreSwitchName(mNameStarts[nameIndex], mNameEnds[nameIndex], nameQuery, maxTypos, editRows)
+                    );
+                }
+            }
+
+            while (candidatePosition < textCandidates.length && textCandidates[candidatePosition] < itemIndex) {
+                candidatePosition++;
+            }
+
+            if (itemScore < SCORE_LABEL && lowerFilter.length > 0 && candidatePosition < textCandidates.length && textCandidates[candidatePosition] == itemIndex) {
+                itemScore = Math.max(itemScore, scoreItemText(itemIndex, lowerFilter));
+            }
+
+            if (itemScore > 0) {
+                rankedItems.offer(itemIndex, itemScore);
+            }
+        }
+
+        return getOptionItems(rankedItems.drainBestFirst());
+    }
+
+
+    /**
+     * Switch names are stored without the dashes, so match them without the query's dashes / spaces too
+     */
+    private static char[] toNameQuery(char[] lowerFilter) {
+
+        int nameQueryStart = 0;
+        int nameQueryEnd = lowerFilter.length;
+        while (nameQueryStart < nameQueryEnd && (lowerFilter[nameQueryStart] == '-' || lowerFilter[nameQueryStart] == ' ')) {
+            nameQueryStart++;
+        }
+        while (nameQueryEnd > nameQueryStart && lowerFilter[nameQueryEnd - 1] == ' ') {
+            nameQueryEnd--;
+        }
+
+        return Arrays.copyOfRange(lowerFilter, nameQueryStart, nameQueryEnd);
+    }
+
+
+    private static int getMaxTypos(char[] nameQuery) {
+        return (nameQuery.length >= TYPO_MIN_LENGTH_TWO)
+                ? 2
+                : (nameQuery.length >= TYPO_MIN_LENGTH_ONE) ? 1 : 0;
+    }
+
+
+    private int scoreSwitchName(int nameStart, int nameEnd, char[] nameQuery, int maxTypos, int[][] editRows) {
+
+        int nameLength = nameEnd - nameStart;
+
+        if (nameLength == nameQuery.length && regionMatches(nameStart, nameQuery)) {
+            return SCORE_SWITCH_EXACT;
+        }
+
+        if (nameLength > nameQuery.length && regionMatches(nameStart, nameQuery)) {
+            return SCORE_SWITCH_PREFIX;
+        }
+
+        for (int matchStart = nameStart + 1; matchStart <= nameEnd - nameQuery.length; matchStart++) {
+            if (regionMatches(matchStart, nameQuery)) {
+                return SCORE_SWITCH_CONTAINS;
+            }
+        }
+
+        if (maxTypos == 0) {
+            return 0;
+        }
+
+        // Compare against the whole name, and against the start of it (still typing the rest of the name)
+        int typoCount = boundedEditDistance(mLowerText, nameStart, nameLength, nameQuery, maxTypos, editRows);
+
+        if (nameLength > nameQuery.length) {
+            typoCount = Math.min(
+                    typoCount,
+                    boundedEditDistance(mLowerText, nameStart, nameQuery.length, nameQuery, maxTypos, editRows)
+            );
+        }
+
+        return (typoCount <= maxTypos)
+                ? SCORE_SWITCH_TYPO - (typoCount * SCORE_TYPO_PENALTY)
+                : 0;
+    }
+
+
+    /**
+     * Where the filter text turns up in the given item, as [start, end) pairs of positions in its full description
+     * (flag label, a space, then the description). If it doesn't turn up anywhere (e.g. a switch name matched with
+     * a typo by the ranked search), the closest matching switch name is marked instead.
+     *
+     * @return The position pairs, empty if the item isn't in this index or nothing matched
+     */
+    int[] findMatchRanges(ModelYtdlOptionItem optionItem, char[] lowerFilter) {
+
+        Integer itemIndex = mItemIndexes.get(optionItem);
+
+        if (itemIndex == null || lowerFilter.length == 0) {
+            return new int[0];
+        }
+
+        int textStart = mTextStarts[itemIndex];
+        int lastStart = mTextStarts[itemIndex + 1] - lowerFilter.length;
+
+        int[] matchRanges = new int[4];
+        int rangeCount = 0;
+
+        // Every (non-overlapping) place the filter text turns up
+        int matchStart = textStart;
+        while (matchStart <= lastStart) {
+            if (regionMatches(matchStart, lowerFilter)) {
+
+                if (rangeCount * 2 == matchRanges.length) {
+                    matchRanges = Arrays.copyOf(matchRanges, matchRanges.length * 2);
+                }
+                matchRanges[rangeCount * 2] = matchStart - textStart;
+                matchRanges[rangeCount * 2 + 1] = matchStart - textStart + lowerFilter.length;
+                rangeCount++;
+
+                matchStart += lowerFilter.length;
+
+            } else {
+                matchStart++;
+            }
+        }
+
+        if (rangeCount > 0) {
+            return Arrays.copyOf(matchRanges, rangeCount * 2);
+        }
+
+        // Fall back on the switch name the ranked search would have picked
+        char[] nameQuery = toNameQuery(lowerFilter);
+        int maxTypos = getMaxTypos(nameQuery);
+        int[][] editRows = new int[3][nameQuery.length + 1];
+
+        int bestName = -1;
+        int bestScore = 0;
+
+        for (int nameIndex = mItemNameStarts[itemIndex]; nameQuery.length > 0 && nameIndex < mItemNameStarts[itemIndex + 1]; nameIndex++) {
+            int nameScore = scoreSwitchName(mNameStarts[nameIndex], mNameEnds[nameIndex], nameQuery, maxTypos, editRows);
+
+            if (nameScore > bestScore) {
+                bestName = nameIndex;
+                bestScore = nameScore;
+            }
+        }
+
+        return (bestName >= 0)
+                ? new int[] {mNameStarts[bestName] - textStart, mNameEnds[bestName] - textStart}
+                : new int[0];
+    }
+
+
+    /**
+     * Score for the filter text turning up in the flag label or description (a match starting a word ranks higher)
+     */
+    private int scoreItemText(int itemIndex, char[] lowerFilter) {
+
+        int textStart = mTextStarts[itemIndex];
+        int labelEnd = textStart + mFlagLengths[itemIndex];
+        int lastStart = mTextStarts[itemIndex + 1] - lowerFilter.length;
+
+        int itemScore = 0;
+
+        for (int matchStart = textStart; matchStart <= lastStart; matchStart++) {
+            if (regionMatches(matchStart, lowerFilter)) {
+
+                if (matchStart + lowerFilter.length <= labelEnd) {
+                    return SCORE_LABEL;
+                }
+
+                boolean isWordStart = matchStart == textStart || !Character.isLetterOrDigit(mLowerText[matchStart - 1]);
+                itemScore = Math.max(
+                        itemScore,
+                        isWordStart ? SCORE_DESCRIPTION_WORD : SCORE_DESCRIPTION
+                );
+            }
+        }
+
+        return itemScore;
+    }
+
+
+    private boolean regionMatches(int textStart, char[] lowerFilter) {
+        for (int charIndex = 0; charIndex < lowerFilter.length; charIndex++) {
+            if (mLowerText[textStart + charIndex] != lowerFilter[charIndex]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Edit distance between the query and a run of the (lowercased) text, counting a swap of two neighbouring
+     * characters as one typo (optimal string alignment). Gives up as soon as it's definitely over the limit.
+     *
+     * @return The distance, or maxDistance + 1 if it's over the limit
+     */
+    static int boundedEditDistance(char[] lowerText, int textStart, int textLength, char[] nameQuery, int maxDistance, int[][] editRows) {
+
+        if (Math.abs(textLength - nameQuery.length) > maxDistance) {
+            return maxDistance + 1;
+        }
+
+        int[] twoBackRow = editRows[0];
+        int[] previousRow = editRows[1];
+        int[] currentRow = editRows[2];
+
+        for (int queryIndex = 0; queryIndex <= nameQuery.length; queryIndex++) {
+            previousRow[queryIndex] = queryIndex;
+        }
+
+        for (int textIndex = 1; textIndex <= textLength; textIndex++) {
+            char textChar = lowerText[textStart + textIndex - 1];
+
+            currentRow[0] = textIndex;
+            int rowMinimum = currentRow[0];
+
+            for (int queryIndex = 1; queryIndex <= nameQuery.length; queryIndex++) {
+                int substituteCost = previousRow[queryIndex - 1] + ((nameQuery[queryIndex - 1] == textChar) ? 0 : 1);
+
+                int editCost = Math.min(
+                        substituteCost,
+                        Math.min(previousRow[queryIndex], currentRow[queryIndex - 1]) + 1
+                );
+
+                // Two characters the wrong way round
+                if (textIndex > 1 && queryIndex > 1
+                        && nameQuery[queryIndex - 1] == lowerText[textStart + textIndex - 2]
+                        && nameQuery[queryIndex - 2] == textChar) {
+                    editCost = Math.min(editCost, twoBackRow[queryIndex - 2] + 1);
+                }
+
+                currentRow[queryIndex] = editCost;
+                rowMinimum = Math.min(rowMinimum, editCost);
+            }
+
+            // A swap can bring the next row back down by one, so only give up once it's out of reach
+            if (rowMinimum > maxDistance + 1) {
+                return maxDistance + 1;
+            }
+
+            int[] swapRow = twoBackRow;
+            twoBackRow = previousRow;
+            previousRow = currentRow;
+            currentRow = swapRow;
+        }
+
+        return Math.min(previousRow[nameQuery.length], maxDistance + 1);
+    }
+
+
+    /**
+     * Keeps the best few items seen so far. Min-heap on the score (ties go to the earlier item), so the
+     * root is always the one to drop when something better comes along.
+     */
+    static final class RankedItemHeap {
+
+        private final int[] mHeapItems;
+        private final int[] mHeapScores;
+        private int mHeapSize = 0;
+
+
+        RankedItemHeap(int maxItems) {
+            mHeapItems = new int[maxItems];
+            mHeapScores = new int[maxItems];
+        }
+
+
+        void offer(int itemIndex, int itemScore) {
+
+            if (mHeapSize < mHeapItems.length) {
+                mHeapItems[mHeapSize] = itemIndex;
+                mHeapScores[mHeapSize] = itemScore;
+                siftUp(mHeapSize++);
+
+            } else if (mHeapSize > 0 && isWorse(mHeapScores[0], mHeapItems[0], itemScore, itemIndex)) {
+                mHeapItems[0] = itemIndex;
+                mHeapScores[0] = itemScore;
+                siftDown(0);
+            }
+        }
+
+
+        /**
+         * Empty the heap out, best item first
+         */
+        int[] drainBestFirst() {
+
+            int[] bestItems = new int[mHeapSize];
+
+            for (int rankIndex = mHeapSize - 1; rankIndex >= 0; rankIndex--) {
+                bestItems[rankIndex] = mHeapItems[0];
+
+                mHeapSize--;
+                mHeapItems[0] = mHeapItems[mHeapSize];
+                mHeapScores[0] = mHeapScores[mHeapSize];
+                siftDown(0);
+            }
+
+            return bestItems;
+        }
+
+
+        /**
+         * Lower score is worse, and for the same score the later item in the list is worse
+         */
+        private static boolean isWorse(int firstScore, int firstItem, int secondScore, int secondItem) {
+            return (firstScore != secondScore)
+                    ? firstScore < secondScore
+                    : firstItem > secondItem;
+        }
+
+
+        private void siftUp(int heapIndex) {
+            while (heapIndex > 0) {
+                int parentIndex = (heapIndex - 1) / 2;
+
+                if (!isWorse(mHeapScores[heapIndex], mHeapItems[heapIndex], mHeapScores[parentIndex], mHeapItems[parentIndex])) {
+                    return;
+                }
+
+                swap(heapIndex, parentIndex);
+                heapIndex = parentIndex;
+            }
+        }
+
+
+        private void siftDown(int heapIndex) {
+            while (true) {
+                int worstIndex = heapIndex;
+                int leftIndex = heapIndex * 2 + 1;
+                int rightIndex = leftIndex + 1;
+
+                if (leftIndex < mHeapSize && isWorse(mHeapScores[leftIndex], mHeapItems[leftIndex], mHeapScores[worstIndex], mHeapItems[worstIndex])) {
+                    worstIndex = leftIndex;
+                }
+                if (rightIndex < mHeapSize && isWorse(mHeapScores[rightIndex], mHeapItems[rightIndex], mHeapScores[worstIndex], mHeapItems[worstIndex])) {
+                    worstIndex = rightIndex;
+                }
+
+                if (worstIndex == heapIndex) {
+                    return;
+                }
+
+                swap(heapIndex, worstIndex);
+                heapIndex = worstIndex;
+            }
+        }
+
+
+        private void swap(int firstIndex, int secondIndex) {
+            int swapItem = mHeapItems[firstIndex];
+            int swapScore = mHeapScores[firstIndex];
+
+            mHeapItems[firstIndex] = mHeapItems[secondIndex];
+            mHeapScores[firstIndex] = mHeapScores[secondIndex];
+
+            mHeapItems[secondIndex] = swapItem;
+            mHeapScores[secondIndex] = swapScore;
+        }
+    }
+
+
+    /**
+     * Keeps the results of the last few queries while the user types, so each new query can start from an
+     * earlier result instead of the whole index:
+     * - A query that contains the previous one (typing more) only re-checks the previous matches
+     * - A query that drops characters (backspace) goes back to the cached result of the shorter query
+     *
+     * Not thread safe, each search has to finish (or bail out) before the next one starts - e.g. by running them
+     * all on the one worker thread.
+     */
+    static final class FilterSession {
+
+        // Only ever as deep as the query is long, but no need to keep more than this
+        private static final int MAX_CACHED_QUERIES = 32;
+
+        private ModelYtdlOptionSearchIndex mSessionIndex;
+
+        // Each cached query contains the one before it, so the matches only ever narrow going down the list
+        private final List<String> mCachedQueries = new ArrayList<>();
+        private final List<int[]> mCachedMatches = new ArrayList<>();
+
+        // Number of items the last query actually had to check
+        private int mLastCheckedCount = 0;
+
+
+        /**
+         * @param cancelSignal Checked along the way to bail out of a search that's no longer needed (can be null).
+         *                     A cancelled search leaves the cached results as they were.
+         */
+        List<ModelYtdlOptionItem> findMatches(ModelYtdlOptionSearchIndex searchIndex, CharSequence filterText, CancelSignal cancelSignal) {
+
+            // Different list loaded, none of the cached results apply anymore
+            if (searchIndex != mSessionIndex) {
+                mSessionIndex = searchIndex;
+                mCachedQueries.clear();
+                mCachedMatches.clear();
+            }
+
+            char[] lowerFilter = toLowerChars(filterText);
+            String lowerQuery = new String(lowerFilter);
+
+            // Backspace (or a new query altogether) - drop back to the last cached query this one still contains
+            while (!mCachedQueries.isEmpty() && !lowerQuery.contains(mCachedQueries.get(mCachedQueries.size() - 1))) {
+                mCachedQueries.remove(mCachedQueries.size() - 1);
+                mCachedMatches.remove(mCachedMatches.size() - 1);
+            }
+
+            int[] candidateItems;
+
+            if (mCachedQueries.isEmpty()) {
+                candidateItems = searchIndex.findCandidateItems(lowerFilter);
+
+            } else if (lowerQuery.equals(mCachedQueries.get(mCachedQueries.size() - 1))) {
+                mLastCheckedCount = 0;
+                return searchIndex.getOptionItems(mCachedMatches.get(mCachedMatches.size() - 1));
+
+            } else {
+                candidateItems = mCachedMatches.get(mCachedMatches.size() - 1);
+            }
+
+            int[] matchedItems = searchIndex.checkCandidates(candidateItems, lowerFilter, cancelSignal);
+            mLastCheckedCount = candidateItems.length;
+
+            if (mCachedQueries.size() >= MAX_CACHED_QUERIES) {
+                mCachedQueries.remove(0);
+                mCachedMatches.remove(0);
+            }
+            mCachedQueries.add(lowerQuery);
+            mCachedMatches.add(matchedItems);
+
+            return searchIndex.getOptionItems(matchedItems);
+        }
+
+
+        int getLastCheckedCount() {
+            return mLastCheckedCount;
+        }
+    }
+
+
+    /**
+     * Flag for calling off a search (or anything else working off its results) that's already running.
+     * The work checks it every so often and bails out with a CancellationException.
+     */
+    static final class CancelSignal {
+
+        private volatile boolean mCancelled = false;
+
+
+        void cancel() {
+            mCancelled = true;
+        }
+
+
+        boolean isCancelled() {
+            return mCancelled;
+        }
+
+
+        void throwIfCancelled() {
+            if (mCancelled) {
+                throw new CancellationException();
+            }
+        }
+    }
+
+
+    /**
+     * Builds up the open addressed trigram table. Each slot remembers the last item counted against it, which
+     * is enough to only count an item once per trigram since the items are gone through in order.
+     */
+    private static final class GramTableBuilder {
+
+        private static final int INITIAL_CAPACITY = 1024;
+
+        private long[] mGramKeys = new long[INITIAL_CAPACITY];
+        private int[] mGramCounts = new int[INITIAL_CAPACITY];
+        private int[] mLastItems = new int[INITIAL_CAPACITY];
+        private int mUsedSlots = 0;
+
+        private int[] mFillPositions;
+        private int mPostingCount = 0;
+
+
+        void countGram(long gramKey, int itemIndex) {
+
+            int gramSlot = findOrAddSlot(gramKey);
+
+            if (mLastItems[gramSlot] != itemIndex) {
+                mLastItems[gramSlot] = itemIndex;
+                mGramCounts[gramSlot]++;
+                mPostingCount++;
+            }
+        }
+
+
+        /**
+         * Done counting, work out where each slot's postings start
+         *
+         * @return Start of each slot's run in the postings array
+         */
+        int[] startPostings() {
+
+            int[] postingStarts = new int[mGramKeys.length];
+            int postingPosition = 0;
+
+            for (int gramSlot = 0; gramSlot < mGramKeys.length; gramSlot++) {
+                postingStarts[gramSlot] = postingPosition;
+                postingPosition += mGramCounts[gramSlot];
+            }
+
+            mFillPositions = postingStarts.clone();
+            Arrays.fill(mLastItems, -1);
+
+            return postingStarts;
+        }
+
+
+        int getPostingCount() {
+            return mPostingCount;
+        }
+
+
+        void addPosting(long gramKey, int itemIndex, int[] postings) {
+
+            int gramSlot = findOrAddSlot(gramKey);
+
+            if (mLastItems[gramSlot] != itemIndex) {
+                mLastItems[gramSlot] = itemIndex;
+                postings[mFillPositions[gramSlot]++] = itemIndex;
+            }
+        }
+
+
+        private int findOrAddSlot(long gramKey) {
+
+            int slotMask = mGramKeys.length - 1;
+            int gramSlot = hashGram(gramKey) & slotMask;
+
+            while (mGramKeys[gramSlot] != 0) {
+                if (mGramKeys[gramSlot] == gramKey) {
+                    return gramSlot;
+                }
+                gramSlot = (gramSlot + 1) & slotMask;
+            }
+
+            // Only new trigrams get added, and only while counting (the fill pass sees the same trigrams again)
+            mGramKeys[gramSlot] = gramKey;
+            mLastItems[gramSlot] = -1;
+            mUsedSlots++;
+
+            if (mUsedSlots * 2 > mGramKeys.length) {
+                growTable();
+                return findOrAddSlot(gramKey);
+            }
+
+            return gramSlot;
+        }
+
+
+        /**
+         * Double the table once it's half full, rehashing the used slots into the new one
+         */
+        private void growTable() {
+
+            long[] oldKeys = mGramKeys;
+            int[] oldCounts = mGramCounts;
+            int[] oldLastItems = mLastItems;
+
+            mGramKeys = new long[oldKeys.length * 2];
+            mGramCounts = new int[oldKeys.length * 2];
+            mLastItems = new int[oldKeys.length * 2];
+
+            int slotMask = mGramKeys.length - 1;
+
+            for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+                if (oldKeys[oldSlot] != 0) {
+                    int gramSlot = hashGram(oldKeys[oldSlot]) & slotMask;
+
+                    while (mGramKeys[gramSlot] != 0) {
+                        gramSlot = (gramSlot + 1) & slotMask;
+                    }
+
+                    mGramKeys[gramSlot] = oldKeys[oldSlot];
+                    mGramCounts[gramSlot] = oldCounts[oldSlot];
+                    mLastItems[gramSlot] = oldLastItems[oldSlot];
+                }
+            }
+        }
+    }
+
+}
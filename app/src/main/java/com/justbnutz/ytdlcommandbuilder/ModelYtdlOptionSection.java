@@ -8,11 +8,15 @@
 package com.justbnutz.ytdlcommandbuilder;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Model class to hold the Option Header title element
  *
+ * Read-only once loaded (items are only added while parsing), so the same list can be shared across the app.
+ * Whether a Section is expanded is kept by the Adapter showing it.
+ *
  * Reference: https://medium.com/@ruut_j/a-recyclerview-with-multiple-item-types-bce7fbd1d30e
  */
 public class ModelYtdlOptionSection implements ModelYtdlBaseItem {
@@ -21,15 +25,15 @@ public class ModelYtdlOptionSection implements ModelYtdlBaseItem {
     private final int sectionId;
     private final String lblOptionHeader;
     private final List<ModelYtdlOptionItem> ytdlOptionItems;
-    private boolean itemExpanded;
+    private final List<ModelYtdlOptionItem> ytdlOptionItemsView;
 
     ModelYtdlOptionSection(int itemId, int parentId, String optionHeaderLabel) {
         superId = itemId;
         sectionId = parentId;
-        itemExpanded = false;
         lblOptionHeader = optionHeaderLabel;
 
         ytdlOptionItems = new ArrayList<>();
+        ytdlOptionItemsView = Collections.unmodifiableList(ytdlOptionItems);
     }
 
 
@@ -56,17 +60,12 @@ public class ModelYtdlOptionSection implements ModelYtdlBaseItem {
     }
 
 
-    public void setExpanded(boolean isExpanded) {
-        itemExpanded = isExpanded;
-    }
-
-
-    public boolean isExpanded() {
-        return itemExpanded;
+    void addOptionItem(ModelYtdlOptionItem optionItem) {
+        ytdlOptionItems.add(optionItem);
     }
 
 
     public List<ModelYtdlOptionItem> getYtdlOptionItems() {
-        return ytdlOptionItems;
+        return ytdlOptionItemsView;
     }
 }
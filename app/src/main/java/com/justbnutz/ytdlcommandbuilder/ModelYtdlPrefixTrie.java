@@ -0,0 +1,189 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.Arrays;
+
+/**
+ * Prefix trie over a sorted list of names, flattened into parallel arrays. Node 0 is the root, children of a node
+ * are chained through the sibling links, and each node knows the run of (sorted) names that start with its prefix.
+ * A lookup only walks the query itself.
+ *
+ * Shared by the switch trie (case sensitive) and the extractor catalogue (names lowercased up front, and queries
+ * lowercased as they're walked).
+ */
+final class ModelYtdlPrefixTrie {
+
+    private final String[] mNames;
+    private final boolean mIsLowerCase;
+
+    // Names starting with a node's prefix are [mNodeRangeStart, mNodeRangeEnd) of the sorted names
+    private final char[] mNodeChars;
+    private final int[] mNodeFirstChild;
+    private final int[] mNodeNextSibling;
+    private final int[] mNodeRangeStart;
+    private final int[] mNodeRangeEnd;
+
+
+    /**
+     * @param sortedNames Names in sorted order (the trie keeps hold of the array)
+     * @param isLowerCase Whether the names are all lowercase, in which case queries get lowercased to match
+     */
+    ModelYtdlPrefixTrie(String[] sortedNames, boolean isLowerCase) {
+
+        mNames = sortedNames;
+        mIsLowerCase = isLowerCase;
+
+        // Build the trie in sorted order, so each node's run of names only ever needs extending
+        TrieBuilder trieBuilder = new TrieBuilder();
+        for (int nameIndex = 0; nameIndex < sortedNames.length; nameIndex++) {
+            trieBuilder.addName(sortedNames[nameIndex], nameIndex);
+        }
+
+        mNodeChars = Arrays.copyOf(trieBuilder.nodeChars, trieBuilder.nodeCount);
+        mNodeFirstChild = Arrays.copyOf(trieBuilder.nodeFirstChild, trieBuilder.nodeCount);
+        mNodeNextSibling = Arrays.copyOf(trieBuilder.nodeNextSibling, trieBuilder.nodeCount);
+        mNodeRangeStart = Arrays.copyOf(trieBuilder.nodeRangeStart, trieBuilder.nodeCount);
+        mNodeRangeEnd = Arrays.copyOf(trieBuilder.nodeRangeEnd, trieBuilder.nodeCount);
+    }
+
+
+    /**
+     * Walk the trie down the given prefix
+     *
+     * @return Node index of the prefix, or -1 if no name starts with it
+     */
+    int findPrefixNode(CharSequence namePrefix) {
+
+        int currentNode = 0;
+
+        for (int charIndex = 0; charIndex < namePrefix.length(); charIndex++) {
+
+            char prefixChar = mIsLowerCase
+                    ? Character.toLowerCase(namePrefix.charAt(charIndex))
+                    : namePrefix.charAt(charIndex);
+
+            int childNode = mNodeFirstChild[currentNode];
+            while (childNode >= 0 && mNodeChars[childNode] != prefixChar) {
+                childNode = mNodeNextSibling[childNode];
+            }
+
+            if (childNode < 0) {
+                return -1;
+            }
+
+            currentNode = childNode;
+        }
+
+        return (mNodeRangeEnd[currentNode] > mNodeRangeStart[currentNode])
+                ? currentNode
+                : -1;
+    }
+
+
+    /**
+     * @return Sorted index of the given name, or -1 if it isn't one of the names
+     */
+    int findNameIndex(CharSequence name) {
+
+        int prefixNode = findPrefixNode(name);
+
+        // An exact match is always the first (shortest) name in its node's run
+        return (prefixNode > 0 && mNames[mNodeRangeStart[prefixNode]].length() == name.length())
+                ? mNodeRangeStart[prefixNode]
+                : -1;
+    }
+
+
+    /**
+     * Sorted index of the first name starting with the given node's prefix
+     */
+    int getRangeStart(int prefixNode) {
+        return mNodeRangeStart[prefixNode];
+    }
+
+
+    /**
+     * Sorted index just past the last name starting with the given node's prefix
+     */
+    int getRangeEnd(int prefixNode) {
+        return mNodeRangeEnd[prefixNode];
+    }
+
+
+    /**
+     * Growable arrays for putting the trie together before it's trimmed down
+     */
+    private static final class TrieBuilder {
+
+        char[] nodeChars = new char[64];
+        int[] nodeFirstChild = new int[64];
+        int[] nodeNextSibling = new int[64];
+        int[] nodeRangeStart = new int[64];
+        int[] nodeRangeEnd = new int[64];
+        int nodeCount = 0;
+
+
+        TrieBuilder() {
+            newNode('\0', 0);
+        }
+
+
+        /**
+         * Names must come in sorted order, so the last child of a node is the only one that can still match
+         */
+        void addName(String name, int nameIndex) {
+
+            int currentNode = 0;
+            nodeRangeEnd[currentNode] = nameIndex + 1;
+
+            for (int charIndex = 0; charIndex < name.length(); charIndex++) {
+
+                char nameChar = name.charAt(charIndex);
+
+                // Find the last child, since that's where a sorted name would carry on from
+                int lastChild = nodeFirstChild[currentNode];
+                while (lastChild >= 0 && nodeNextSibling[lastChild] >= 0) {
+                    lastChild = nodeNextSibling[lastChild];
+                }
+
+                if (lastChild >= 0 && nodeChars[lastChild] == nameChar) {
+                    currentNode = lastChild;
+
+                } else {
+                    int childNode = newNode(nameChar, nameIndex);
+
+                    if (lastChild >= 0) {
+                        nodeNextSibling[lastChild] = childNode;
+                    } else {
+                        nodeFirstChild[currentNode] = childNode;
+                    }
+
+                    currentNode = childNode;
+                }
+
+                nodeRangeEnd[currentNode] = nameIndex + 1;
+            }
+        }
+
+
+        private int newNode(char nodeChar, int rangeStart) {
+
+            if (nodeCount == nodeChars.length) {
+                int newLength = nodeCount * 2;
+                nodeChars = Arrays.copyOf(nodeChars, newLength);
+                nodeFirstChild = Arrays.copyOf(nodeFirstChild, newLength);
+                nodeNextSibling = Arrays.copyOf(nodeNextSibling, newLength);
+                nodeRangeStart = Arrays.copyOf(nodeRangeStart, newLength);
+                nodeRangeEnd = Arrays.copyOf(nodeRangeEnd, newLength);
+            }
+
+            nodeChars[nodeCount] = nodeChar;
+            nodeFirstChild[nodeCount] = -1;
+            nodeNextSibling[nodeCount] = -1;
+            nodeRangeStart[nodeCount] = rangeStart;
+            nodeRangeEnd[nodeCount] = rangeStart;
+
+            return nodeCount++;
+        }
+    }
+
+}
@@ -0,0 +1,378 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Prefix trie over every switch in an Option List (short aliases like "-f" included), for completing a
+ * half typed switch straight in the command box. Also knows which option each switch belongs to, and which
+ * options can't go in the same command together.
+ *
+ * Uses the same flattened trie as the extractor catalogue (see ModelYtdlPrefixTrie). Switches are case sensitive
+ * ("-f" and "-F" are different options), so unlike the catalogue nothing gets lowercased. A lookup only walks the
+ * typed prefix.
+ */
+final class ModelYtdlSwitchTrie {
+
+    // Switches in sorted order, along with what gets put in the command for each (the switch plus its metavars)
+    // and how many arguments it takes
+    private final String[] mSwitchNames;
+    private final String[] mCompletions;
+    private final ModelYtdlOptionArgs[] mOptionArgs;
+
+    // Option each switch belongs to, named by the switch its command switch uses (e.g. "-o" is "--output")
+    private final String[] mCanonicalSwitches;
+
+    // Options that undo / clash with each other, by canonical switch: every "--no-" option and the one it turns off,
+    // plus the known combinations youtube-dl turns down (or where only one of them would take effect)
+    private final Map<String, String[]> mSwitchConflicts;
+
+    private static final String[][] EXCLUSIVE_SWITCHES = {
+            {"--quiet", "--verbose"},
+            {"--no-playlist", "--yes-playlist"},
+            {"--playlist-reverse", "--playlist-random"},
+            {"--ignore-errors", "--abort-on-error"},
+            {"--force-ipv4", "--force-ipv6"},
+            {"--hls-prefer-native", "--hls-prefer-ffmpeg"},
+            {"--prefer-avconv", "--prefer-ffmpeg"},
+            {"--youtube-skip-dash-manifest", "--youtube-include-dash-manifest"},
+            {"--output", "--id"},
+            {"--output", "--title"},
+            {"--output", "--auto-number"},
+            {"--title", "--id"},
+            {"--netrc", "--username"},
+            {"--netrc", "--password"}
+    };
+
+    private static final String[] NO_CONFLICTS = new String[0];
+
+    // Prefix trie over the sorted switches
+    private final ModelYtdlPrefixTrie mPrefixTrie;
+
+
+    /**
+     * Build the trie for the given Option List
+     */
+    static ModelYtdlSwitchTrie build(List<ModelYtdlOptionSection> optionList) {
+
+        // First listing of a switch wins, in case it turns up in more than one place
+        Map<String, String> switchCompletions = new HashMap<>();
+        Map<String, ModelYtdlOptionArgs> switchOptionArgs = new HashMap<>();
+        Map<String, String> switchCanonicals = new HashMap<>();
+
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                addSwitchNames(optionItem, switchCompletions, switchOptionArgs, switchCanonicals);
+            }
+        }
+
+        List<String> switchNames = new ArrayList<>(switchCompletions.keySet());
+        Collections.sort(switchNames);
+
+        String[] completions = new String[switchNames.size()];
+        ModelYtdlOptionArgs[] optionArgs = new ModelYtdlOptionArgs[switchNames.size()];
+        String[] canonicalSwitches = new String[switchNames.size()];
+        for (int switchIndex = 0; switchIndex < completions.length; switchIndex++) {
+            completions[switchIndex] = switchCompletions.get(switchNames.get(switchIndex));
+            optionArgs[switchIndex] = switchOptionArgs.get(switchNames.get(switchIndex));
+            canonicalSwitches[switchIndex] = switchCanonicals.get(switchNames.get(switchIndex));
+        }
+
+        return new ModelYtdlSwitchTrie(
+                switchNames.toArray(new String[0]),
+                completions,
+                optionArgs,
+                canonicalSwitches,
+                buildSwitchConflicts(new HashSet<>(switchCanonicals.values()))
+        );
+    }
+
+
+    private ModelYtdlSwitchTrie(String[] switchNames, String[] completions, ModelYtdlOptionArgs[] optionArgs, String[] canonicalSwitches, Map<String, String[]> switchConflicts) {
+
+        mSwitchNames = switchNames;
+        mCompletions = completions;
+        mOptionArgs = optionArgs;
+        mCanonicalSwitches = canonicalSwitches;
+        mSwitchConflicts = switchConflicts;
+        mPrefixTrie = new ModelYtdlPrefixTrie(switchNames, false);
+    }
+
+
+    /**
+     * Every word in the flag label that starts with a dash is a switch, e.g. "-o, --output TEMPLATE" has "-o" and
+     * "--output". Each one completes to itself plus the metavars of the item's command switch ("-o TEMPLATE").
+     */
+    private static void addSwitchNames(ModelYtdlOptionItem optionItem, Map<String, String> switchCompletions, Map<String, ModelYtdlOptionArgs> switchOptionArgs, Map<String, String> switchCanonicals) {
+
+        ModelYtdlOptionArgs optionArgs = optionItem.getOptionArgs();
+        String canonicalSwitch = getSwitchWord(optionItem.getCmdSwitch());
+        String argMetavars = optionArgs.hasArgs()
+                ? " " + optionItem.getCmdSwitch().subSequence(optionArgs.getArgStart(), optionArgs.getArgStart() + optionArgs.getArgLength())
+                : "";
+
+        CharSequence flagLabel = optionItem.getFlagLabel();
+        int wordStart = 0;
+
+        while (wordStart < flagLabel.length()) {
+            int wordEnd = wordStart;
+            while (wordEnd < flagLabel.length() && flagLabel.charAt(wordEnd) != ' ' && flagLabel.charAt(wordEnd) != ',') {
+                wordEnd++;
+            }
+
+            // Needs something after the dashes to count as a switch
+            if (wordEnd - wordStart > 1 && flagLabel.charAt(wordStart) == '-' && flagLabel.charAt(wordEnd - 1) != '-') {
+                String switchName = flagLabel.subSequence(wordStart, wordEnd).toString();
+
+                if (!switchCompletions.containsKey(switchName)) {
+                    switchCompletions.put(switchName, switchName + argMetavars);
+                    switchOptionArgs.put(switchName, optionArgs);
+                    switchCanonicals.put(switchName, canonicalSwitch);
+                }
+            }
+
+            wordStart = wordEnd + 1;
+        }
+    }
+
+
+    /**
+     * Conflict table over the options in the list, each pair goes in both ways round. Pairs with an option
+     * this version doesn't have are left out.
+     */
+    private static Map<String, String[]> buildSwitchConflicts(Set<String> canonicalSwitches) {
+
+        Map<String, Set<String>> switchConflictSets = new HashMap<>();
+
+        for (String canonicalSwitch : canonicalSwitches) {
+            if (canonicalSwitch.startsWith("--no-")) {
+                addSwitchConflict(switchConflictSets, canonicalSwitches, canonicalSwitch, "--" + canonicalSwitch.substring(5));
+            }
+        }
+
+        for (String[] exclusiveSwitches : EXCLUSIVE_SWITCHES) {
+            addSwitchConflict(switchConflictSets, canonicalSwitches, exclusiveSwitches[0], exclusiveSwitches[1]);
+        }
+
+        Map<String, String[]> switchConflicts = new HashMap<>();
+        for (Map.Entry<String, Set<String>> conflictEntry : switchConflictSets.entrySet()) {
+            switchConflicts.put(conflictEntry.getKey(), conflictEntry.getValue().toArray(new String[0]));
+        }
+
+        return switchConflicts;
+    }
+
+
+    private static void addSwitchConflict(Map<String, Set<String>> switchConflictSets, Set<String> canonicalSwitches, String firstSwitch, String secondSwitch) {
+
+        if (!canonicalSwitches.contains(firstSwitch) || !canonicalSwitches.contains(secondSwitch)) {
+            return;
+        }
+
+        if (!switchConflictSets.containsKey(firstSwitch)) {
+            switchConflictSets.put(firstSwitch, new HashSet<String>());
+        }
+        if (!switchConflictSets.containsKey(secondSwitch)) {
+            switchConflictSets.put(secondSwitch, new HashSet<String>());
+        }
+
+        switchConflictSets.get(firstSwitch).add(secondSwitch);
+        switchConflictSets.get(secondSwitch).add(firstSwitch);
+    }
+
+
+    /**
+     * The switch on its own, without any metavars or "=value" after it
+     */
+    static String getSwitchWord(CharSequence cmdSwitch) {
+
+        int wordEnd = 0;
+        while (wordEnd < cmdSwitch.length() && cmdSwitch.charAt(wordEnd) != ' ' && cmdSwitch.charAt(wordEnd) != '=') {
+            wordEnd++;
+        }
+
+        return cmdSwitch.subSequence(0, wordEnd).toString();
+    }
+
+
+    int getSwitchCount() {
+        return mSwitchNames.length;
+    }
+
+
+    /**
+     * Completions for the switches starting with the given prefix, in switch order (an exact match always comes first)
+     */
+    List<String> findCompletions(CharSequence switchPrefix, int maxResults) {
+
+        int prefixNode = mPrefixTrie.findPrefixNode(switchPrefix);
+        if (prefixNode < 0) {
+            return Collections.emptyList();
+        }
+
+        int rangeStart = mPrefixTrie.getRangeStart(prefixNode);
+        int rangeEnd = Math.min(mPrefixTrie.getRangeEnd(prefixNode), rangeStart + maxResults);
+
+        return Arrays.asList(mCompletions).subList(rangeStart, rangeEnd);
+    }
+
+
+    /**
+     * Number of arguments the given switch takes
+     *
+     * @return Argument count, or -1 if it isn't a known switch
+     */
+    int getArgCount(CharSequence switchName) {
+
+        int switchIndex = findSwitchIndex(switchName);
+
+        return (switchIndex >= 0)
+                ? mOptionArgs[switchIndex].getArgCount()
+                : -1;
+    }
+
+
+    /**
+     * Argument schema of the given switch (how many it takes, and what kind of value)
+     *
+     * @return Null if it isn't a known switch
+     */
+    ModelYtdlOptionArgs getOptionArgs(CharSequence switchName) {
+
+        int switchIndex = findSwitchIndex(switchName);
+
+        return (switchIndex >= 0)
+                ? mOptionArgs[switchIndex]
+                : null;
+    }
+
+
+    /**
+     * @return Sorted index of the given switch, or -1 if it isn't a known switch
+     */
+    private int findSwitchIndex(CharSequence switchName) {
+        return mPrefixTrie.findNameIndex(switchName);
+    }
+
+
+    /**
+     * Option the given switch belongs to, as the switch from its command switch (so "-o" and "--output" are both
+     * "--output")
+     *
+     * @return Canonical switch, or null if it isn't a known switch
+     */
+    String getCanonicalSwitch(CharSequence switchName) {
+
+        int switchIndex = findSwitchIndex(switchName);
+
+        return (switchIndex >= 0)
+                ? mCanonicalSwitches[switchIndex]
+                : null;
+    }
+
+
+    /**
+     * Several short switches run together in the one token ("-ci"), or a short switch with its argument stuck on
+     * the end ("-fbest"). Only counts if the first one is a known switch.
+     */
+    boolean isClusteredSwitch(CharSequence optionValue) {
+        return optionValue.length() > 2
+                && optionValue.charAt(0) == '-'
+                && optionValue.charAt(1) != '-'
+                && findSwitchIndex(optionValue.subSequence(0, 2)) >= 0;
+    }
+
+
+    /**
+     * Options in a clustered token (by canonical switch), so "-ci" is "--continue" and "--ignore-errors", and "-fbest"
+     * is "--format". Stops at the first one that takes an argument (the rest of the token being its argument), or
+     * at the first one that isn't a known switch.
+     *
+     * @return Canonical switches in token order, or an empty list if it isn't a clustered token
+     */
+    List<String> getClusteredSwitches(CharSequence optionValue) {
+
+        if (!isClusteredSwitch(optionValue)) {
+            return Collections.emptyList();
+        }
+
+        List<String> canonicalSwitches = new ArrayList<>();
+
+        for (int charIndex = 1; charIndex < optionValue.length(); charIndex++) {
+
+            int switchIndex = findSwitchIndex("-" + optionValue.charAt(charIndex));
+            if (switchIndex < 0) {
+                break;
+            }
+
+            canonicalSwitches.add(mCanonicalSwitches[switchIndex]);
+
+            if (mOptionArgs[switchIndex].hasArgs()) {
+                break;
+            }
+        }
+
+        return canonicalSwitches;
+    }
+
+
+    /**
+     * Take the given options (by canonical switch) out of a clustered token and leave the rest of it as it was, so
+     * "-ciw" without "--ignore-errors" is "-cw". An option that takes an argument goes along with its argument.
+     *
+     * @return What's left of the token, or an empty String if there's nothing left
+     */
+    String removeClusteredSwitches(CharSequence optionValue, Collection<String> canonicalSwitches) {
+
+        StringBuilder clusterBuilder = new StringBuilder("-");
+
+        for (int charIndex = 1; charIndex < optionValue.length(); charIndex++) {
+
+            int switchIndex = findSwitchIndex("-" + optionValue.charAt(charIndex));
+
+            // Nothing known from here on, so leave it be
+            if (switchIndex < 0) {
+                clusterBuilder.append(optionValue, charIndex, optionValue.length());
+                break;
+            }
+
+            boolean isRemoved = canonicalSwitches.contains(mCanonicalSwitches[switchIndex]);
+
+            if (mOptionArgs[switchIndex].hasArgs()) {
+                if (!isRemoved) {
+                    clusterBuilder.append(optionValue, charIndex, optionValue.length());
+                }
+                break;
+            }
+
+            if (!isRemoved) {
+                clusterBuilder.append(optionValue.charAt(charIndex));
+            }
+        }
+
+        return (clusterBuilder.length() > 1)
+                ? clusterBuilder.toString()
+                : "";
+    }
+
+
+    /**
+     * Options that can't go in the same command as the given one (by canonical switch)
+     */
+    String[] getConflictingSwitches(String canonicalSwitch) {
+
+        String[] conflictingSwitches = mSwitchConflicts.get(canonicalSwitch);
+
+        return (conflictingSwitches != null)
+                ? conflictingSwitches
+                : NO_CONFLICTS;
+    }
+
+}
@@ -0,0 +1,259 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shared character store for the Option Item text. Every item's flag label, description and command switch
+ * get copied in one after the other, and the item only keeps offsets / lengths into the shared array instead
+ * of holding its own Strings.
+ *
+ * The arena is append-only, so once an item has been handed out its text never changes. Each item's text is
+ * laid out as "[flag label] [description]" so the full description is one contiguous run, and the command
+ * switch normally points at the tail of the flag label rather than being stored again.
+ *
+ * An interning arena goes one step further and shares the entry between items that have exactly the same text,
+ * so identical options across several help text versions are only stored once. The lookup map is only needed
+ * while the versions are being loaded, finishInterning() lets it go afterwards.
+ */
+final class ModelYtdlTextArena {
+
+    // Smallest page to allocate once the expected length has been used up
+    private static final int MIN_PAGE_LENGTH = 4096;
+
+    // Current page being filled (items already handed out keep a reference to their own page)
+    private char[] mPageChars;
+    private int mPageLength;
+
+    // Number of distinct text entries stored so far (each item knows the index of its entry)
+    private int mEntryCount = 0;
+
+    // While interning, items with the exact same text share the one entry (keyed by their combined text)
+    private Map<String, ModelYtdlOptionItem> mInternedItems;
+
+
+    /**
+     * @param expectedLength Rough total of all the text that'll be added, so it normally all fits in the one page
+     */
+    ModelYtdlTextArena(int expectedLength) {
+        this(expectedLength, false);
+    }
+
+
+    /**
+     * @param internEntries Store identical item text only once (e.g. when loading several versions of the help text)
+     */
+    ModelYtdlTextArena(int expectedLength, boolean internEntries) {
+        mPageChars = new char[Math.max(expectedLength, 0)];
+        mPageLength = 0;
+        mInternedItems = internEntries
+                ? new HashMap<String, ModelYtdlOptionItem>()
+                : null;
+    }
+
+
+    /**
+     * Number of distinct text entries in the arena, Option Item text entry indexes run from 0 up to this
+     */
+    int getEntryCount() {
+        return mEntryCount;
+    }
+
+
+    /**
+     * Drop the interning map once everything that could share entries has been added. Items added after
+     * this are always copied in as new entries.
+     */
+    void finishInterning() {
+        mInternedItems = null;
+    }
+
+
+    /**
+     * Copy the given text into the arena and create the Option Item pointing at it.
+     * When interning, text that is already in the arena gets reused instead.
+     */
+    ModelYtdlOptionItem newOptionItem(int itemId, int headerId, CharSequence cmdSwitch, CharSequence flagLabel, CharSequence description) {
+
+        if (mInternedItems == null) {
+            return copyOptionItem(itemId, headerId, cmdSwitch, flagLabel, description);
+        }
+
+        // Line breaks never make it into the parsed text, so they're safe to join the key on
+        String internKey = new StringBuilder(flagLabel.length() + description.length() + cmdSwitch.length() + 2)
+                .append(flagLabel)
+                .append('\n')
+                .append(description)
+                .append('\n')
+                .append(cmdSwitch)
+                .toString();
+
+        ModelYtdlOptionItem internedItem = mInternedItems.get(internKey);
+
+        if (internedItem != null) {
+            return internedItem.copyWithIds(itemId, headerId);
+        }
+
+        internedItem = copyOptionItem(itemId, headerId, cmdSwitch, flagLabel, description);
+        mInternedItems.put(internKey, internedItem);
+
+        return internedItem;
+    }
+
+
+    private ModelYtdlOptionItem copyOptionItem(int itemId, int headerId, CharSequence cmdSwitch, CharSequence flagLabel, CharSequence description) {
+
+        int flagLength = flagLabel.length();
+        int descLength = description.length();
+        int switchLength = cmdSwitch.length();
+
+        // Switch is almost always the tail end of the flag label, only store it separately if it isn't
+        boolean isSwitchInFlag = isTailOf(cmdSwitch, flagLabel);
+        int entryLength = flagLength + 1 + descLength + (isSwitchInFlag ? 0 : switchLength);
+
+        reserveSpace(entryLength);
+
+        char[] entryChars = mPageChars;
+        int flagStart = mPageLength;
+
+        copyChars(flagLabel, entryChars, flagStart);
+        entryChars[flagStart + flagLength] = ' ';
+        copyChars(description, entryChars, flagStart + flagLength + 1);
+
+        int switchStart;
+        if (isSwitchInFlag) {
+            switchStart = flagStart + flagLength - switchLength;
+        } else {
+            switchStart = flagStart + flagLength + 1 + descLength;
+            copyChars(cmdSwitch, entryChars, switchStart);
+        }
+
+        mPageLength += entryLength;
+
+        return new ModelYtdlOptionItem(
+                itemId,
+                headerId,
+                mEntryCount++,
+                entryChars,
+                flagStart,
+                flagLength,
+                descLength,
+                switchStart,
+                switchLength,
+                ModelYtdlOptionArgs.parseCmdSwitch(cmdSwitch)
+        );
+    }
+
+
+    /**
+     * Start a new page if the current one can't fit the next entry. Entries never straddle pages,
+     * and old pages are left alone since there are items pointing into them.
+     */
+    private void reserveSpace(int entryLength) {
+        if (mPageChars.length - mPageLength < entryLength) {
+            mPageChars = new char[Math.max(entryLength, MIN_PAGE_LENGTH)];
+            mPageLength = 0;
+        }
+    }
+
+
+    private static boolean isTailOf(CharSequence tailText, CharSequence fullText) {
+
+        int tailStart = fullText.length() - tailText.length();
+        if (tailStart < 0) {
+            return false;
+        }
+
+        for (int charIndex = 0; charIndex < tailText.length(); charIndex++) {
+            if (tailText.charAt(charIndex) != fullText.charAt(tailStart + charIndex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    private static void copyChars(CharSequence sourceText, char[] targetChars, int targetStart) {
+
+        int sourceLength = sourceText.length();
+
+        if (sourceText instanceof String) {
+            ((String) sourceText).getChars(0, sourceLength, targetChars, targetStart);
+
+        } else if (sourceText instanceof StringBuilder) {
+            ((StringBuilder) sourceText).getChars(0, sourceLength, targetChars, targetStart);
+
+        } else {
+            for (int charIndex = 0; charIndex < sourceLength; charIndex++) {
+                targetChars[targetStart + charIndex] = sourceText.charAt(charIndex);
+            }
+        }
+    }
+
+
+    /**
+     * Compare the characters of two CharSequences (the arena views don't override equals())
+     */
+    static boolean contentEquals(CharSequence firstText, CharSequence secondText) {
+
+        if (firstText.length() != secondText.length()) {
+            return false;
+        }
+
+        for (int charIndex = 0; charIndex < firstText.length(); charIndex++) {
+            if (firstText.charAt(charIndex) != secondText.charAt(charIndex)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Read-only view over a run of arena characters. Cheap to create, only copies when toString() is called.
+     */
+    static final class TextSpan implements CharSequence {
+
+        private final char[] mTextChars;
+        private final int mTextStart;
+        private final int mTextLength;
+
+
+        TextSpan(char[] textChars, int textStart, int textLength) {
+            mTextChars = textChars;
+            mTextStart = textStart;
+            mTextLength = textLength;
+        }
+
+
+        @Override
+        public int length() {
+            return mTextLength;
+        }
+
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= mTextLength) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + mTextLength);
+            }
+            return mTextChars[mTextStart + index];
+        }
+
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > mTextLength || start > end) {
+                throw new IndexOutOfBoundsException("Start: " + start + ", End: " + end + ", Length: " + mTextLength);
+            }
+            return new TextSpan(mTextChars, mTextStart + start, end - start);
+        }
+
+
+        @Override
+        public String toString() {
+            return new String(mTextChars, mTextStart, mTextLength);
+        }
+    }
+
+}
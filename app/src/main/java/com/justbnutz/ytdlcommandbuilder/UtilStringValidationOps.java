@@ -48,33 +48,214 @@ public final class UtilStringValidationOps {
 
 
     /**
-     * Take a given Option String and see it ends in a bunch of capital letters, indicating that
-     * it's an option that requires parameter arguments
+     * Whole number within the given (inclusive) range, e.g. "--playlist-start NUMBER"
+     */
+    static boolean isValidInteger(String checkValue, long minValue, long maxValue) {
+
+        // Anything longer would overflow a long, and is well out of any sensible range anyway
+        if (checkValue.isEmpty() || checkValue.length() > 18) {
+            return false;
+        }
+
+        long parsedValue = 0;
+
+        for (int charIndex = 0; charIndex < checkValue.length(); charIndex++) {
+            char checkChar = checkValue.charAt(charIndex);
+
+            if (checkChar < '0' || checkChar > '9') {
+                return false;
+            }
+
+            parsedValue = parsedValue * 10 + (checkChar - '0');
+        }
+
+        return parsedValue >= minValue && parsedValue <= maxValue;
+    }
+
+
+    /**
+     * Positive number with an optional decimal part, e.g. "--socket-timeout SECONDS"
+     */
+    static boolean isValidDecimal(String checkValue) {
+        return findDecimalEnd(checkValue) == checkValue.length();
+    }
+
+
+    /**
+     * Number of bytes, with an optional decimal part and a single letter multiplier,
+     * e.g. "50k" or "4.2M" (same as the YTDL parse_bytes() check)
+     */
+    static boolean isValidByteSize(String checkValue) {
+
+        int numberEnd = findDecimalEnd(checkValue);
+
+        if (numberEnd < 0) {
+            return false;
+        }
+
+        if (numberEnd == checkValue.length()) {
+            return true;
+        }
+
+        return numberEnd == checkValue.length() - 1
+                && "kmgtpezy".indexOf(Character.toLowerCase(checkValue.charAt(numberEnd))) >= 0;
+    }
+
+
+    /**
+     * Find where the leading "digits[.digits]" run ends
      *
-     * @return An int[] array where:
-     *         int[0] is the start index of the argument
-     *         int[1] is the length of the argument
+     * @return Index just past the number, or -1 if the value doesn't start with one
      */
-    static int[] checkParameterArgs(String checkOption) {
+    private static int findDecimalEnd(String checkValue) {
 
-        // Check if the end of the String ends in spaces, capital letters or numbers
-        Pattern patternArgExists = Pattern.compile(
-                "^-.+?\\s([\\sA-Z0-9]+)$"
-        );
+        int charIndex = skipDigits(checkValue, 0);
+
+        if (charIndex == 0) {
+            return -1;
+        }
+
+        if (charIndex < checkValue.length() && checkValue.charAt(charIndex) == '.') {
+            int fractionEnd = skipDigits(checkValue, charIndex + 1);
+
+            return (fractionEnd > charIndex + 1)
+                    ? fractionEnd
+                    : -1;
+        }
 
-        Matcher matchArgExists = patternArgExists.matcher(checkOption);
+        return charIndex;
+    }
+
+
+    private static int skipDigits(String checkValue, int charIndex) {
+        while (charIndex < checkValue.length() && checkValue.charAt(charIndex) >= '0' && checkValue.charAt(charIndex) <= '9') {
+            charIndex++;
+        }
+        return charIndex;
+    }
+
+
+    /**
+     * Either an absolute date in YYYYMMDD form, or one relative to today, e.g. "now-2weeks" or "today+1day"
+     */
+    static boolean isValidDate(String checkValue) {
+
+        if (checkValue.length() == 8 && isValidInteger(checkValue, 0, 99999999)) {
+            int dateMonth = Integer.parseInt(checkValue.substring(4, 6));
+            int dateDay = Integer.parseInt(checkValue.substring(6, 8));
+
+            return dateMonth >= 1 && dateMonth <= 12 && dateDay >= 1 && dateDay <= 31;
+        }
 
-        if (matchArgExists.find() && matchArgExists.groupCount() > 0) {
-            // If argument string found, return its index and length
-            return new int[] {
-                    checkOption.length() - matchArgExists.group(1).length(),
-                    matchArgExists.group(1).length()
-            };
+        String relativeOffset;
+
+        if (checkValue.startsWith("now")) {
+            relativeOffset = checkValue.substring(3);
+
+        } else if (checkValue.startsWith("today")) {
+            relativeOffset = checkValue.substring(5);
 
         } else {
-            // If no URL found, return an empty array
-            return new int[] {};
+            return false;
+        }
+
+        if (relativeOffset.isEmpty()) {
+            return true;
+        }
+
+        if (relativeOffset.charAt(0) != '+' && relativeOffset.charAt(0) != '-') {
+            return false;
+        }
+
+        int unitStart = skipDigits(relativeOffset, 1);
+
+        if (unitStart == 1) {
+            return false;
+        }
+
+        String offsetUnit = relativeOffset.substring(unitStart);
+
+        if (offsetUnit.endsWith("s")) {
+            offsetUnit = offsetUnit.substring(0, offsetUnit.length() - 1);
+        }
+
+        return offsetUnit.equals("day")
+                || offsetUnit.equals("week")
+                || offsetUnit.equals("month")
+                || offsetUnit.equals("year");
+    }
+
+
+    /**
+     * Scheme followed by "://" and something after it, e.g. "socks5://127.0.0.1:1080/"
+     */
+    static boolean isValidUrl(String checkValue) {
+
+        int schemeEnd = checkValue.indexOf("://");
+
+        if (schemeEnd <= 0 || schemeEnd + 3 >= checkValue.length()) {
+            return false;
+        }
+
+        for (int charIndex = 0; charIndex < schemeEnd; charIndex++) {
+            char checkChar = checkValue.charAt(charIndex);
+
+            if (!Character.isLetterOrDigit(checkChar) && checkChar != '+' && checkChar != '-' && checkChar != '.') {
+                return false;
+            }
         }
+
+        for (int charIndex = schemeEnd + 3; charIndex < checkValue.length(); charIndex++) {
+            if (Character.isWhitespace(checkValue.charAt(charIndex))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Anything non-blank that a file system would take, '-' is fine too (stdin / stdout)
+     */
+    static boolean isValidPath(String checkValue) {
+        return !checkValue.trim().isEmpty()
+                && checkValue.indexOf('\u0000') < 0;
+    }
+
+
+    /**
+     * Output template, every "%(" field has to be closed off with a ")" and a conversion letter, e.g. "%(title)s"
+     */
+    static boolean isValidOutputTemplate(String checkValue) {
+
+        if (checkValue.trim().isEmpty()) {
+            return false;
+        }
+
+        int fieldStart = checkValue.indexOf("%(");
+
+        while (fieldStart >= 0) {
+            int fieldEnd = checkValue.indexOf(')', fieldStart + 2);
+
+            if (fieldEnd < 0) {
+                return false;
+            }
+
+            // Skip over any conversion flags / widths (e.g. "%(autonumber)03d") to the conversion type
+            int typeIndex = fieldEnd + 1;
+            while (typeIndex < checkValue.length() && "#0- +.123456789".indexOf(checkValue.charAt(typeIndex)) >= 0) {
+                typeIndex++;
+            }
+
+            if (typeIndex >= checkValue.length() || !Character.isLetter(checkValue.charAt(typeIndex))) {
+                return false;
+            }
+
+            fieldStart = checkValue.indexOf("%(", typeIndex);
+        }
+
+        return true;
     }
 
 }
@@ -0,0 +1,1035 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns YTDL help text into the Section / Option Item models shown in the option list.
+ *
+ * The bundled help text is parsed at build time (see the generateYtdlOptionTable task in app/build.gradle),
+ * so at runtime it only needs to be assembled out of GeneratedYtdlOptionTable. The runtime scanner is kept
+ * for any other help text that gets fed in (e.g. the much bigger yt-dlp help dumps).
+ */
+public final class UtilYtdlHelpParser {
+
+    // Bump whenever a change here would parse the same help text into different models (invalidates stored snapshots)
+    static final int PARSER_VERSION = 1;
+
+
+    /**
+     * Private constructor prevents the default parameter-less constructor from being used elsewhere in your code.
+     * - http://stackoverflow.com/questions/14398747/hide-utility-class-constructor-utility-classes-should-not-have-a-public-or-def
+     */
+    private UtilYtdlHelpParser() {}
+
+
+    // region ================== GENERATED TABLE ==================
+    // ====== ================== =============== ==================
+
+
+    /**
+     * Assemble the option list out of the table generated from res/raw/ytdl_options.txt at build time.
+     * Rows are replayed in file order so the Super / Section Ids come out the same as a runtime parse.
+     */
+    static List<ModelYtdlOptionSection> loadGeneratedOptionTable() {
+        return loadGeneratedOptionTable(null);
+    }
+
+
+    /**
+     * As above, handing each Section to the given listener as soon as it is complete
+     */
+    static List<ModelYtdlOptionSection> loadGeneratedOptionTable(SectionListener sectionListener) {
+        return loadGeneratedOptionTable(sectionListener, new ModelYtdlTextArena(getGeneratedTextLength()));
+    }
+
+
+    /**
+     * As above, storing the item text in the given (possibly shared) text arena
+     */
+    static List<ModelYtdlOptionSection> loadGeneratedOptionTable(SectionListener sectionListener, ModelYtdlTextArena textArena) {
+
+        OptionListBuilder listBuilder = new OptionListBuilder(sectionListener, textArena);
+
+        int sectionCount = GeneratedYtdlOptionTable.SECTION_HEADERS.length;
+        int itemIndex = 0;
+
+        // Start at -1 to pick up any items that came before the first header
+        for (int sectionIndex = -1; sectionIndex < sectionCount; sectionIndex++) {
+
+            if (sectionIndex >= 0) {
+                listBuilder.addSection(GeneratedYtdlOptionTable.SECTION_HEADERS[sectionIndex]);
+            }
+
+            // Items run up to the start of the next section (or the end of the table)
+            int itemEnd = (sectionIndex + 1 < sectionCount)
+                    ? GeneratedYtdlOptionTable.SECTION_ITEM_OFFSETS[sectionIndex + 1]
+                    : GeneratedYtdlOptionTable.ITEM_CMD_SWITCHES.length;
+
+            for (; itemIndex < itemEnd; itemIndex++) {
+                listBuilder.addItem(
+                        GeneratedYtdlOptionTable.ITEM_CMD_SWITCHES[itemIndex],
+                        GeneratedYtdlOptionTable.ITEM_FLAG_LABELS[itemIndex],
+                        GeneratedYtdlOptionTable.ITEM_DESCRIPTIONS[itemIndex]
+                );
+            }
+        }
+
+        return listBuilder.build();
+    }
+
+
+    /**
+     * Total length of the item text in the table (plus a separator each), so the text arena only needs the one page
+     */
+    static int getGeneratedTextLength() {
+
+        int textLength = 0;
+
+        for (int itemIndex = 0; itemIndex < GeneratedYtdlOptionTable.ITEM_CMD_SWITCHES.length; itemIndex++) {
+            textLength += GeneratedYtdlOptionTable.ITEM_CMD_SWITCHES[itemIndex].length()
+                    + GeneratedYtdlOptionTable.ITEM_FLAG_LABELS[itemIndex].length()
+                    + GeneratedYtdlOptionTable.ITEM_DESCRIPTIONS[itemIndex].length()
+                    + 1;
+        }
+
+        return textLength;
+    }
+
+    // endregion
+
+
+    // region ================== RUNTIME PARSER ==================
+    // ====== ================== ============== ==================
+
+
+    // Fixed column layout of the "youtube-dl --help" output
+    private static final int COLUMN_SECTION_HEADER = 2;
+    private static final int COLUMN_OPTION_FLAG = 4;
+    private static final int COLUMN_OPTION_DESCRIPTION = 37;
+
+
+    /**
+     * Parses out the YTDL options from the raw output generated by the "youtube-dl --help" command.
+     * (Closes the given stream when done)
+     */
+    static List<ModelYtdlOptionSection> parseHelpText(InputStream inputStream) throws IOException {
+        return parseHelpText(readHelpText(inputStream));
+    }
+
+
+    /**
+     * Single pass scanner over the help text. Each line is classified by its indent and the fixed
+     * 37 character flag column, so nothing gets allocated per line apart from the extracted labels.
+     * Matches lines exactly the same way as parseHelpTextWithRegex(), which is kept as the reference.
+     */
+    static List<ModelYtdlOptionSection> parseHelpText(String helpText) {
+        return parseHelpText(helpText, null);
+    }
+
+
+    /**
+     * As above, handing each Section to the given listener as soon as its last item has been parsed,
+     * so the list can start showing before the whole text is done.
+     */
+    static List<ModelYtdlOptionSection> parseHelpText(String helpText, SectionListener sectionListener) {
+        // Item text is never much longer than the lines it came from
+        return parseHelpText(helpText, sectionListener, new ModelYtdlTextArena(helpText.length()));
+    }
+
+
+    /**
+     * As above, storing the item text in the given (possibly shared) text arena.
+     * Help texts past PARALLEL_PARSE_MIN_LENGTH get scanned in parallel chunks (if there's more than one core to use).
+     */
+    static List<ModelYtdlOptionSection> parseHelpText(String helpText, SectionListener sectionListener, ModelYtdlTextArena textArena) {
+
+        int chunkCount = Math.min(
+                Runtime.getRuntime().availableProcessors(),
+                helpText.length() / PARALLEL_PARSE_MIN_CHUNK_LENGTH
+        );
+
+        if (helpText.length() >= PARALLEL_PARSE_MIN_LENGTH && chunkCount > 1) {
+            return parseHelpTextInChunks(helpText, sectionListener, textArena, chunkCount);
+        }
+
+        OptionListBuilder listBuilder = new OptionListBuilder(sectionListener, textArena);
+
+        scanHelpText(
+                helpText,
+                0,
+                helpText.length(),
+                new BuilderLineHandler(helpText, listBuilder)
+        );
+
+        return listBuilder.build();
+    }
+
+
+    /**
+     * Parallel version of parseHelpText(). The text is split into chunks at Section headers and each chunk's lines
+     * are scanned on its own thread, then the scanned lines are fed through the list builder in file order - so the
+     * Super / Section Ids (and every other quirk of the sequential parse) come out exactly the same.
+     *
+     * @param chunkCount Number of chunks to aim for (there'll be fewer if there aren't enough headers to split at)
+     */
+    static List<ModelYtdlOptionSection> parseHelpTextInChunks(String helpText, SectionListener sectionListener, ModelYtdlTextArena textArena, int chunkCount) {
+
+        List<ScannedChunk> scannedChunks = scanChunksInParallel(
+                helpText,
+                findChunkStarts(helpText, chunkCount)
+        );
+
+        OptionListBuilder listBuilder = new OptionListBuilder(sectionListener, textArena);
+        BuilderLineHandler lineHandler = new BuilderLineHandler(helpText, listBuilder);
+
+        for (ScannedChunk scannedChunk : scannedChunks) {
+            scannedChunk.replayLines(lineHandler);
+        }
+
+        return listBuilder.build();
+    }
+
+
+    /**
+     * Read the whole stream into a String so it can be scanned in one go. (Closes the given stream when done)
+     */
+    static String readHelpText(InputStream inputStream) throws IOException {
+
+        InputStreamReader streamReader = new InputStreamReader(inputStream);
+
+        try {
+            StringBuilder helpText = new StringBuilder(inputStream.available());
+            char[] readBuffer = new char[8192];
+
+            int readCount;
+            while ((readCount = streamReader.read(readBuffer)) != -1) {
+                helpText.append(readBuffer, 0, readCount);
+            }
+
+            return helpText.toString();
+
+        } finally {
+            streamReader.close();
+        }
+    }
+
+
+    /**
+     * Walk the lines in the given range of the help text, passing on each one that matches a line type.
+     * Description lines are passed on whether or not there's an item to add them to, that's up to the handler.
+     */
+    private static void scanHelpText(String helpText, int rangeStart, int rangeEnd, LineHandler lineHandler) {
+
+        int lineStart = rangeStart;
+
+        while (lineStart < rangeEnd) {
+
+            // Find the end of the current line (same line breaks as BufferedReader.readLine())
+            int lineEnd = findLineEnd(helpText, lineStart, rangeEnd);
+
+            // Line content, less any trailing separator that a regex "$" would have matched in front of
+            int contentEnd = findContentEnd(helpText, lineStart, lineEnd);
+
+            if (isOptionFlagLine(helpText, lineStart, contentEnd)) {
+
+                // Flag column runs up to the description column, trim it down to the listed switches
+                int flagStart = lineStart + COLUMN_OPTION_FLAG;
+                int flagEnd = trimEnd(helpText, flagStart, lineStart + COLUMN_OPTION_DESCRIPTION);
+                int descStart = lineStart + COLUMN_OPTION_DESCRIPTION;
+
+                lineHandler.onOptionFlagLine(
+                        flagStart,
+                        flagEnd,
+                        findCmdSwitchStart(helpText, flagStart, flagEnd),
+                        descStart,
+                        trimEnd(helpText, descStart, contentEnd)
+                );
+
+            } else if (isDescriptionContLine(helpText, lineStart, contentEnd)) {
+                int descStart = lineStart + COLUMN_OPTION_DESCRIPTION;
+
+                lineHandler.onDescriptionContLine(
+                        descStart,
+                        trimEnd(helpText, descStart, contentEnd)
+                );
+
+            } else if (isSectionHeaderLine(helpText, lineStart, contentEnd)) {
+                int headerStart = lineStart + COLUMN_SECTION_HEADER;
+
+                lineHandler.onSectionHeaderLine(
+                        headerStart,
+                        trimEnd(helpText, headerStart, contentEnd)
+                );
+            }
+
+            lineStart = findNextLineStart(helpText, lineEnd, rangeEnd);
+        }
+    }
+
+
+    private static int findLineEnd(String helpText, int lineStart, int rangeEnd) {
+        int lineEnd = lineStart;
+        while (lineEnd < rangeEnd && helpText.charAt(lineEnd) != '\n' && helpText.charAt(lineEnd) != '\r') {
+            lineEnd++;
+        }
+        return lineEnd;
+    }
+
+
+    /**
+     * Step over the line break at the end of the line ("\r\n" counts as one)
+     */
+    private static int findNextLineStart(String helpText, int lineEnd, int rangeEnd) {
+        if (lineEnd + 1 < rangeEnd && helpText.charAt(lineEnd) == '\r' && helpText.charAt(lineEnd + 1) == '\n') {
+            lineEnd++;
+        }
+        return lineEnd + 1;
+    }
+
+
+    /**
+     * Receives the matched lines of the help text, all positions are indexes into the help text
+     */
+    private interface LineHandler {
+
+        /**
+         * @param switchStart Start of the command switch at the end of the flag label, or -1 if there isn't one
+         */
+        void onOptionFlagLine(int flagStart, int flagEnd, int switchStart, int descStart, int descEnd);
+
+        void onDescriptionContLine(int descStart, int descEnd);
+
+        void onSectionHeaderLine(int headerStart, int headerEnd);
+    }
+
+
+    /**
+     * Feeds the scanned lines into the list builder, keeping track of the current command switch on the way
+     */
+    private static final class BuilderLineHandler implements LineHandler {
+
+        private final String mHelpText;
+        private final OptionListBuilder mListBuilder;
+
+        // Current command switch, as a range of the help text
+        private int mCurrentSwitchStart = 0;
+        private int mCurrentSwitchEnd = 0;
+
+
+        BuilderLineHandler(String helpText, OptionListBuilder listBuilder) {
+            mHelpText = helpText;
+            mListBuilder = listBuilder;
+        }
+
+
+        @Override
+        public void onOptionFlagLine(int flagStart, int flagEnd, int switchStart, int descStart, int descEnd) {
+
+            // Keep the previous switch if nothing usable was found
+            if (switchStart >= 0) {
+                mCurrentSwitchStart = switchStart;
+                mCurrentSwitchEnd = flagEnd;
+            }
+
+            mListBuilder.addItem(
+                    mHelpText,
+                    mCurrentSwitchStart,
+                    mCurrentSwitchEnd,
+                    flagStart,
+                    flagEnd,
+                    descStart,
+                    descEnd
+            );
+        }
+
+
+        @Override
+        public void onDescriptionContLine(int descStart, int descEnd) {
+            // If it's a continued description, append to the existing item
+            if (mListBuilder.hasCurrentItem()) {
+                mListBuilder.appendDescription(mHelpText, descStart, descEnd);
+            }
+        }
+
+
+        @Override
+        public void onSectionHeaderLine(int headerStart, int headerEnd) {
+            mListBuilder.addSection(
+                    mHelpText.substring(headerStart, headerEnd)
+            );
+        }
+    }
+
+
+    /**
+     * Equivalent of "^\\s{4}(-.{32})(\\w.+)$" - four spaces, a flag column starting with a dash, then the description.
+     */
+    private static boolean isOptionFlagLine(String helpText, int lineStart, int lineEnd) {
+        return lineEnd - lineStart > COLUMN_OPTION_DESCRIPTION + 1
+                && isIndentedBy(helpText, lineStart, COLUMN_OPTION_FLAG)
+                && helpText.charAt(lineStart + COLUMN_OPTION_FLAG) == '-'
+                && isLineContent(helpText, lineStart + COLUMN_OPTION_FLAG + 1, lineStart + COLUMN_OPTION_DESCRIPTION)
+                && isWordChar(helpText.charAt(lineStart + COLUMN_OPTION_DESCRIPTION))
+                && isLineContent(helpText, lineStart + COLUMN_OPTION_DESCRIPTION + 1, lineEnd);
+    }
+
+
+    /**
+     * Equivalent of "^\\s{37}(\\w.+)$" - blank flag column, so the description carries on from the line above.
+     */
+    private static boolean isDescriptionContLine(String helpText, int lineStart, int lineEnd) {
+        return lineEnd - lineStart > COLUMN_OPTION_DESCRIPTION + 1
+                && isIndentedBy(helpText, lineStart, COLUMN_OPTION_DESCRIPTION)
+                && isWordChar(helpText.charAt(lineStart + COLUMN_OPTION_DESCRIPTION))
+                && isLineContent(helpText, lineStart + COLUMN_OPTION_DESCRIPTION + 1, lineEnd);
+    }
+
+
+    /**
+     * Equivalent of "^\\s{2}(\\w.+)$" - a section title indented by two spaces.
+     */
+    private static boolean isSectionHeaderLine(String helpText, int lineStart, int lineEnd) {
+        return lineEnd - lineStart > COLUMN_SECTION_HEADER + 1
+                && isIndentedBy(helpText, lineStart, COLUMN_SECTION_HEADER)
+                && isWordChar(helpText.charAt(lineStart + COLUMN_SECTION_HEADER))
+                && isLineContent(helpText, lineStart + COLUMN_SECTION_HEADER + 1, lineEnd);
+    }
+
+
+    /**
+     * Equivalent of "^.*?,? ?(-[-\\w :]+)$" run over the flag label - the switch is the shortest tail
+     * starting with a dash that only holds dashes, word characters, spaces and colons.
+     *
+     * @return Start index of the command switch, or -1 if there isn't one
+     */
+    private static int findCmdSwitchStart(String helpText, int flagStart, int flagEnd) {
+
+        // Walk back over the allowed characters to find where the tail starts
+        int tailStart = flagEnd;
+        while (tailStart > flagStart && isCmdSwitchChar(helpText.charAt(tailStart - 1))) {
+            tailStart--;
+        }
+
+        // First dash in the tail with at least one character after it
+        for (int switchStart = tailStart; switchStart < flagEnd - 1; switchStart++) {
+            if (helpText.charAt(switchStart) == '-') {
+                return isLineContent(helpText, flagStart, switchStart)
+                        ? switchStart
+                        : -1;
+            }
+        }
+
+        return -1;
+    }
+
+
+    private static boolean isIndentedBy(String helpText, int lineStart, int indentLength) {
+        for (int charIndex = lineStart; charIndex < lineStart + indentLength; charIndex++) {
+            if (!isWhitespaceChar(helpText.charAt(charIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Drop a single trailing line separator that BufferedReader.readLine() leaves in (regex "$" matches before it)
+     */
+    private static int findContentEnd(String helpText, int lineStart, int lineEnd) {
+        return (lineEnd > lineStart && isLineSeparator(helpText.charAt(lineEnd - 1)))
+                ? lineEnd - 1
+                : lineEnd;
+    }
+
+
+    /**
+     * Regex "." - anything apart from the line separators that BufferedReader.readLine() leaves in
+     */
+    private static boolean isLineContent(String helpText, int rangeStart, int rangeEnd) {
+        for (int charIndex = rangeStart; charIndex < rangeEnd; charIndex++) {
+            if (isLineSeparator(helpText.charAt(charIndex))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Same as String.trim() on the end of the range (the start is always a non-space character)
+     */
+    private static int trimEnd(String helpText, int rangeStart, int rangeEnd) {
+        while (rangeEnd > rangeStart && helpText.charAt(rangeEnd - 1) <= ' ') {
+            rangeEnd--;
+        }
+        return rangeEnd;
+    }
+
+
+    // Regex "\\s"
+    private static boolean isWhitespaceChar(char checkChar) {
+        return checkChar == ' ' || checkChar == '\t' || checkChar == '\n' || checkChar == '\u000B' || checkChar == '\f' || checkChar == '\r';
+    }
+
+
+    // Unicode line separators that regex "." and "$" treat as line breaks
+    private static boolean isLineSeparator(char checkChar) {
+        return checkChar == '\u0085' || checkChar == '\u2028' || checkChar == '\u2029';
+    }
+
+
+    // Regex "\\w"
+    private static boolean isWordChar(char checkChar) {
+        return (checkChar >= 'a' && checkChar <= 'z')
+                || (checkChar >= 'A' && checkChar <= 'Z')
+                || (checkChar >= '0' && checkChar <= '9')
+                || checkChar == '_';
+    }
+
+
+    // Regex "[-\\w :]"
+    private static boolean isCmdSwitchChar(char checkChar) {
+        return checkChar == '-' || checkChar == ' ' || checkChar == ':' || isWordChar(checkChar);
+    }
+
+    // endregion
+
+
+    // region ================== PARALLEL PARSER ==================
+    // ====== ================== =============== ==================
+
+
+    // Below this, handing the chunks out to other threads costs more than it saves
+    private static final int PARALLEL_PARSE_MIN_LENGTH = 64 * 1024;
+    private static final int PARALLEL_PARSE_MIN_CHUNK_LENGTH = 16 * 1024;
+
+    // Worker threads for scanning chunks, the calling thread always scans the first chunk itself
+    // (a dedicated pool, since blocking a Rx computation thread on other computation work can deadlock it)
+    private static ExecutorService sChunkExecutor;
+
+
+    /**
+     * Split the help text into roughly even chunks, each starting on a Section header line
+     * (any line start would do for the scan, but keeping Sections whole keeps the chunks meaningful).
+     *
+     * @return Start index of each chunk, the first is always 0
+     */
+    private static int[] findChunkStarts(String helpText, int chunkCount) {
+
+        int textLength = helpText.length();
+
+        int[] chunkStarts = new int[Math.max(chunkCount, 1)];
+        int foundCount = 1;
+
+        for (int chunkIndex = 1; chunkIndex < chunkCount; chunkIndex++) {
+
+            // Go from the start of the line after the target point (or the last chunk start), until a header turns up
+            int searchStart = Math.max(
+                    (int) ((long) textLength * chunkIndex / chunkCount),
+                    chunkStarts[foundCount - 1]
+            );
+
+            int lineStart = findNextLineStart(helpText, findLineEnd(helpText, searchStart, textLength), textLength);
+
+            while (lineStart < textLength) {
+                int lineEnd = findLineEnd(helpText, lineStart, textLength);
+
+                if (isSectionHeaderLine(helpText, lineStart, findContentEnd(helpText, lineStart, lineEnd))) {
+                    break;
+                }
+
+                lineStart = findNextLineStart(helpText, lineEnd, textLength);
+            }
+
+            // Ran out of headers, the last chunk just gets bigger
+            if (lineStart >= textLength) {
+                break;
+            }
+
+            chunkStarts[foundCount++] = lineStart;
+        }
+
+        return Arrays.copyOf(chunkStarts, foundCount);
+    }
+
+
+    /**
+     * Scan each chunk on the worker pool (first one on this thread), handing back the results in chunk order
+     */
+    private static List<ScannedChunk> scanChunksInParallel(final String helpText, int[] chunkStarts) {
+
+        int chunkCount = chunkStarts.length;
+
+        List<ScannedChunk> scannedChunks = new ArrayList<>(chunkCount);
+        List<Future<ScannedChunk>> chunkFutures = new ArrayList<>(chunkCount);
+
+        ExecutorService chunkExecutor = getChunkExecutor();
+
+        for (int chunkIndex = 1; chunkIndex < chunkCount; chunkIndex++) {
+
+            final int chunkStart = chunkStarts[chunkIndex];
+            final int chunkEnd = (chunkIndex + 1 < chunkCount) ? chunkStarts[chunkIndex + 1] : helpText.length();
+
+            chunkFutures.add(
+                    chunkExecutor.submit(
+                            new Callable<ScannedChunk>() {
+                                @Override
+                                public ScannedChunk call() {
+                                    return scanChunk(helpText, chunkStart, chunkEnd);
+                                }
+                            }
+                    )
+            );
+        }
+
+        scannedChunks.add(
+                scanChunk(helpText, 0, (chunkCount > 1) ? chunkStarts[1] : helpText.length())
+        );
+
+        for (int futureIndex = 0; futureIndex < chunkFutures.size(); futureIndex++) {
+            try {
+                scannedChunks.add(chunkFutures.get(futureIndex).get());
+
+            } catch (InterruptedException e) {
+                // Don't leave the list half done, just scan the chunk here instead
+                Thread.currentThread().interrupt();
+
+                int chunkIndex = futureIndex + 1;
+                scannedChunks.add(
+                        scanChunk(
+                                helpText,
+                                chunkStarts[chunkIndex],
+                                (chunkIndex + 1 < chunkCount) ? chunkStarts[chunkIndex + 1] : helpText.length()
+                        )
+                );
+
+            } catch (ExecutionException e) {
+                // Scanning doesn't throw anything checked, so pass on whatever went wrong
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return scannedChunks;
+    }
+
+
+    private static ScannedChunk scanChunk(String helpText, int chunkStart, int chunkEnd) {
+        ScannedChunk scannedChunk = new ScannedChunk();
+        scanHelpText(helpText, chunkStart, chunkEnd, scannedChunk);
+        return scannedChunk;
+    }
+
+
+    private static synchronized ExecutorService getChunkExecutor() {
+
+        if (sChunkExecutor == null) {
+            sChunkExecutor = Executors.newFixedThreadPool(
+                    Math.max(Runtime.getRuntime().availableProcessors() - 1, 1),
+                    new ThreadFactory() {
+                        private final AtomicInteger mThreadCount = new AtomicInteger();
+
+                        @Override
+                        public Thread newThread(Runnable runnable) {
+                            Thread chunkThread = new Thread(runnable, "YtdlHelpParser-" + mThreadCount.incrementAndGet());
+                            chunkThread.setDaemon(true);
+                            return chunkThread;
+                        }
+                    }
+            );
+        }
+
+        return sChunkExecutor;
+    }
+
+
+    /**
+     * Records the lines matched in one chunk so they can be played back into the list builder later.
+     * Each line takes up LINE_FIELDS ints: the line type followed by its positions.
+     */
+    private static final class ScannedChunk implements LineHandler {
+
+        private static final int LINE_FIELDS = 6;
+
+        private static final int LINE_OPTION_FLAG = 0;
+        private static final int LINE_DESCRIPTION_CONT = 1;
+        private static final int LINE_SECTION_HEADER = 2;
+
+        private int[] mLineData = new int[LINE_FIELDS * 64];
+        private int mDataLength = 0;
+
+
+        @Override
+        public void onOptionFlagLine(int flagStart, int flagEnd, int switchStart, int descStart, int descEnd) {
+            addLine(LINE_OPTION_FLAG, flagStart, flagEnd, switchStart, descStart, descEnd);
+        }
+
+
+        @Override
+        public void onDescriptionContLine(int descStart, int descEnd) {
+            addLine(LINE_DESCRIPTION_CONT, descStart, descEnd, 0, 0, 0);
+        }
+
+
+        @Override
+        public void onSectionHeaderLine(int headerStart, int headerEnd) {
+            addLine(LINE_SECTION_HEADER, headerStart, headerEnd, 0, 0, 0);
+        }
+
+
+        void replayLines(LineHandler lineHandler) {
+            for (int lineIndex = 0; lineIndex < mDataLength; lineIndex += LINE_FIELDS) {
+
+                switch (mLineData[lineIndex]) {
+                    case LINE_OPTION_FLAG:
+                        lineHandler.onOptionFlagLine(
+                                mLineData[lineIndex + 1],
+                                mLineData[lineIndex + 2],
+                                mLineData[lineIndex + 3],
+                                mLineData[lineIndex + 4],
+                                mLineData[lineIndex + 5]
+                        );
+                        break;
+
+                    case LINE_DESCRIPTION_CONT:
+                        lineHandler.onDescriptionContLine(
+                                mLineData[lineIndex + 1],
+                                mLineData[lineIndex + 2]
+                        );
+                        break;
+
+                    case LINE_SECTION_HEADER:
+                        lineHandler.onSectionHeaderLine(
+                                mLineData[lineIndex + 1],
+                                mLineData[lineIndex + 2]
+                        );
+                        break;
+                }
+            }
+        }
+
+
+        private void addLine(int lineType, int firstField, int secondField, int thirdField, int fourthField, int fifthField) {
+
+            if (mDataLength + LINE_FIELDS > mLineData.length) {
+                mLineData = Arrays.copyOf(mLineData, mLineData.length * 2);
+            }
+
+            mLineData[mDataLength++] = lineType;
+            mLineData[mDataLength++] = firstField;
+            mLineData[mDataLength++] = secondField;
+            mLineData[mDataLength++] = thirdField;
+            mLineData[mDataLength++] = fourthField;
+            mLineData[mDataLength++] = fifthField;
+        }
+    }
+
+    // endregion
+
+
+    // region ================== REGEX PARSER ==================
+    // ====== ================== ============ ==================
+
+
+    /**
+     * Original regex based line parser, kept as the reference for parseHelpText(). The build-time table
+     * generator matches lines the same way.
+     */
+    static List<ModelYtdlOptionSection> parseHelpTextWithRegex(BufferedReader bufferedReader) throws IOException {
+
+        // If all whitespace only up to third character; then it's a header
+        Pattern patternSectionHeader = Pattern.compile(
+                "^\\s{2}(\\w.+)$"
+        );
+        // If all whitespace only up to fifth character; then it's the next option
+        Pattern patternOptionFlag = Pattern.compile(
+                "^\\s{4}(-.{32})(\\w.+)$"
+        );
+        // Extract the actual command switch out of the potential list of possible options
+        Pattern patternCmdSwitch = Pattern.compile(
+                "^.*?,? ?(-[-\\w :]+)$"
+        );
+        // If all whitespace only up to thirty-eighth character; then it's a continuation of the description
+        Pattern patternOptionDescCont = Pattern.compile(
+                "^\\s{37}(\\w.+)$"
+        );
+
+        OptionListBuilder listBuilder = new OptionListBuilder(null, new ModelYtdlTextArena(0));
+
+        String currentLine;
+        String currentFlagLabel;
+        String currentCmdSwitch = "";
+
+        // Initialise the Regex tools
+        Matcher matchOptionFlag;
+        Matcher matchCmdSwitch;
+        Matcher matchOptionDescCont;
+        Matcher matchSectionHeader;
+
+        // Read the next line into the buffer, and if its not EOF; parse out its line-type and process accordingly.
+        while ((currentLine = bufferedReader.readLine()) != null) {
+
+            // Running the most-likely Regex first, to try and reduce time taken to process
+            matchOptionFlag = patternOptionFlag.matcher(currentLine);
+
+            // Check if next Option Item
+            if (matchOptionFlag.find() && matchOptionFlag.groupCount() > 1) {
+
+                currentFlagLabel = matchOptionFlag.group(1).trim();
+
+                // Extract the actual command switch out
+                matchCmdSwitch = patternCmdSwitch.matcher(currentFlagLabel);
+                if (matchCmdSwitch.find() && matchCmdSwitch.groupCount() > 0) {
+                    currentCmdSwitch = matchCmdSwitch.group(1);
+                }
+
+                // Create a new Option Item based on the latest line
+                listBuilder.addItem(
+                        currentCmdSwitch,
+                        currentFlagLabel,
+                        matchOptionFlag.group(2).trim()
+                );
+
+            } else {
+                // If not a Flag line, check if it's a Continued Description line
+                matchOptionDescCont = patternOptionDescCont.matcher(currentLine);
+
+                if (matchOptionDescCont.find() && matchOptionDescCont.groupCount() > 0 && listBuilder.hasCurrentItem()) {
+                    // If it's a continued description, append to the existing item object
+                    listBuilder.appendDescription(
+                            matchOptionDescCont.group(1).trim()
+                    );
+
+                } else {
+                    // If not Flag or Description, check if it's a header
+                    matchSectionHeader = patternSectionHeader.matcher(currentLine);
+
+                    if (matchSectionHeader.find() && matchSectionHeader.groupCount() > 0) {
+                        listBuilder.addSection(
+                                matchSectionHeader.group(1).trim()
+                        );
+                    }
+                }
+            }
+        }
+
+        return listBuilder.build();
+    }
+
+    // endregion
+
+
+    // region ================== LIST ASSEMBLY ==================
+    // ====== ================== ============= ==================
+
+
+    /**
+     * Callback for picking up each Section as soon as nothing more can be added to it
+     */
+    interface SectionListener {
+        void onSectionComplete(ModelYtdlOptionSection optionSection);
+    }
+
+
+    /**
+     * Collects parsed Sections and Option Items in file order and hands out the Super / Section Ids.
+     * Item text is held in scratch buffers until the item is complete, then copied into the shared text arena.
+     */
+    static final class OptionListBuilder {
+
+        private final List<ModelYtdlOptionSection> mOptionSections = new ArrayList<>();
+
+        // Optional listener to stream out each Section as it is completed
+        private final SectionListener mSectionListener;
+        private int mCompletedSectionCount = 0;
+
+        // Super Id is shared between Headers and Items, so we know where everything sits in the overall list
+        private int mNextSuperId = 0;
+
+        // Storage for all the item text in this list (can be shared with other lists)
+        private final ModelYtdlTextArena mTextArena;
+
+        // The current Option Item is only created once its Description can't be added to anymore
+        // (a header doesn't close it off, the regex parser let description lines carry on past one)
+        private boolean mHasPendingItem = false;
+        private int mPendingSuperId;
+        private int mPendingSectionId;
+        private final StringBuilder mPendingCmdSwitch = new StringBuilder();
+        private final StringBuilder mPendingFlagLabel = new StringBuilder();
+        private final StringBuilder mPendingDescription = new StringBuilder();
+
+
+        OptionListBuilder(SectionListener sectionListener, ModelYtdlTextArena textArena) {
+            mSectionListener = sectionListener;
+            mTextArena = textArena;
+        }
+
+
+        void addSection(String headerLabel) {
+            mOptionSections.add(
+                    new ModelYtdlOptionSection(
+                            mNextSuperId++,
+                            mOptionSections.size(),
+                            headerLabel
+                    )
+            );
+        }
+
+
+        void addItem(CharSequence cmdSwitch, CharSequence flagLabel, CharSequence description) {
+            startPendingItem();
+
+            mPendingCmdSwitch.append(cmdSwitch);
+            mPendingFlagLabel.append(flagLabel);
+            mPendingDescription.append(description);
+        }
+
+
+        /**
+         * As above, with all the text taken as ranges out of the one source (saves cutting out Strings per line)
+         */
+        void addItem(CharSequence sourceText, int switchStart, int switchEnd, int flagStart, int flagEnd, int descStart, int descEnd) {
+            startPendingItem();
+
+            mPendingCmdSwitch.append(sourceText, switchStart, switchEnd);
+            mPendingFlagLabel.append(sourceText, flagStart, flagEnd);
+            mPendingDescription.append(sourceText, descStart, descEnd);
+        }
+
+
+        boolean hasCurrentItem() {
+            return mHasPendingItem;
+        }
+
+
+        void appendDescription(CharSequence extraDescription) {
+            mPendingDescription
+                    .append(" ")
+                    .append(extraDescription);
+        }
+
+
+        void appendDescription(CharSequence sourceText, int descStart, int descEnd) {
+            mPendingDescription
+                    .append(" ")
+                    .append(sourceText, descStart, descEnd);
+        }
+
+
+        List<ModelYtdlOptionSection> build() {
+            commitPendingItem();
+            notifyCompletedSections(mOptionSections.size());
+            return mOptionSections;
+        }
+
+
+        private void startPendingItem() {
+            commitPendingItem();
+
+            int sectionId = mOptionSections.size() - 1;
+
+            // Description lines only ever get added to the current item, so once an item turns up
+            // under a later Section, all the Sections before it are final
+            notifyCompletedSections(sectionId);
+
+            mHasPendingItem = true;
+            mPendingSuperId = mNextSuperId++;
+            mPendingSectionId = sectionId;
+            mPendingCmdSwitch.setLength(0);
+            mPendingFlagLabel.setLength(0);
+            mPendingDescription.setLength(0);
+        }
+
+
+        private void commitPendingItem() {
+
+            // Items that turn up before the first header have nowhere to go (but still use up a Super Id)
+            if (mHasPendingItem && mPendingSectionId >= 0) {
+                mOptionSections
+                        .get(mPendingSectionId)
+                        .addOptionItem(
+                                mTextArena.newOptionItem(
+                                        mPendingSuperId,
+                                        mPendingSectionId,
+                                        mPendingCmdSwitch,
+                                        mPendingFlagLabel,
+                                        mPendingDescription
+                                )
+                        );
+            }
+        }
+
+
+        private void notifyCompletedSections(int sectionLimit) {
+            if (mSectionListener != null) {
+                while (mCompletedSectionCount < sectionLimit) {
+                    mSectionListener.onSectionComplete(
+                            mOptionSections.get(mCompletedSectionCount++)
+                    );
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Check whether two option lists hold the same Sections and Items, Ids included.
+     * Used to make sure the build-time table and the runtime parser haven't drifted apart.
+     */
+    static boolean isSameOptionList(List<ModelYtdlOptionSection> firstList, List<ModelYtdlOptionSection> secondList) {
+
+        if (firstList.size() != secondList.size()) {
+            return false;
+        }
+
+        for (int sectionIndex = 0; sectionIndex < firstList.size(); sectionIndex++) {
+
+            ModelYtdlOptionSection firstSection = firstList.get(sectionIndex);
+            ModelYtdlOptionSection secondSection = secondList.get(sectionIndex);
+
+            if (firstSection.getSuperId() != secondSection.getSuperId()
+                    || firstSection.getSectionId() != secondSection.getSectionId()
+                    || !firstSection.getOptionHeader().equals(secondSection.getOptionHeader())
+                    || firstSection.getYtdlOptionItems().size() != secondSection.getYtdlOptionItems().size()) {
+                return false;
+            }
+
+            for (int itemIndex = 0; itemIndex < firstSection.getYtdlOptionItems().size(); itemIndex++) {
+
+                ModelYtdlOptionItem firstItem = firstSection.getYtdlOptionItems().get(itemIndex);
+                ModelYtdlOptionItem secondItem = secondSection.getYtdlOptionItems().get(itemIndex);
+
+                if (firstItem.getSuperId() != secondItem.getSuperId()
+                        || firstItem.getSectionId() != secondItem.getSectionId()
+                        || !ModelYtdlTextArena.contentEquals(firstItem.getCmdSwitch(), secondItem.getCmdSwitch())
+                        || !ModelYtdlTextArena.contentEquals(firstItem.getFlagLabel(), secondItem.getFlagLabel())
+                        || !ModelYtdlTextArena.contentEquals(firstItem.getDescription(), secondItem.getDescription())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    // endregion
+
+}
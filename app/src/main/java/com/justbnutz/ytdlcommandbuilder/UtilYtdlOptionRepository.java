@@ -0,0 +1,530 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import android.content.Context;
+import android.support.v7.preference.PreferenceManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide holder for the YTDL option lists. The help texts are only loaded once per process, after that every
+ * request (config changes, Fragment restarts, clearing the search, switching versions) gets the same read-only
+ * list back.
+ *
+ * Besides the default help text, extra versions can be imported into the app's files dir under ytdl_versions/
+ * (one "[version].txt" per tool version, see importVersionHelpText()). They're all loaded together into a ModelYtdlOptionCorpus, so options
+ * that are the same across versions are only held once.
+ *
+ * Safe to call from any thread - concurrent first requests wait on the one load rather than parsing twice.
+ */
+public final class UtilYtdlOptionRepository {
+
+    // Help text that can be dropped into the app's files dir to replace the bundled one (e.g. from a newer youtube-dl)
+    private static final String USER_HELP_TEXT_FILENAME = "ytdl_options.txt";
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+
+    // Folder in the app's files dir holding the help texts of any other versions
+    private static final String VERSION_HELP_TEXT_DIR = "ytdl_versions";
+    private static final String VERSION_HELP_TEXT_SUFFIX = ".txt";
+
+    // Output of "youtube-dl --list-extractors" imported into the app's files dir (see importExtractorList())
+    private static final String EXTRACTOR_LIST_FILENAME = "ytdl_extractors.txt";
+
+    private static final Object LOAD_LOCK = new Object();
+
+    // Loaded option lists, null until the first load is done
+    private static volatile ModelYtdlOptionCorpus sOptionCorpus;
+
+    // Loaded extractor catalogue, null until first requested
+    private static volatile ModelYtdlExtractorCatalogue sExtractorCatalogue;
+
+    // Load metrics
+    private static volatile long sLoadTimeNanos;
+    private static final AtomicInteger sLoadCount = new AtomicInteger();
+    private static final AtomicInteger sCacheHitCount = new AtomicInteger();
+
+
+    /**
+     * Private constructor prevents the default parameter-less constructor from being used elsewhere in your code.
+     * - http://stackoverflow.com/questions/14398747/hide-utility-class-constructor-utility-classes-should-not-have-a-public-or-def
+     */
+    private UtilYtdlOptionRepository() {}
+
+
+    // region ================== OPTION LIST ACCESS ==================
+    // ====== ================== ================== ==================
+
+
+    /**
+     * Fetch the option list of the currently selected version, loading all the versions first if this is the
+     * first request in the process.
+     * Each Section is handed to the (optional) listener, either as it gets loaded or replayed out of the cached list.
+     */
+    static List<ModelYtdlOptionSection> getOptionList(Context context, UtilYtdlHelpParser.SectionListener sectionListener) {
+
+        String versionId = getSelectedVersionId(context);
+        ModelYtdlOptionCorpus optionCorpus = sOptionCorpus;
+
+        if (optionCorpus == null) {
+            synchronized (LOAD_LOCK) {
+                optionCorpus = sOptionCorpus;
+
+                if (optionCorpus == null) {
+                    // Sections of the selected version get streamed out while loading, no need to replay them
+                    return loadOptionCorpus(context, versionId, sectionListener)
+                            .getOptionList(versionId);
+                }
+            }
+        }
+
+        sCacheHitCount.incrementAndGet();
+
+        List<ModelYtdlOptionSection> optionList = optionCorpus.getOptionList(versionId);
+        replaySections(optionList, sectionListener);
+
+        return optionList;
+    }
+
+
+    /**
+     * Fetch every loaded version (e.g. for comparing them), loading them first if needed
+     */
+    static ModelYtdlOptionCorpus getOptionCorpus(Context context) {
+
+        ModelYtdlOptionCorpus optionCorpus = sOptionCorpus;
+
+        if (optionCorpus == null) {
+            synchronized (LOAD_LOCK) {
+                optionCorpus = sOptionCorpus;
+
+                if (optionCorpus == null) {
+                    return loadOptionCorpus(context, getSelectedVersionId(context), null);
+                }
+            }
+        }
+
+        return optionCorpus;
+    }
+
+
+    /**
+     * Search index over the selected version's option list, built alongside it at load time
+     */
+    static ModelYtdlOptionSearchIndex getSearchIndex(Context context) {
+        return getOptionCorpus(context).getSearchIndex(getSelectedVersionId(context));
+    }
+
+
+    /**
+     * Switch completion trie over the selected version's option list, built alongside it at load time
+     */
+    static ModelYtdlSwitchTrie getSwitchTrie(Context context) {
+        return getOptionCorpus(context).getSwitchTrie(getSelectedVersionId(context));
+    }
+
+
+    /**
+     * Argument schema of the given command switch. Switches from the loaded list were already worked out at load
+     * time, anything else (or anything before the load is done) just gets worked out on the spot.
+     */
+    static ModelYtdlOptionArgs getOptionArgs(String cmdSwitch) {
+
+        ModelYtdlOptionCorpus optionCorpus = sOptionCorpus;
+
+        ModelYtdlOptionArgs optionArgs = (optionCorpus != null)
+                ? optionCorpus.getOptionArgs(cmdSwitch)
+                : null;
+
+        return (optionArgs != null)
+                ? optionArgs
+                : ModelYtdlOptionArgs.parseCmdSwitch(cmdSwitch);
+    }
+
+
+    /**
+     * Version Ids of the help texts available to load, starting with the default one. Only looks at the file
+     * names, so it's fine to call before anything is loaded.
+     */
+    static List<String> getAvailableVersionIds(Context context) {
+
+        List<String> versionIds = new ArrayList<>();
+        versionIds.add(ModelYtdlOptionCorpus.DEFAULT_VERSION_ID);
+
+        File[] versionFiles = new File(context.getFilesDir(), VERSION_HELP_TEXT_DIR).listFiles();
+
+        if (versionFiles != null) {
+            List<String> extraVersionIds = new ArrayList<>();
+
+            for (File versionFile : versionFiles) {
+                String fileName = versionFile.getName();
+
+                if (versionFile.isFile() && fileName.endsWith(VERSION_HELP_TEXT_SUFFIX) && fileName.length() > VERSION_HELP_TEXT_SUFFIX.length()) {
+                    extraVersionIds.add(
+                            fileName.substring(0, fileName.length() - VERSION_HELP_TEXT_SUFFIX.length())
+                    );
+                }
+            }
+
+            Collections.sort(extraVersionIds);
+            versionIds.addAll(extraVersionIds);
+        }
+
+        return versionIds;
+    }
+
+
+    /**
+     * Copy a help text (e.g. picked out by the user) into the versions folder, named after the file it came from.
+     * The loaded lists are dropped so the next request loads them again along with the new version.
+     * (Closes the given stream when done)
+     *
+     * @return Version Id the help text was stored under, or null if it doesn't hold any options to show
+     */
+    static String importVersionHelpText(Context context, String fileName, InputStream inputStream) throws IOException {
+
+        String helpText = UtilYtdlHelpParser.readHelpText(inputStream);
+        String versionId = getImportVersionId(fileName);
+
+        if (versionId.isEmpty() || !hasOptionItems(UtilYtdlHelpParser.parseHelpText(helpText))) {
+            return null;
+        }
+
+        File versionDir = new File(context.getFilesDir(), VERSION_HELP_TEXT_DIR);
+        if (!versionDir.isDirectory() && !versionDir.mkdirs()) {
+            throw new IOException("Could not create " + versionDir);
+        }
+
+        synchronized (LOAD_LOCK) {
+            writeTextFile(getVersionHelpTextFile(context, versionId), helpText);
+            sOptionCorpus = null;
+        }
+
+        return versionId;
+    }
+
+
+    /**
+     * Version Id out of the imported file's name, less the extension and anything that doesn't belong in a file name
+     */
+    static String getImportVersionId(String fileName) {
+
+        String versionId = (fileName != null) ? fileName.trim() : "";
+
+        if (versionId.toLowerCase().endsWith(VERSION_HELP_TEXT_SUFFIX)) {
+            versionId = versionId.substring(0, versionId.length() - VERSION_HELP_TEXT_SUFFIX.length());
+        }
+
+        return versionId.replaceAll("[^\\w.-]+", "_");
+    }
+
+
+    private static boolean hasOptionItems(List<ModelYtdlOptionSection> optionList) {
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            if (!optionSection.getYtdlOptionItems().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private static void writeTextFile(File textFile, String text) throws IOException {
+
+        OutputStreamWriter fileWriter = new OutputStreamWriter(new FileOutputStream(textFile));
+
+        try {
+            fileWriter.write(text);
+
+        } finally {
+            fileWriter.close();
+        }
+    }
+
+
+    /**
+     * Version picked in the Preferences (the default help text if none has been picked)
+     */
+    static String getSelectedVersionId(Context context) {
+        return PreferenceManager.getDefaultSharedPreferences(context)
+                .getString(
+                        context.getString(R.string.prefkey_ytdl_version),
+                        ModelYtdlOptionCorpus.DEFAULT_VERSION_ID
+                );
+    }
+
+
+    /**
+     * How long the (single) load took, 0 if nothing has been loaded yet
+     */
+    static long getLoadTimeMillis() {
+        return sLoadTimeNanos / 1000000L;
+    }
+
+
+    /**
+     * Number of times the help texts were actually loaded (should never go above 1)
+     */
+    static int getLoadCount() {
+        return sLoadCount.get();
+    }
+
+
+    /**
+     * Number of requests that were answered out of the already loaded lists
+     */
+    static int getCacheHitCount() {
+        return sCacheHitCount.get();
+    }
+
+
+    private static void replaySections(List<ModelYtdlOptionSection> optionList, UtilYtdlHelpParser.SectionListener sectionListener) {
+        if (sectionListener != null) {
+            for (ModelYtdlOptionSection optionSection : optionList) {
+                sectionListener.onSectionComplete(optionSection);
+            }
+        }
+    }
+
+    // endregion
+
+
+    // region ================== OPTION FILE READER ==================
+    // ====== ================== ================== ==================
+
+
+    /**
+     * Load every available version into the one corpus (caller must hold LOAD_LOCK).
+     * The selected version goes first, so its Sections can be streamed out to the listener straight away.
+     */
+    private static ModelYtdlOptionCorpus loadOptionCorpus(Context context, String selectedVersionId, UtilYtdlHelpParser.SectionListener sectionListener) {
+
+        long loadStart = System.nanoTime();
+
+        Context appContext = context.getApplicationContext();
+        List<String> versionIds = getAvailableVersionIds(appContext);
+
+        // Size the shared arena off the bundled table and the raw help texts, which it should comfortably fit in
+        long expectedTextLength = UtilYtdlHelpParser.getGeneratedTextLength()
+                + new File(appContext.getFilesDir(), USER_HELP_TEXT_FILENAME).length();
+
+        for (String versionId : versionIds) {
+            if (!ModelYtdlOptionCorpus.DEFAULT_VERSION_ID.equals(versionId)) {
+                expectedTextLength += getVersionHelpTextFile(appContext, versionId).length();
+            }
+        }
+
+        // Only worth looking for shared text if there's more than the one version
+        ModelYtdlOptionCorpus optionCorpus = new ModelYtdlOptionCorpus(
+                new ModelYtdlTextArena((int) Math.min(expectedTextLength, Integer.MAX_VALUE), versionIds.size() > 1)
+        );
+
+        if (!versionIds.contains(selectedVersionId)) {
+            selectedVersionId = ModelYtdlOptionCorpus.DEFAULT_VERSION_ID;
+        }
+
+        List<ModelYtdlOptionSection> selectedOptionList = loadVersion(appContext, selectedVersionId, sectionListener, optionCorpus.getTextArena());
+
+        // Selected version didn't load, fall back on the default one
+        if (selectedOptionList == null) {
+            selectedVersionId = ModelYtdlOptionCorpus.DEFAULT_VERSION_ID;
+            selectedOptionList = loadVersion(appContext, selectedVersionId, sectionListener, optionCorpus.getTextArena());
+        }
+
+        // Then the rest, added in the same order as the available versions
+        for (String versionId : versionIds) {
+
+            List<ModelYtdlOptionSection> optionList = versionId.equals(selectedVersionId)
+                    ? selectedOptionList
+                    : loadVersion(appContext, versionId, null, optionCorpus.getTextArena());
+
+            if (optionList != null) {
+                optionCorpus.addVersion(versionId, optionList);
+            }
+        }
+
+        optionCorpus.getTextArena().finishInterning();
+
+        sLoadTimeNanos = System.nanoTime() - loadStart;
+        sLoadCount.incrementAndGet();
+        sOptionCorpus = optionCorpus;
+
+        return optionCorpus;
+    }
+
+
+    /**
+     * @return The version's option list, or null if its help text couldn't be loaded
+     */
+    private static List<ModelYtdlOptionSection> loadVersion(Context context, String versionId, UtilYtdlHelpParser.SectionListener sectionListener, ModelYtdlTextArena textArena) {
+        return ModelYtdlOptionCorpus.DEFAULT_VERSION_ID.equals(versionId)
+                ? loadYtdlOptionFile(context, sectionListener, textArena)
+                : loadHelpTextFile(getVersionHelpTextFile(context, versionId), sectionListener, textArena);
+    }
+
+
+    private static File getVersionHelpTextFile(Context context, String versionId) {
+        return new File(
+                new File(context.getFilesDir(), VERSION_HELP_TEXT_DIR),
+                versionId + VERSION_HELP_TEXT_SUFFIX
+        );
+    }
+
+
+    /**
+     * Loads the YTDL options generated from the raw output of the "youtube-dl --help" command.
+     * (The output is stored as a plain text file in the res/raw/ytdl_options.txt file, and is parsed into
+     * GeneratedYtdlOptionTable at build time)
+     *
+     * If a help text has been supplied in the app's files dir, that gets used instead.
+     */
+    private static List<ModelYtdlOptionSection> loadYtdlOptionFile(Context context, UtilYtdlHelpParser.SectionListener sectionListener, ModelYtdlTextArena textArena) {
+
+        List<ModelYtdlOptionSection> ytdlOptionsList = loadHelpTextFile(
+                new File(context.getFilesDir(), USER_HELP_TEXT_FILENAME),
+                sectionListener,
+                textArena
+        );
+
+        if (ytdlOptionsList != null) {
+            return ytdlOptionsList;
+        }
+
+        return UtilYtdlHelpParser.loadGeneratedOptionTable(sectionListener, textArena);
+    }
+
+
+    /**
+     * Parse a help text supplied in the files dir (if there is one). The parsed result is kept as a snapshot next to it,
+     * so it only gets parsed again when the help text, the app or the parser changes.
+     *
+     * @return The parsed option list, or null if the help text isn't there
+     */
+    private static List<ModelYtdlOptionSection> loadHelpTextFile(File helpTextFile, UtilYtdlHelpParser.SectionListener sectionListener, ModelYtdlTextArena textArena) {
+
+        if (!helpTextFile.isFile()) {
+            return null;
+        }
+
+        try {
+            String helpText = UtilYtdlHelpParser.readHelpText(new FileInputStream(helpTextFile));
+            byte[] helpTextDigest = UtilYtdlOptionSnapshot.digestHelpText(helpText);
+
+            File snapshotFile = new File(helpTextFile.getPath() + SNAPSHOT_FILE_SUFFIX);
+
+            // Try the stored snapshot first
+            List<ModelYtdlOptionSection> ytdlOptionsList = UtilYtdlOptionSnapshot.readSnapshot(
+                    snapshotFile,
+                    helpTextDigest,
+                    BuildConfig.VERSION_CODE,
+                    textArena
+            );
+
+            if (ytdlOptionsList != null) {
+                // Snapshot decodes in one go, so just send its Sections out afterwards
+                replaySections(ytdlOptionsList, sectionListener);
+
+            } else {
+                // If not usable, parse the help text (streaming Sections out as they're done) and store it for next time
+                ytdlOptionsList = UtilYtdlHelpParser.parseHelpText(helpText, sectionListener, textArena);
+
+                UtilYtdlOptionSnapshot.writeSnapshot(
+                        snapshotFile,
+                        helpTextDigest,
+                        BuildConfig.VERSION_CODE,
+                        ytdlOptionsList
+                );
+            }
+
+            return ytdlOptionsList;
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    // endregion
+
+
+    // region ================== EXTRACTOR CATALOGUE ==================
+    // ====== ================== =================== ==================
+
+
+    /**
+     * Fetch the extractor catalogue, loading it from the files dir on the first request.
+     * Comes back empty (never null) if no extractor list has been supplied.
+     */
+    static ModelYtdlExtractorCatalogue getExtractorCatalogue(Context context) {
+
+        ModelYtdlExtractorCatalogue extractorCatalogue = sExtractorCatalogue;
+
+        if (extractorCatalogue == null) {
+            synchronized (LOAD_LOCK) {
+                extractorCatalogue = sExtractorCatalogue;
+
+                if (extractorCatalogue == null) {
+                    extractorCatalogue = loadExtractorCatalogue(context.getApplicationContext());
+                    sExtractorCatalogue = extractorCatalogue;
+                }
+            }
+        }
+
+        return extractorCatalogue;
+    }
+
+
+    /**
+     * Copy an extractor list (e.g. picked out by the user) into the files dir, and swap the loaded catalogue
+     * over to it. (Closes the given stream when done)
+     *
+     * @return Number of extractors in the list, or 0 if it doesn't look like an extractor list (nothing is stored)
+     */
+    static int importExtractorList(Context context, InputStream inputStream) throws IOException {
+
+        String listText = UtilYtdlHelpParser.readHelpText(inputStream);
+
+        if (!ModelYtdlExtractorCatalogue.isExtractorList(listText)) {
+            return 0;
+        }
+
+        ModelYtdlExtractorCatalogue extractorCatalogue = ModelYtdlExtractorCatalogue.parseExtractorList(listText);
+
+        synchronized (LOAD_LOCK) {
+            writeTextFile(new File(context.getFilesDir(), EXTRACTOR_LIST_FILENAME), listText);
+            sExtractorCatalogue = extractorCatalogue;
+        }
+
+        return extractorCatalogue.getExtractorCount();
+    }
+
+
+    private static ModelYtdlExtractorCatalogue loadExtractorCatalogue(Context context) {
+
+        File extractorListFile = new File(context.getFilesDir(), EXTRACTOR_LIST_FILENAME);
+
+        if (extractorListFile.isFile()) {
+            try {
+                return ModelYtdlExtractorCatalogue.parseExtractorList(
+                        UtilYtdlHelpParser.readHelpText(new FileInputStream(extractorListFile))
+                );
+
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return ModelYtdlExtractorCatalogue.emptyCatalogue();
+    }
+
+    // endregion
+
+
+}
@@ -0,0 +1,271 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stores a parsed YTDL option list as a compact binary snapshot, so the same help text doesn't need to be
+ * parsed again on the next launch.
+ *
+ * A snapshot is only used if it was written from the same help text (SHA-1 digest), by the same app version
+ * and the same parser version - anything else is treated as a miss and gets overwritten.
+ */
+public final class UtilYtdlOptionSnapshot {
+
+    // "YTDO"
+    private static final int SNAPSHOT_MAGIC = 0x5954444F;
+
+    // Bump when the layout below changes
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
+
+    // Fewest bytes a section (Super Id, header length, item count) and an item (Super Id, three string lengths) can take up
+    private static final int SECTION_MIN_BYTES = 3 * 4;
+    private static final int ITEM_MIN_BYTES = 4 * 4;
+
+    private static final Charset CHARSET_UTF8 = Charset.forName("UTF-8");
+
+
+    /**
+     * Private constructor prevents the default parameter-less constructor from being used elsewhere in your code.
+     * - http://stackoverflow.com/questions/14398747/hide-utility-class-constructor-utility-classes-should-not-have-a-public-or-def
+     */
+    private UtilYtdlOptionSnapshot() {}
+
+
+    /**
+     * SHA-1 of the help text, used as the snapshot key
+     */
+    static byte[] digestHelpText(String helpText) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(helpText.getBytes(CHARSET_UTF8));
+
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android platform has SHA-1, but fall back to something that will never match a snapshot
+            e.printStackTrace();
+            return new byte[0];
+        }
+    }
+
+
+    /**
+     * Memory-map the snapshot file and decode it, as long as it was written for the given help text digest and app version.
+     *
+     * @return The decoded option list, or null if there is no usable snapshot
+     */
+    static List<ModelYtdlOptionSection> readSnapshot(File snapshotFile, byte[] sourceDigest, int appVersionCode) {
+        return readSnapshot(snapshotFile, sourceDigest, appVersionCode, null);
+    }
+
+
+    /**
+     * As above, storing the item text in the given (possibly shared) text arena, or a new one if null
+     */
+    static List<ModelYtdlOptionSection> readSnapshot(File snapshotFile, byte[] sourceDigest, int appVersionCode, ModelYtdlTextArena textArena) {
+
+        if (sourceDigest.length == 0 || !snapshotFile.isFile()) {
+            return null;
+        }
+
+        try {
+            ByteBuffer snapshotBuffer = mapSnapshotFile(snapshotFile);
+
+            // Check the header against what we're expecting
+            if (snapshotBuffer.getInt() != SNAPSHOT_MAGIC
+                    || snapshotBuffer.getInt() != SNAPSHOT_FORMAT_VERSION
+                    || snapshotBuffer.getInt() != UtilYtdlHelpParser.PARSER_VERSION
+                    || snapshotBuffer.getInt() != appVersionCode) {
+                return null;
+            }
+
+            if (snapshotBuffer.getShort() != sourceDigest.length) {
+                return null;
+            }
+
+            byte[] snapshotDigest = new byte[sourceDigest.length];
+            snapshotBuffer.get(snapshotDigest);
+
+            if (!Arrays.equals(snapshotDigest, sourceDigest)) {
+                return null;
+            }
+
+            return decodeOptionList(snapshotBuffer, textArena);
+
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            // Unreadable or truncated snapshot, just treat it as a miss
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+
+    /**
+     * Write out the option list along with the key it was parsed under.
+     * Goes to a temp file first, so a half-written snapshot never replaces a good one.
+     */
+    static void writeSnapshot(File snapshotFile, byte[] sourceDigest, int appVersionCode, List<ModelYtdlOptionSection> optionList) {
+
+        if (sourceDigest.length == 0) {
+            return;
+        }
+
+        File tempFile = new File(snapshotFile.getPath() + ".tmp");
+
+        try {
+            DataOutputStream snapshotOutput = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile))
+            );
+
+            try {
+                snapshotOutput.writeInt(SNAPSHOT_MAGIC);
+                snapshotOutput.writeInt(SNAPSHOT_FORMAT_VERSION);
+                snapshotOutput.writeInt(UtilYtdlHelpParser.PARSER_VERSION);
+                snapshotOutput.writeInt(appVersionCode);
+                snapshotOutput.writeShort(sourceDigest.length);
+                snapshotOutput.write(sourceDigest);
+
+                encodeOptionList(snapshotOutput, optionList);
+
+            } finally {
+                snapshotOutput.close();
+            }
+
+            if (!tempFile.renameTo(snapshotFile)) {
+                tempFile.delete();
+            }
+
+        } catch (IOException e) {
+            e.printStackTrace();
+            tempFile.delete();
+        }
+    }
+
+
+    private static ByteBuffer mapSnapshotFile(File snapshotFile) throws IOException {
+
+        FileInputStream snapshotInput = new FileInputStream(snapshotFile);
+
+        try {
+            FileChannel snapshotChannel = snapshotInput.getChannel();
+            MappedByteBuffer mappedBuffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+
+            // Mapping stays valid after the channel is closed
+            return mappedBuffer;
+
+        } finally {
+            snapshotInput.close();
+        }
+    }
+
+
+    /**
+     * Layout (after the header): section count, then per section its Super Id, header label, item count,
+     * and per item its Super Id, command switch, flag label and description.
+     * Strings are stored as a length followed by UTF-8 bytes.
+     */
+    private static void encodeOptionList(DataOutputStream snapshotOutput, List<ModelYtdlOptionSection> optionList) throws IOException {
+
+        snapshotOutput.writeInt(optionList.size());
+
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            snapshotOutput.writeInt(optionSection.getSuperId());
+            writeString(snapshotOutput, optionSection.getOptionHeader());
+            snapshotOutput.writeInt(optionSection.getYtdlOptionItems().size());
+
+            for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                snapshotOutput.writeInt(optionItem.getSuperId());
+                writeString(snapshotOutput, optionItem.getCmdSwitch());
+                writeString(snapshotOutput, optionItem.getFlagLabel());
+                writeString(snapshotOutput, optionItem.getDescription());
+            }
+        }
+    }
+
+
+    private static List<ModelYtdlOptionSection> decodeOptionList(ByteBuffer snapshotBuffer, ModelYtdlTextArena textArena) {
+
+        int sectionCount = readCount(snapshotBuffer, SECTION_MIN_BYTES);
+        List<ModelYtdlOptionSection> optionList = new ArrayList<>(sectionCount);
+
+        // UTF-8 never takes fewer bytes than chars, so the rest of the snapshot is enough to hold all the item text
+        if (textArena == null) {
+            textArena = new ModelYtdlTextArena(snapshotBuffer.remaining());
+        }
+
+        for (int sectionIndex = 0; sectionIndex < sectionCount; sectionIndex++) {
+
+            ModelYtdlOptionSection optionSection = new ModelYtdlOptionSection(
+                    snapshotBuffer.getInt(),
+                    sectionIndex,
+                    readString(snapshotBuffer)
+            );
+
+            int itemCount = readCount(snapshotBuffer, ITEM_MIN_BYTES);
+            for (int itemIndex = 0; itemIndex < itemCount; itemIndex++) {
+                optionSection.addOptionItem(
+                        textArena.newOptionItem(
+                                snapshotBuffer.getInt(),
+                                sectionIndex,
+                                readString(snapshotBuffer),
+                                readString(snapshotBuffer),
+                                readString(snapshotBuffer)
+                        )
+                );
+            }
+
+            optionList.add(optionSection);
+        }
+
+        return optionList;
+    }
+
+
+    private static void writeString(DataOutputStream snapshotOutput, CharSequence value) throws IOException {
+        byte[] valueBytes = value.toString().getBytes(CHARSET_UTF8);
+        snapshotOutput.writeInt(valueBytes.length);
+        snapshotOutput.write(valueBytes);
+    }
+
+
+    /**
+     * Read a count and check there's room left in the snapshot for that many entries of at least the given size,
+     * before anything gets allocated for them (so a corrupt count can't ask for a huge list)
+     */
+    private static int readCount(ByteBuffer snapshotBuffer, int entryMinBytes) {
+
+        int entryCount = snapshotBuffer.getInt();
+        if (entryCount < 0 || entryCount > snapshotBuffer.remaining() / entryMinBytes) {
+            throw new IllegalArgumentException("Corrupt snapshot count: " + entryCount);
+        }
+
+        return entryCount;
+    }
+
+
+    private static String readString(ByteBuffer snapshotBuffer) {
+
+        int byteLength = snapshotBuffer.getInt();
+        if (byteLength < 0 || byteLength > snapshotBuffer.remaining()) {
+            throw new IllegalArgumentException("Corrupt snapshot string length: " + byteLength);
+        }
+
+        byte[] valueBytes = new byte[byteLength];
+        snapshotBuffer.get(valueBytes);
+
+        return new String(valueBytes, CHARSET_UTF8);
+    }
+
+}
@@ -0,0 +1,193 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.LruCache;
+
+
+/**
+ * Small LRU of pre-built text layouts for the Option rows, so the flag labels and (long) descriptions can be
+ * measured and broken into lines in the background when a Section is expanded or a filter result comes back,
+ * rather than while the rows are being bound.
+ *
+ * Layouts are keyed by what the text came from (the Option item, or its match highlight), which part of the row
+ * it's for, and the width and text size it was laid out at. Each part of the row also remembers the paint and
+ * width its Views were last measured with, which is what the background builds go off.
+ */
+final class UtilYtdlOptionTextLayouts {
+
+    static final int PART_FLAG_LABEL = 0;
+    static final int PART_DESCRIPTION = 1;
+    private static final int PART_COUNT = 2;
+
+    // A few screens worth of rows, at two layouts a row
+    private static final int MAX_CACHED_LAYOUTS = 96;
+
+    private static final LruCache<LayoutKey, StaticLayout> sLayoutCache = new LruCache<>(MAX_CACHED_LAYOUTS);
+
+    // Paint and text width each part of the row was last measured with (null until a row has been measured)
+    private static final LayoutSpec[] sLayoutSpecs = new LayoutSpec[PART_COUNT];
+
+
+    private UtilYtdlOptionTextLayouts() {}
+
+
+    /**
+     * Get the layout for the given text from the cache, or build it now if it isn't there yet
+     *
+     * @param textSource What the text was made from, used to tell cached layouts apart. Null skips the cache.
+     */
+    static StaticLayout getLayout(Object textSource, int textPart, CharSequence text, TextPaint textPaint, int textWidth) {
+
+        if (textSource == null) {
+            return buildLayout(text, textPaint, textWidth);
+        }
+
+        LayoutKey layoutKey = new LayoutKey(textSource, textPart, textWidth, textPaint.getTextSize());
+        StaticLayout textLayout = sLayoutCache.get(layoutKey);
+
+        if (textLayout == null) {
+            textLayout = buildLayout(text, textPaint, textWidth);
+            sLayoutCache.put(layoutKey, textLayout);
+        }
+
+        return textLayout;
+    }
+
+
+    /**
+     * Build the layout for the given text ahead of binding, using whatever the part of the row was last measured
+     * with. Does nothing if no row has been measured yet, or the layout is already cached.
+     *
+     * @param layoutSpec From getLayoutSpec(), taken once for the whole batch
+     */
+    static void precomputeLayout(LayoutSpec layoutSpec, Object textSource, int textPart, CharSequence text) {
+
+        if (layoutSpec == null) {
+            return;
+        }
+
+        LayoutKey layoutKey = new LayoutKey(textSource, textPart, layoutSpec.textWidth, layoutSpec.textPaint.getTextSize());
+
+        if (sLayoutCache.get(layoutKey) == null) {
+            sLayoutCache.put(layoutKey, buildLayout(text, layoutSpec.textPaint, layoutSpec.textWidth));
+        }
+    }
+
+
+    /**
+     * Called by the row Views whenever they're measured, so the background builds use the same paint and width
+     */
+    static void rememberLayoutSpec(int textPart, TextPaint textPaint, int textWidth) {
+
+        synchronized (sLayoutSpecs) {
+            LayoutSpec currentSpec = sLayoutSpecs[textPart];
+
+            // Only needs a new copy when the width or text size has changed, which isn't often
+            if (currentSpec == null
+                    || currentSpec.textWidth != textWidth
+                    || currentSpec.textPaint.getTextSize() != textPaint.getTextSize()) {
+                sLayoutSpecs[textPart] = new LayoutSpec(new TextPaint(textPaint), textWidth);
+            }
+        }
+    }
+
+
+    /**
+     * Copy of the paint and width the given part of the row was last measured with, for building layouts off the
+     * main thread (the paint is copied again so the background builds never share it with anything else).
+     *
+     * @return Null if no row has been measured yet
+     */
+    static LayoutSpec getLayoutSpec(int textPart) {
+
+        synchronized (sLayoutSpecs) {
+            LayoutSpec currentSpec = sLayoutSpecs[textPart];
+
+            return (currentSpec != null)
+                    ? new LayoutSpec(new TextPaint(currentSpec.textPaint), currentSpec.textWidth)
+                    : null;
+        }
+    }
+
+
+    private static StaticLayout buildLayout(CharSequence text, TextPaint textPaint, int textWidth) {
+
+        // Same spacing and padding as a TextView's defaults, so the rows come out the same height as before
+        return new StaticLayout(
+                text,
+                textPaint,
+                Math.max(textWidth, 0),
+                Layout.Alignment.ALIGN_NORMAL,
+                1f,
+                0f,
+                true
+        );
+    }
+
+
+    /**
+     * Paint and text width to lay out one part of the row with
+     */
+    static final class LayoutSpec {
+
+        final TextPaint textPaint;
+        final int textWidth;
+
+        LayoutSpec(TextPaint textPaint, int textWidth) {
+            this.textPaint = textPaint;
+            this.textWidth = textWidth;
+        }
+    }
+
+
+    /**
+     * Cache key, going off the identity of the text source since the same item (or highlight) is always the same text
+     */
+    private static final class LayoutKey {
+
+        private final Object mTextSource;
+        private final int mTextPart;
+        private final int mTextWidth;
+        private final float mTextSize;
+
+        LayoutKey(Object textSource, int textPart, int textWidth, float textSize) {
+            mTextSource = textSource;
+            mTextPart = textPart;
+            mTextWidth = textWidth;
+            mTextSize = textSize;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+
+            if (this == obj) {
+                return true;
+            }
+
+            if (!(obj instanceof LayoutKey)) {
+                return false;
+            }
+
+            LayoutKey otherKey = (LayoutKey) obj;
+
+            return mTextSource == otherKey.mTextSource
+                    && mTextPart == otherKey.mTextPart
+                    && mTextWidth == otherKey.mTextWidth
+                    && mTextSize == otherKey.mTextSize;
+        }
+
+        @Override
+        public int hashCode() {
+
+            int hashCode = System.identityHashCode(mTextSource);
+            hashCode = 31 * hashCode + mTextPart;
+            hashCode = 31 * hashCode + mTextWidth;
+            hashCode = 31 * hashCode + Float.floatToIntBits(mTextSize);
+
+            return hashCode;
+        }
+    }
+
+}
@@ -0,0 +1,155 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+
+/**
+ * Bare bones text View for the Option rows, which draws a layout from UtilYtdlOptionTextLayouts instead of
+ * measuring the text itself. If the layout was built in the background ahead of time, binding and measuring a
+ * row only has to look it up.
+ *
+ * Takes the few text attributes the rows use (size, colour, style and typeface) from the layout XML.
+ */
+public class ViewYtdlOptionText extends View {
+
+    // Same as the TextView attribute values
+    private static final int TYPEFACE_SANS = 1;
+    private static final int TYPEFACE_SERIF = 2;
+    private static final int TYPEFACE_MONOSPACE = 3;
+
+    private static final float DEFAULT_TEXT_SIZE_SP = 14f;
+
+    private final TextPaint mTextPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+
+    private int mTextPart;
+    private Object mTextSource;
+    private CharSequence mText = "";
+
+    private StaticLayout mTextLayout;
+
+
+    public ViewYtdlOptionText(Context context) {
+        this(context, null);
+    }
+
+
+    public ViewYtdlOptionText(Context context, AttributeSet attrs) {
+        super(context, attrs);
+
+        float defaultTextSize = TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP,
+                DEFAULT_TEXT_SIZE_SP,
+                getResources().getDisplayMetrics()
+        );
+
+        TypedArray typedArray = context.obtainStyledAttributes(attrs, R.styleable.ViewYtdlOptionText);
+
+        mTextPaint.setTextSize(typedArray.getDimension(R.styleable.ViewYtdlOptionText_android_textSize, defaultTextSize));
+        mTextPaint.setColor(typedArray.getColor(R.styleable.ViewYtdlOptionText_android_textColor, Color.BLACK));
+
+        int textStyle = typedArray.getInt(R.styleable.ViewYtdlOptionText_android_textStyle, Typeface.NORMAL);
+        int typefaceIndex = typedArray.getInt(R.styleable.ViewYtdlOptionText_android_typeface, 0);
+
+        typedArray.recycle();
+
+        mTextPaint.setTypeface(Typeface.create(getBaseTypeface(typefaceIndex), textStyle));
+        mTextPaint.density = getResources().getDisplayMetrics().density;
+    }
+
+
+    private static Typeface getBaseTypeface(int typefaceIndex) {
+
+        switch (typefaceIndex) {
+            case TYPEFACE_SANS:
+                return Typeface.SANS_SERIF;
+
+            case TYPEFACE_SERIF:
+                return Typeface.SERIF;
+
+            case TYPEFACE_MONOSPACE:
+                return Typeface.MONOSPACE;
+
+            default:
+                return Typeface.DEFAULT;
+        }
+    }
+
+
+    /**
+     * Which part of the row this is (one of the UtilYtdlOptionTextLayouts PART_ values)
+     */
+    void setTextPart(int textPart) {
+        mTextPart = textPart;
+    }
+
+
+    /**
+     * Set the text to show, along with what it was made from (which is what the cached layouts are looked up by)
+     */
+    void setOptionText(Object textSource, CharSequence text) {
+
+        mTextSource = textSource;
+        mText = (text != null) ? text : "";
+        mTextLayout = null;
+
+        setContentDescription(mText);
+
+        requestLayout();
+        invalidate();
+    }
+
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        int horizontalPadding = getPaddingLeft() + getPaddingRight();
+        int verticalPadding = getPaddingTop() + getPaddingBottom();
+
+        boolean isWidthUnspecified = (MeasureSpec.getMode(widthMeasureSpec) == MeasureSpec.UNSPECIFIED);
+
+        int textWidth = isWidthUnspecified
+                ? (int) Math.ceil(Layout.getDesiredWidth(mText, mTextPaint))
+                : Math.max(MeasureSpec.getSize(widthMeasureSpec) - horizontalPadding, 0);
+
+        if (mTextLayout == null || mTextLayout.getWidth() != textWidth) {
+
+            // Only a real width is any use for laying out the rows ahead of time
+            if (!isWidthUnspecified) {
+                UtilYtdlOptionTextLayouts.rememberLayoutSpec(mTextPart, mTextPaint, textWidth);
+            }
+
+            mTextLayout = UtilYtdlOptionTextLayouts.getLayout(mTextSource, mTextPart, mText, mTextPaint, textWidth);
+        }
+
+        setMeasuredDimension(
+                resolveSize(textWidth + horizontalPadding, widthMeasureSpec),
+                resolveSize(mTextLayout.getHeight() + verticalPadding, heightMeasureSpec)
+        );
+    }
+
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        if (mTextLayout == null) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(getPaddingLeft(), getPaddingTop());
+        mTextLayout.draw(canvas);
+        canvas.restore();
+    }
+
+}
@@ -0,0 +1,48 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Makes sure the table generated at build time (see the generateYtdlOptionTable task in app/build.gradle) still
+ * comes out the same as parsing res/raw/ytdl_options.txt with the regex parser.
+ */
+public class GeneratedYtdlOptionTableTest {
+
+    @Test
+    public void generatedTable_matchesRegexParse() throws IOException {
+        List<ModelYtdlOptionSection> regexOptionsList = UtilYtdlHelpParserTest.parseWithRegex(
+                YtdlTestFixtures.getBundledHelpText()
+        );
+
+        assertFalse(regexOptionsList.isEmpty());
+
+        assertTrue(
+                "GeneratedYtdlOptionTable is out of sync with res/raw/ytdl_options.txt",
+                UtilYtdlHelpParser.isSameOptionList(UtilYtdlHelpParser.loadGeneratedOptionTable(), regexOptionsList)
+        );
+    }
+
+
+    @Test
+    public void tableColumns_lineUp() {
+        int itemCount = GeneratedYtdlOptionTable.ITEM_CMD_SWITCHES.length;
+
+        assertEquals(itemCount, GeneratedYtdlOptionTable.ITEM_FLAG_LABELS.length);
+        assertEquals(itemCount, GeneratedYtdlOptionTable.ITEM_DESCRIPTIONS.length);
+        assertEquals(GeneratedYtdlOptionTable.SECTION_HEADERS.length, GeneratedYtdlOptionTable.SECTION_ITEM_OFFSETS.length);
+
+        // Sections are in file order, so their first items only ever go up
+        int lastOffset = 0;
+        for (int itemOffset : GeneratedYtdlOptionTable.SECTION_ITEM_OFFSETS) {
+            assertTrue(itemOffset >= lastOffset && itemOffset <= itemCount);
+            lastOffset = itemOffset;
+        }
+    }
+}
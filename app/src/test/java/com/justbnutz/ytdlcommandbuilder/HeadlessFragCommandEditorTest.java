@@ -0,0 +1,85 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HeadlessFragCommandEditorTest {
+
+    private static final String BASE_COMMAND = "youtube-dl";
+
+    private static ModelYtdlSwitchTrie sSwitchTrie;
+
+
+    @BeforeClass
+    public static void loadSwitchTrie() throws IOException {
+        sSwitchTrie = YtdlTestFixtures.getBundledSwitchTrie();
+    }
+
+
+    private static String insertOptions(String command, String... newOptions) {
+        return HeadlessFragCommandEditor.buildOptionInsertion(
+                ModelYtdlCommandTree.parse(command),
+                sSwitchTrie,
+                Arrays.asList(newOptions),
+                BASE_COMMAND
+        ).newCommand;
+    }
+
+
+    @Test
+    public void insert_goesInFrontOfTarget() {
+        assertEquals("youtube-dl -w URL", insertOptions("youtube-dl URL", "-w"));
+        assertEquals("youtube-dl -w", insertOptions("", "-w"));
+        assertNull(HeadlessFragCommandEditor.buildOptionInsertion(ModelYtdlCommandTree.parse("youtube-dl URL"), sSwitchTrie, Arrays.asList("", null), BASE_COMMAND));
+    }
+
+
+    @Test
+    public void insert_replacesSameOption() {
+        assertEquals("youtube-dl --format FORMAT URL", insertOptions("youtube-dl -f best URL", "--format FORMAT"));
+        assertEquals("youtube-dl --format FORMAT URL", insertOptions("youtube-dl -fbest URL", "--format FORMAT"));
+        assertEquals("youtube-dl --no-continue URL", insertOptions("youtube-dl --continue URL", "--no-continue"));
+    }
+
+
+    @Test
+    public void insert_onlyTouchesItsLetterOfCluster() {
+        // Same option as one in the cluster
+        assertEquals("youtube-dl -iw --continue URL", insertOptions("youtube-dl -ciw URL", "--continue"));
+
+        // Conflicting with one in the cluster
+        assertEquals("youtube-dl -cw --abort-on-error URL", insertOptions("youtube-dl -ciw URL", "--abort-on-error"));
+        assertEquals("youtube-dl -iw --no-continue URL", insertOptions("youtube-dl -ciw URL", "--no-continue"));
+
+        // Attached argument goes along with its switch, the rest of the cluster stays
+        assertEquals("youtube-dl -c --format FORMAT URL", insertOptions("youtube-dl -cfbest URL", "--format FORMAT"));
+
+        // Several letters out of the one cluster
+        assertEquals("youtube-dl -w --no-continue --abort-on-error URL", insertOptions("youtube-dl -ciw URL", "--no-continue", "--abort-on-error"));
+    }
+
+
+    @Test
+    public void insert_removesEmptiedCluster() {
+        assertEquals("youtube-dl --continue --ignore-errors URL", insertOptions("youtube-dl -ci URL", "--continue", "--ignore-errors"));
+        assertEquals("youtube-dl -w --continue --ignore-errors", insertOptions("youtube-dl -w -ci", "--continue", "--ignore-errors"));
+    }
+
+
+    @Test
+    public void removeClusteredSwitches_keepsTheRest() {
+        assertEquals("-cw", sSwitchTrie.removeClusteredSwitches("-ciw", Arrays.asList("--ignore-errors")));
+        assertEquals("-fbest", sSwitchTrie.removeClusteredSwitches("-cfbest", Arrays.asList("--continue")));
+        assertEquals("-c", sSwitchTrie.removeClusteredSwitches("-cfbest", Arrays.asList("--format")));
+        assertEquals("", sSwitchTrie.removeClusteredSwitches("-ci", Arrays.asList("--continue", "--ignore-errors")));
+
+        // Unknown letters are left as they were
+        assertEquals("-cZq", sSwitchTrie.removeClusteredSwitches("-ciZq", Arrays.asList("--ignore-errors")));
+    }
+}
@@ -0,0 +1,309 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the piece table against a plain list of every version of the text, with the undo count as an index into it
+ */
+public class ModelYtdlCommandBufferTest {
+
+    private static final int RANDOM_EDIT_RUNS = 100;
+    private static final int EDITS_PER_RUN = 200;
+
+    private static final String EDIT_CHARS = "youtube-dl -f best ";
+
+
+    private static void assertBufferText(String message, String expectedText, ModelYtdlCommandBuffer commandBuffer) {
+        assertEquals(message, expectedText, commandBuffer.getText());
+        assertEquals(message, expectedText.length(), commandBuffer.length());
+        assertTrue(message, commandBuffer.contentEquals(expectedText));
+        assertFalse(message, commandBuffer.contentEquals(expectedText + "x"));
+    }
+
+
+    /**
+     * Random replace / undo / redo on a buffer (untyped, so every edit is its own undo step), mirrored in the list
+     * of texts. Leaves the buffer with some of its edits undone.
+     */
+    private static ModelYtdlCommandBuffer replayRandomEdits(Random random, List<String> textHistory) {
+
+        ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+        commandBuffer.reset(textHistory.get(0));
+
+        int undoCount = 0;
+
+        for (int editIndex = 0; editIndex < EDITS_PER_RUN; editIndex++) {
+            String message = "Edit " + editIndex;
+            int editKind = random.nextInt(10);
+
+            if (editKind == 0) {
+                int cursorPosition = commandBuffer.undo();
+
+                if (undoCount > 0) {
+                    undoCount--;
+                    assertTrue(message, cursorPosition >= 0 && cursorPosition <= textHistory.get(undoCount).length());
+                } else {
+                    assertEquals(message, -1, cursorPosition);
+                }
+
+            } else if (editKind == 1) {
+                int cursorPosition = commandBuffer.redo();
+
+                if (undoCount < textHistory.size() - 1) {
+                    undoCount++;
+                    assertTrue(message, cursorPosition >= 0 && cursorPosition <= textHistory.get(undoCount).length());
+                } else {
+                    assertEquals(message, -1, cursorPosition);
+                }
+
+            } else {
+                String currentText = textHistory.get(undoCount);
+
+                int position = random.nextInt(currentText.length() + 1);
+                int removedLength = random.nextInt(Math.min(5, currentText.length() - position) + 1);
+
+                StringBuilder insertedText = new StringBuilder();
+                int insertedLength = random.nextInt(4);
+                for (int charIndex = 0; charIndex < insertedLength; charIndex++) {
+                    insertedText.append(EDIT_CHARS.charAt(random.nextInt(EDIT_CHARS.length())));
+                }
+
+                commandBuffer.replace(position, removedLength, insertedText, false);
+
+                // An edit that doesn't change anything isn't kept
+                if (removedLength > 0 || insertedLength > 0) {
+                    while (textHistory.size() > undoCount + 1) {
+                        textHistory.remove(textHistory.size() - 1);
+                    }
+
+                    textHistory.add(currentText.substring(0, position) + insertedText + currentText.substring(position + removedLength));
+                    undoCount++;
+                }
+            }
+
+            assertBufferText(message, textHistory.get(undoCount), commandBuffer);
+            assertEquals(message, undoCount > 0, commandBuffer.canUndo());
+            assertEquals(message, undoCount < textHistory.size() - 1, commandBuffer.canRedo());
+        }
+
+        // Back out some of it, so there's redo history left
+        int undoSteps = random.nextInt(undoCount + 1);
+        for (int undoIndex = 0; undoIndex < undoSteps; undoIndex++) {
+            commandBuffer.undo();
+        }
+        assertBufferText("After undo", textHistory.get(undoCount - undoSteps), commandBuffer);
+
+        return commandBuffer;
+    }
+
+
+    @Test
+    public void randomEdits_matchTextHistory() {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        for (int runIndex = 0; runIndex < RANDOM_EDIT_RUNS; runIndex++) {
+            List<String> textHistory = new ArrayList<>();
+            textHistory.add((runIndex % 2 == 0) ? "" : "youtube-dl -f best URL");
+
+            ModelYtdlCommandBuffer commandBuffer = replayRandomEdits(random, textHistory);
+
+            // Everything can be undone back to the start, and redone to the last edit
+            while (commandBuffer.canUndo()) {
+                commandBuffer.undo();
+            }
+            assertBufferText("Run " + runIndex + " undone", textHistory.get(0), commandBuffer);
+
+            while (commandBuffer.canRedo()) {
+                commandBuffer.redo();
+            }
+            assertBufferText("Run " + runIndex + " redone", textHistory.get(textHistory.size() - 1), commandBuffer);
+        }
+    }
+
+
+    @Test
+    public void replace_dropsRedo() {
+        ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+        commandBuffer.reset("youtube-dl");
+
+        commandBuffer.replace(10, 0, " -f best", false);
+        commandBuffer.undo();
+        assertTrue(commandBuffer.canRedo());
+
+        commandBuffer.replace(10, 0, " -x", false);
+        assertFalse(commandBuffer.canRedo());
+        assertEquals(-1, commandBuffer.redo());
+        assertBufferText("After replace", "youtube-dl -x", commandBuffer);
+
+        // Cursor goes to the end of whatever was put back
+        assertEquals(10, commandBuffer.undo());
+        assertEquals(13, commandBuffer.redo());
+    }
+
+
+    private static void typeText(ModelYtdlCommandBuffer commandBuffer, String typedText) {
+        for (int charIndex = 0; charIndex < typedText.length(); charIndex++) {
+            commandBuffer.replace(commandBuffer.length(), 0, typedText.substring(charIndex, charIndex + 1), true);
+        }
+    }
+
+
+    @Test
+    public void typedEdits_joinUpToWhitespace() {
+        ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+        commandBuffer.reset("");
+
+        typeText(commandBuffer, "youtube-dl -f best");
+
+        // Each space starts a new undo step, along with the word typed after it
+        commandBuffer.undo();
+        assertBufferText("First undo", "youtube-dl -f", commandBuffer);
+        commandBuffer.undo();
+        assertBufferText("Second undo", "youtube-dl", commandBuffer);
+        commandBuffer.undo();
+        assertBufferText("Third undo", "", commandBuffer);
+        assertFalse(commandBuffer.canUndo());
+
+        // And back again the same way
+        commandBuffer.redo();
+        assertBufferText("First redo", "youtube-dl", commandBuffer);
+        commandBuffer.redo();
+        commandBuffer.redo();
+        assertBufferText("Last redo", "youtube-dl -f best", commandBuffer);
+        assertFalse(commandBuffer.canRedo());
+    }
+
+
+    @Test
+    public void typedEdits_joinBackspaceButNotJumps() {
+        ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+        commandBuffer.reset("youtube-dl URL");
+
+        // Typed at the end, then backspaced over, is all the one step
+        typeText(commandBuffer, " -fx");
+        commandBuffer.replace(commandBuffer.length() - 1, 1, "", true);
+        typeText(commandBuffer, "best");
+        assertBufferText("Typed", "youtube-dl URL -fbest", commandBuffer);
+
+        // Typing somewhere else starts a new step
+        commandBuffer.replace(10, 0, "x", true);
+        commandBuffer.undo();
+        assertBufferText("Jumped", "youtube-dl URL -fbest", commandBuffer);
+
+        commandBuffer.undo();
+        assertBufferText("Backspaced", "youtube-dl URL", commandBuffer);
+
+        // Pasted text never joins onto typing
+        typeText(commandBuffer, "-x");
+        commandBuffer.replace(commandBuffer.length(), 0, "yz", false);
+        commandBuffer.undo();
+        assertBufferText("Pasted", "youtube-dl URL-x", commandBuffer);
+    }
+
+
+    @Test
+    public void savedState_roundTrips() {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        for (int runIndex = 0; runIndex < 20; runIndex++) {
+            List<String> textHistory = new ArrayList<>();
+            textHistory.add("youtube-dl -f best URL");
+
+            ModelYtdlCommandBuffer commandBuffer = replayRandomEdits(random, textHistory);
+            ModelYtdlCommandBuffer restoredBuffer = ModelYtdlCommandBuffer.fromSavedState(
+                    commandBuffer.getSavedText(),
+                    commandBuffer.getSavedState()
+            );
+
+            assertNotNull(restoredBuffer);
+            assertBufferText("Restored", commandBuffer.getText(), restoredBuffer);
+
+            // Same history both ways
+            while (commandBuffer.canUndo()) {
+                assertEquals(commandBuffer.undo(), restoredBuffer.undo());
+                assertBufferText("Restored undo", commandBuffer.getText(), restoredBuffer);
+            }
+            assertFalse(restoredBuffer.canUndo());
+
+            while (commandBuffer.canRedo()) {
+                assertEquals(commandBuffer.redo(), restoredBuffer.redo());
+                assertBufferText("Restored redo", commandBuffer.getText(), restoredBuffer);
+            }
+            assertFalse(restoredBuffer.canRedo());
+
+            // And it carries on taking edits
+            restoredBuffer.replace(0, 0, "x", false);
+            assertEquals("x" + commandBuffer.getText(), restoredBuffer.getText());
+        }
+    }
+
+
+    @Test
+    public void savedState_rejectsCorruptState() {
+        ModelYtdlCommandBuffer commandBuffer = new ModelYtdlCommandBuffer();
+        commandBuffer.reset("youtube-dl");
+        typeText(commandBuffer, " -f best");
+        commandBuffer.undo();
+
+        String savedText = commandBuffer.getSavedText();
+        int[] savedState = commandBuffer.getSavedState();
+
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(null, savedState));
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, null));
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, new int[0]));
+
+        // Some other version
+        int[] wrongVersion = savedState.clone();
+        wrongVersion[0]++;
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, wrongVersion));
+
+        // Cut short, or with something left over
+        for (int stateLength = 0; stateLength < savedState.length; stateLength++) {
+            assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, Arrays.copyOf(savedState, stateLength)));
+        }
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, Arrays.copyOf(savedState, savedState.length + 1)));
+
+        // Pieces going past the end of the text
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText.substring(0, savedText.length() - 1), savedState));
+
+        // More undo than there is history
+        int[] extraUndo = savedState.clone();
+        extraUndo[2] = extraUndo[3] + 1;
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, extraUndo));
+        extraUndo[2] = -1;
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, extraUndo));
+
+        // Piece long enough to wrap around
+        int[] longPiece = savedState.clone();
+        longPiece[5] = Integer.MAX_VALUE;
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, longPiece));
+
+        // Piece count far bigger than the state
+        int[] manyPieces = savedState.clone();
+        manyPieces[1] = Integer.MAX_VALUE / 4;
+        assertNull(ModelYtdlCommandBuffer.fromSavedState(savedText, manyPieces));
+
+        // Any other single value out of whack has to come back as null or a buffer, never throw
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+        for (int stateIndex = 0; stateIndex < savedState.length; stateIndex++) {
+            for (int corruptValue : new int[] {-1, -1000, 1000, Integer.MAX_VALUE, random.nextInt()}) {
+                int[] corruptState = savedState.clone();
+                corruptState[stateIndex] = corruptValue;
+                ModelYtdlCommandBuffer.fromSavedState(savedText, corruptState);
+            }
+        }
+
+        assertNotNull(ModelYtdlCommandBuffer.fromSavedState(savedText, savedState));
+    }
+}
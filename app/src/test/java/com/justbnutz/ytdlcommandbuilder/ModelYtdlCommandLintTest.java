@@ -0,0 +1,145 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlCommandLintTest {
+
+    private static final String URL = "https://www.youtube.com/watch?v=abc";
+
+    private static List<ModelYtdlOptionSection> sOptionList;
+    private static ModelYtdlSwitchTrie sSwitchTrie;
+
+
+    @BeforeClass
+    public static void loadSwitchTrie() throws IOException {
+        sOptionList = YtdlTestFixtures.getBundledOptionList();
+        sSwitchTrie = YtdlTestFixtures.getBundledSwitchTrie();
+    }
+
+
+    private static ModelYtdlCommandLint lint(String command) {
+        return ModelYtdlCommandLint.lint(ModelYtdlCommandTree.parse(command), sSwitchTrie, ModelYtdlCommandLint.EMPTY);
+    }
+
+
+    /**
+     * The command has exactly the one problem, of the given kind, over the given text in it
+     */
+    private static void assertOnlyLint(String command, int lintKind, String lintText) {
+        ModelYtdlCommandLint commandLint = lint(command);
+        int lintStart = command.indexOf(lintText);
+
+        assertEquals("Problems in \"" + command + "\"", 1, commandLint.getLintCount());
+        assertEquals("Kind of problem in \"" + command + "\"", lintKind, commandLint.getLintKind(0));
+        assertEquals("Start of problem in \"" + command + "\"", lintStart, commandLint.getLintStart(0));
+        assertEquals("End of problem in \"" + command + "\"", lintStart + lintText.length(), commandLint.getLintEnd(0));
+    }
+
+
+    private static void assertNoLint(String command) {
+        assertEquals("Problems in \"" + command + "\"", 0, lint(command).getLintCount());
+    }
+
+
+    @Test
+    public void validCommands_haveNoLint() {
+        assertNoLint("youtube-dl " + URL);
+        assertNoLint("youtube-dl -f best -o '%(title)s.%(ext)s' " + URL);
+        assertNoLint("youtube-dl --limit-rate 50K --format=best -ciw " + URL);
+        assertNoLint("youtube-dl -fbest " + URL);
+        assertNoLint("youtube-dl -w abc123 && echo -bogus");
+    }
+
+
+    @Test
+    public void unknownSwitch() {
+        assertOnlyLint("youtube-dl --bogus " + URL, ModelYtdlCommandLint.LINT_UNKNOWN_SWITCH, "--bogus");
+        assertOnlyLint("youtube-dl -f best --formatt=best " + URL, ModelYtdlCommandLint.LINT_UNKNOWN_SWITCH, "--formatt=best");
+
+        // Second switch in the cluster isn't known
+        assertOnlyLint("youtube-dl -cZ " + URL, ModelYtdlCommandLint.LINT_UNKNOWN_SWITCH, "-cZ");
+    }
+
+
+    @Test
+    public void missingArgument() {
+        assertOnlyLint("youtube-dl " + URL + " -o", ModelYtdlCommandLint.LINT_MISSING_ARG, "-o");
+
+        // A known switch where the argument should be is taken as the argument being left out
+        assertOnlyLint("youtube-dl -o -w " + URL, ModelYtdlCommandLint.LINT_MISSING_ARG, "-o");
+
+        // Cluster ending on a switch that needs an argument
+        assertOnlyLint("youtube-dl -cf " + URL, ModelYtdlCommandLint.LINT_MISSING_ARG, "-cf");
+    }
+
+
+    @Test
+    public void invalidSizeOrRate() {
+        assertOnlyLint("youtube-dl --limit-rate 50x " + URL, ModelYtdlCommandLint.LINT_INVALID_ARG, "50x");
+        assertOnlyLint("youtube-dl --limit-rate=50x " + URL, ModelYtdlCommandLint.LINT_INVALID_ARG, "--limit-rate=50x");
+        assertOnlyLint("youtube-dl --min-filesize 4.2Q " + URL, ModelYtdlCommandLint.LINT_INVALID_ARG, "4.2Q");
+
+        assertNoLint("youtube-dl --limit-rate 4.2M --min-filesize 50k " + URL);
+    }
+
+
+    @Test
+    public void extraArgumentAfterFlag() {
+        assertOnlyLint("youtube-dl -w extra " + URL, ModelYtdlCommandLint.LINT_EXTRA_ARG, "extra");
+        assertOnlyLint("youtube-dl --no-overwrites=yes " + URL, ModelYtdlCommandLint.LINT_EXTRA_ARG, "--no-overwrites=yes");
+
+        // Without a URL the plain words are likely video IDs
+        assertNoLint("youtube-dl -w abc123");
+
+        assertFalse(ModelYtdlCommandLint.isError(ModelYtdlCommandLint.LINT_EXTRA_ARG));
+        assertTrue(ModelYtdlCommandLint.isError(ModelYtdlCommandLint.LINT_MISSING_ARG));
+    }
+
+
+    @Test
+    public void missingUrl() {
+        assertOnlyLint("youtube-dl -w -f best", ModelYtdlCommandLint.LINT_MISSING_URL, "youtube-dl");
+
+        // Nothing to lint without options
+        assertNoLint("youtube-dl");
+
+        // Options that do something without a URL
+        assertNoLint("youtube-dl --version");
+        assertNoLint("youtube-dl -w --update");
+        assertNoLint("youtube-dl -U");
+        assertNoLint("youtube-dl --list-extractors");
+        assertNoLint("youtube-dl -a urls.txt");
+        assertNoLint("youtube-dl -wU");
+    }
+
+
+    @Test
+    public void unchangedGroups_areReused() {
+        ModelYtdlCommandLint firstLint = lint("youtube-dl -f best --bogus -o out.mp4 " + URL);
+        assertEquals(3, firstLint.getCheckedGroupCount());
+
+        // Only the edited group is checked again, the others move along with the edit
+        ModelYtdlCommandTree editedTree = ModelYtdlCommandTree.parse("youtube-dl -f worst --bogus -o out.mp4 " + URL);
+        ModelYtdlCommandLint editedLint = ModelYtdlCommandLint.lint(editedTree, sSwitchTrie, firstLint);
+
+        assertEquals(1, editedLint.getCheckedGroupCount());
+        assertEquals(1, editedLint.getLintCount());
+        assertEquals(ModelYtdlCommandLint.LINT_UNKNOWN_SWITCH, editedLint.getLintKind(0));
+        assertEquals(editedTree.getCommand().indexOf("--bogus"), editedLint.getLintStart(0));
+
+        // Nothing changed, nothing checked
+        assertEquals(0, ModelYtdlCommandLint.lint(editedTree, sSwitchTrie, editedLint).getCheckedGroupCount());
+
+        // A different Option List means checking everything again
+        ModelYtdlSwitchTrie otherSwitchTrie = ModelYtdlSwitchTrie.build(sOptionList);
+        assertEquals(3, ModelYtdlCommandLint.lint(editedTree, otherSwitchTrie, editedLint).getCheckedGroupCount());
+    }
+}
@@ -0,0 +1,171 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModelYtdlCommandTreeTest {
+
+    private static final int RANDOM_EDIT_RUNS = 300;
+    private static final int EDITS_PER_RUN = 40;
+
+    // Commands to start the edits from, between them covering quotes, escapes and operators
+    private static final String[] START_COMMANDS = {
+            "",
+            "youtube-dl -f best -o '%(title)s.%(ext)s' https://www.youtube.com/watch?v=abc",
+            "youtube-dl --format=\"bestvideo[height<=720]+bestaudio\" -ciw URL && echo done",
+            "youtube-dl -o \"it's \\\"quoted\\\"\" URL | tee log.txt; ls > out (x) &",
+            "youtube-dl a\\ b 'c d\\' \"e\\$f\" -- -notanoption",
+            "youtube-dl \"unterminated quote -f best",
+    };
+
+    // Characters most likely to move a token boundary or change what kind of token it is
+    private static final String EDIT_CHARS = "  -a'\"\\|&;<>()=\t\n:/";
+
+    private static ModelYtdlSwitchTrie sSwitchTrie;
+
+
+    @BeforeClass
+    public static void loadSwitchTrie() throws IOException {
+        sSwitchTrie = YtdlTestFixtures.getBundledSwitchTrie();
+    }
+
+
+    @Test
+    public void findOptionToken_matchesAliases() {
+        ModelYtdlCommandTree commandTree = ModelYtdlCommandTree.parse("youtube-dl -o out.mp4 --format=best URL");
+
+        assertEquals(1, commandTree.findOptionToken("--output", sSwitchTrie));
+        assertEquals(3, commandTree.findOptionToken("--format", sSwitchTrie));
+        assertEquals(-1, commandTree.findOptionToken("--continue", sSwitchTrie));
+    }
+
+
+    @Test
+    public void findOptionToken_matchesAttachedArgument() {
+        ModelYtdlCommandTree commandTree = ModelYtdlCommandTree.parse("youtube-dl -fbest URL");
+
+        assertEquals(1, commandTree.findOptionToken("--format", sSwitchTrie));
+
+        // Argument is built in, so the URL is still the target
+        assertEquals(0, commandTree.getOptionArgCount(1, sSwitchTrie));
+        assertEquals(2, commandTree.findTargetToken(sSwitchTrie));
+    }
+
+
+    @Test
+    public void findOptionToken_matchesClusteredSwitches() {
+        ModelYtdlCommandTree commandTree = ModelYtdlCommandTree.parse("youtube-dl -ciw -o out.mp4 -cfbest URL");
+
+        assertEquals(1, commandTree.findOptionToken("--continue", sSwitchTrie));
+        assertEquals(1, commandTree.findOptionToken("--ignore-errors", sSwitchTrie));
+        assertEquals(1, commandTree.findOptionToken("--no-overwrites", sSwitchTrie));
+        assertEquals(4, commandTree.findOptionToken("--format", sSwitchTrie));
+
+        // Only the switches, not the letters of the argument stuck on the end
+        assertEquals(-1, commandTree.findOptionToken("--get-title", sSwitchTrie));
+        assertEquals(-1, commandTree.findOptionToken("--simulate", sSwitchTrie));
+    }
+
+
+    @Test
+    public void clusteredSwitches_stopAtArgument() {
+        assertEquals(0, sSwitchTrie.getClusteredSwitches("--format").size());
+        assertEquals(0, sSwitchTrie.getClusteredSwitches("-f").size());
+        assertEquals("[--format]", sSwitchTrie.getClusteredSwitches("-fbest").toString());
+        assertEquals("[--continue, --ignore-errors]", sSwitchTrie.getClusteredSwitches("-ci").toString());
+    }
+
+
+    private static void assertSameTree(String message, ModelYtdlCommandTree expectedTree, ModelYtdlCommandTree actualTree) {
+        assertEquals(message, expectedTree.getCommand(), actualTree.getCommand());
+        assertEquals(message + ", token count", expectedTree.getTokenCount(), actualTree.getTokenCount());
+
+        for (int tokenIndex = 0; tokenIndex < expectedTree.getTokenCount(); tokenIndex++) {
+            String tokenMessage = message + ", token " + tokenIndex;
+
+            assertEquals(tokenMessage + " start", expectedTree.getTokenStart(tokenIndex), actualTree.getTokenStart(tokenIndex));
+            assertEquals(tokenMessage + " end", expectedTree.getTokenEnd(tokenIndex), actualTree.getTokenEnd(tokenIndex));
+            assertEquals(tokenMessage + " kind", expectedTree.getTokenKind(tokenIndex), actualTree.getTokenKind(tokenIndex));
+            assertEquals(tokenMessage + " flags", expectedTree.getTokenFlags(tokenIndex), actualTree.getTokenFlags(tokenIndex));
+        }
+    }
+
+
+    /**
+     * Edit position, leaning towards the places an edit is most likely to go wrong: either side of a token, and the
+     * very end of the text
+     */
+    private static int pickEditStart(ModelYtdlCommandTree commandTree, Random random) {
+
+        int commandLength = commandTree.getCommand().length();
+
+        switch (random.nextInt(4)) {
+            case 0:
+                return commandLength;
+
+            case 1:
+                if (commandTree.getTokenCount() > 0) {
+                    int tokenIndex = random.nextInt(commandTree.getTokenCount());
+                    return random.nextBoolean()
+                            ? commandTree.getTokenStart(tokenIndex)
+                            : commandTree.getTokenEnd(tokenIndex);
+                }
+                return 0;
+
+            default:
+                return random.nextInt(commandLength + 1);
+        }
+    }
+
+
+    @Test
+    public void randomEdits_matchFullParse() {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        for (int runIndex = 0; runIndex < RANDOM_EDIT_RUNS; runIndex++) {
+            String command = START_COMMANDS[runIndex % START_COMMANDS.length];
+            ModelYtdlCommandTree commandTree = ModelYtdlCommandTree.parse(command);
+
+            for (int editIndex = 0; editIndex < EDITS_PER_RUN; editIndex++) {
+                int editStart = pickEditStart(commandTree, random);
+                int removedLength = (random.nextInt(3) == 0)
+                        ? random.nextInt(Math.min(4, command.length() - editStart) + 1)
+                        : 0;
+
+                // Mostly single characters, like typing, with the odd paste
+                StringBuilder insertedText = new StringBuilder();
+                int insertedLength = (random.nextInt(5) == 0) ? random.nextInt(6) : (removedLength > 0 ? 0 : 1);
+                for (int charIndex = 0; charIndex < insertedLength; charIndex++) {
+                    insertedText.append(EDIT_CHARS.charAt(random.nextInt(EDIT_CHARS.length())));
+                }
+
+                String newCommand = command.substring(0, editStart) + insertedText + command.substring(editStart + removedLength);
+                ModelYtdlCommandTree editedTree = commandTree.applyEdit(newCommand, editStart, removedLength, insertedLength);
+
+                assertSameTree(
+                        "Edit " + editIndex + " of run " + runIndex + " (\"" + newCommand + "\")",
+                        ModelYtdlCommandTree.parse(newCommand),
+                        editedTree
+                );
+
+                command = newCommand;
+                commandTree = editedTree;
+            }
+        }
+    }
+
+
+    @Test
+    public void mismatchedEdit_parsesAgain() {
+        ModelYtdlCommandTree commandTree = ModelYtdlCommandTree.parse("youtube-dl -f best URL");
+        String newCommand = "youtube-dl -o out URL";
+
+        // Lengths don't add up to the new command, so it can't be trusted
+        assertSameTree("Mismatched edit", ModelYtdlCommandTree.parse(newCommand), commandTree.applyEdit(newCommand, 11, 1, 5));
+    }
+}
@@ -0,0 +1,83 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlExtractorCatalogueTest {
+
+    // Cut down "youtube-dl --list-extractors" output
+    private static final String EXTRACTOR_LIST = ""
+            + "abc.net.au\r\n"
+            + "AdobeTV\n"
+            + "AdobeTVShow\n"
+            + "Bandcamp\n"
+            + "Bandcamp:album\n"
+            + "CBSNews (CURRENTLY BROKEN)\n"
+            + "vimeo\n"
+            + "youtube\n"
+            + "youtube:playlist\n"
+            + "\n";
+
+
+    @Test
+    public void extractorList_isRecognised() {
+        assertTrue(ModelYtdlExtractorCatalogue.isExtractorList(EXTRACTOR_LIST));
+        assertFalse(ModelYtdlExtractorCatalogue.isExtractorList(""));
+        assertFalse(ModelYtdlExtractorCatalogue.isExtractorList("\n\n"));
+    }
+
+
+    @Test
+    public void helpText_isNotExtractorList() throws Exception {
+        assertFalse(ModelYtdlExtractorCatalogue.isExtractorList(YtdlTestFixtures.getBundledHelpText()));
+        assertFalse(ModelYtdlExtractorCatalogue.isExtractorList("youtube\n    -h, --help"));
+        assertFalse(ModelYtdlExtractorCatalogue.isExtractorList("--version\n"));
+    }
+
+
+    @Test
+    public void parsedList_lookups() {
+        ModelYtdlExtractorCatalogue extractorCatalogue = ModelYtdlExtractorCatalogue.parseExtractorList(EXTRACTOR_LIST);
+
+        assertEquals(9, extractorCatalogue.getExtractorCount());
+        assertEquals("AdobeTV", extractorCatalogue.findExtractorByName("adobetv"));
+        assertNull(extractorCatalogue.findExtractorByName("adobe"));
+
+        assertTrue(extractorCatalogue.isBroken("CBSNews"));
+        assertFalse(extractorCatalogue.isBroken("vimeo"));
+
+        assertEquals(Arrays.asList("AdobeTV", "AdobeTVShow"), extractorCatalogue.findExtractorsByPrefix("ADOBE", 5));
+        assertEquals(Collections.singletonList("Bandcamp"), extractorCatalogue.findExtractorsByPrefix("band", 1));
+
+        assertEquals(Collections.singletonList("abc.net.au"), extractorCatalogue.findExtractorsForTarget("www.abc.net.au", 3));
+        assertTrue(extractorCatalogue.findExtractorsForTarget("example.com", 3).isEmpty());
+    }
+
+
+    @Test
+    public void targetOption_suggested() {
+        ModelYtdlExtractorCatalogue extractorCatalogue = ModelYtdlExtractorCatalogue.parseExtractorList(EXTRACTOR_LIST);
+
+        assertEquals("--force-generic-extractor", extractorCatalogue.suggestTargetOption(
+                ModelYtdlCommandTree.parse("youtube-dl https://example.com/video")
+        ));
+        assertNull(extractorCatalogue.suggestTargetOption(
+                ModelYtdlCommandTree.parse("youtube-dl https://vimeo.com/123")
+        ));
+        assertEquals("--default-search auto", extractorCatalogue.suggestTargetOption(
+                ModelYtdlCommandTree.parse("youtube-dl cat videos")
+        ));
+
+        // Nothing to go on without a list
+        assertNull(ModelYtdlExtractorCatalogue.emptyCatalogue().suggestTargetOption(
+                ModelYtdlCommandTree.parse("youtube-dl https://example.com/video")
+        ));
+    }
+}
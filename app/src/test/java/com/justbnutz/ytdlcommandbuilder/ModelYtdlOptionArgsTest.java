@@ -0,0 +1,88 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlOptionArgsTest {
+
+    /**
+     * Schema worked out for the command switch has the given kind and count, with its metavars over the given text
+     */
+    private static ModelYtdlOptionArgs assertArgs(String cmdSwitch, int argKind, int argCount, String metavarText) {
+        ModelYtdlOptionArgs optionArgs = ModelYtdlOptionArgs.parseCmdSwitch(cmdSwitch);
+
+        assertEquals("Kind of \"" + cmdSwitch + "\"", argKind, optionArgs.getArgKind());
+        assertEquals("Count of \"" + cmdSwitch + "\"", argCount, optionArgs.getArgCount());
+        assertEquals("Start of \"" + cmdSwitch + "\"", cmdSwitch.indexOf(metavarText), optionArgs.getArgStart());
+        assertEquals("Length of \"" + cmdSwitch + "\"", metavarText.length(), optionArgs.getArgLength());
+
+        return optionArgs;
+    }
+
+
+    @Test
+    public void singleMetavar() {
+        assertArgs("--format FORMAT", ModelYtdlOptionArgs.ARG_FORMAT, 1, "FORMAT");
+        assertArgs("--limit-rate RATE", ModelYtdlOptionArgs.ARG_RATE, 1, "RATE");
+        assertArgs("--socket-timeout SECONDS  ", ModelYtdlOptionArgs.ARG_SECONDS, 1, "SECONDS");
+        assertArgs("--user-agent UA", ModelYtdlOptionArgs.ARG_TEXT, 1, "UA");
+    }
+
+
+    @Test
+    public void punctuatedMetavar() {
+        ModelYtdlOptionArgs itemSpecArgs = assertArgs("--playlist-items ITEM_SPEC", ModelYtdlOptionArgs.ARG_TEXT, 1, "ITEM_SPEC");
+        assertTrue(itemSpecArgs.isValidArg("1-3,7,10-13"));
+
+        ModelYtdlOptionArgs headerArgs = assertArgs("--add-header FIELD:VALUE", ModelYtdlOptionArgs.ARG_TEXT, 1, "FIELD:VALUE");
+        assertTrue(headerArgs.isValidArg("'Referer:https://example.com'"));
+        assertFalse(headerArgs.isValidArg(" "));
+        assertFalse(headerArgs.isValidArg(null));
+    }
+
+
+    @Test
+    public void multipleMetavars() {
+        // Whole run of metavars is highlighted, the spaces between them included
+        assertArgs("--xattr-pair NAME VALUE", ModelYtdlOptionArgs.ARG_TEXT, 2, "NAME VALUE");
+        assertArgs("--size-range SIZE  SIZE ", ModelYtdlOptionArgs.ARG_SIZE, 2, "SIZE  SIZE");
+
+        // Kind goes by the first of them
+        assertArgs("--rate-then-size RATE SIZE", ModelYtdlOptionArgs.ARG_RATE, 2, "RATE SIZE");
+        assertArgs("-p, --pair KEY_1 KEY_2 TEMPLATE", ModelYtdlOptionArgs.ARG_TEXT, 3, "KEY_1 KEY_2 TEMPLATE");
+    }
+
+
+    @Test
+    public void noMetavar() {
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch("--no-overwrites"));
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch("-w"));
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch(""));
+
+        // Lowercase words and plain numbers aren't metavars, and there has to be a switch in front of them
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch("--verbose level"));
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch("--retries 10"));
+        assertSame(ModelYtdlOptionArgs.NO_ARGS, ModelYtdlOptionArgs.parseCmdSwitch("FORMAT"));
+
+        assertTrue(ModelYtdlOptionArgs.NO_ARGS.isValidArg(null));
+        assertFalse(ModelYtdlOptionArgs.NO_ARGS.isValidArg("extra"));
+    }
+
+
+    @Test
+    public void argsAreValidated() {
+        assertTrue(ModelYtdlOptionArgs.parseCmdSwitch("--retries RETRIES").isValidArg("infinite"));
+        assertFalse(ModelYtdlOptionArgs.parseCmdSwitch("--retries RETRIES").isValidArg("forever"));
+
+        assertTrue(ModelYtdlOptionArgs.parseCmdSwitch("--audio-quality QUALITY").isValidArg("9"));
+        assertTrue(ModelYtdlOptionArgs.parseCmdSwitch("--audio-quality QUALITY").isValidArg("128K"));
+        assertFalse(ModelYtdlOptionArgs.parseCmdSwitch("--audio-quality QUALITY").isValidArg("best"));
+
+        assertTrue(ModelYtdlOptionArgs.parseCmdSwitch("--output TEMPLATE").isValidArg("\"%(autonumber)03d.%(ext)s\""));
+        assertFalse(ModelYtdlOptionArgs.parseCmdSwitch("--output TEMPLATE").isValidArg("'%(title)'"));
+    }
+}
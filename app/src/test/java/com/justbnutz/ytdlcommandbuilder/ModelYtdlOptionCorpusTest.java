@@ -0,0 +1,70 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlOptionCorpusTest {
+
+    private static final String OLDER_VERSION_ID = "older";
+    private static final String UNKNOWN_VERSION_ID = "not-loaded";
+
+    private static ModelYtdlOptionCorpus sOptionCorpus;
+
+
+    @BeforeClass
+    public static void loadVersions() throws IOException {
+        String helpText = YtdlTestFixtures.getBundledHelpText();
+
+        // Older version without the "--no-part" option
+        int lineStart = helpText.indexOf("    --no-part ");
+        String olderHelpText = helpText.substring(0, lineStart) + helpText.substring(helpText.indexOf('\n', lineStart) + 1);
+
+        sOptionCorpus = new ModelYtdlOptionCorpus(new ModelYtdlTextArena(helpText.length(), true));
+        sOptionCorpus.addVersion(
+                ModelYtdlOptionCorpus.DEFAULT_VERSION_ID,
+                UtilYtdlHelpParser.parseHelpText(helpText, null, sOptionCorpus.getTextArena())
+        );
+        sOptionCorpus.addVersion(
+                OLDER_VERSION_ID,
+                UtilYtdlHelpParser.parseHelpText(olderHelpText, null, sOptionCorpus.getTextArena())
+        );
+    }
+
+
+    @Test
+    public void knownVersions_areCompared() {
+        assertEquals(1, sOptionCorpus.getAddedOptions(OLDER_VERSION_ID, ModelYtdlOptionCorpus.DEFAULT_VERSION_ID).size());
+        assertTrue(sOptionCorpus.getRemovedOptions(OLDER_VERSION_ID, ModelYtdlOptionCorpus.DEFAULT_VERSION_ID).isEmpty());
+        assertEquals(1, sOptionCorpus.getRemovedOptions(ModelYtdlOptionCorpus.DEFAULT_VERSION_ID, OLDER_VERSION_ID).size());
+    }
+
+
+    @Test
+    public void unknownVersion_isNotCompared() {
+        // Falling back on the default version here would show a diff against the wrong list
+        assertNull(sOptionCorpus.getAddedOptions(UNKNOWN_VERSION_ID, ModelYtdlOptionCorpus.DEFAULT_VERSION_ID));
+        assertNull(sOptionCorpus.getRemovedOptions(UNKNOWN_VERSION_ID, ModelYtdlOptionCorpus.DEFAULT_VERSION_ID));
+        assertNull(sOptionCorpus.getAddedOptions(OLDER_VERSION_ID, UNKNOWN_VERSION_ID));
+        assertNull(sOptionCorpus.getRemovedOptions(OLDER_VERSION_ID, UNKNOWN_VERSION_ID));
+    }
+
+
+    @Test
+    public void unknownSelectedVersion_fallsBackToDefault() {
+        assertSame(
+                sOptionCorpus.getOptionList(ModelYtdlOptionCorpus.DEFAULT_VERSION_ID),
+                sOptionCorpus.getOptionList(UNKNOWN_VERSION_ID)
+        );
+        assertSame(
+                sOptionCorpus.getSwitchTrie(ModelYtdlOptionCorpus.DEFAULT_VERSION_ID),
+                sOptionCorpus.getSwitchTrie(UNKNOWN_VERSION_ID)
+        );
+    }
+}
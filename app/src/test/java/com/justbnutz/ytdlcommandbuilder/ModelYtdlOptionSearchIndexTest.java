@@ -0,0 +1,518 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks the search index against the filter it replaced (lowercasing every item's full description and checking
+ * it contains the lowercased query), and times the two against each other on the bundled help text and on a
+ * synthetic list ten times the size. Also checks how the ranked search orders its matches.
+ */
+public class ModelYtdlOptionSearchIndexTest {
+
+    private static final int RANDOM_QUERY_COUNT = 300;
+
+    private static final int SYNTHETIC_COPIES = 10;
+
+    // Timing runs, after a few rounds to let the JIT settle
+    private static final int WARMUP_ROUNDS = 20;
+    private static final int TIMED_ROUNDS = 50;
+
+    // What gets typed into the search box the most
+    private static final List<String> TYPICAL_QUERIES = Arrays.asList(
+            "format", "playlist", "sub", "audio", "--no", "-f", "x", "pa", "proxy", "cookie",
+            "output", "date", "thumbnail", "username", "rate", "retries", "merge", "ffmpeg", "geo", "verbose"
+    );
+
+    private static List<ModelYtdlOptionSection> sBundledList;
+    private static List<ModelYtdlOptionSection> sSyntheticList;
+
+
+    @BeforeClass
+    public static void loadOptionLists() throws IOException {
+        sBundledList = YtdlTestFixtures.getBundledOptionList();
+        sSyntheticList = generateSyntheticList(sBundledList, SYNTHETIC_COPIES, new Random(YtdlTestFixtures.RANDOM_SEED));
+    }
+
+
+    /**
+     * Bigger list in the same shape as the given one: each copy has its switches renamed and its description words
+     * shuffled around, so the copies don't all match the same queries.
+     */
+    static List<ModelYtdlOptionSection> generateSyntheticList(List<ModelYtdlOptionSection> optionList, int copyCount, Random random) {
+
+        UtilYtdlHelpParser.OptionListBuilder listBuilder = new UtilYtdlHelpParser.OptionListBuilder(
+                null,
+                new ModelYtdlTextArena(0)
+        );
+
+        for (int copyIndex = 0; copyIndex < copyCount; copyIndex++) {
+            String switchPrefix = (copyIndex == 0) ? "--" : "--v" + copyIndex + "-";
+
+            for (ModelYtdlOptionSection optionSection : optionList) {
+                listBuilder.addSection(optionSection.getOptionHeader() + " " + copyIndex);
+
+                for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+
+                    List<String> descWords = new ArrayList<>(Arrays.asList(optionItem.getDescription().toString().split(" ")));
+                    if (copyIndex > 0) {
+                        Collections.shuffle(descWords, random);
+                    }
+
+                    StringBuilder description = new StringBuilder();
+                    for (String descWord : descWords) {
+                        if (description.length() > 0) {
+                            description.append(' ');
+                        }
+                        description.append(descWord);
+                    }
+
+                    listBuilder.addItem(
+                            optionItem.getCmdSwitch().toString().replace("--", switchPrefix),
+                            optionItem.getFlagLabel().toString().replace("--", switchPrefix),
+                            description
+                    );
+                }
+            }
+        }
+
+        return listBuilder.build();
+    }
+
+
+    /**
+     * The filter the search index replaced
+     */
+    private static List<ModelYtdlOptionItem> findMatchesWithContains(List<ModelYtdlOptionSection> optionList, String filterString) {
+
+        // Pinned to one locale, so the check doesn't depend on where it's run
+        filterString = filterString.toLowerCase(Locale.US);
+
+        List<ModelYtdlOptionItem> matchedItems = new ArrayList<>();
+
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            for (ModelYtdlOptionItem optionItem : optionSection.getYtdlOptionItems()) {
+                if (optionItem.getFullDescription().toString().toLowerCase(Locale.US).contains(filterString)) {
+                    matchedItems.add(optionItem);
+                }
+            }
+        }
+
+        return matchedItems;
+    }
+
+
+    /**
+     * Typical queries, plus random runs of the item text (in random case) and a few that won't match anything
+     */
+    private static List<String> generateQueries(List<ModelYtdlOptionSection> optionList, Random random) {
+
+        List<ModelYtdlOptionItem> allItems = new ArrayList<>();
+        for (ModelYtdlOptionSection optionSection : optionList) {
+            allItems.addAll(optionSection.getYtdlOptionItems());
+        }
+
+        List<String> queries = new ArrayList<>(TYPICAL_QUERIES);
+        queries.add("");
+        queries.add("zzzq");
+        queries.add("--format  best");
+
+        for (int queryIndex = 0; queryIndex < RANDOM_QUERY_COUNT; queryIndex++) {
+            String itemText = allItems.get(random.nextInt(allItems.size())).getFullDescription().toString();
+
+            int queryLength = 1 + random.nextInt(Math.min(12, itemText.length()));
+            int queryStart = random.nextInt(itemText.length() - queryLength + 1);
+
+            char[] queryChars = itemText.substring(queryStart, queryStart + queryLength).toCharArray();
+            for (int charIndex = 0; charIndex < queryChars.length; charIndex++) {
+                if (random.nextBoolean()) {
+                    queryChars[charIndex] = Character.toUpperCase(queryChars[charIndex]);
+                }
+            }
+
+            // Every so often, knock one character out so it probably doesn't match anymore
+            if (queryLength > 3 && random.nextInt(5) == 0) {
+                queryChars[random.nextInt(queryLength)] = '~';
+            }
+
+            queries.add(new String(queryChars));
+        }
+
+        return queries;
+    }
+
+
+    private static void assertSameItems(String filterString, List<ModelYtdlOptionItem> expectedItems, List<ModelYtdlOptionItem> actualItems) {
+        assertEquals("Match count for \"" + filterString + "\"", expectedItems.size(), actualItems.size());
+
+        for (int itemIndex = 0; itemIndex < expectedItems.size(); itemIndex++) {
+            assertSame("Match " + itemIndex + " for \"" + filterString + "\"", expectedItems.get(itemIndex), actualItems.get(itemIndex));
+        }
+    }
+
+
+    private static void assertMatchesContainsFilter(List<ModelYtdlOptionSection> optionList) {
+        ModelYtdlOptionSearchIndex searchIndex = ModelYtdlOptionSearchIndex.build(optionList);
+
+        for (String filterString : generateQueries(optionList, new Random(YtdlTestFixtures.RANDOM_SEED))) {
+            assertSameItems(
+                    filterString,
+                    findMatchesWithContains(optionList, filterString),
+                    searchIndex.findMatches(filterString)
+            );
+        }
+    }
+
+
+    @Test
+    public void syntheticList_isTenTimesBundled() {
+        int bundledCount = ModelYtdlOptionSearchIndex.build(sBundledList).getItemCount();
+
+        assertFalse(sBundledList.isEmpty());
+        assertEquals(bundledCount * SYNTHETIC_COPIES, ModelYtdlOptionSearchIndex.build(sSyntheticList).getItemCount());
+    }
+
+
+    @Test
+    public void bundledList_matchesContainsFilter() {
+        assertMatchesContainsFilter(sBundledList);
+    }
+
+
+    @Test
+    public void syntheticList_matchesContainsFilter() {
+        assertMatchesContainsFilter(sSyntheticList);
+    }
+
+
+    @Test
+    public void filterSession_matchesContainsFilter() {
+        ModelYtdlOptionSearchIndex searchIndex = ModelYtdlOptionSearchIndex.build(sSyntheticList);
+        ModelYtdlOptionSearchIndex.FilterSession filterSession = new ModelYtdlOptionSearchIndex.FilterSession();
+
+        // Type each query out a character at a time, then backspace halfway before the next one
+        for (String filterString : TYPICAL_QUERIES) {
+            for (int typedLength = 1; typedLength <= filterString.length(); typedLength++) {
+                String typedText = filterString.substring(0, typedLength);
+                assertSameItems(typedText, findMatchesWithContains(sSyntheticList, typedText), filterSession.findMatches(searchIndex, typedText, null));
+            }
+
+            for (int typedLength = filterString.length() - 1; typedLength > filterString.length() / 2; typedLength--) {
+                String typedText = filterString.substring(0, typedLength);
+                assertSameItems(typedText, findMatchesWithContains(sSyntheticList, typedText), filterSession.findMatches(searchIndex, typedText, null));
+            }
+        }
+    }
+
+
+    @Test
+    public void timing_indexAgainstContainsFilter() {
+        timeFilters("bundled", sBundledList);
+        timeFilters(SYNTHETIC_COPIES + "x synthetic", sSyntheticList);
+    }
+
+
+    /**
+     * Time both filters over the same queries and print the average per query. Only the results are asserted on,
+     * the timings are there to look at (they'd be too flaky to fail a build on).
+     */
+    private static void timeFilters(String listLabel, List<ModelYtdlOptionSection> optionList) {
+
+        ModelYtdlOptionSearchIndex searchIndex = ModelYtdlOptionSearchIndex.build(optionList);
+        List<String> queries = generateQueries(optionList, new Random(YtdlTestFixtures.RANDOM_SEED));
+
+        long containsNanos = 0;
+        long indexNanos = 0;
+        int matchCount = 0;
+
+        for (int roundIndex = 0; roundIndex < WARMUP_ROUNDS + TIMED_ROUNDS; roundIndex++) {
+            boolean isTimed = roundIndex >= WARMUP_ROUNDS;
+
+            long roundStart = System.nanoTime();
+            for (String filterString : queries) {
+                matchCount += findMatchesWithContains(optionList, filterString).size();
+            }
+            long containsEnd = System.nanoTime();
+            for (String filterString : queries) {
+                matchCount -= searchIndex.findMatches(filterString).size();
+            }
+            long indexEnd = System.nanoTime();
+
+            if (isTimed) {
+                containsNanos += containsEnd - roundStart;
+                indexNanos += indexEnd - containsEnd;
+            }
+        }
+
+        // Same number of matches both ways
+        assertEquals(0, matchCount);
+
+        long queryCount = (long) queries.size() * TIMED_ROUNDS;
+
+        System.out.println(String.format(
+                Locale.US,
+                "%s (%d options): contains() %.1fus, index %.1fus per query",
+                listLabel,
+                searchIndex.getItemCount(),
+                containsNanos / 1000.0 / queryCount,
+                indexNanos / 1000.0 / queryCount
+        ));
+    }
+
+
+    /**
+     * Small list of the given flag label / description pairs, all under the one Section
+     */
+    private static ModelYtdlOptionSearchIndex buildIndex(String... labelsAndDescriptions) {
+
+        UtilYtdlHelpParser.OptionListBuilder listBuilder = new UtilYtdlHelpParser.OptionListBuilder(
+                null,
+                new ModelYtdlTextArena(0)
+        );
+        listBuilder.addSection("Ranking");
+
+        for (int textIndex = 0; textIndex < labelsAndDescriptions.length; textIndex += 2) {
+            String flagLabel = labelsAndDescriptions[textIndex];
+            listBuilder.addItem(flagLabel.split(" ")[0], flagLabel, labelsAndDescriptions[textIndex + 1]);
+        }
+
+        return ModelYtdlOptionSearchIndex.build(listBuilder.build());
+    }
+
+
+    /**
+     * Switches of the ranked matches, best first
+     */
+    private static List<String> findRankedSwitches(ModelYtdlOptionSearchIndex searchIndex, String filterString, int maxResults) {
+
+        List<String> rankedSwitches = new ArrayList<>();
+        for (ModelYtdlOptionItem optionItem : searchIndex.findRankedMatches(filterString, maxResults, null)) {
+            rankedSwitches.add(optionItem.getCmdSwitch().toString());
+        }
+
+        return rankedSwitches;
+    }
+
+
+    /**
+     * Full (unbounded) optimal string alignment distance, to check the bounded one against
+     */
+    private static int referenceEditDistance(String firstText, String secondText) {
+
+        int[][] distances = new int[firstText.length() + 1][secondText.length() + 1];
+
+        for (int firstIndex = 0; firstIndex <= firstText.length(); firstIndex++) {
+            for (int secondIndex = 0; secondIndex <= secondText.length(); secondIndex++) {
+
+                if (firstIndex == 0 || secondIndex == 0) {
+                    distances[firstIndex][secondIndex] = firstIndex + secondIndex;
+                    continue;
+                }
+
+                int substituteCost = (firstText.charAt(firstIndex - 1) == secondText.charAt(secondIndex - 1)) ? 0 : 1;
+                int distance = Math.min(
+                        distances[firstIndex - 1][secondIndex - 1] + substituteCost,
+                        Math.min(distances[firstIndex - 1][secondIndex], distances[firstIndex][secondIndex - 1]) + 1
+                );
+
+                if (firstIndex > 1 && secondIndex > 1
+                        && firstText.charAt(firstIndex - 1) == secondText.charAt(secondIndex - 2)
+                        && firstText.charAt(firstIndex - 2) == secondText.charAt(secondIndex - 1)) {
+                    distance = Math.min(distance, distances[firstIndex - 2][secondIndex - 2] + 1);
+                }
+
+                distances[firstIndex][secondIndex] = distance;
+            }
+        }
+
+        return distances[firstText.length()][secondText.length()];
+    }
+
+
+    private static int boundedEditDistance(String text, String query, int maxDistance) {
+        return ModelYtdlOptionSearchIndex.boundedEditDistance(
+                text.toCharArray(),
+                0,
+                text.length(),
+                query.toCharArray(),
+                maxDistance,
+                new int[3][query.length() + 1]
+        );
+    }
+
+
+    @Test
+    public void rankedMatches_orderedByWhereTheyMatch() {
+        ModelYtdlOptionSearchIndex searchIndex = buildIndex(
+                "--thing", "Has a biggizmo inside",
+                "--extra", "Works like a gizmo",
+                "--other GIZMO", "Nothing much",
+                "--the-gizmo", "Contains the name",
+                "--gizmo-size SIZE", "Starts with the name",
+                "--gizmo", "Is the name",
+                "--unrelated", "Not matched"
+        );
+
+        // Exact switch, switch prefix, inside a switch, flag label, word in the description, anywhere in the description
+        assertEquals(
+                Arrays.asList("--gizmo", "--gizmo-size", "--the-gizmo", "--other", "--extra", "--thing"),
+                findRankedSwitches(searchIndex, "gizmo", 10)
+        );
+
+        // Case doesn't change anything, and the dashes are only taken off for the switch names
+        assertEquals(findRankedSwitches(searchIndex, "gizmo", 10), findRankedSwitches(searchIndex, "GiZmO", 10));
+        assertEquals(
+                Arrays.asList("--gizmo", "--gizmo-size", "--the-gizmo"),
+                findRankedSwitches(searchIndex, "--GIZMO ", 10)
+        );
+
+        assertEquals(Collections.<String>emptyList(), findRankedSwitches(searchIndex, "gizmo", 0));
+        assertEquals(Collections.<String>emptyList(), findRankedSwitches(searchIndex, "", 10));
+    }
+
+
+    @Test
+    public void rankedMatches_allowTyposByQueryLength() {
+        ModelYtdlOptionSearchIndex searchIndex = buildIndex(
+                "--gizmo-size SIZE", "Starts with the name",
+                "--download-archive FILE", "Keeps track of downloads",
+                "--gizmo", "Is the name"
+        );
+
+        // Under four characters it has to be spot on
+        assertEquals(Collections.<String>emptyList(), findRankedSwitches(searchIndex, "gix", 10));
+
+        // Four to seven characters allow one typo (the same score either way, so they stay in list order)
+        assertEquals(Arrays.asList("--gizmo-size", "--gizmo"), findRankedSwitches(searchIndex, "gizmi", 10));
+        assertEquals(Collections.singletonList("--download-archive"), findRankedSwitches(searchIndex, "dowml", 10));
+        assertEquals(Collections.<String>emptyList(), findRankedSwitches(searchIndex, "dqwml", 10));
+
+        // Eight or more allow two
+        assertEquals(Collections.singletonList("--download-archive"), findRankedSwitches(searchIndex, "dowmload-arxhive", 10));
+        assertEquals(Collections.<String>emptyList(), findRankedSwitches(searchIndex, "dowmload-arxhivw", 10));
+    }
+
+
+    @Test
+    public void rankedMatches_swapIsOneTypo() {
+        ModelYtdlOptionSearchIndex searchIndex = buildIndex(
+                "--gizmo", "Is the name",
+                "--download-archive FILE", "Keeps track of downloads"
+        );
+
+        // Would be two typos if a swap counted as a delete and an insert
+        assertEquals(Collections.singletonList("--gizmo"), findRankedSwitches(searchIndex, "gimzo", 10));
+        assertEquals(Collections.singletonList("--download-archive"), findRankedSwitches(searchIndex, "downlaod-archvie", 10));
+
+        assertEquals(1, boundedEditDistance("gizmo", "gimzo", 1));
+        assertEquals(1, boundedEditDistance("ab", "ba", 1));
+        assertEquals(2, boundedEditDistance("download", "dwonlaod", 2));
+    }
+
+
+    @Test
+    public void boundedEditDistance_matchesFullDistance() {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        assertEquals(0, boundedEditDistance("gizmo", "gizmo", 0));
+        assertEquals(1, boundedEditDistance("gizmo", "gizmi", 2));
+        assertEquals(1, boundedEditDistance("gizmo", "gizm", 2));
+
+        // Over the limit always comes back as one more than the limit
+        assertEquals(2, boundedEditDistance("gizmo", "abcde", 1));
+        assertEquals(3, boundedEditDistance("gizmo", "gi", 2));
+
+        // Small alphabet, so there are plenty of near misses and swaps
+        for (int runIndex = 0; runIndex < RANDOM_QUERY_COUNT * 10; runIndex++) {
+            String text = randomText(random, 1 + random.nextInt(10));
+            String query = randomText(random, 1 + random.nextInt(10));
+            int maxDistance = random.nextInt(4);
+
+            assertEquals(
+                    "\"" + text + "\" against \"" + query + "\" within " + maxDistance,
+                    Math.min(referenceEditDistance(text, query), maxDistance + 1),
+                    boundedEditDistance(text, query, maxDistance)
+            );
+        }
+    }
+
+
+    private static String randomText(Random random, int textLength) {
+        char[] textChars = new char[textLength];
+        for (int charIndex = 0; charIndex < textLength; charIndex++) {
+            textChars[charIndex] = (char) ('a' + random.nextInt(3));
+        }
+        return new String(textChars);
+    }
+
+
+    @Test
+    public void rankedItemHeap_matchesFullSort() {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        for (int runIndex = 0; runIndex < RANDOM_QUERY_COUNT; runIndex++) {
+            int itemCount = random.nextInt(60);
+            int maxItems = random.nextInt(20);
+
+            // Few different scores, so plenty of ties to break by list order
+            final int[] itemScores = new int[itemCount];
+            List<Integer> sortedItems = new ArrayList<>();
+            ModelYtdlOptionSearchIndex.RankedItemHeap rankedItems = new ModelYtdlOptionSearchIndex.RankedItemHeap(maxItems);
+
+            for (int itemIndex = 0; itemIndex < itemCount; itemIndex++) {
+                itemScores[itemIndex] = 1 + random.nextInt(5);
+                sortedItems.add(itemIndex);
+                rankedItems.offer(itemIndex, itemScores[itemIndex]);
+            }
+
+            Collections.sort(sortedItems, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer firstItem, Integer secondItem) {
+                    return (itemScores[firstItem] != itemScores[secondItem])
+                            ? itemScores[secondItem] - itemScores[firstItem]
+                            : firstItem - secondItem;
+                }
+            });
+
+            int[] bestItems = rankedItems.drainBestFirst();
+            assertEquals(Math.min(itemCount, maxItems), bestItems.length);
+
+            for (int rankIndex = 0; rankIndex < bestItems.length; rankIndex++) {
+                assertEquals("Rank " + rankIndex + " of run " + runIndex, (int) sortedItems.get(rankIndex), bestItems[rankIndex]);
+            }
+        }
+    }
+
+
+    @Test
+    public void rankedMatches_topOnlyMatchesFullRanking() {
+        ModelYtdlOptionSearchIndex searchIndex = ModelYtdlOptionSearchIndex.build(sBundledList);
+
+        for (String filterString : TYPICAL_QUERIES) {
+            List<String> fullRanking = findRankedSwitches(searchIndex, filterString, searchIndex.getItemCount());
+
+            for (int maxResults : new int[] {1, 5, 20}) {
+                assertEquals(
+                        "Top " + maxResults + " for \"" + filterString + "\"",
+                        fullRanking.subList(0, Math.min(maxResults, fullRanking.size())),
+                        findRankedSwitches(searchIndex, filterString, maxResults)
+                );
+            }
+        }
+
+        assertEquals("--format FORMAT", findRankedSwitches(searchIndex, "format", 1).get(0));
+    }
+}
@@ -0,0 +1,78 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ModelYtdlPrefixTrieTest {
+
+    private static final String[] SORTED_NAMES = {"-F", "-f", "--format", "--format-sort", "--no-continue", "--no-part"};
+    private static final String[] LOWER_NAMES = {"abc", "abc.net.au", "abcnews", "youtube", "youtube:playlist"};
+
+
+    /**
+     * Names starting with the prefix, as the [start, end) run the trie hands back (empty if it finds none)
+     */
+    private static void assertRange(ModelYtdlPrefixTrie prefixTrie, String namePrefix, int rangeStart, int rangeEnd) {
+        int prefixNode = prefixTrie.findPrefixNode(namePrefix);
+
+        if (rangeStart == rangeEnd) {
+            assertEquals("Node for \"" + namePrefix + "\"", -1, prefixNode);
+            return;
+        }
+
+        assertEquals("Start for \"" + namePrefix + "\"", rangeStart, prefixTrie.getRangeStart(prefixNode));
+        assertEquals("End for \"" + namePrefix + "\"", rangeEnd, prefixTrie.getRangeEnd(prefixNode));
+    }
+
+
+    @Test
+    public void prefixRanges() {
+        ModelYtdlPrefixTrie prefixTrie = new ModelYtdlPrefixTrie(SORTED_NAMES, false);
+
+        assertRange(prefixTrie, "", 0, SORTED_NAMES.length);
+        assertRange(prefixTrie, "-", 0, 6);
+        assertRange(prefixTrie, "--", 2, 6);
+        assertRange(prefixTrie, "--format", 2, 4);
+        assertRange(prefixTrie, "--no-", 4, 6);
+        assertRange(prefixTrie, "--no-p", 5, 6);
+        assertRange(prefixTrie, "--no-px", 0, 0);
+        assertRange(prefixTrie, "--format-sort-extra", 0, 0);
+    }
+
+
+    @Test
+    public void caseSensitive() {
+        ModelYtdlPrefixTrie prefixTrie = new ModelYtdlPrefixTrie(SORTED_NAMES, false);
+
+        assertEquals(0, prefixTrie.findNameIndex("-F"));
+        assertEquals(1, prefixTrie.findNameIndex("-f"));
+        assertEquals(-1, prefixTrie.findNameIndex("--FORMAT"));
+    }
+
+
+    @Test
+    public void lowerCaseQueries() {
+        ModelYtdlPrefixTrie prefixTrie = new ModelYtdlPrefixTrie(LOWER_NAMES, true);
+
+        assertRange(prefixTrie, "ABC", 0, 3);
+        assertRange(prefixTrie, "YouTube:", 4, 5);
+
+        assertEquals(0, prefixTrie.findNameIndex("AbC"));
+        assertEquals(3, prefixTrie.findNameIndex("YOUTUBE"));
+    }
+
+
+    @Test
+    public void exactNamesOnly() {
+        ModelYtdlPrefixTrie prefixTrie = new ModelYtdlPrefixTrie(SORTED_NAMES, false);
+
+        assertEquals(2, prefixTrie.findNameIndex("--format"));
+        assertEquals(3, prefixTrie.findNameIndex("--format-sort"));
+
+        // Prefixes of a name, and the empty root, aren't names themselves
+        assertEquals(-1, prefixTrie.findNameIndex("--form"));
+        assertEquals(-1, prefixTrie.findNameIndex(""));
+        assertEquals(-1, new ModelYtdlPrefixTrie(new String[0], false).findNameIndex("-f"));
+    }
+}
@@ -0,0 +1,109 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlSwitchTrieTest {
+
+    private static ModelYtdlSwitchTrie sSwitchTrie;
+
+
+    @BeforeClass
+    public static void loadSwitchTrie() throws IOException {
+        sSwitchTrie = YtdlTestFixtures.getBundledSwitchTrie();
+    }
+
+
+    @Test
+    public void completions_comeWithMetavars() {
+        assertEquals(Collections.singletonList("-f FORMAT"), sSwitchTrie.findCompletions("-f", 10));
+        assertEquals("--format FORMAT", sSwitchTrie.findCompletions("--form", 10).get(0));
+        assertEquals(Collections.<String>emptyList(), sSwitchTrie.findCompletions("--formatx", 10));
+    }
+
+
+    @Test
+    public void completions_sortedAndLimited() {
+        List<String> allCompletions = sSwitchTrie.findCompletions("--no-", sSwitchTrie.getSwitchCount());
+        assertTrue(allCompletions.size() > 5);
+
+        for (int completionIndex = 0; completionIndex < allCompletions.size(); completionIndex++) {
+            assertTrue(allCompletions.get(completionIndex).startsWith("--no-"));
+
+            if (completionIndex > 0) {
+                assertTrue(allCompletions.get(completionIndex - 1).compareTo(allCompletions.get(completionIndex)) < 0);
+            }
+        }
+
+        assertEquals(allCompletions.subList(0, 3), sSwitchTrie.findCompletions("--no-", 3));
+        assertEquals(Collections.<String>emptyList(), sSwitchTrie.findCompletions("--no-", 0));
+    }
+
+
+    @Test
+    public void switches_areCaseSensitive() {
+        assertEquals("--format", sSwitchTrie.getCanonicalSwitch("-f"));
+        assertEquals("--list-formats", sSwitchTrie.getCanonicalSwitch("-F"));
+
+        assertEquals(1, sSwitchTrie.getArgCount("-f"));
+        assertEquals(0, sSwitchTrie.getArgCount("-F"));
+
+        assertEquals(Collections.singletonList("-F"), sSwitchTrie.findCompletions("-F", 10));
+        assertEquals(-1, sSwitchTrie.getArgCount("--FORMAT"));
+    }
+
+
+    @Test
+    public void canonicalSwitch_sharedByAliases() {
+        assertEquals("--output", sSwitchTrie.getCanonicalSwitch("-o"));
+        assertEquals("--output", sSwitchTrie.getCanonicalSwitch("--output"));
+        assertEquals("--ignore-errors", sSwitchTrie.getCanonicalSwitch("-i"));
+        assertEquals("--no-overwrites", sSwitchTrie.getCanonicalSwitch("-w"));
+
+        assertNull(sSwitchTrie.getCanonicalSwitch("--bogus"));
+        assertNull(sSwitchTrie.getCanonicalSwitch("--outp"));
+        assertNull(sSwitchTrie.getOptionArgs("-Z"));
+    }
+
+
+    /**
+     * Conflicts of the option, sorted so the order they were put in the table doesn't matter
+     */
+    private static String[] getSortedConflicts(String canonicalSwitch) {
+        String[] conflictingSwitches = sSwitchTrie.getConflictingSwitches(canonicalSwitch).clone();
+        Arrays.sort(conflictingSwitches);
+        return conflictingSwitches;
+    }
+
+
+    @Test
+    public void conflicts_noOptionsAgainstTheirOpposite() {
+        assertArrayEquals(new String[] {"--no-continue"}, getSortedConflicts("--continue"));
+        assertArrayEquals(new String[] {"--continue"}, getSortedConflicts("--no-continue"));
+
+        // "--no-playlist" has no "--playlist" to undo, only the exclusive "--yes-playlist"
+        assertArrayEquals(new String[] {"--yes-playlist"}, getSortedConflicts("--no-playlist"));
+
+        // Nothing to conflict with when the other half isn't in this version
+        assertArrayEquals(new String[0], getSortedConflicts("--no-part"));
+        assertArrayEquals(new String[0], getSortedConflicts("--bogus"));
+    }
+
+
+    @Test
+    public void conflicts_exclusivePairs() {
+        assertArrayEquals(new String[] {"--abort-on-error"}, getSortedConflicts("--ignore-errors"));
+        assertArrayEquals(new String[] {"--ignore-errors"}, getSortedConflicts("--abort-on-error"));
+        assertArrayEquals(new String[] {"--verbose"}, getSortedConflicts("--quiet"));
+    }
+}
@@ -0,0 +1,64 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ModelYtdlTextArenaTest {
+
+    @Test
+    public void interning_sharesIdenticalText() {
+        ModelYtdlTextArena textArena = new ModelYtdlTextArena(0, true);
+
+        ModelYtdlOptionItem firstItem = textArena.newOptionItem(1, 0, "--quiet", "-q, --quiet", "Activate quiet mode");
+        ModelYtdlOptionItem secondItem = textArena.newOptionItem(5, 2, "--quiet", "-q, --quiet", "Activate quiet mode");
+        ModelYtdlOptionItem otherItem = textArena.newOptionItem(6, 2, "--quiet", "-q, --quiet", "Activate very quiet mode");
+
+        assertEquals(firstItem.getTextEntry(), secondItem.getTextEntry());
+        assertNotEquals(firstItem.getTextEntry(), otherItem.getTextEntry());
+        assertEquals(2, textArena.getEntryCount());
+
+        // Shared text, own Ids
+        assertEquals(5, secondItem.getSuperId());
+        assertEquals(2, secondItem.getSectionId());
+        assertTrue(ModelYtdlTextArena.contentEquals("Activate quiet mode", secondItem.getDescription()));
+    }
+
+
+    @Test
+    public void finishInterning_copiesAfterwards() {
+        ModelYtdlTextArena textArena = new ModelYtdlTextArena(0, true);
+
+        ModelYtdlOptionItem firstItem = textArena.newOptionItem(1, 0, "--quiet", "-q, --quiet", "Activate quiet mode");
+        textArena.finishInterning();
+        ModelYtdlOptionItem secondItem = textArena.newOptionItem(2, 0, "--quiet", "-q, --quiet", "Activate quiet mode");
+
+        assertNotEquals(firstItem.getTextEntry(), secondItem.getTextEntry());
+        assertTrue(ModelYtdlTextArena.contentEquals(firstItem.getFullDescription(), secondItem.getFullDescription()));
+    }
+
+
+    @Test
+    public void plainArena_neverShares() {
+        ModelYtdlTextArena textArena = new ModelYtdlTextArena(0);
+
+        textArena.newOptionItem(1, 0, "--quiet", "-q, --quiet", "Activate quiet mode");
+        textArena.newOptionItem(2, 0, "--quiet", "-q, --quiet", "Activate quiet mode");
+
+        assertEquals(2, textArena.getEntryCount());
+    }
+
+
+    @Test
+    public void switchOutsideFlag_keepsOwnText() {
+        ModelYtdlTextArena textArena = new ModelYtdlTextArena(0);
+
+        ModelYtdlOptionItem optionItem = textArena.newOptionItem(1, 0, "--format FORMAT", "--format=FORMAT", "Video format code");
+
+        assertTrue(ModelYtdlTextArena.contentEquals("--format FORMAT", optionItem.getCmdSwitch()));
+        assertTrue(ModelYtdlTextArena.contentEquals("--format=FORMAT", optionItem.getFlagLabel()));
+        assertTrue(ModelYtdlTextArena.contentEquals("Video format code", optionItem.getDescription()));
+    }
+}
@@ -0,0 +1,80 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class UtilStringValidationOpsTest {
+
+    // Values that sit right on the edge of one or more of the checks
+    private static final String RELATIVE_DATE = "now-2weeks";
+    private static final String MONTH_13_DATE = "20181301";
+    private static final String DECIMAL_SIZE = "4.2M";
+    private static final String MISSING_FRACTION = "1.";
+    private static final String PADDED_TEMPLATE = "%(autonumber)03d";
+    private static final String UNTYPED_TEMPLATE = "%(title)";
+
+
+    /**
+     * Every validator's answer for the value, in the order: byte size, date, integer, URL, output template
+     */
+    private static void assertValidators(String checkValue, boolean byteSize, boolean date, boolean integer, boolean url, boolean outputTemplate) {
+        assertEquals("isValidByteSize(\"" + checkValue + "\")", byteSize, UtilStringValidationOps.isValidByteSize(checkValue));
+        assertEquals("isValidDate(\"" + checkValue + "\")", date, UtilStringValidationOps.isValidDate(checkValue));
+        assertEquals("isValidInteger(\"" + checkValue + "\")", integer, UtilStringValidationOps.isValidInteger(checkValue, 0, Integer.MAX_VALUE));
+        assertEquals("isValidUrl(\"" + checkValue + "\")", url, UtilStringValidationOps.isValidUrl(checkValue));
+        assertEquals("isValidOutputTemplate(\"" + checkValue + "\")", outputTemplate, UtilStringValidationOps.isValidOutputTemplate(checkValue));
+    }
+
+
+    @Test
+    public void relativeDate() {
+        assertValidators(RELATIVE_DATE, false, true, false, false, true);
+    }
+
+
+    @Test
+    public void outOfRangeMonth() {
+        // Still a number (and so a size in bytes), just not a date
+        assertValidators(MONTH_13_DATE, true, false, true, false, true);
+    }
+
+
+    @Test
+    public void decimalSize() {
+        assertValidators(DECIMAL_SIZE, true, false, false, false, true);
+    }
+
+
+    @Test
+    public void missingFraction() {
+        assertValidators(MISSING_FRACTION, false, false, false, false, true);
+        assertFalse(UtilStringValidationOps.isValidDecimal(MISSING_FRACTION));
+    }
+
+
+    @Test
+    public void paddedTemplateField() {
+        assertValidators(PADDED_TEMPLATE, false, false, false, false, true);
+    }
+
+
+    @Test
+    public void templateFieldWithoutType() {
+        assertValidators(UNTYPED_TEMPLATE, false, false, false, false, false);
+    }
+
+
+    @Test
+    public void nearbyValues() {
+        assertValidators("today+1day", false, true, false, false, true);
+        assertValidators("now-2fortnights", false, false, false, false, true);
+        assertValidators("20181231", true, true, true, false, true);
+        assertValidators("4.2Q", false, false, false, false, true);
+        assertValidators("socks5://127.0.0.1:1080/", false, false, false, true, true);
+        assertValidators("://host", false, false, false, false, true);
+        assertValidators("%(title)s.%(ext)s", false, false, false, false, true);
+        assertValidators(" ", false, false, false, false, false);
+    }
+}
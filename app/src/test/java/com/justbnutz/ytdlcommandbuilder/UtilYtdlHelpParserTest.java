@@ -0,0 +1,264 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the runtime help text scanner against the original regex parser, which is kept as the reference for
+ * how each line should be read.
+ */
+public class UtilYtdlHelpParserTest {
+
+    private static final int RANDOM_EDIT_RUNS = 200;
+
+    // Enough to go past the number of Section headers in the bundled text
+    private static final int MAX_CHUNK_COUNT = 40;
+
+    private static String sHelpText;
+
+
+    @BeforeClass
+    public static void loadHelpText() throws IOException {
+        sHelpText = YtdlTestFixtures.getBundledHelpText();
+    }
+
+
+    static List<ModelYtdlOptionSection> parseWithRegex(String helpText) throws IOException {
+        return UtilYtdlHelpParser.parseHelpTextWithRegex(
+                new BufferedReader(new StringReader(helpText))
+        );
+    }
+
+
+    private static void assertScannerMatchesRegex(String helpText) throws IOException {
+        List<ModelYtdlOptionSection> regexOptionsList = parseWithRegex(helpText);
+
+        assertTrue(
+                "parseHelpText() no longer matches the regex parser",
+                UtilYtdlHelpParser.isSameOptionList(UtilYtdlHelpParser.parseHelpText(helpText), regexOptionsList)
+        );
+    }
+
+
+    @Test
+    public void bundledHelpText_matchesRegex() throws IOException {
+        List<ModelYtdlOptionSection> regexOptionsList = parseWithRegex(sHelpText);
+
+        // Make sure there's actually something being compared
+        assertFalse(regexOptionsList.isEmpty());
+        assertFalse(regexOptionsList.get(0).getYtdlOptionItems().isEmpty());
+
+        assertScannerMatchesRegex(sHelpText);
+    }
+
+
+    @Test
+    public void windowsLineBreaks_matchRegex() throws IOException {
+        String helpText = sHelpText.replace("\n", "\r\n");
+
+        assertScannerMatchesRegex(helpText);
+
+        // Same list either way
+        assertTrue(UtilYtdlHelpParser.isSameOptionList(
+                UtilYtdlHelpParser.parseHelpText(helpText),
+                UtilYtdlHelpParser.parseHelpText(sHelpText)
+        ));
+    }
+
+
+    @Test
+    public void oldMacLineBreaks_matchRegex() throws IOException {
+        assertScannerMatchesRegex(sHelpText.replace("\n", "\r"));
+    }
+
+
+    @Test
+    public void emptyText_matchesRegex() throws IOException {
+        assertScannerMatchesRegex("");
+        assertScannerMatchesRegex("\n");
+        assertScannerMatchesRegex("\r\n\r\n");
+        assertEquals(0, UtilYtdlHelpParser.parseHelpText("").size());
+    }
+
+
+    @Test
+    public void oddIndents_matchRegex() throws IOException {
+        String helpText = ""
+                // Item before the first header (uses up a Super Id, but has nowhere to go)
+                + "    -x, --orphan                     Not under any Section yet\n"
+                + "  Header One\n"
+                // Tab in place of a space in the indent, still counts as whitespace
+                + "\t   -a, --alpha                      Tab in the indent\n"
+                + "\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\tContinued after tabs\n"
+                // One space short and one space over on the flag column
+                + "   -b, --bravo                      One short\n"
+                + "     -c, --charlie                    One over\n"
+                // Description column off by one either way
+                + "    -d, --delta                     Desc one short\n"
+                + "    -e, --echo                        Desc one over\n"
+                + "                                    Cont one short\n"
+                + "                                      Cont one over\n"
+                // Description starting on a non-word character
+                + "    -f, --foxtrot                    (bracketed) description\n"
+                + "    -g, --golf                       Golf\n"
+                + "                                     -dash continued\n"
+                // Header indented by one and three
+                + " Header One Space\n"
+                + "   Header Three Spaces\n"
+                // Trailing whitespace everywhere
+                + "  Header Two   \t\n"
+                + "    -h, --hotel HOTEL                Trailing spaces   \n"
+                + "                                     and tabs\t\t\n"
+                // Flag label with no usable switch keeps the previous one
+                + "    -i, --india=[a|b]                No switch on the end\n"
+                + "    --juliet KEY:VALUE               Colon in the argument\n"
+                // Just long enough and one too short
+                + "    -k                               K\n"
+                + "    -l                               Lm\n"
+                + "                                     N\n"
+                + "                                     No\n"
+                // Vertical tab and form feed in the indent
+                + "  \u000B -m, --mike                       Vertical tab\n"
+                + "\f   -n, --november                   Form feed\n"
+                // Unicode line separators, which BufferedReader leaves in but the regex treats as line ends
+                + "    -o, --oscar                      Ends in a separator\u2028\n"
+                + "    -p, --papa                       Separator\u2029 in the middle\n"
+                + "    -q, --quebec\u0085                    Separator in the flag\n"
+                + "  Header\u2028\n"
+                + "\u2028   -r, --romeo                      Separator in the indent\n"
+                // Header with a non-word start
+                + "  -NotAHeader\n"
+                + "  Header Three\n"
+                + "                                     Description carries on past a header\n"
+                + "    -s, --sierra                     Last one, with no line break";
+
+        assertScannerMatchesRegex(helpText);
+        assertScannerMatchesRegex(helpText.replace("\n", "\r\n"));
+    }
+
+
+    @Test
+    public void randomEdits_matchRegex() throws IOException {
+        Random random = new Random(YtdlTestFixtures.RANDOM_SEED);
+
+        // Characters most likely to move a line from one type to another
+        String editChars = "  \t-a_:,\r\n\u2028";
+
+        for (int runIndex = 0; runIndex < RANDOM_EDIT_RUNS; runIndex++) {
+            StringBuilder helpText = new StringBuilder(sHelpText);
+
+            int editCount = 1 + random.nextInt(20);
+            for (int editIndex = 0; editIndex < editCount; editIndex++) {
+                int editPosition = random.nextInt(helpText.length());
+
+                if (random.nextBoolean()) {
+                    helpText.deleteCharAt(editPosition);
+                } else {
+                    helpText.insert(editPosition, editChars.charAt(random.nextInt(editChars.length())));
+                }
+            }
+
+            assertScannerMatchesRegex(helpText.toString());
+        }
+    }
+
+
+    private static void assertChunksMatchRegex(String helpText) throws IOException {
+        List<ModelYtdlOptionSection> regexOptionsList = parseWithRegex(helpText);
+
+        for (int chunkCount = 1; chunkCount <= MAX_CHUNK_COUNT; chunkCount++) {
+            List<ModelYtdlOptionSection> chunkedOptionsList = UtilYtdlHelpParser.parseHelpTextInChunks(
+                    helpText,
+                    null,
+                    new ModelYtdlTextArena(helpText.length()),
+                    chunkCount
+            );
+
+            assertTrue(
+                    "parseHelpTextInChunks() no longer matches the regex parser with " + chunkCount + " chunks",
+                    UtilYtdlHelpParser.isSameOptionList(chunkedOptionsList, regexOptionsList)
+            );
+        }
+    }
+
+
+    @Test
+    public void chunkedBundledHelpText_matchesRegex() throws IOException {
+        assertChunksMatchRegex(sHelpText);
+        assertChunksMatchRegex(sHelpText.replace("\n", "\r\n"));
+    }
+
+
+    @Test
+    public void chunkedDescriptionPastHeader_matchesRegex() throws IOException {
+        StringBuilder helpText = new StringBuilder();
+
+        // Every chunk (apart from the first) starts on a header, with the item above it still taking description lines
+        for (int sectionIndex = 0; sectionIndex < 12; sectionIndex++) {
+            helpText
+                    .append("  Header ").append(sectionIndex).append('\n')
+                    .append("                                     Carries on from the last Section\n");
+
+            for (int itemIndex = 0; itemIndex < sectionIndex % 3; itemIndex++) {
+                helpText
+                        .append(String.format("    %-33s", "-o, --option-" + sectionIndex + "-" + itemIndex))
+                        .append("Description\n");
+            }
+        }
+
+        // Header as the very last line, then a description after it with no line break
+        helpText.append("  Last Header\n");
+        helpText.append("                                     Still the last item");
+
+        List<ModelYtdlOptionSection> regexOptionsList = parseWithRegex(helpText.toString());
+
+        // Make sure the quirk is actually in there
+        ModelYtdlOptionItem carriedItem = regexOptionsList.get(1).getYtdlOptionItems().get(0);
+        assertEquals("Description Carries on from the last Section", carriedItem.getDescription().toString());
+
+        assertChunksMatchRegex(helpText.toString());
+    }
+
+
+    @Test
+    public void chunkedSections_streamInOrder() {
+        final List<ModelYtdlOptionSection> streamedSections = new ArrayList<>();
+
+        List<ModelYtdlOptionSection> chunkedOptionsList = UtilYtdlHelpParser.parseHelpTextInChunks(
+                sHelpText,
+                new UtilYtdlHelpParser.SectionListener() {
+                    @Override
+                    public void onSectionComplete(ModelYtdlOptionSection optionSection) {
+                        streamedSections.add(optionSection);
+                    }
+                },
+                new ModelYtdlTextArena(sHelpText.length()),
+                8
+        );
+
+        assertEquals(chunkedOptionsList, streamedSections);
+    }
+
+
+    @Test
+    public void largeHelpText_matchesRegex() throws IOException {
+        // Past the size where parseHelpText() goes parallel by itself (given more than one core)
+        StringBuilder helpText = new StringBuilder();
+        while (helpText.length() < 256 * 1024) {
+            helpText.append(sHelpText);
+        }
+
+        assertScannerMatchesRegex(helpText.toString());
+    }
+}
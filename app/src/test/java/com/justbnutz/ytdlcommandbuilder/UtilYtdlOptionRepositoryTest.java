@@ -0,0 +1,23 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class UtilYtdlOptionRepositoryTest {
+
+    @Test
+    public void importVersionId_comesFromFileName() {
+        assertEquals("2018.06.18", UtilYtdlOptionRepository.getImportVersionId("2018.06.18.txt"));
+        assertEquals("2018.06.18", UtilYtdlOptionRepository.getImportVersionId(" 2018.06.18.TXT "));
+        assertEquals("yt-dlp_2021", UtilYtdlOptionRepository.getImportVersionId("yt-dlp 2021"));
+    }
+
+
+    @Test
+    public void importVersionId_staysInVersionDir() {
+        assertEquals("_.._etc_passwd", UtilYtdlOptionRepository.getImportVersionId("/../etc/passwd"));
+        assertEquals("", UtilYtdlOptionRepository.getImportVersionId(".txt"));
+        assertEquals("", UtilYtdlOptionRepository.getImportVersionId(null));
+    }
+}
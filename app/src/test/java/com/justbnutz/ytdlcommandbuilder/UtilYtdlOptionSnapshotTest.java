@@ -0,0 +1,178 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UtilYtdlOptionSnapshotTest {
+
+    private static final int APP_VERSION_CODE = 7;
+
+    // Header: magic, format version, parser version, app version, digest length, SHA-1 digest
+    private static final int FORMAT_VERSION_OFFSET = 4;
+    private static final int PARSER_VERSION_OFFSET = 8;
+    private static final int APP_VERSION_OFFSET = 12;
+    private static final int SECTION_COUNT_OFFSET = 4 * 4 + 2 + 20;
+
+    private static String sHelpText;
+    private static byte[] sHelpDigest;
+    private static List<ModelYtdlOptionSection> sOptionList;
+
+    @Rule
+    public final TemporaryFolder mTempFolder = new TemporaryFolder();
+
+    private File mSnapshotFile;
+
+
+    @BeforeClass
+    public static void loadHelpText() throws IOException {
+        sHelpText = YtdlTestFixtures.getBundledHelpText();
+        sHelpDigest = UtilYtdlOptionSnapshot.digestHelpText(sHelpText);
+        sOptionList = YtdlTestFixtures.getBundledOptionList();
+    }
+
+
+    @Before
+    public void writeSnapshot() {
+        mSnapshotFile = new File(mTempFolder.getRoot(), "ytdl_options.snapshot");
+        UtilYtdlOptionSnapshot.writeSnapshot(mSnapshotFile, sHelpDigest, APP_VERSION_CODE, sOptionList);
+    }
+
+
+    private List<ModelYtdlOptionSection> readSnapshot() {
+        return UtilYtdlOptionSnapshot.readSnapshot(mSnapshotFile, sHelpDigest, APP_VERSION_CODE);
+    }
+
+
+    private void writeIntAt(int fileOffset, int value) throws IOException {
+        RandomAccessFile snapshotAccess = new RandomAccessFile(mSnapshotFile, "rw");
+        try {
+            snapshotAccess.seek(fileOffset);
+            snapshotAccess.writeInt(value);
+
+        } finally {
+            snapshotAccess.close();
+        }
+    }
+
+
+    @Test
+    public void snapshot_roundTrips() {
+        assertTrue(mSnapshotFile.isFile());
+        assertTrue(
+                "Snapshot no longer matches the parsed list",
+                UtilYtdlHelpParser.isSameOptionList(sOptionList, readSnapshot())
+        );
+
+        // Temp file is only there while writing
+        assertEquals(1, mTempFolder.getRoot().list().length);
+    }
+
+
+    @Test
+    public void snapshot_rejectsOtherHelpText() {
+        assertNull(UtilYtdlOptionSnapshot.readSnapshot(mSnapshotFile, UtilYtdlOptionSnapshot.digestHelpText(sHelpText + "\n"), APP_VERSION_CODE));
+        assertNull(UtilYtdlOptionSnapshot.readSnapshot(mSnapshotFile, Arrays.copyOf(sHelpDigest, 16), APP_VERSION_CODE));
+        assertNull(UtilYtdlOptionSnapshot.readSnapshot(mSnapshotFile, new byte[0], APP_VERSION_CODE));
+    }
+
+
+    @Test
+    public void snapshot_rejectsOtherVersions() throws IOException {
+        assertNull(UtilYtdlOptionSnapshot.readSnapshot(mSnapshotFile, sHelpDigest, APP_VERSION_CODE + 1));
+
+        writeIntAt(FORMAT_VERSION_OFFSET, 99);
+        assertNull(readSnapshot());
+
+        writeSnapshot();
+        writeIntAt(PARSER_VERSION_OFFSET, UtilYtdlHelpParser.PARSER_VERSION + 1);
+        assertNull(readSnapshot());
+
+        writeSnapshot();
+        writeIntAt(APP_VERSION_OFFSET, APP_VERSION_CODE + 1);
+        assertNull(readSnapshot());
+
+        // Put back the way it was written, it reads again
+        writeIntAt(APP_VERSION_OFFSET, APP_VERSION_CODE);
+        assertNotNull(readSnapshot());
+    }
+
+
+    @Test
+    public void snapshot_rejectsTruncatedFile() throws IOException {
+        long fullLength = mSnapshotFile.length();
+
+        for (long truncatedLength : new long[] {fullLength - 1, fullLength / 2, SECTION_COUNT_OFFSET + 2, 10, 0}) {
+            RandomAccessFile snapshotAccess = new RandomAccessFile(mSnapshotFile, "rw");
+            try {
+                snapshotAccess.setLength(truncatedLength);
+
+            } finally {
+                snapshotAccess.close();
+            }
+
+            assertNull("Truncated to " + truncatedLength, readSnapshot());
+        }
+    }
+
+
+    @Test
+    public void snapshot_rejectsCorruptCounts() throws IOException {
+        // Far more sections (or items in the first one) than the file could hold, turned down before anything is allocated for them
+        for (int corruptCount : new int[] {Integer.MAX_VALUE, Integer.MAX_VALUE / 2, -1}) {
+            writeSnapshot();
+            writeIntAt(SECTION_COUNT_OFFSET, corruptCount);
+            assertNull("Section count " + corruptCount, readSnapshot());
+        }
+
+        // First section: Super Id, then header label length and bytes, then its item count
+        int itemCountOffset = SECTION_COUNT_OFFSET + 4 + 4 + 4 + sOptionList.get(0).getOptionHeader().getBytes("UTF-8").length;
+
+        for (int corruptCount : new int[] {Integer.MAX_VALUE, 1 << 24, -1}) {
+            writeSnapshot();
+            writeIntAt(itemCountOffset, corruptCount);
+            assertNull("Item count " + corruptCount, readSnapshot());
+        }
+
+        writeSnapshot();
+        writeIntAt(SECTION_COUNT_OFFSET + 4 + 4, Integer.MAX_VALUE);
+        assertNull("Header label length", readSnapshot());
+    }
+
+
+    @Test
+    public void snapshot_corruptBytesNeverThrow() throws IOException {
+        long fullLength = mSnapshotFile.length();
+
+        // Whatever a flipped byte lands on, the read either misses or decodes something (string bytes aren't checked)
+        for (long flipOffset = SECTION_COUNT_OFFSET; flipOffset < fullLength; flipOffset += 61) {
+            writeSnapshot();
+
+            RandomAccessFile snapshotAccess = new RandomAccessFile(mSnapshotFile, "rw");
+            try {
+                snapshotAccess.seek(flipOffset);
+                int flippedByte = snapshotAccess.read() ^ 0xFF;
+                snapshotAccess.seek(flipOffset);
+                snapshotAccess.write(flippedByte);
+
+            } finally {
+                snapshotAccess.close();
+            }
+
+            readSnapshot();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.justbnutz.ytdlcommandbuilder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * What the tests have in common: the bundled help text, the Option List parsed from it and the switch trie built
+ * from that. Each is only read or built the once, then handed to every test class that asks for it (none of them
+ * change it).
+ */
+final class YtdlTestFixtures {
+
+    // Fixed seed for every randomised test, so any mismatch found can be run again
+    static final long RANDOM_SEED = 20180620L;
+
+    // Unit tests run from the module dir
+    static final File HELP_TEXT_FILE = new File("src/main/res/raw/ytdl_options.txt");
+
+    private static String sHelpText;
+    private static List<ModelYtdlOptionSection> sOptionList;
+    private static ModelYtdlSwitchTrie sSwitchTrie;
+
+
+    private YtdlTestFixtures() {
+    }
+
+
+    static synchronized String getBundledHelpText() throws IOException {
+        if (sHelpText == null) {
+            sHelpText = UtilYtdlHelpParser.readHelpText(new FileInputStream(HELP_TEXT_FILE));
+        }
+
+        return sHelpText;
+    }
+
+
+    static synchronized List<ModelYtdlOptionSection> getBundledOptionList() throws IOException {
+        if (sOptionList == null) {
+            sOptionList = UtilYtdlHelpParser.parseHelpText(getBundledHelpText());
+        }
+
+        return sOptionList;
+    }
+
+
+    static synchronized ModelYtdlSwitchTrie getBundledSwitchTrie() throws IOException {
+        if (sSwitchTrie == null) {
+            sSwitchTrie = ModelYtdlSwitchTrie.build(getBundledOptionList());
+        }
+
+        return sSwitchTrie;
+    }
+}